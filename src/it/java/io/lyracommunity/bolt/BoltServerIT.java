@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 public class BoltServerIT {
 
     private          int  num_packets   = 32;
+    private          int  serverDatagramSize = Config.DEFAULT_DATAGRAM_SIZE;
     private          long total         = 0;
     private volatile long totalReceived = 0;
     private MessageDigest serverMd5;
@@ -55,6 +56,14 @@ public class BoltServerIT {
     }
 
 
+    // The server's larger datagram size is negotiated down to the client's.
+    @Test
+    public void testServerWithLargerDatagramSize() throws Throwable {
+        num_packets = 3000;
+        serverDatagramSize = 9000;
+        doTest(0.1f);
+    }
+
     private void doTest(final float packetLossPercentage) throws Throwable {
 
         final int N = num_packets * 1000;
@@ -63,7 +72,7 @@ public class BoltServerIT {
         serverMd5 = MessageDigest.getInstance("MD5");
 
         Infra.Builder builder = Infra.Builder.withServerAndClients(1)
-                .preconfigureServer(s -> s.config().setPacketLoss(packetLossPercentage))
+                .preconfigureServer(s -> s.config().setPacketLoss(packetLossPercentage).setDatagramSize(serverDatagramSize))
                 .onEventServer((ts, evt) -> {
                     if (byte[].class.equals(evt.getClass())) {
                         byte[] x = (byte[]) evt;
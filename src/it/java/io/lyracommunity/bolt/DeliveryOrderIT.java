@@ -48,6 +48,37 @@ public class DeliveryOrderIT
         }
     }
 
+    @Test
+    public void sendOrderedPacketsWithPacketLossAndInlineReceive_InOrderDelivery() throws Throwable {
+        final int sendCount = 100;
+        final LinkedList<ReliableOrdered> receiveOrder = new LinkedList<>();
+        final AtomicInteger sendIndex = new AtomicInteger(1);
+
+        Infra.Builder builder = Infra.Builder.withServerAndClients(1)
+                .preconfigureServer(s -> s.config().setPacketLoss(0.2f).setInlineReceive(true))
+                .preconfigureClients(c -> c.config().setInlineReceive(true))
+                .onEventServer((ts, evt) -> {
+                    if (ReliableOrdered.class.equals(evt.getClass())) {
+                        receiveOrder.add((ReliableOrdered) evt);
+                    }
+                })
+                .onReadyClient((tc, evt) -> {
+                    for (int i = 0; i < sendCount; i++) {
+                        tc.client.send(TestObjects.reliableOrdered(sendIndex.getAndIncrement()));
+                    }
+                })
+                .setWaitCondition(ts -> ts.server().receivedOf(ReliableOrdered.class) < sendCount);
+
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(2, TimeUnit.MINUTES);
+
+            assertEquals(sendCount, receiveOrder.size());
+            for (int n = 0; n < receiveOrder.size(); n++) {
+                assertEquals(n + 1, receiveOrder.get(n).getData().size());
+            }
+        }
+    }
+
     @Test
     public void sendUnorderedPacketsWithPacketLoss_OutOfOrderDelivery() throws Throwable {
         final int sendCount = 100;
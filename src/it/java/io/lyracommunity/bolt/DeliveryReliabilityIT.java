@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt;
 
+import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.helper.Infra;
 import io.lyracommunity.bolt.helper.TestObjects;
 import io.lyracommunity.bolt.util.SeqNum;
@@ -87,9 +88,31 @@ public class DeliveryReliabilityIT
         doTest(0f, sendCount, sendCount, onReady);
     }
 
+    @Test
+    public void testWideSequenceNumbersWithLargeFlowWindow() throws Throwable {
+        final int sendCount = SeqNum.MAX_SEQ_NUM_16_BIT + 1000;
+
+        final Consumer<BoltClient> onReady = c -> {
+            // Send reliable, past where 16-bit sequence numbers would wrap.
+            for (int i = 0; i < sendCount; i++) c.send(TestObjects.reliableOrdered(1));
+            c.flush();
+            c.sendBlocking(TestObjects.finished());
+        };
+
+        doTest(0.01f, sendCount, sendCount, onReady, config -> {
+            config.setWideSeqNumbers(true);
+            config.setFlowWindowSize(40_000);
+        });
+    }
+
 
     private void doTest(float packetLoss, int minExpectedDeliveryCount, int maxExpectedDeliveryCount,
                         Consumer<BoltClient> onReady) throws Throwable {
+        doTest(packetLoss, minExpectedDeliveryCount, maxExpectedDeliveryCount, onReady, config -> {});
+    }
+
+    private void doTest(float packetLoss, int minExpectedDeliveryCount, int maxExpectedDeliveryCount,
+                        Consumer<BoltClient> onReady, Consumer<Config> configurer) throws Throwable {
         Infra.Builder builder = Infra.Builder.withServerAndClients(1)
                 .onEventServer((ts, evt) -> {
                     if (evt instanceof TestObjects.BaseDataClass) {
@@ -102,7 +125,8 @@ public class DeliveryReliabilityIT
                         completed.set(true);
                     }
                 })
-                .preconfigureServer(s -> s.config().setPacketLoss(packetLoss))
+                .preconfigureServer(s -> configurer.accept(s.config().setPacketLoss(packetLoss)))
+                .preconfigureClients(c -> configurer.accept(c.config()))
                 .onReadyClient((tc, rdy) -> onReady.accept(tc.client))
                 .setWaitCondition(tc -> !completed.get());
 
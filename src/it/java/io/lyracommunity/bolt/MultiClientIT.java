@@ -85,6 +85,31 @@ public class MultiClientIT {
         }
     }
 
+    @Test
+    public void testReceiveFromMultipleClientsAcrossWorkers() throws Throwable {
+        setUp(8);
+        final TestObjects.ReliableUnordered toSend = TestObjects.reliableUnordered(100);
+        final int packetCount = 500;
+
+        Infra.Builder builder = Infra.Builder.withServerAndClients(numClients)
+                .preconfigureServer(s -> {
+                    s.config().setAllowSessionExpiry(false);
+                    s.config().setWorkerCount(3);
+                })
+                .onReadyClient((tc, rdy) -> {
+                    for (int i = 0; i < packetCount; i++) tc.client.send(toSend);
+                    tc.client.flush();
+                })
+                .preconfigureClients(client -> client.config().setAllowSessionExpiry(false))
+                .setWaitCondition(tc -> tc.server().receivedOf(toSend.getClass()) < packetCount * numClients);
+
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(1, TimeUnit.MINUTES);
+
+            assertEquals(packetCount * numClients, i.server().receivedOf(toSend.getClass()));
+        }
+    }
+
     @Test
     public void testBroadcastToEachClient() throws Throwable {
         final Object toSend = TestObjects.reliableOrdered(100);
@@ -27,12 +27,21 @@ public class UdpEndpointIT {
 
     @Test
     public void testClientServerMode() throws Exception {
+        doTestClientServerMode(false);
+    }
+
+    @Test
+    public void testClientServerModeNio() throws Exception {
+        doTestClientServerMode(true);
+    }
+
+    private void doTestClientServerMode(final boolean nio) throws Exception {
         final int numPackets = 50 + new Random().nextInt(50);
         final int serverPort = PortUtil.nextServerPort();
 
-        final Config serverConf = new Config(InetAddress.getByName("localhost"), serverPort);
+        final Config serverConf = new Config(InetAddress.getByName("localhost"), serverPort).setNioEndpoint(nio);
         final SessionController serverSessions = new SessionController(serverConf, true);
-        final Endpoint server = new Endpoint("ServerEndpoint", serverConf, serverSessions);
+        final Endpoint server = Endpoint.of("ServerEndpoint", serverConf, serverSessions);
         final Subscription sub = server.start()
                 .observeOn(Schedulers.computation())
                 .subscribe();
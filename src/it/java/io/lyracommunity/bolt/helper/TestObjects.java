@@ -37,6 +37,7 @@ public class TestObjects {
         xcoding.register(ReliableUnorderedMessage.class, createPacketCodec(DeliveryType.RELIABLE_UNORDERED_MESSAGE, ReliableUnorderedMessage::new));
         xcoding.register(ReliableOrdered.class, createPacketCodec(DeliveryType.RELIABLE_ORDERED, ReliableOrdered::new));
         xcoding.register(ReliableOrderedMessage.class, createPacketCodec(DeliveryType.RELIABLE_ORDERED_MESSAGE, ReliableOrderedMessage::new));
+        xcoding.register(UnreliableFecMessage.class, createPacketCodec(DeliveryType.UNRELIABLE_FEC_MESSAGE, UnreliableFecMessage::new));
         xcoding.register(Finished.class, finishedXCoderChain);
     }
 
@@ -60,6 +61,10 @@ public class TestObjects {
         return new ReliableOrderedMessage(length);
     }
 
+    public static UnreliableFecMessage unreliableFecMessage(final int length) {
+        return new UnreliableFecMessage(length);
+    }
+
     public static Finished finished() {
         return new Finished();
     }
@@ -176,6 +181,17 @@ public class TestObjects {
         }
     }
 
+    public static class UnreliableFecMessage extends BaseDataClass {
+
+        private UnreliableFecMessage(final int length) {
+            super(length);
+        }
+
+        private UnreliableFecMessage(final List<Integer> data) {
+            super(data);
+        }
+    }
+
     public static class Finished {
 
     }
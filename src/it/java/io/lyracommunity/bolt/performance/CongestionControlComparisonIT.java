@@ -0,0 +1,158 @@
+package io.lyracommunity.bolt.performance;
+
+import io.lyracommunity.bolt.CongestionControlFactory;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.helper.Infra;
+import io.lyracommunity.bolt.helper.TestObjects;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.text.MessageFormat.format;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs a bulk reliable transfer through the simulated network with each congestion
+ * control algorithm, and reports the goodput, the ratio of retransmitted to sent
+ * data packets, and the mean RTT, which grows with the queue the sender builds.
+ * <p>
+ * The simulated bandwidth, latency and loss apply to packets the server receives,
+ * so to the data, but not to the ACKs and NAKs returned to the client.
+ */
+public class CongestionControlComparisonIT {
+
+    private static final int MESSAGES = 3000;
+
+    /** Fills most of a default datagram. */
+    private static final int MESSAGE_INTS = 300;
+
+    /**
+     * Each algorithm by name, created for a given link.
+     */
+    private static final Map<String, Function<Link, CongestionControlFactory>> ALGORITHMS = new LinkedHashMap<>();
+
+    static {
+        ALGORITHMS.put("Bolt AIMD", link -> CongestionControlFactory.BOLT);
+        ALGORITHMS.put("BBR", link -> CongestionControlFactory.BBR);
+        ALGORITHMS.put("LEDBAT", link -> CongestionControlFactory.LEDBAT);
+        ALGORITHMS.put("Fixed rate", link -> CongestionControlFactory.fixedRate(link.provisionedBytesPerSecond()));
+        ALGORITHMS.put("Unpaced", link -> CongestionControlFactory.fixedRate(0));
+    }
+
+    @Test
+    public void testProvisionedLan() throws Throwable {
+        compare(new Link(8 * 1024, 1, 0f));
+    }
+
+    @Test
+    public void testLossyWan() throws Throwable {
+        compare(new Link(2 * 1024, 40, 0.02f));
+    }
+
+    @Test
+    public void testCongestedWan() throws Throwable {
+        compare(new Link(512, 80, 0.005f));
+    }
+
+    private void compare(final Link link) throws Throwable {
+        System.out.println(format("{0}: {1} KB/s, {2} ms, {3}% loss",
+                getClass().getSimpleName(), link.bandwidthKBps, link.latencyMillis, link.packetLoss * 100));
+        for (Map.Entry<String, Function<Link, CongestionControlFactory>> algorithm : ALGORITHMS.entrySet()) {
+            final Result result = run(link, algorithm.getValue().apply(link));
+            System.out.println(format("  {0}: goodput {1} KB/s, retransmit ratio {2}, mean RTT {3} ms, took {4} ms",
+                    String.format("%-12s", algorithm.getKey()), result.goodputKBps(),
+                    String.format("%.3f", result.retransmitRatio()), String.format("%.1f", result.meanRttMillis()),
+                    result.millis));
+        }
+    }
+
+    private Result run(final Link link, final CongestionControlFactory factory) throws Throwable {
+        final Object toSend = TestObjects.reliableUnordered(MESSAGE_INTS);
+        final long[] sendStart = { 0 };
+        final BoltStatistics[] clientStatistics = { null };
+        // Sum and count of the client's RTT, sampled while waiting.
+        final long[] rtt = { 0, 0 };
+        Infra.Builder builder = Infra.Builder.withServerAndClients(1)
+                .preconfigureServer(s -> link.apply(s.config()))
+                .preconfigureClients(c -> c.config().setCongestionControlFactory(factory))
+                .onReadyClient((tc, evt) -> {
+                    clientStatistics[0] = tc.client.getStatistics();
+                    sendStart[0] = System.currentTimeMillis();
+                    for (int i = 0; i < MESSAGES; i++) tc.client.send(toSend);
+                })
+                .setWaitCondition(inf -> {
+                    final BoltStatistics statistics = clientStatistics[0];
+                    if (statistics != null && statistics.getRTT() > 0) {
+                        rtt[0] += statistics.getRTT();
+                        rtt[1]++;
+                    }
+                    return inf.server().receivedOf(toSend.getClass()) < MESSAGES;
+                });
+
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(2, TimeUnit.MINUTES);
+            final long millis = Math.max(1, System.currentTimeMillis() - sendStart[0]);
+
+            assertEquals(MESSAGES, i.server().receivedOf(toSend.getClass()));
+            return new Result(millis, clientStatistics[0].getNumberOfSentDataPackets(),
+                    clientStatistics[0].getNumberOfRetransmittedDataPackets(), (rtt[1] == 0) ? 0 : rtt[0] / rtt[1]);
+        }
+    }
+
+    /**
+     * A simulated network link.
+     */
+    private static class Link {
+        private final int   bandwidthKBps;
+        private final int   latencyMillis;
+        private final float packetLoss;
+
+        private Link(final int bandwidthKBps, final int latencyMillis, final float packetLoss) {
+            this.bandwidthKBps = bandwidthKBps;
+            this.latencyMillis = latencyMillis;
+            this.packetLoss = packetLoss;
+        }
+
+        /** The rate a fixed rate sender would be provisioned with: a little under the bandwidth. */
+        private long provisionedBytesPerSecond() {
+            return bandwidthKBps * 1024L * 9 / 10;
+        }
+
+        private void apply(final Config config) {
+            config.setSimulatedBandwidth(bandwidthKBps);
+            config.setSimulatedLatency(latencyMillis);
+            config.setPacketLoss(packetLoss);
+        }
+    }
+
+    private static class Result {
+        private final long millis;
+        private final int  sent;
+        private final int  retransmitted;
+        private final long meanRttMicros;
+
+        private Result(final long millis, final int sent, final int retransmitted, final long meanRttMicros) {
+            this.millis = millis;
+            this.sent = sent;
+            this.retransmitted = retransmitted;
+            this.meanRttMicros = meanRttMicros;
+        }
+
+        private long goodputKBps() {
+            return (long) MESSAGES * MESSAGE_INTS * 4 / millis * 1000 / 1024;
+        }
+
+        private double retransmitRatio() {
+            return (sent == 0) ? 0 : retransmitted / (double) sent;
+        }
+
+        private double meanRttMillis() {
+            return meanRttMicros / 1000d;
+        }
+    }
+
+}
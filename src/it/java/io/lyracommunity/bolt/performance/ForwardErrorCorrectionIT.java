@@ -0,0 +1,125 @@
+package io.lyracommunity.bolt.performance;
+
+import io.lyracommunity.bolt.codec.MessageAssembleBuffer;
+import io.lyracommunity.bolt.codec.PacketCodec;
+import io.lyracommunity.bolt.helper.Infra;
+import io.lyracommunity.bolt.helper.TestObjects;
+import io.lyracommunity.bolt.helper.TestObjects.BaseDataClass;
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.lyracommunity.bolt.helper.TestObjects.createPacketCodec;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovery rate of unreliable forward error corrected messages through the simulated
+ * packet loss, and the CPU cost of adding and using parity.
+ */
+public class ForwardErrorCorrectionIT {
+
+    private static final int MESSAGES = 200;
+
+    /** Fills one block of 8 data chunks, sent with 2 parity chunks. */
+    private static final int MESSAGE_INTS = 2500;
+
+    @Test
+    public void testRecoveryRate_1PercentLoss() throws Throwable {
+        assertEquals(1.0, recoveryRate(0.01f), 0.0);
+    }
+
+    @Test
+    public void testRecoveryRate_5PercentLoss() throws Throwable {
+        assertEquals(1.0, recoveryRate(0.05f), 0.0);
+    }
+
+    @Test
+    public void testRecoveryRate_10PercentLoss() throws Throwable {
+        // One packet of each 10 lost, within what 2 parity chunks per 8 data chunks recover.
+        assertTrue(recoveryRate(0.1f) >= 0.99);
+    }
+
+    @Test
+    public void testCpuCost() throws Throwable {
+        final BaseDataClass o = new BaseDataClass(MESSAGE_INTS);
+        final PacketCodec<BaseDataClass> plain = createPacketCodec(DeliveryType.RELIABLE_UNORDERED_MESSAGE, BaseDataClass::new);
+        final PacketCodec<BaseDataClass> fec = createPacketCodec(DeliveryType.UNRELIABLE_FEC_MESSAGE, BaseDataClass::new);
+        final MessageAssembleBuffer assembleBuffer = new MessageAssembleBuffer();
+        final int iterations = 20_000;
+
+        // Warm up, then measure.
+        for (int round = 0; round < 2; round++) {
+            final long plainNanos = time(() -> plain.encode(o), iterations);
+            final long fecNanos = time(() -> fec.encode(o), iterations);
+            int messageId = 0;
+            final long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                final List<DataPacket> packets = fec.encode(o);
+                messageId++;
+                List<DataPacket> assembled = null;
+                for (DataPacket p : packets) {
+                    // Lose the first data chunk, so each message is rebuilt.
+                    if (p.getMessageChunkNumber() == 0) continue;
+                    p.setMessageId(messageId);
+                    final List<DataPacket> result = assembleBuffer.addChunk(p);
+                    if (!result.isEmpty()) assembled = result;
+                }
+                assertTrue(assembled != null);
+            }
+            final long rebuildNanos = System.nanoTime() - start - fecNanos;
+            System.out.println("Per message: plain encode " + plainNanos / iterations + "ns, FEC encode "
+                    + fecNanos / iterations + "ns, rebuild one lost chunk " + rebuildNanos / iterations + "ns");
+        }
+    }
+
+    /**
+     * Send unreliable forward error corrected messages through simulated packet loss.
+     *
+     * @return the fraction of messages received.
+     */
+    private double recoveryRate(final float packetLoss) throws Throwable {
+        final Object toSend = TestObjects.unreliableFecMessage(MESSAGE_INTS);
+        final long[] deadline = { Long.MAX_VALUE };
+        Infra.Builder builder = Infra.Builder.withServerAndClients(1)
+                .preconfigureServer(s -> s.config().setPacketLoss(packetLoss))
+                .onReadyClient((tc, evt) -> {
+                    deadline[0] = System.currentTimeMillis() + 10_000;
+                    // Paced, so that only the simulated loss drops packets, and not the socket buffers.
+                    new Thread(() -> {
+                        for (int i = 0; i < MESSAGES; i++) {
+                            tc.client.send(toSend);
+                            sleep(2);
+                        }
+                    }).start();
+                })
+                .setWaitCondition(inf -> inf.server().receivedOf(toSend.getClass()) < MESSAGES
+                        && System.currentTimeMillis() < deadline[0]);
+
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(1, TimeUnit.MINUTES);
+            final double rate = i.server().receivedOf(toSend.getClass()) / (double) MESSAGES;
+            System.out.println("Loss " + packetLoss + ": received " + rate * 100 + "% of messages");
+            return rate;
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long time(final Runnable task, final int iterations) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) task.run();
+        return System.nanoTime() - start;
+    }
+
+}
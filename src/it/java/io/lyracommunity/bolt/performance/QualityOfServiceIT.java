@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt.performance;
 
+import io.lyracommunity.bolt.api.RetransmitStrategy;
 import io.lyracommunity.bolt.helper.Infra;
 import io.lyracommunity.bolt.helper.TestObjects;
 import org.junit.Test;
@@ -56,12 +57,52 @@ public class QualityOfServiceIT {
         doTest(5, 0.1f, 10, TestObjects.reliableUnordered(100), 10);
     }
 
+    /**
+     * As {@link #test_HighLatencyAndHighPacketLoss_TimeTakeToDeliveryReliable()}, bursting retransmissions.
+     */
+    @Test
+    public void test_HighLatencyAndHighPacketLoss_AggressiveRetransmit() throws Throwable {
+        doTest(500, 0.2f, 20, TestObjects.reliableUnordered(100), 1000, RetransmitStrategy.AGGRESSIVE);
+    }
+
+    /**
+     * As {@link #test_HighLatencyAndHighPacketLoss_TimeTakeToDeliveryReliable()}, sending every packet twice,
+     * so that packets may arrive without retransmission.
+     */
+    @Test
+    public void test_HighLatencyAndHighPacketLoss_DuplicateSend() throws Throwable {
+        doTest(500, 0.2f, 20, TestObjects.reliableUnordered(100), 500, RetransmitStrategy.DUPLICATE);
+    }
+
+    /**
+     * As {@link #test_LowLatencyAndExtremePacketLoss_TimeTakeToDeliveryReliable()}, bursting retransmissions.
+     */
+    @Test
+    public void test_LowLatencyAndExtremePacketLoss_AggressiveRetransmit() throws Throwable {
+        doTest(50, 0.5f, 10, TestObjects.reliableUnordered(100), 100, RetransmitStrategy.AGGRESSIVE);
+    }
+
+    /**
+     * As {@link #test_LowLatencyAndExtremePacketLoss_TimeTakeToDeliveryReliable()}, sending every packet twice,
+     * so that packets may arrive without retransmission.
+     */
+    @Test
+    public void test_LowLatencyAndExtremePacketLoss_DuplicateSend() throws Throwable {
+        doTest(50, 0.5f, 10, TestObjects.reliableUnordered(100), 50, RetransmitStrategy.DUPLICATE);
+    }
 
     private void doTest(final int latencyInMillis, final float packetLoss, final int numPackets, final Object toSend,
                         final int minimumExpectedTotalTime) throws Throwable {
+        doTest(latencyInMillis, packetLoss, numPackets, toSend, minimumExpectedTotalTime, RetransmitStrategy.CONSERVATIVE);
+    }
+
+    private void doTest(final int latencyInMillis, final float packetLoss, final int numPackets, final Object toSend,
+                        final int minimumExpectedTotalTime, final RetransmitStrategy strategy) throws Throwable {
 
         Infra.Builder builder = Infra.Builder.withServerAndClients(1)
+                .preconfigureClients(c -> c.config().setRetransmitStrategy(strategy))
                 .preconfigureServer(s -> {
+                    s.config().setRetransmitStrategy(strategy);
                     s.config().setSimulatedLatency(latencyInMillis);
                     s.config().setPacketLoss(packetLoss);
                 })
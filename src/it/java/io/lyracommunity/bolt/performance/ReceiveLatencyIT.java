@@ -0,0 +1,85 @@
+package io.lyracommunity.bolt.performance;
+
+import io.lyracommunity.bolt.helper.Infra;
+import io.lyracommunity.bolt.helper.TestObjects;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures one-way delivery latency, from the client sending a message to the server
+ * application receiving it, with received packets handed off to a receiver worker
+ * and with them processed inline on the network thread.
+ * <p>
+ * Each message is sent once the previous one has arrived, so the figures exclude
+ * queueing behind earlier messages in the sender.
+ */
+public class ReceiveLatencyIT {
+
+    private static final int MESSAGE_COUNT = 5_000;
+    private static final int WARMUP_COUNT  = 500;
+
+    @Test
+    public void testLatencyWithAndWithoutHandOff() throws Throwable {
+        report("Hand-off", measure(false));
+        report("Inline  ", measure(true));
+    }
+
+    private long[] measure(final boolean inlineReceive) throws Throwable {
+        final Object toSend = TestObjects.reliableOrdered(10);
+        final long[] sentAt = new long[MESSAGE_COUNT];
+        final long[] receivedAt = new long[MESSAGE_COUNT];
+        final AtomicInteger received = new AtomicInteger();
+
+        final Infra.Builder builder = Infra.Builder.withServerAndClients(1)
+                .preconfigureServer(s -> {
+                    s.config().setAllowSessionExpiry(false);
+                    s.config().setInlineReceive(inlineReceive);
+                })
+                .preconfigureClients(c -> {
+                    c.config().setAllowSessionExpiry(false);
+                    c.config().setInlineReceive(inlineReceive);
+                })
+                .onEventServer((ts, evt) -> {
+                    if (evt.getClass().equals(toSend.getClass())) receivedAt[received.getAndIncrement()] = System.nanoTime();
+                })
+                // Send from another thread, as server events are observed on the same scheduler.
+                .onReadyClient((tc, evt) -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < MESSAGE_COUNT; i++) {
+                        while (received.get() < i) LockSupport.parkNanos(10_000);
+                        sentAt[i] = System.nanoTime();
+                        tc.client.send(toSend);
+                    }
+                }))
+                .setWaitCondition(inf -> inf.server().receivedOf(toSend.getClass()) < MESSAGE_COUNT);
+
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(2, TimeUnit.MINUTES);
+            assertEquals(MESSAGE_COUNT, i.server().receivedOf(toSend.getClass()));
+        }
+
+        final long[] latencies = new long[MESSAGE_COUNT - WARMUP_COUNT];
+        for (int i = WARMUP_COUNT; i < MESSAGE_COUNT; i++) {
+            latencies[i - WARMUP_COUNT] = TimeUnit.NANOSECONDS.toMicros(receivedAt[i] - sentAt[i]);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void report(final String mode, final long[] sortedLatencies) {
+        System.out.println(String.format("%s  p50=%dus  p99=%dus  max=%dus", mode,
+                percentile(sortedLatencies, 50), percentile(sortedLatencies, 99),
+                sortedLatencies[sortedLatencies.length - 1]));
+    }
+
+    private static long percentile(final long[] sorted, final int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.lyracommunity.bolt.performance;
+
+import io.lyracommunity.bolt.helper.Infra;
+import io.lyracommunity.bolt.helper.TestObjects;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures server throughput with many concurrent clients as sessions are
+ * shared between more sender/receiver worker pairs.
+ * <p>
+ * Results are only meaningful on a machine with at least as many cores as workers.
+ */
+public class WorkerScalingIT {
+
+    private static final int CLIENT_COUNT       = 32;
+    private static final int PACKETS_PER_CLIENT = 2_000;
+
+    @Test
+    public void testScaling() throws Throwable {
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        for (final int workers : new int[] {1, 2, 4, 8}) {
+            final long elapsedMillis = run(workers);
+            final long total = (long) CLIENT_COUNT * PACKETS_PER_CLIENT;
+            System.out.println(String.format("Workers %d: %d packets from %d clients in %d ms (%d packets/s)",
+                    workers, total, CLIENT_COUNT, elapsedMillis, total * 1000 / Math.max(1, elapsedMillis)));
+        }
+    }
+
+    private long run(final int workerCount) throws Throwable {
+        final TestObjects.ReliableUnordered toSend = TestObjects.reliableUnordered(100);
+        final long expected = (long) CLIENT_COUNT * PACKETS_PER_CLIENT;
+
+        final Infra.Builder builder = Infra.Builder.withServerAndClients(CLIENT_COUNT)
+                .preconfigureServer(s -> {
+                    s.config().setAllowSessionExpiry(false);
+                    s.config().setWorkerCount(workerCount);
+                })
+                .preconfigureClients(c -> c.config().setAllowSessionExpiry(false))
+                .onReadyClient((tc, rdy) -> {
+                    for (int i = 0; i < PACKETS_PER_CLIENT; i++) tc.client.send(toSend);
+                    tc.client.flush();
+                })
+                .setWaitCondition(inf -> inf.server().receivedOf(toSend.getClass()) < expected);
+
+        final long start = System.nanoTime();
+        try (Infra i = builder.build()) {
+            i.start().awaitCompletion(5, TimeUnit.MINUTES);
+            assertEquals(expected, i.server().receivedOf(toSend.getClass()));
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
+import io.lyracommunity.bolt.util.SeqNum;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Microbenchmark of the sender's retransmit buffer against the previous
+ * lock-guarded {@link ConcurrentHashMap}, following the sender's access pattern:
+ * store each sent packet, look up the occasional retransmit, and release on
+ * every ACK (every 16 packets).
+ */
+public class RetransmitBufferIT {
+
+    private static final int PACKET_COUNT = 5_000_000;
+    private static final int ACK_INTERVAL = 16;
+
+    @Test
+    public void testWindow256() {
+        compare(256);
+    }
+
+    @Test
+    public void testWindow10240() {
+        compare(10240);
+    }
+
+    private void compare(final int windowSize) {
+        // Warm up both before measuring.
+        runMap(windowSize, PACKET_COUNT / 10);
+        runRing(windowSize, PACKET_COUNT / 10);
+
+        final long mapNanos = runMap(windowSize, PACKET_COUNT);
+        final long ringNanos = runRing(windowSize, PACKET_COUNT);
+        System.out.println("Window " + windowSize + ":");
+        System.out.println("  ConcurrentHashMap: " + (mapNanos / PACKET_COUNT) + "ns/packet");
+        System.out.println("  RetransmitBuffer:  " + (ringNanos / PACKET_COUNT) + "ns/packet");
+    }
+
+    private long runRing(final int windowSize, final int count) {
+        final DataPacket src = createPacket();
+        final RetransmitBuffer buffer = new RetransmitBuffer(windowSize, 1);
+        final long start = System.nanoTime();
+        int seq = 1;
+        int lastAck = 1;
+        for (int i = 0; i < count; i++) {
+            src.setReliabilitySeqNumber(seq);
+            buffer.store(src);
+            seq = SeqNum.increment16(seq);
+            if (buffer.size() >= windowSize || i % ACK_INTERVAL == 0) {
+                // Retransmit the oldest, then acknowledge everything but the newest few.
+                buffer.get(lastAck);
+                lastAck = (seq - ACK_INTERVAL) & SeqNum.MAX_SEQ_NUM_16_BIT;
+                buffer.release(lastAck);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runMap(final int windowSize, final int count) {
+        final DataPacket src = createPacket();
+        final Map<Integer, DataPacket> buffer = new ConcurrentHashMap<>(windowSize, 0.75f, 2);
+        final Object lock = new Object();
+        final long start = System.nanoTime();
+        int seq = 1;
+        int lastAck = 1;
+        for (int i = 0; i < count; i++) {
+            src.setReliabilitySeqNumber(seq);
+            synchronized (lock) {
+                final DataPacket buffered = new DataPacket();
+                buffered.copyFrom(src);
+                buffer.put(seq, buffered);
+            }
+            seq = SeqNum.increment16(seq);
+            if (buffer.size() >= windowSize || i % ACK_INTERVAL == 0) {
+                buffer.get(lastAck);
+                final int ackNumber = (seq - ACK_INTERVAL) & SeqNum.MAX_SEQ_NUM_16_BIT;
+                for (int s = lastAck; SeqNum.compare16(s, ackNumber) < 0; s = SeqNum.increment16(s)) {
+                    synchronized (lock) {
+                        buffer.remove(s);
+                    }
+                }
+                lastAck = ackNumber;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private DataPacket createPacket() {
+        final DataPacket p = new DataPacket();
+        p.setDelivery(DeliveryType.RELIABLE_ORDERED);
+        p.setData(new byte[1024]);
+        return p;
+    }
+
+}
@@ -0,0 +1,115 @@
+package io.lyracommunity.bolt.session;
+
+import io.lyracommunity.bolt.ChannelOut;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.BoltPacket;
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.util.SeqNum;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the rate data is delivered from one busy session to the poller as the
+ * number of idle sessions grows, polling every session against polling only the
+ * sessions in the ready queue.
+ */
+public class ReadySessionPollIT {
+
+    private static final int PACKET_COUNT = 200_000;
+    private static final int BATCH_SIZE   = 64;
+
+    private static final ChannelOut DISCARD = new ChannelOut() {
+        @Override
+        public void doSend(final BoltPacket packet, final SessionState sessionState) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return 0;
+        }
+    };
+
+    @Test
+    public void testDeliveryRateAgainstIdleSessions() throws Exception {
+        // Warm up.
+        deliveryRate(0, false);
+        deliveryRate(0, true);
+        for (final int idle : new int[] {0, 1_000, 10_000}) {
+            System.out.println(String.format("Idle sessions %5d:  scan %8d packets/s,  ready queue %8d packets/s",
+                    idle, deliveryRate(idle, false), deliveryRate(idle, true)));
+        }
+    }
+
+    private long deliveryRate(final int idleSessions, final boolean readyQueue) throws Exception {
+        final Config config = new Config(InetAddress.getLoopbackAddress(), 0);
+        config.setAllowSessionExpiry(false);
+        config.setInlineReceive(true);
+        final SessionController controller = new SessionController(config, true);
+        final Destination peer = new Destination(InetAddress.getLoopbackAddress(), 65432);
+
+        for (int i = 0; i < idleSessions; i++) {
+            final Session idle = new ServerSession(config, DISCARD, peer);
+            controller.addSession(idle.getSessionID(), idle);
+        }
+        final Session busy = new ServerSession(config, DISCARD, peer);
+        busy.setStatus(SessionStatus.READY);
+        busy.start();
+        controller.addSession(busy.getSessionID(), busy);
+
+        final byte[] data = new byte[100];
+        int seq = 0;
+        int delivered = 0;
+        final long start = System.nanoTime();
+        while (delivered < PACKET_COUNT) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                seq = SeqNum.increment16(seq);
+                final DataPacket dp = new DataPacket();
+                dp.setDestinationID(busy.getSessionID());
+                dp.setDelivery(DeliveryType.RELIABLE_UNORDERED);
+                dp.setPacketSeqNumber(seq);
+                dp.setReliabilitySeqNumber(seq);
+                dp.setData(data);
+                controller.processPacket(null, peer, dp, DISCARD);
+            }
+            delivered += readyQueue ? drainReady(controller) : drainAll(controller);
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+        controller.stop(null, "Finished");
+
+        assertEquals(PACKET_COUNT, delivered);
+        return delivered * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private static int drainAll(final SessionController controller) {
+        int count = 0;
+        for (final Session session : controller.getSessions()) {
+            while (session.pollReceiveBuffer() != null) count++;
+        }
+        return count;
+    }
+
+    private static int drainReady(final SessionController controller) {
+        int count = 0;
+        for (Session session; (session = controller.pollReadySession()) != null; ) {
+            while (session.pollReceiveBuffer() != null) count++;
+        }
+        return count;
+    }
+
+}
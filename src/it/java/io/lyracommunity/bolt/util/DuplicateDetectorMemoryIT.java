@@ -0,0 +1,58 @@
+package io.lyracommunity.bolt.util;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the heap retained per session by duplicate detection and by the whole
+ * receive buffer, against the previous fixed 100,000 bit detector.
+ */
+public class DuplicateDetectorMemoryIT {
+
+    private static final int SESSION_COUNT = 10_000;
+
+    @Test
+    public void testWindow256() {
+        compare(256);
+    }
+
+    @Test
+    public void testWindow10240() {
+        compare(10240);
+    }
+
+    private void compare(final int flowWindowSize) {
+        final int bufferSize = 2 * flowWindowSize;
+        System.out.println("Flow window " + flowWindowSize + ":");
+        System.out.println("  Fixed BitSet(100000):  " + bytesPerSession(i -> new BitSet(100_000)) + " bytes/session");
+        System.out.println("  DuplicateDetector:     " + bytesPerSession(i -> DuplicateDetector.ofSize(bufferSize)) + " bytes/session");
+        System.out.println("  ReceiveBuffer:         " + bytesPerSession(i -> new ReceiveBuffer(bufferSize)) + " bytes/session");
+    }
+
+    private long bytesPerSession(final IntFunction<Object> factory) {
+        final Object[] retained = new Object[SESSION_COUNT];
+        final long before = usedHeap();
+        for (int i = 0; i < SESSION_COUNT; i++) retained[i] = factory.apply(i);
+        final long after = usedHeap();
+        // Keep the instances reachable until measured.
+        if (retained[SESSION_COUNT - 1] == null) throw new IllegalStateException();
+        return (after - before) / SESSION_COUNT;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
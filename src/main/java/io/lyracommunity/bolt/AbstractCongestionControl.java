@@ -0,0 +1,40 @@
+package io.lyracommunity.bolt;
+
+/**
+ * Base of the congestion controls, keeping the packet arrival rate and link capacity
+ * the receiver reports in its ACKs, each smoothed as x = (x * 7 + sample) / 8.
+ */
+public abstract class AbstractCongestionControl implements CongestionControl {
+
+    /**
+     * Rate in packets per second, as reported by the receiver.
+     */
+    private long packetArrivalRate = 0;
+
+    /**
+     * Link capacity in packets per second, as reported by the receiver.
+     */
+    private long estimatedLinkCapacity = 0;
+
+    @Override
+    public void updatePacketArrivalRate(final long rate, final long linkCapacity) {
+        packetArrivalRate = (packetArrivalRate > 0)
+                ? (packetArrivalRate * 7 + rate) / 8
+                : rate;
+
+        estimatedLinkCapacity = (estimatedLinkCapacity > 0)
+                ? (estimatedLinkCapacity * 7 + linkCapacity) / 8
+                : linkCapacity;
+    }
+
+    @Override
+    public long getPacketArrivalRate() {
+        return packetArrivalRate;
+    }
+
+    @Override
+    public long getEstimatedLinkCapacity() {
+        return estimatedLinkCapacity;
+    }
+
+}
@@ -0,0 +1,302 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import io.lyracommunity.bolt.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model-based congestion control, after BBR.
+ * <p>
+ * Rather than reacting to loss, it models the path by its bottleneck bandwidth, the
+ * largest delivery rate over recent rounds, and by its minimum round trip time. The
+ * delivery rate of a round counts the packets ACKs report delivered, cumulatively or
+ * selectively, so is not held back by holes awaiting retransmission. Until any
+ * reliable packet is delivered, the packet arrival rate the receiver reports is
+ * taken instead. Either is bounded by the link capacity the receiver reports.
+ * <p>
+ * It paces at the bottleneck bandwidth, and keeps about two bandwidth-delay products
+ * in flight, so random loss, which does not lower the delivery rate, does not slow it down.
+ * <p>
+ * It runs in four modes:
+ * <ol>
+ * <li> Startup: pace at a high gain, doubling the delivery rate each round, until
+ * the bandwidth stops growing.
+ * <li> Drain: pace at the inverse gain for a round, draining the queue startup built.
+ * <li> Probe bandwidth: cycle the pacing gain through a round above the estimate,
+ * to find any new bandwidth, a round below, to drain what that queued, and six at it.
+ * <li> Probe RTT: if the minimum RTT has not been seen for a while, hold the window
+ * to a few packets, letting queues drain so that the minimum may be measured again.
+ * </ol>
+ * A round lasts the minimum round trip time plus the ACK interval, the time for the
+ * receiver to report on what was sent.
+ */
+public class BbrCongestionControl extends AbstractCongestionControl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BbrCongestionControl.class);
+
+    /** Gain of startup, 2/ln(2), the smallest which doubles the delivery rate each round. */
+    static final double HIGH_GAIN = 2.885;
+
+    /** Pacing gains of each round of bandwidth probing. */
+    static final double[] PROBE_BW_GAINS = { 1.25, 0.75, 1, 1, 1, 1, 1, 1 };
+
+    /** Congestion window, in bandwidth-delay products, while probing bandwidth. */
+    private static final double CWND_GAIN = 2;
+
+    /** Rounds over which the bottleneck bandwidth is the largest delivery rate. */
+    static final int BANDWIDTH_WINDOW_ROUNDS = 10;
+
+    /** Rounds without 25% bandwidth growth after which startup ends. */
+    private static final int FULL_BANDWIDTH_ROUNDS = 3;
+
+    /** Microseconds for which a minimum RTT holds, before probing for it again. */
+    static final long MIN_RTT_WINDOW = 10_000_000;
+
+    /** Microseconds for which the window is held small while probing RTT. */
+    static final long PROBE_RTT_DURATION = 200_000;
+
+    /** Smallest congestion window, in packets. */
+    static final int MIN_CWND = 4;
+
+    enum Mode { STARTUP, DRAIN, PROBE_BW, PROBE_RTT }
+
+    private final SessionState   sessionState;
+    private final BoltStatistics statistics;
+
+    /** Congestion window until the bandwidth-delay product is known, in packets. */
+    private final double initialCongestionWindowSize;
+
+    private Mode mode = Mode.STARTUP;
+
+    /** Largest delivery rate of each of the last rounds, in packets per second. */
+    private final long[] roundMaxDeliveryRate = new long[BANDWIDTH_WINDOW_ROUNDS];
+
+    /** Bottleneck bandwidth, in packets per second, or 0 if unknown. */
+    private long bottleneckBandwidth = 0;
+
+    /** Minimum round trip time, in microseconds, or 0 if unknown. */
+    private long minRtt = 0;
+    private long minRttStamp;
+
+    private long round       = 0;
+    private long roundStart;
+    private boolean started  = false;
+
+    /** Packets delivered so far in the round, and whether any reliable packet ever was. */
+    private long    roundDelivered = 0;
+    private boolean delivering     = false;
+
+    /** Bandwidth startup last grew to, and the rounds since. */
+    private long fullBandwidth      = 0;
+    private int  fullBandwidthCount = 0;
+
+    private int  cycleIndex;
+    private long probeRttDoneStamp;
+
+    public BbrCongestionControl(final SessionState sessionState, final BoltStatistics statistics,
+                                final double initialCongestionWindowSize) {
+        this.sessionState = sessionState;
+        this.statistics = statistics;
+        this.initialCongestionWindowSize = initialCongestionWindowSize;
+    }
+
+    @Override
+    public void init() {
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    @Override
+    public void setRTT(final long rtt, final long rttVar) {
+        onRtt(rtt, Util.currentTimeMicros());
+    }
+
+    void onRtt(final long rtt, final long now) {
+        if (minRtt == 0 || rtt <= minRtt || now - minRttStamp > MIN_RTT_WINDOW) {
+            final boolean expired = minRtt > 0 && now - minRttStamp > MIN_RTT_WINDOW;
+            minRtt = rtt;
+            minRttStamp = now;
+            if (expired && mode != Mode.PROBE_RTT && mode != Mode.STARTUP) {
+                enterMode(Mode.PROBE_RTT);
+                probeRttDoneStamp = now + Math.max(PROBE_RTT_DURATION, (long) roundLength());
+            }
+        }
+    }
+
+    @Override
+    public void updatePacketArrivalRate(final long rate, final long linkCapacity) {
+        onDeliveryRate(rate, linkCapacity, Util.currentTimeMicros());
+    }
+
+    void onDeliveryRate(final long rate, final long linkCapacity, final long now) {
+        super.updatePacketArrivalRate(rate, linkCapacity);
+        advance(now);
+    }
+
+    @Override
+    public double getSendInterval() {
+        if (bottleneckBandwidth == 0) return 0;
+        return 1_000_000d / (getPacingGain() * bottleneckBandwidth);
+    }
+
+    @Override
+    public double getCongestionWindowSize() {
+        final double window;
+        if (mode == Mode.PROBE_RTT) {
+            window = MIN_CWND;
+        }
+        else if (bottleneckBandwidth == 0 || minRtt == 0) {
+            window = initialCongestionWindowSize;
+        }
+        else {
+            final double gain = (mode == Mode.PROBE_BW) ? CWND_GAIN : HIGH_GAIN;
+            window = Math.max(MIN_CWND, gain * bottleneckBandwidth * roundLength() / 1_000_000d);
+        }
+        return Math.min(window, sessionState.getFlowWindowSize());
+    }
+
+    @Override
+    public void onACK(final long ackSeqNum) {
+        advance(Util.currentTimeMicros());
+    }
+
+    @Override
+    public void onDelivered(final int packets) {
+        onDelivered(packets, Util.currentTimeMicros());
+    }
+
+    void onDelivered(final int packets, final long now) {
+        advance(now);
+        roundDelivered += packets;
+        delivering = true;
+    }
+
+    /**
+     * Loss is not taken as a sign of congestion: a full queue shows itself as a
+     * delivery rate no higher than the bottleneck bandwidth, and a longer RTT.
+     */
+    @Override
+    public void onLoss(final int firstLostRelSeqNum, final int lossCount, final int currentMaxRelSeqNum) {
+        // The model does not depend on loss.
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Start any new round, and move on to the next mode or gain when due.
+     */
+    void advance(final long now) {
+        if (!started) {
+            started = true;
+            roundStart = now;
+            minRttStamp = now;
+            return;
+        }
+        if (mode == Mode.PROBE_RTT) {
+            if (now >= probeRttDoneStamp) {
+                minRttStamp = now;
+                // What little was delivered while probing says nothing of the bandwidth.
+                roundStart = now;
+                roundDelivered = 0;
+                enterMode(isFullBandwidthReached() ? Mode.PROBE_BW : Mode.STARTUP);
+            }
+            return;
+        }
+        if (now - roundStart < roundLength()) return;
+
+        sampleDeliveryRate(now);
+        roundStart = now;
+        round++;
+
+        switch (mode) {
+            case STARTUP:
+                checkFullBandwidth();
+                if (isFullBandwidthReached()) enterMode(Mode.DRAIN);
+                break;
+            case DRAIN:
+                enterMode(Mode.PROBE_BW);
+                break;
+            case PROBE_BW:
+                cycleIndex = (cycleIndex + 1) % PROBE_BW_GAINS.length;
+                break;
+            default:
+                break;
+        }
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    /**
+     * Record the delivery rate of the round just ended, and take the bottleneck
+     * bandwidth as the largest of recent rounds.
+     */
+    private void sampleDeliveryRate(final long now) {
+        long rate = delivering
+                ? roundDelivered * 1_000_000 / Math.max(1, now - roundStart)
+                : getPacketArrivalRate();
+        roundDelivered = 0;
+        // Delivery never exceeds the link, though a burst from a queue may seem to.
+        if (getEstimatedLinkCapacity() > 0) rate = Math.min(rate, getEstimatedLinkCapacity());
+        roundMaxDeliveryRate[(int) ((round + 1) % BANDWIDTH_WINDOW_ROUNDS)] = rate;
+        long max = 0;
+        for (long r : roundMaxDeliveryRate) max = Math.max(max, r);
+        bottleneckBandwidth = max;
+    }
+
+    private void checkFullBandwidth() {
+        if (bottleneckBandwidth == 0) return;
+        if (bottleneckBandwidth >= fullBandwidth * 1.25) {
+            fullBandwidth = bottleneckBandwidth;
+            fullBandwidthCount = 0;
+        }
+        else {
+            fullBandwidthCount++;
+        }
+    }
+
+    private boolean isFullBandwidthReached() {
+        return fullBandwidthCount >= FULL_BANDWIDTH_ROUNDS;
+    }
+
+    private void enterMode(final Mode newMode) {
+        LOG.debug("BBR mode from {} to {}, bandwidth {} packets/s, min RTT {}us", mode, newMode, bottleneckBandwidth, minRtt);
+        mode = newMode;
+        // Start probing just below the estimate, draining anything startup left queued.
+        if (newMode == Mode.PROBE_BW) cycleIndex = 1;
+    }
+
+    private double getPacingGain() {
+        switch (mode) {
+            case STARTUP:
+                return HIGH_GAIN;
+            case DRAIN:
+                return 1 / HIGH_GAIN;
+            case PROBE_BW:
+                return PROBE_BW_GAINS[cycleIndex];
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @return the length of a round in microseconds: the minimum RTT, plus the ACK interval.
+     */
+    private double roundLength() {
+        return minRtt + Util.getSYNTimeD();
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    long getBottleneckBandwidth() {
+        return bottleneckBandwidth;
+    }
+
+    long getMinRtt() {
+        return minRtt;
+    }
+
+}
@@ -38,7 +38,7 @@ public class BoltClient implements Client {
         this.config = config;
         this.codecs = CodecRepository.basic();
         this.clientSessions = new SessionController(config, false);
-        this.clientEndpoint = new Endpoint("ClientEndpoint", config, clientSessions);
+        this.clientEndpoint = Endpoint.of("ClientEndpoint", config, clientSessions);
         LOG.info("Created client endpoint on port {}", clientEndpoint.getLocalPort());
     }
 
@@ -88,7 +88,7 @@ public class BoltClient implements Client {
     }
 
     public void send(final Object obj) throws BoltException {
-        final Collection<DataPacket> data = codecs.encode(obj, clientSession.getAssembleBuffer());
+        final Collection<DataPacket> data = codecs.encode(obj, clientSession.getAssembleBuffer(), clientSession.getDatagramSize());
         for (final DataPacket dp : data) {
             try {
                 send(dp);
@@ -1,14 +1,11 @@
 package io.lyracommunity.bolt;
 
-import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.session.SessionState;
 import io.lyracommunity.bolt.statistic.BoltStatistics;
-import io.lyracommunity.bolt.util.SeqNum;
 import io.lyracommunity.bolt.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.stream.IntStream;
 
 
 /**
@@ -16,11 +13,10 @@ import java.util.stream.IntStream;
  * <p>
  * Uses AIMD (Additive increase, multiplicative decrease).
  */
-public class BoltCongestionControl implements CongestionControl {
+public class BoltCongestionControl extends AbstractCongestionControl {
 
     private static final Logger LOG         = LoggerFactory.getLogger(BoltCongestionControl.class);
-    private static final long   PS          = Config.DEFAULT_DATAGRAM_SIZE;
-    private static final double BETA_DIV_PS = 0.0000015 / PS;
+    private static final double BETA        = 0.0000015;
 
     private final SessionState sessionState;
 
@@ -31,16 +27,6 @@ public class BoltCongestionControl implements CongestionControl {
      */
     private long roundTripTime = 0;
 
-    /**
-     * Rate in packets per second.
-     */
-    private long packetArrivalRate = 0;
-
-    /**
-     * Link capacity in packets per second.
-     */
-    private long estimatedLinkCapacity = 0;
-
     /**
      * Packet sending period = packet send interval, in microseconds.
      */
@@ -109,27 +95,6 @@ public class BoltCongestionControl implements CongestionControl {
         this.roundTripTime = rtt;
     }
 
-    @Override
-    public void updatePacketArrivalRate(long rate, long linkCapacity) {
-        packetArrivalRate = (packetArrivalRate > 0)
-                ? (packetArrivalRate * 7 + rate) / 8
-                : rate;
-
-        estimatedLinkCapacity = (estimatedLinkCapacity > 0)
-                ? (estimatedLinkCapacity * 7 + linkCapacity) / 8
-                : linkCapacity;
-    }
-
-    @Override
-    public long getPacketArrivalRate() {
-        return packetArrivalRate;
-    }
-
-    @Override
-    public long getEstimatedLinkCapacity() {
-        return estimatedLinkCapacity;
-    }
-
     @Override
     public double getSendInterval() {
         return packetSendingPeriod;
@@ -162,8 +127,8 @@ public class BoltCongestionControl implements CongestionControl {
             // But not beyond a maximum size.
             if (congestionWindowSize > sessionState.getFlowWindowSize()) {
                 slowStartPhase = false;
-                final double newPacketSendingPeriod = (packetArrivalRate > 0)
-                        ? 1000000.0 / packetArrivalRate
+                final double newPacketSendingPeriod = (getPacketArrivalRate() > 0)
+                        ? 1000000.0 / getPacketArrivalRate()
                         : congestionWindowSize / (roundTripTime + Util.getSYNTimeD());
                 updatePacketSendingPeriod(newPacketSendingPeriod);
             }
@@ -171,10 +136,10 @@ public class BoltCongestionControl implements CongestionControl {
         }
         else {
             // 1. If not in slow start phase, set congestion window size to product of packet arrival rate and (rtt + SYN)
-            final double A = (packetArrivalRate / 1_000_000d) * (roundTripTime + Util.getSYNTimeD());
+            final double A = (getPacketArrivalRate() / 1_000_000d) * (roundTripTime + Util.getSYNTimeD());
             congestionWindowSize = (long) A + 16;
             if (LOG.isDebugEnabled()) {
-                LOG.debug("Receive rate [{}]  RTT [{}]  Set to window size [{}]", packetArrivalRate, roundTripTime, (A + 16));
+                LOG.debug("Receive rate [{}]  RTT [{}]  Set to window size [{}]", getPacketArrivalRate(), roundTripTime, (A + 16));
             }
         }
 
@@ -200,28 +165,30 @@ public class BoltCongestionControl implements CongestionControl {
 
     private double computeNumOfIncreasingPacket() {
         // Difference between link capacity and sending speed, in packets per second.
-        final double remaining = estimatedLinkCapacity - 1_000_000d / packetSendingPeriod;
+        final double remaining = getEstimatedLinkCapacity() - 1_000_000d / packetSendingPeriod;
+
+        // Packet size as negotiated, which path MTU discovery may raise.
+        final double packetSize = sessionState.getDatagramSize();
 
         if (remaining <= 0) {
-            return 1.0 / Config.DEFAULT_DATAGRAM_SIZE;
+            return 1.0 / packetSize;
         }
         else {
-            double exp = Math.ceil(Math.log10(remaining * PS * 8));
-            double power10 = Math.pow(10.0, exp) * BETA_DIV_PS;
-            return Math.max(power10, 1 / PS);
+            double exp = Math.ceil(Math.log10(remaining * packetSize * 8));
+            double power10 = Math.pow(10.0, exp) * BETA / packetSize;
+            return Math.max(power10, 1 / packetSize);
         }
     }
 
     @Override
-    public void onLoss(final IntStream lossInfo, final int currentMaxRelSeqNum) {
+    public void onLoss(final int firstLostRelSeqNum, final int lossCount, final int currentMaxRelSeqNum) {
         loss = true;
-        final int firstBiggestLossRelSeqNo = lossInfo.findFirst()
-                .orElseThrow(() -> new IllegalStateException("Loss info was empty"));
+        final int firstBiggestLossRelSeqNo = firstLostRelSeqNum;
         nakCount++;
         // 1) If it is in slow start phase, set inter-packet interval to 1/recvrate. Slow start ends. Stop.
         if (slowStartPhase) {
-            if (packetArrivalRate > 0) {
-                updatePacketSendingPeriod(100000.0 / packetArrivalRate);
+            if (getPacketArrivalRate() > 0) {
+                updatePacketSendingPeriod(100000.0 / getPacketArrivalRate());
             }
             else {
                 updatePacketSendingPeriod(congestionWindowSize / (roundTripTime + Util.getSYNTime()));
@@ -231,7 +198,7 @@ public class BoltCongestionControl implements CongestionControl {
         }
 
         // 2) If this NAK starts a new congestion epoch
-        if (SeqNum.compare16(firstBiggestLossRelSeqNo, lastDecreaseRelSeqNo) > 0) {
+        if (sessionState.getSeqSpace().compare(firstBiggestLossRelSeqNo, lastDecreaseRelSeqNo) > 0) {
             // Increase inter-packet interval.
             updatePacketSendingPeriod(Math.ceil(packetSendingPeriod * 1.125));
             // Update AvgNakNum (the average number of NAKs per congestion).
@@ -57,7 +57,7 @@ public class BoltServer implements Server {
             Subscription endpointSub = null;
             try {
                 Thread.currentThread().setName("Bolt-Poller-Server" + Util.THREAD_INDEX.incrementAndGet());
-                this.serverEndpoint = new Endpoint("ServerEndpoint", config, serverSessions);
+                this.serverEndpoint = Endpoint.of("ServerEndpoint", config, serverSessions);
                 endpointSub = this.serverEndpoint.start().subscribe(subscriber);  // Pass subscriber to tie observable life-cycles together.
 
                 while (!subscriber.isUnsubscribed()) {
@@ -106,10 +106,15 @@ public class BoltServer implements Server {
 
     public void send(final Object obj, final List<Integer> destIDs) throws IOException {
         Collection<DataPacket> data = null;
+        int dataDatagramSize = 0;
         for (final Integer destID : destIDs) {
             final Session session = Optional.ofNullable(serverSessions).map(e -> e.getSession(destID)).orElse(null);
             if (session != null) {
-                if (data == null) data = codecs.encode(obj, session.getAssembleBuffer());
+                // Reuse the encoding for sessions of the same datagram size.
+                if (data == null || dataDatagramSize != session.getDatagramSize()) {
+                    dataDatagramSize = session.getDatagramSize();
+                    data = codecs.encode(obj, session.getAssembleBuffer(), dataDatagramSize);
+                }
                 for (final DataPacket dp : data) {
                     session.doWrite(dp);
                 }
@@ -138,9 +143,9 @@ public class BoltServer implements Server {
 
     private void pollReceivedData(final Subscriber<? super BoltEvent> subscriber) throws InterruptedException {
 
-        serverSessions.awaitPacketReady(100, TimeUnit.MILLISECONDS);
-
-        for (final Session session : serverSessions.getSessions()) {
+        // Only sessions which have had data added are visited.
+        Session session = serverSessions.pollReadySession(100, TimeUnit.MILLISECONDS);
+        for (; session != null; session = serverSessions.pollReadySession()) {
             DataPacket packet;
             do {
                 packet = session.pollReceiveBuffer();
@@ -1,7 +1,5 @@
 package io.lyracommunity.bolt;
 
-import java.util.stream.IntStream;
-
 /**
  * Congestion control interface.
  *
@@ -43,10 +41,18 @@ public interface CongestionControl {
     long getEstimatedLinkCapacity();
 
     /**
-     * @return the current value of the inter-packet interval in microseconds.
+     * @return the current value of the mean inter-packet interval in microseconds.
      */
     double getSendInterval();
 
+    /**
+     * @return the most send intervals the sender may make up, by sending back to back,
+     * after running late. Zero, the default, paces each packet from the one before.
+     */
+    default int getPacingCatchUp() {
+        return 0;
+    }
+
     /**
      * @return the congestion window size.
      */
@@ -59,13 +65,23 @@ public interface CongestionControl {
      */
     void onACK(long ackSeqNum);
 
+    /**
+     * Callback function to be called when an ACK reports packets delivered.
+     *
+     * @param packets the number of packets newly delivered, whether acknowledged
+     *                cumulatively or selectively.
+     */
+    default void onDelivered(int packets) {
+    }
+
     /**
      * Callback function to be called when a loss report is received.
      *
-     * @param lossInfo            list of sequence number of packets.
+     * @param firstLostRelSeqNum  the first reliability seq num reported lost.
+     * @param lossCount           the number of packets reported lost.
      * @param currentMaxRelSeqNum the current highest reliability seq num.
      */
-    void onLoss(IntStream lossInfo, int currentMaxRelSeqNum);
+    void onLoss(int firstLostRelSeqNum, int lossCount, int currentMaxRelSeqNum);
 
     /**
      * Callback function to be called when a Bolt connection is closed.
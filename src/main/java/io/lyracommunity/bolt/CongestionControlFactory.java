@@ -0,0 +1,77 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+
+/**
+ * Creates the congestion control of each session, so that a server or client
+ * may choose its algorithm.
+ *
+ * @see Config#setCongestionControlFactory(CongestionControlFactory)
+ */
+@FunctionalInterface
+public interface CongestionControlFactory {
+
+    /**
+     * UDT-style AIMD rate control, probing for bandwidth and backing off on loss. The default.
+     */
+    CongestionControlFactory BOLT = (config, state, statistics) ->
+            new BoltCongestionControl(state, statistics, config.getInitialCongestionWindowSize());
+
+    /**
+     * Model-based rate control after BBR, pacing at the measured bottleneck bandwidth
+     * and unaffected by random loss.
+     *
+     * @see BbrCongestionControl
+     */
+    CongestionControlFactory BBR = (config, state, statistics) ->
+            new BbrCongestionControl(state, statistics, config.getInitialCongestionWindowSize());
+
+    /**
+     * Delay-based scavenger control after LEDBAT, at the default target queuing delay.
+     *
+     * @see #ledbat(long)
+     */
+    CongestionControlFactory LEDBAT = ledbat(LedbatCongestionControl.DEFAULT_TARGET_DELAY);
+
+    /**
+     * Send at a fixed rate, whatever the loss, for provisioned links where probing
+     * only leaves bandwidth unused.
+     *
+     * @param bytesPerSecond most bytes sent per second, or 0 to send as fast as the flow window allows.
+     * @return the factory.
+     * @see FixedRateCongestionControl
+     */
+    static CongestionControlFactory fixedRate(final long bytesPerSecond) {
+        return (config, state, statistics) -> new FixedRateCongestionControl(state, statistics, bytesPerSecond);
+    }
+
+    /**
+     * Yield to other traffic, backing off as soon as the queuing delay exceeds a
+     * target, for background transfers which should not inflate the latency of
+     * interactive sessions sharing the link. Set it on the configuration of just the
+     * clients which make such transfers, or as the background congestion control, for
+     * the sessions either side asks to be background transfers.
+     *
+     * @param targetDelayMicros queuing delay, in microseconds, above which to back off.
+     * @return the factory.
+     * @see LedbatCongestionControl
+     * @see Config#setBackgroundCongestionControlFactory(CongestionControlFactory)
+     */
+    static CongestionControlFactory ledbat(final long targetDelayMicros) {
+        return (config, state, statistics) ->
+                new LedbatCongestionControl(state, statistics, config.getInitialCongestionWindowSize(), targetDelayMicros);
+    }
+
+    /**
+     * Create the congestion control for a new session.
+     *
+     * @param config     the configuration of the server or client.
+     * @param state      the state of the session.
+     * @param statistics the statistics of the session.
+     * @return the congestion control.
+     */
+    CongestionControl create(Config config, SessionState state, BoltStatistics statistics);
+
+}
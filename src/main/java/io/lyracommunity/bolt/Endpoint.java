@@ -21,8 +21,11 @@ import rx.schedulers.Schedulers;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Endpoint takes care of sending and receiving UDP network packets,
@@ -34,7 +37,7 @@ class Endpoint implements ChannelOut {
 
     private static final Logger LOG = LoggerFactory.getLogger(Endpoint.class);
 
-    private final DatagramPacket dp = new DatagramPacket(new byte[Config.DEFAULT_DATAGRAM_SIZE], Config.DEFAULT_DATAGRAM_SIZE);
+    private final DatagramPacket dp;
     private final int            port;
     private final DatagramSocket dgSocket;
     private final Config         config;
@@ -42,9 +45,13 @@ class Endpoint implements ChannelOut {
 
     private final SessionController sessionController;
 
-    private final ReceiverThread receiverThread;
+    /** Receiver workers, indexed alongside the sender workers. */
+    private final ReceiverThread[] receiverThreads;
 
-    private final SenderThread senderThread;
+    private final SenderThread[] senderThreads;
+
+    /** Per-thread scratch space that outgoing packets are encoded into. */
+    private final ThreadLocal<SendBuffer> sendBuffers;
 
     /**
      * Bind to the given address and port.
@@ -54,21 +61,51 @@ class Endpoint implements ChannelOut {
      * @throws SocketException if for example if the port is already bound to.
      */
     Endpoint(final String name, final Config config, final SessionController sessionController) throws SocketException {
+        this(name, config, sessionController, new DatagramSocket(null));  // init to null in order to bind later.
+    }
+
+    /**
+     * Create an endpoint over the given unbound socket.
+     *
+     * @param name   name of the endpoint, eg "ClientEndpoint" or "ServerEndpoint".
+     * @param config config containing the address information to bind.
+     * @param socket unbound socket to bind on {@link #start()}.
+     */
+    Endpoint(final String name, final Config config, final SessionController sessionController,
+             final DatagramSocket socket) {
         this.config = config;
         this.name = name;
         this.sessionController = sessionController;
-        this.dgSocket = new DatagramSocket(null);  // init to null in order to bind later.
+        this.dgSocket = socket;
+        this.dp = new DatagramPacket(new byte[config.getDatagramSize()], config.getDatagramSize());
         // If the port is zero, the system will pick an ephemeral port.
         this.port = (config.getLocalPort() > 0) ? config.getLocalPort() : dgSocket.getLocalPort();
-        this.receiverThread = new ReceiverThread(config, sessionController);
-        this.senderThread = new SenderThread(sessionController);
+        sessionController.initWorkers(config.getWorkerCount());
+        this.receiverThreads = new ReceiverThread[config.getWorkerCount()];
+        this.senderThreads = new SenderThread[config.getWorkerCount()];
+        for (int i = 0; i < config.getWorkerCount(); i++) {
+            receiverThreads[i] = new ReceiverThread(sessionController, i);
+            senderThreads[i] = new SenderThread(sessionController, i);
+        }
+        this.sendBuffers = ThreadLocal.withInitial(() -> new SendBuffer(config.getDatagramSize()));
+    }
+
+    /**
+     * Create the type of endpoint chosen by the config.
+     *
+     * @see Config#setNioEndpoint(boolean)
+     */
+    static Endpoint of(final String name, final Config config, final SessionController sessionController) throws IOException {
+        return config.isNioEndpoint()
+                ? new NioEndpoint(name, config, sessionController)
+                : new Endpoint(name, config, sessionController);
     }
 
     private void configureSocket() throws SocketException {
         // set a time out to avoid blocking in doReceive()
         dgSocket.setSoTimeout(50_000);
         // buffer size
-        dgSocket.setReceiveBufferSize(128 * 1024);
+        dgSocket.setReceiveBufferSize(Math.max(128 * 1024, 16 * config.getDatagramSize()));
         dgSocket.setReuseAddress(false);
     }
 
@@ -89,16 +126,21 @@ class Endpoint implements ChannelOut {
      * @return the stream of events.
      */
     public Observable<BoltEvent> start() {
-        return Observable.merge(
-                receiverThread.start().subscribeOn(Schedulers.io()),
-                senderThread.start().subscribeOn(Schedulers.io()),
-                Observable.<BoltEvent>create(this::doReceive).subscribeOn(Schedulers.io()))
+        final List<Observable<BoltEvent>> workers = new ArrayList<>();
+        for (int i = 0; i < receiverThreads.length; i++) {
+            workers.add(receiverThreads[i].start().subscribeOn(Schedulers.io()));
+            workers.add(senderThreads[i].start().subscribeOn(Schedulers.io()));
+        }
+        workers.add(Observable.<BoltEvent>create(this::doReceive).subscribeOn(Schedulers.io()));
+        return Observable.merge(workers)
                 .doOnSubscribe(this::bind);
     }
 
     void stop(final Subscriber<? super BoltEvent> subscriber) {
         LOG.info("Stopping {}", name);
         sessionController.stop(subscriber, name + " is closing.");
+        for (ReceiverThread receiverThread : receiverThreads) receiverThread.close();
+        for (SenderThread senderThread : senderThreads) senderThread.close();
         closeSocket();
     }
 
@@ -133,17 +175,7 @@ class Endpoint implements ChannelOut {
                 (peer, pkt) -> markPacketAsDropped(pkt));
         while (!subscriber.isUnsubscribed()) {
             try {
-                // Will block until a packet is received or timeout has expired.
-                dgSocket.receive(dp);
-
-                final Destination peer = new Destination(dp.getAddress(), dp.getPort());
-                final int l = dp.getLength();
-                final BoltPacket packet = PacketFactory.createPacket(dp.getData(), l);
-
-                if (LOG.isDebugEnabled()) LOG.debug("{} received packet {}", name, packet.getPacketSeqNumber());
-
-                qosSimulationPipeline.offer(peer, packet);
-
+                receive(qosSimulationPipeline);
             }
             catch (AsynchronousCloseException ex) {
                 LOG.info("{} interrupted.", name);
@@ -157,6 +189,7 @@ class Endpoint implements ChannelOut {
             }
             catch (ClosedChannelException ex) {
                 LOG.warn("{} Channel was closed but receive was attempted", name);
+                if (dgSocket.isClosed()) subscriber.onError(ex);
             }
             catch (Exception ex) {
                 LOG.error("{} Unexpected endpoint error", name, ex);
@@ -171,7 +204,26 @@ class Endpoint implements ChannelOut {
         stop(subscriber);
     }
 
-    private void markPacketAsDropped(final BoltPacket packet) {
+    /**
+     * Receive a single datagram and offer it, as a Bolt packet, to the pipeline.
+     *
+     * @param pipeline the pipeline dispatching packets to the sessions.
+     * @throws IOException if the receive failed, or timed out.
+     */
+    void receive(final NetworkQoSSimulationPipeline pipeline) throws IOException {
+        // Will block until a packet is received or timeout has expired.
+        dgSocket.receive(dp);
+
+        final Destination peer = new Destination(dp.getAddress(), dp.getPort());
+        final int l = dp.getLength();
+        final BoltPacket packet = PacketFactory.createPacket(dp.getData(), l);
+
+        if (LOG.isDebugEnabled()) LOG.debug("{} received packet {}", name, packet.getPacketSeqNumber());
+
+        pipeline.offer(peer, packet);
+    }
+
+    void markPacketAsDropped(final BoltPacket packet) {
         final Session session = sessionController.getSession(packet.getDestinationSessionID());
         if (session != null) session.getStatistics().incNumberOfArtificialDrops();
     }
@@ -188,13 +240,19 @@ class Endpoint implements ChannelOut {
 
     @Override
     public void doSend(final BoltPacket packet, final SessionState sessionState) throws IOException {
-        final byte[] data = packet.getEncoded();
-        final DatagramPacket dgp = sessionState.getDatagram();
-        dgp.setData(data);
-        dgSocket.send(dgp);
+        final SendBuffer scratch = sendBuffers.get();
+        scratch.buffer.clear();
+        packet.encodeInto(scratch.buffer);
+        scratch.datagram.setData(scratch.buffer.array(), 0, scratch.buffer.position());
+        scratch.datagram.setSocketAddress(sessionState.getDestination().getSocketAddress());
+        dgSocket.send(scratch.datagram);
         LOG.debug("Sent bolt packet {}", packet);
     }
 
+    String getName() {
+        return name;
+    }
+
     public String toString() {
         return name + " port=" + port;
     }
@@ -208,4 +266,18 @@ class Endpoint implements ChannelOut {
         return config;
     }
 
+    /**
+     * Reusable datagram and the buffer backing it.
+     */
+    private static final class SendBuffer {
+
+        private final ByteBuffer     buffer;
+        private final DatagramPacket datagram;
+
+        private SendBuffer(final int size) {
+            this.buffer = ByteBuffer.allocate(size);
+            this.datagram = new DatagramPacket(buffer.array(), size);
+        }
+    }
+
 }
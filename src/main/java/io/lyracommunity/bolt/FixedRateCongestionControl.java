@@ -0,0 +1,81 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+
+/**
+ * Congestion control for provisioned links, sending at a fixed rate however the
+ * peer responds. There is no congestion window beyond the flow window, and loss
+ * does not slow the sender, so the rate must not exceed what the link carries.
+ * <p>
+ * The rate is an upper bound, reached when every packet fills a datagram. A rate
+ * of zero leaves the sender unpaced.
+ */
+public class FixedRateCongestionControl extends AbstractCongestionControl {
+
+    /**
+     * Most send intervals a late sender makes up, by sending back to back.
+     */
+    static final int MAX_PACING_CATCH_UP = 4;
+
+    private final SessionState   sessionState;
+    private final BoltStatistics statistics;
+
+    /**
+     * Most bytes sent per second, or 0 if unpaced.
+     */
+    private final long bytesPerSecond;
+
+    public FixedRateCongestionControl(final SessionState sessionState, final BoltStatistics statistics,
+                                      final long bytesPerSecond) {
+        if (bytesPerSecond < 0) throw new IllegalArgumentException("bytesPerSecond must not be negative");
+        this.sessionState = sessionState;
+        this.statistics = statistics;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public void init() {
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    @Override
+    public void setRTT(final long rtt, final long rttVar) {
+        // The rate does not depend on the RTT.
+    }
+
+    @Override
+    public double getSendInterval() {
+        if (bytesPerSecond == 0) return 0;
+        return 1_000_000d * sessionState.getDatagramSize() / bytesPerSecond;
+    }
+
+    /**
+     * The rate holds even when the sender runs late, for example on a coarse scheduler,
+     * as the time lost is made up, within a few intervals.
+     */
+    @Override
+    public int getPacingCatchUp() {
+        return MAX_PACING_CATCH_UP;
+    }
+
+    @Override
+    public double getCongestionWindowSize() {
+        return sessionState.getFlowWindowSize();
+    }
+
+    @Override
+    public void onACK(final long ackSeqNum) {
+        // The rate does not depend on delivery.
+    }
+
+    @Override
+    public void onLoss(final int firstLostRelSeqNum, final int lossCount, final int currentMaxRelSeqNum) {
+        // The rate does not depend on loss.
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
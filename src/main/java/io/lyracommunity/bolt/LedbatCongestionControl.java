@@ -0,0 +1,161 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import io.lyracommunity.bolt.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Delay-based scavenger congestion control, after LEDBAT, for background transfers
+ * which should only use capacity that other traffic leaves spare.
+ * <p>
+ * The queuing delay is taken as the RTT the receiver measures from its ACKs and ACK2s,
+ * less the base RTT: the smallest seen over the last several minutes. The congestion
+ * window grows while the queuing delay is below a target, in proportion to how far
+ * below, and shrinks as soon as it rises above, by as much as one packet per window
+ * of packets delivered. Loss halves the window, at most once per round trip.
+ * <p>
+ * The RTT carried in ACKs is averaged, and its variance measures the jitter of the
+ * path. While the jitter exceeds the target, queuing cannot be told from noise, and
+ * the window does not grow, though it still shrinks if the queuing delay is too high.
+ * <p>
+ * Packets are paced to spread each window over the RTT, rather than sent in a burst
+ * on each ACK.
+ */
+public class LedbatCongestionControl extends AbstractCongestionControl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedbatCongestionControl.class);
+
+    /** Default target queuing delay, in microseconds: low enough for interactive traffic to share the link. */
+    public static final long DEFAULT_TARGET_DELAY = 25_000;
+
+    /** Number of intervals over which the base RTT is the smallest RTT. */
+    static final int BASE_HISTORY = 10;
+
+    /** Length of each interval of the base RTT history, in microseconds. */
+    static final long BASE_INTERVAL = 60_000_000;
+
+    /** Most the window grows by per window of packets delivered, in packets. */
+    private static final double GAIN = 1;
+
+    /** Smallest congestion window, in packets. */
+    static final double MIN_CWND = 2;
+
+    private final SessionState   sessionState;
+    private final BoltStatistics statistics;
+
+    /** Target queuing delay, in microseconds. */
+    private final long targetDelay;
+
+    /** Round trip time and its variance, in microseconds, or 0 if not yet measured. */
+    private long roundTripTime    = 0;
+    private long roundTripTimeVar = 0;
+
+    /** Smallest RTT of each interval of the history, in microseconds. */
+    private final long[] baseDelays = new long[BASE_HISTORY];
+    private long baseIntervalStart;
+    private int  baseIndex;
+
+    /**
+     * Congestion window size, in packets.
+     */
+    private double congestionWindowSize;
+
+    /** When the window was last halved for loss, in microseconds, or 0 if never. */
+    private long lastLossDecrease = 0;
+
+    public LedbatCongestionControl(final SessionState sessionState, final BoltStatistics statistics,
+                                   final double initialCongestionWindowSize, final long targetDelay) {
+        if (targetDelay <= 0) throw new IllegalArgumentException("targetDelay must be positive");
+        this.sessionState = sessionState;
+        this.statistics = statistics;
+        this.congestionWindowSize = initialCongestionWindowSize;
+        this.targetDelay = targetDelay;
+        Arrays.fill(baseDelays, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void init() {
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    @Override
+    public void setRTT(final long rtt, final long rttVar) {
+        onRtt(rtt, rttVar, Util.currentTimeMicros());
+    }
+
+    void onRtt(final long rtt, final long rttVar, final long now) {
+        roundTripTime = rtt;
+        roundTripTimeVar = rttVar;
+        if (baseIntervalStart == 0) {
+            baseIntervalStart = now;
+        }
+        else if (now - baseIntervalStart >= BASE_INTERVAL) {
+            baseIntervalStart = now;
+            baseIndex = (baseIndex + 1) % BASE_HISTORY;
+            baseDelays[baseIndex] = Long.MAX_VALUE;
+        }
+        baseDelays[baseIndex] = Math.min(baseDelays[baseIndex], rtt);
+    }
+
+    /**
+     * Spread the window over the RTT and the ACK interval.
+     */
+    @Override
+    public double getSendInterval() {
+        if (roundTripTime == 0) return 0;
+        return (roundTripTime + Util.getSYNTimeD()) / congestionWindowSize;
+    }
+
+    @Override
+    public double getCongestionWindowSize() {
+        return congestionWindowSize;
+    }
+
+    @Override
+    public void onACK(final long ackSeqNum) {
+        // The window changes with the packets delivered.
+    }
+
+    @Override
+    public void onDelivered(final int packets) {
+        if (roundTripTime == 0) return;
+        final long queuingDelay = getQueuingDelay();
+        double offTarget = (targetDelay - queuingDelay) / (double) targetDelay;
+        // Growth needs the delay to be measured above the noise.
+        if (offTarget > 0 && roundTripTimeVar > targetDelay) offTarget = 0;
+        congestionWindowSize += GAIN * offTarget * packets / congestionWindowSize;
+        congestionWindowSize = Math.max(MIN_CWND, Math.min(congestionWindowSize, sessionState.getFlowWindowSize()));
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    @Override
+    public void onLoss(final int firstLostRelSeqNum, final int lossCount, final int currentMaxRelSeqNum) {
+        onLoss(Util.currentTimeMicros());
+    }
+
+    void onLoss(final long now) {
+        if (lastLossDecrease > 0 && now - lastLossDecrease < roundTripTime + Util.getSYNTime()) return;
+        lastLossDecrease = now;
+        congestionWindowSize = Math.max(MIN_CWND, congestionWindowSize / 2);
+        LOG.debug("Loss, window halved to {}", congestionWindowSize);
+        statistics.setSendPeriod(getSendInterval());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return the RTT beyond the base RTT, in microseconds.
+     */
+    long getQueuingDelay() {
+        long base = Long.MAX_VALUE;
+        for (long d : baseDelays) base = Math.min(base, d);
+        return (base == Long.MAX_VALUE) ? 0 : Math.max(0, roundTripTime - base);
+    }
+
+}
@@ -0,0 +1,110 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.BoltPacket;
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.packet.PacketFactory;
+import io.lyracommunity.bolt.packet.PacketType;
+import io.lyracommunity.bolt.session.SessionController;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.util.ByteBufferPool;
+import io.lyracommunity.bolt.util.NetworkQoSSimulationPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Endpoint built on a blocking {@link DatagramChannel}.
+ * <p>
+ * Datagrams are received into pooled direct buffers and decoded in place: control
+ * packets return their buffer to the pool straight after decoding, while data packets
+ * keep a slice of it as their payload until they are released, once delivered or
+ * dropped. The peer {@link Destination} is reused while datagrams keep arriving from
+ * the same address.
+ *
+ * @see Config#setNioEndpoint(boolean)
+ */
+class NioEndpoint extends Endpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioEndpoint.class);
+
+    private final DatagramChannel channel;
+    private final ByteBufferPool  bufferPool;
+
+    /** Per-thread direct buffer that outgoing packets are encoded into. */
+    private final ThreadLocal<ByteBuffer> sendBuffers;
+
+    /** Destination of the last non-handshake datagram, only accessed by the receiving thread. */
+    private Destination lastPeer;
+
+    NioEndpoint(final String name, final Config config, final SessionController sessionController) throws IOException {
+        this(name, config, sessionController, DatagramChannel.open());
+    }
+
+    private NioEndpoint(final String name, final Config config, final SessionController sessionController,
+                        final DatagramChannel channel) {
+        super(name, config, sessionController, channel.socket());
+        this.channel = channel;
+        // Retain enough idle buffers to refill a receive buffer.
+        this.bufferPool = new ByteBufferPool(config.getDatagramSize(), 2 * config.getFlowWindowSize());
+        this.sendBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(config.getDatagramSize()));
+    }
+
+    @Override
+    void receive(final NetworkQoSSimulationPipeline pipeline) throws IOException {
+        final ByteBuffer buffer = bufferPool.acquire();
+        final InetSocketAddress source;
+        try {
+            // Will block until a packet is received or the channel is closed.
+            source = (InetSocketAddress) channel.receive(buffer);
+        }
+        catch (IOException ex) {
+            bufferPool.release(buffer);
+            throw ex;
+        }
+        buffer.flip();
+
+        final BoltPacket packet = PacketFactory.createPacket(buffer, bufferPool);
+        final Destination peer = toDestination(source, packet);
+
+        if (LOG.isDebugEnabled()) LOG.debug("{} received packet {}", getName(), packet.getPacketSeqNumber());
+
+        pipeline.offer(peer, packet);
+    }
+
+    /**
+     * Handshakes always get a fresh destination, as the session controller assigns
+     * the peer's session ID to it.
+     */
+    private Destination toDestination(final InetSocketAddress source, final BoltPacket packet) {
+        if (packet != null && packet.getPacketType() == PacketType.HANDSHAKE) {
+            return new Destination(source.getAddress(), source.getPort());
+        }
+        if (lastPeer == null || !lastPeer.getSocketAddress().equals(source)) {
+            lastPeer = new Destination(source.getAddress(), source.getPort());
+        }
+        return lastPeer;
+    }
+
+    @Override
+    void markPacketAsDropped(final BoltPacket packet) {
+        super.markPacketAsDropped(packet);
+        if (!packet.isControlPacket()) ((DataPacket) packet).release();
+    }
+
+    @Override
+    public void doSend(final BoltPacket packet, final SessionState sessionState) throws IOException {
+        final ByteBuffer buffer = sendBuffers.get();
+        buffer.clear();
+        packet.encodeInto(buffer);
+        buffer.flip();
+        channel.send(buffer, sessionState.getDestination().getSocketAddress());
+        LOG.debug("Sent bolt packet {}", packet);
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt.api;
 
+import io.lyracommunity.bolt.CongestionControlFactory;
 import io.lyracommunity.bolt.util.Util;
 
 import java.net.InetAddress;
@@ -12,7 +13,23 @@ import java.net.InetAddress;
 public class Config {
 
     public static final int DEFAULT_DATAGRAM_SIZE = 1400;
-    private final       int datagramSize          = 1400;
+    /** Smallest datagram size which may be configured, in bytes. */
+    public static final int MIN_DATAGRAM_SIZE     = 576;
+    /** Largest datagram size which may be configured, the most a UDP datagram may carry over IPv4, in bytes. */
+    public static final int MAX_DATAGRAM_SIZE     = 65507;
+    /**
+     * Largest datagram sent, in bytes. The smaller of the two peers' sizes is agreed in the handshake.
+     */
+    private             int datagramSize          = DEFAULT_DATAGRAM_SIZE;
+    /**
+     * Whether to start sessions at the default datagram size, and probe for a path
+     * which carries datagrams up to the agreed size.
+     */
+    private boolean pathMtuDiscovery = false;
+    /**
+     * Whether to ask for 30-bit reliability and order sequence numbers, rather than 16-bit.
+     */
+    private boolean wideSeqNumbers = false;
     private volatile float       packetDropRate;
     /**
      * Simulated network latency, in milliseconds.
@@ -32,6 +49,53 @@ public class Config {
 
     private boolean memoryPreAllocation = false;
 
+    /**
+     * Whether the endpoint uses a NIO datagram channel, receiving into pooled direct
+     * buffers, instead of a classic datagram socket.
+     */
+    private boolean nioEndpoint = false;
+
+    /**
+     * How the application waits to send when the flow window is full.
+     */
+    private WaitStrategy flowWindowWaitStrategy = WaitStrategy.BACKOFF;
+
+    /**
+     * Whether received packets are processed on the network thread, rather than
+     * handed off to a receiver worker.
+     */
+    private boolean inlineReceive = false;
+
+    /**
+     * How lost reliable packets are retransmitted.
+     */
+    private RetransmitStrategy retransmitStrategy = RetransmitStrategy.CONSERVATIVE;
+
+    /**
+     * Most lost packets retransmitted back to back in one step, in aggressive mode.
+     */
+    private int retransmitBurstLimit = 16;
+
+    /**
+     * Creates the congestion control of each session.
+     */
+    private CongestionControlFactory congestionControlFactory = CongestionControlFactory.BOLT;
+
+    /**
+     * Whether to ask for sessions to be background transfers.
+     */
+    private boolean backgroundTransfer = false;
+
+    /**
+     * Creates the congestion control of each background transfer session.
+     */
+    private CongestionControlFactory backgroundCongestionControlFactory = CongestionControlFactory.LEDBAT;
+
+    /**
+     * Number of sender/receiver worker pairs that sessions are shared between.
+     */
+    private int workerCount = 1;
+
     /**
      * The consecutive number of EXP events before the session expires.
      */
@@ -95,6 +159,7 @@ public class Config {
         final Config config = new Config(localAddress, localPort);
         config.setFlowWindowSize(1024 * 10);
         config.setMemoryPreAllocation(true);
+        config.setWideSeqNumbers(true);
         return config;
     }
 
@@ -174,10 +239,84 @@ public class Config {
         this.ackInterval = ackInterval;
     }
 
+    /**
+     * @return the largest datagram sent, in bytes.
+     * @see Config#setDatagramSize(int)
+     */
     public int getDatagramSize() {
         return datagramSize;
     }
 
+    /**
+     * Set the largest datagram sent, including all Bolt headers. Each session uses the
+     * smaller of its two peers' sizes, agreed during the handshake. Receive buffers are
+     * sized to fit, so it must be set before the client is created or the server started.
+     * <p>
+     * Larger datagrams carry more data per packet header, and per send and receive call.
+     * Sizes above the path MTU are fragmented by IP, and are lost whole if a fragment is
+     * lost, so sizes beyond the default suit loopback and jumbo-frame LANs, or else
+     * {@link #setPathMtuDiscovery(boolean) path MTU discovery}.
+     *
+     * @param datagramSize the value to set, from {@link #MIN_DATAGRAM_SIZE} to {@link #MAX_DATAGRAM_SIZE}.
+     * @return this config.
+     */
+    public Config setDatagramSize(final int datagramSize) {
+        if (datagramSize < MIN_DATAGRAM_SIZE || datagramSize > MAX_DATAGRAM_SIZE) {
+            throw new IllegalArgumentException("datagramSize must be from " + MIN_DATAGRAM_SIZE + " to " + MAX_DATAGRAM_SIZE);
+        }
+        this.datagramSize = datagramSize;
+        return this;
+    }
+
+    /**
+     * @return whether sessions probe for the largest datagram the path carries.
+     * @see Config#setPathMtuDiscovery(boolean)
+     */
+    public boolean isPathMtuDiscovery() {
+        return pathMtuDiscovery;
+    }
+
+    /**
+     * If true, sessions send data in datagrams of at most the default size, until a
+     * padded probe of a larger size is acknowledged by the peer. Probe sizes are searched
+     * up to the size agreed in the handshake, and datagrams grow to the largest acknowledged.
+     * <p>
+     * Has no effect unless the {@link #setDatagramSize(int) datagram size} of both peers
+     * is above the default.
+     *
+     * @param pathMtuDiscovery the value to set.
+     * @return this config.
+     */
+    public Config setPathMtuDiscovery(final boolean pathMtuDiscovery) {
+        this.pathMtuDiscovery = pathMtuDiscovery;
+        return this;
+    }
+
+    /**
+     * @return whether sessions ask for wide sequence numbers.
+     * @see Config#setWideSeqNumbers(boolean)
+     */
+    public boolean isWideSeqNumbers() {
+        return wideSeqNumbers;
+    }
+
+    /**
+     * If true, sessions ask for 30-bit reliability and order sequence numbers during the
+     * handshake, which are used if the peer asks for them too. Each reliable data packet
+     * then carries 2 or 4 more header bytes.
+     * <p>
+     * With 16-bit sequence numbers, at most 16384 packets are unacknowledged at once,
+     * whatever the {@link #setFlowWindowSize(int) flow window size}. Wide sequence numbers
+     * lift this limit, for links with a high bandwidth-delay product.
+     *
+     * @param wideSeqNumbers the value to set.
+     * @return this config.
+     */
+    public Config setWideSeqNumbers(final boolean wideSeqNumbers) {
+        this.wideSeqNumbers = wideSeqNumbers;
+        return this;
+    }
+
     public int getExpLimit() {
         return expLimit;
     }
@@ -270,10 +409,216 @@ public class Config {
      * performance gains on very high-throughput connections, but leaves open
      * the vulnerability of OutOfMemoryErrors, especially on servers with many
      * open client sessions.
+     * <p>
+     * Each session's send window takes {@link #getFlowWindowSize()} chunks of the
+     * datagram size agreed with the peer, allocated once it first sends.
      *
      * @param memoryPreAllocation the value to set.
      */
     private void setMemoryPreAllocation(final boolean memoryPreAllocation) {
         this.memoryPreAllocation = memoryPreAllocation;
     }
+
+    /**
+     * @return whether the endpoint uses a NIO datagram channel.
+     * @see Config#setNioEndpoint(boolean)
+     */
+    public boolean isNioEndpoint() {
+        return nioEndpoint;
+    }
+
+    /**
+     * If true, the endpoint is built on a NIO datagram channel. Received datagrams are
+     * read into pooled direct buffers and data packets reference their payload in place,
+     * avoiding a copy and an allocation per received packet.
+     *
+     * @param nioEndpoint the value to set.
+     * @return this config.
+     */
+    public Config setNioEndpoint(final boolean nioEndpoint) {
+        this.nioEndpoint = nioEndpoint;
+        return this;
+    }
+
+    /**
+     * @return how the application waits to send when the flow window is full.
+     * @see Config#setFlowWindowWaitStrategy(WaitStrategy)
+     */
+    public WaitStrategy getFlowWindowWaitStrategy() {
+        return flowWindowWaitStrategy;
+    }
+
+    /**
+     * Set how a sending application thread waits for the sender to free room in a
+     * full flow window. {@link WaitStrategy#BUSY_SPIN} and {@link WaitStrategy#YIELD}
+     * check repeatedly, without and with yielding between checks. The default,
+     * {@link WaitStrategy#BACKOFF}, spins briefly and then parks, to be woken by the
+     * sender as soon as it takes a packet from the window.
+     *
+     * @param flowWindowWaitStrategy the value to set.
+     * @return this config.
+     */
+    public Config setFlowWindowWaitStrategy(final WaitStrategy flowWindowWaitStrategy) {
+        this.flowWindowWaitStrategy = flowWindowWaitStrategy;
+        return this;
+    }
+
+    /**
+     * @return number of sender/receiver worker pairs.
+     * @see Config#setWorkerCount(int)
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Set the number of sender/receiver worker pairs. Each session is owned by one
+     * pair, chosen by its session ID, so a busy session only delays the sessions
+     * sharing its workers. Endpoints serving many sessions on a multi-core machine
+     * may benefit from up to one worker pair per core.
+     *
+     * @param workerCount the value to set, at least 1.
+     * @return this config.
+     */
+    public Config setWorkerCount(final int workerCount) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be at least 1");
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    /**
+     * @return whether received packets are processed on the network thread.
+     * @see Config#setInlineReceive(boolean)
+     */
+    public boolean isInlineReceive() {
+        return inlineReceive;
+    }
+
+    /**
+     * If true, the network thread processes each received packet to completion,
+     * checking the session's timers and generating any ACK or NAK before receiving
+     * the next datagram. This avoids queueing the packet and waking a receiver
+     * worker, lowering delivery latency, at the cost of receive throughput when
+     * many sessions are busy. Receiver workers still check the timers of idle sessions.
+     *
+     * @param inlineReceive the value to set.
+     * @return this config.
+     */
+    public Config setInlineReceive(final boolean inlineReceive) {
+        this.inlineReceive = inlineReceive;
+        return this;
+    }
+
+    /**
+     * @return how lost reliable packets are retransmitted.
+     * @see Config#setRetransmitStrategy(RetransmitStrategy)
+     */
+    public RetransmitStrategy getRetransmitStrategy() {
+        return retransmitStrategy;
+    }
+
+    /**
+     * Set how the sender retransmits lost reliable packets, trading bandwidth and
+     * smoothness of the sending rate against recovery latency. See
+     * {@link RetransmitStrategy} for the effect of each.
+     *
+     * @param retransmitStrategy the value to set.
+     * @return this config.
+     */
+    public Config setRetransmitStrategy(final RetransmitStrategy retransmitStrategy) {
+        this.retransmitStrategy = retransmitStrategy;
+        return this;
+    }
+
+    /**
+     * @return most lost packets retransmitted back to back in one step.
+     * @see Config#setRetransmitBurstLimit(int)
+     */
+    public int getRetransmitBurstLimit() {
+        return retransmitBurstLimit;
+    }
+
+    /**
+     * Set the most lost packets retransmitted back to back, ahead of new data, in one
+     * step of the {@link RetransmitStrategy#AGGRESSIVE aggressive} strategy.
+     *
+     * @param retransmitBurstLimit the value to set, at least 1.
+     * @return this config.
+     */
+    public Config setRetransmitBurstLimit(final int retransmitBurstLimit) {
+        if (retransmitBurstLimit < 1) throw new IllegalArgumentException("retransmitBurstLimit must be at least 1");
+        this.retransmitBurstLimit = retransmitBurstLimit;
+        return this;
+    }
+
+    /**
+     * @return what creates the congestion control of each session.
+     * @see Config#setCongestionControlFactory(CongestionControlFactory)
+     */
+    public CongestionControlFactory getCongestionControlFactory() {
+        return congestionControlFactory;
+    }
+
+    /**
+     * Set what creates the congestion control of each session, such as
+     * {@link CongestionControlFactory#fixedRate(long)} for a provisioned link.
+     * Defaults to {@link CongestionControlFactory#BOLT}.
+     *
+     * @param congestionControlFactory the value to set.
+     * @return this config.
+     */
+    public Config setCongestionControlFactory(final CongestionControlFactory congestionControlFactory) {
+        if (congestionControlFactory == null) throw new IllegalArgumentException("congestionControlFactory must not be null");
+        this.congestionControlFactory = congestionControlFactory;
+        return this;
+    }
+
+    /**
+     * @return whether sessions ask to be background transfers.
+     * @see Config#setBackgroundTransfer(boolean)
+     */
+    public boolean isBackgroundTransfer() {
+        return backgroundTransfer;
+    }
+
+    /**
+     * If true, sessions ask the peer during the handshake to treat them as background
+     * transfers. A session is a background transfer if either side asks, and both sides
+     * then use the {@link #setBackgroundCongestionControlFactory(CongestionControlFactory)
+     * background congestion control} for it, in place of the usual one.
+     * <p>
+     * This lets a client mark just its bulk transfers as yielding to the interactive
+     * sessions of other clients, while the server keeps one configuration for all.
+     *
+     * @param backgroundTransfer the value to set.
+     * @return this config.
+     */
+    public Config setBackgroundTransfer(final boolean backgroundTransfer) {
+        this.backgroundTransfer = backgroundTransfer;
+        return this;
+    }
+
+    /**
+     * @return what creates the congestion control of each background transfer session.
+     * @see Config#setBackgroundCongestionControlFactory(CongestionControlFactory)
+     */
+    public CongestionControlFactory getBackgroundCongestionControlFactory() {
+        return backgroundCongestionControlFactory;
+    }
+
+    /**
+     * Set what creates the congestion control of each session agreed to be a
+     * {@link #setBackgroundTransfer(boolean) background transfer}.
+     * Defaults to {@link CongestionControlFactory#LEDBAT}.
+     *
+     * @param backgroundCongestionControlFactory the value to set.
+     * @return this config.
+     */
+    public Config setBackgroundCongestionControlFactory(final CongestionControlFactory backgroundCongestionControlFactory) {
+        if (backgroundCongestionControlFactory == null) {
+            throw new IllegalArgumentException("backgroundCongestionControlFactory must not be null");
+        }
+        this.backgroundCongestionControlFactory = backgroundCongestionControlFactory;
+        return this;
+    }
 }
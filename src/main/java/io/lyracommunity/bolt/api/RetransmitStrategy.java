@@ -0,0 +1,38 @@
+package io.lyracommunity.bolt.api;
+
+/**
+ * How the sender spends its sending opportunities on lost reliable packets.
+ * <p>
+ * In {@code QualityOfServiceIT} runs delivering 20 reliable packets with 500ms
+ * simulated latency and 20% loss, the conservative strategy took 1.5-2.5s,
+ * aggressive 1.0-1.5s and duplicate 1.0s. With 50ms latency and 50% loss,
+ * conservative and aggressive took around 120ms, and duplicate 60ms.
+ *
+ * @see Config#setRetransmitStrategy(RetransmitStrategy)
+ */
+public enum RetransmitStrategy {
+
+    /**
+     * Retransmit one lost packet per step, paced by congestion control like new data.
+     * Keeps the sending rate smooth, but a burst of losses is recovered one send
+     * interval at a time, so recovery takes longer the more was lost at once.
+     */
+    CONSERVATIVE,
+
+    /**
+     * On each step, retransmit lost packets back to back, up to the
+     * {@link Config#getRetransmitBurstLimit() burst limit}, before any new data.
+     * Recovers a burst of losses in about one round trip rather than one send
+     * interval per packet, at the cost of short bursts above the paced rate.
+     */
+    AGGRESSIVE,
+
+    /**
+     * Send each reliable packet twice, back to back, and retransmit as
+     * {@link #CONSERVATIVE}. On links with high random loss most packets arrive
+     * without waiting for loss detection, at the cost of twice the bandwidth for
+     * reliable data. Bursty loss, which takes out both copies, is not helped.
+     */
+    DUPLICATE
+
+}
@@ -0,0 +1,27 @@
+package io.lyracommunity.bolt.api;
+
+/**
+ * How a thread waits for a condition which another thread will satisfy, such as an
+ * application thread waiting for room in a full flow window.
+ *
+ * @see Config#setFlowWindowWaitStrategy(WaitStrategy)
+ */
+public enum WaitStrategy {
+
+    /**
+     * Spin without pausing. Reacts fastest but keeps a core busy while waiting.
+     */
+    BUSY_SPIN,
+
+    /**
+     * Yield the processor between checks.
+     */
+    YIELD,
+
+    /**
+     * Spin briefly, then park until woken by the other thread, or for at most a
+     * millisecond, in case the wake-up is missed. Uses little CPU when waiting for long.
+     */
+    BACKOFF
+
+}
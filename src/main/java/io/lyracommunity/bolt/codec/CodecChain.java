@@ -48,20 +48,20 @@ class CodecChain<T> {
         return packageXCoder.decode(readyForDecode);
     }
 
-    public List<DataPacket> encode(final T object, final MessageAssembleBuffer assembleBuffer) {
+    public List<DataPacket> encode(final T object, final MessageAssembleBuffer assembleBuffer, final int datagramSize) {
         if (spliterator == null) {
-            return encodeObject(object, assembleBuffer);
+            return encodeObject(object, assembleBuffer, datagramSize);
         }
         else {
             final Collection<T> split = spliterator.split(object);
             return split.stream()
-                    .flatMap(t -> encodeObject(t, assembleBuffer).stream())
+                    .flatMap(t -> encodeObject(t, assembleBuffer, datagramSize).stream())
                     .collect(Collectors.toList());
         }
     }
 
-    private List<DataPacket> encodeObject(final T object, final MessageAssembleBuffer assembleBuffer) {
-        final List<DataPacket> packets = packageXCoder.encode(object);
+    private List<DataPacket> encodeObject(final T object, final MessageAssembleBuffer assembleBuffer, final int datagramSize) {
+        final List<DataPacket> packets = packageXCoder.encode(object, datagramSize);
         final boolean isMessage = packets.get(0).isMessage();
         if (isMessage) {
             final int messageId = assembleBuffer.nextMessageId();
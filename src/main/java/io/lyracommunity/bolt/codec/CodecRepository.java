@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt.codec;
 
+import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.packet.DataPacket;
 
 import java.util.Collection;
@@ -55,14 +56,30 @@ public class CodecRepository {
         if (!readyForDecode.isEmpty()) {
             final int classId = data.getClassID();
             final CodecChain<T> xCoder = getXCoder(classId);
-            return xCoder.decode(readyForDecode);
+            final T decoded = xCoder.decode(readyForDecode);
+            readyForDecode.forEach(DataPacket::release);
+            return decoded;
         }
         return null;
     }
 
     public <T> Collection<DataPacket> encode(final T object, final MessageAssembleBuffer assembleBuffer) throws NoSuchElementException {
+        return encode(object, assembleBuffer, Config.DEFAULT_DATAGRAM_SIZE);
+    }
+
+    /**
+     * Encode an object into data packets which each fit in a datagram of the given size.
+     *
+     * @param object         the object to encode.
+     * @param assembleBuffer the sending session's message buffer, which numbers messages.
+     * @param datagramSize   the sending session's datagram size, in bytes.
+     * @return the data packets.
+     * @throws NoSuchElementException if the object's class is not registered.
+     */
+    public <T> Collection<DataPacket> encode(final T object, final MessageAssembleBuffer assembleBuffer,
+                                             final int datagramSize) throws NoSuchElementException {
         final CodecChain<T> xCoder = (CodecChain<T>) getXCoder(object.getClass());
-        return xCoder.encode(object, assembleBuffer);
+        return xCoder.encode(object, assembleBuffer, datagramSize);
     }
 
     private <T> CodecChain<T> getXCoder(final Class<T> clazz) throws NoSuchElementException {
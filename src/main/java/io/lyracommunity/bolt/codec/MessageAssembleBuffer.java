@@ -1,6 +1,7 @@
 package io.lyracommunity.bolt.codec;
 
 import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
 import io.lyracommunity.bolt.packet.PacketUtil;
 import io.lyracommunity.bolt.util.SeqNum;
 
@@ -12,14 +13,37 @@ import java.util.*;
 public class MessageAssembleBuffer
 {
 
+    /** Most incomplete forward error corrected messages held, beyond which the oldest is dropped. */
+    static final int MAX_FEC_MESSAGES = 64;
+
     private volatile int messageId = 0;
 
     private Map<Integer, MessageChunks> messageMap = new HashMap<>();
 
+    private final Map<Integer, FecMessageChunks> fecMessageMap = new LinkedHashMap<Integer, FecMessageChunks>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, FecMessageChunks> eldest) {
+            if (size() <= MAX_FEC_MESSAGES) return false;
+            eldest.getValue().release();
+            return true;
+        }
+    };
+
+    /** Recently completed forward error corrected messages, whose surplus chunks are discarded. */
+    private final int[] completedFecMessages = new int[MAX_FEC_MESSAGES];
+    private int completedFecIndex;
+
+    public MessageAssembleBuffer() {
+        Arrays.fill(completedFecMessages, -1);
+    }
+
     public List<DataPacket> addChunk(final DataPacket dataPacket) {
         if (!dataPacket.isMessage()) {
             return Collections.singletonList(dataPacket);
         }
+        else if (dataPacket.isFec()) {
+            return addFecChunk(dataPacket);
+        }
         else {
             List<DataPacket> result = getOrCreate(dataPacket.getMessageId()).addChunk(dataPacket);
             if (!result.isEmpty()) messageMap.remove(dataPacket.getMessageId());  // remove if complete.
@@ -27,6 +51,32 @@ public class MessageAssembleBuffer
         }
     }
 
+    private List<DataPacket> addFecChunk(final DataPacket dataPacket) {
+        final int id = dataPacket.getMessageId();
+        for (int completed : completedFecMessages) {
+            if (completed == id) {
+                dataPacket.release();
+                return Collections.emptyList();
+            }
+        }
+        FecMessageChunks chunks = fecMessageMap.get(id);
+        if (chunks == null) {
+            if (!FecMessageChunks.isValidLayout(dataPacket)) {
+                dataPacket.release();
+                return Collections.emptyList();
+            }
+            chunks = new FecMessageChunks(dataPacket);
+            fecMessageMap.put(id, chunks);
+        }
+        final List<DataPacket> result = chunks.addChunk(dataPacket);
+        if (!result.isEmpty()) {
+            fecMessageMap.remove(id);
+            completedFecMessages[completedFecIndex] = id;
+            completedFecIndex = (completedFecIndex + 1) % completedFecMessages.length;
+        }
+        return result;
+    }
+
     private MessageChunks getOrCreate(final int messageId) {
         messageMap.putIfAbsent(messageId, new MessageChunks());
         return messageMap.get(messageId);
@@ -38,6 +88,9 @@ public class MessageAssembleBuffer
 
     public void clear() {
         messageMap.clear();
+        fecMessageMap.values().forEach(FecMessageChunks::release);
+        fecMessageMap.clear();
+        Arrays.fill(completedFecMessages, -1);
     }
 
     private static class MessageChunks {
@@ -55,4 +108,122 @@ public class MessageAssembleBuffer
         }
     }
 
+    /**
+     * Chunks of a forward error corrected message. Data chunks come in blocks, each
+     * followed by parity chunks, and once a block has as many chunks as data chunks,
+     * any missing data chunks of it are rebuilt.
+     * <p>
+     * Each parity chunk starts with the length of the message's final data chunk,
+     * which may be shorter than the rest.
+     */
+    private static class FecMessageChunks {
+        private final int          dataChunks;
+        private final int          blockSize;
+        private final int          parityChunks;
+        private final ReedSolomon  code;
+        private final DataPacket[] received;
+        private int                dataReceived;
+
+        private FecMessageChunks(final DataPacket first) {
+            this.dataChunks = first.getMessageDataChunkCount();
+            this.blockSize = first.getFecDataChunks();
+            this.parityChunks = first.getFecParityChunks();
+            this.code = ReedSolomon.of(blockSize, parityChunks);
+            final int blocks = (dataChunks + blockSize - 1) / blockSize;
+            this.received = new DataPacket[dataChunks + blocks * parityChunks];
+        }
+
+        private static boolean isValidLayout(final DataPacket packet) {
+            return packet.getMessageDataChunkCount() > 0 && packet.getFecDataChunks() > 0 && packet.getFecParityChunks() > 0
+                    && packet.getFecDataChunks() + packet.getFecParityChunks() <= ReedSolomon.MAX_SHARDS;
+        }
+
+        private List<DataPacket> addChunk(final DataPacket packet) {
+            final int chunkNumber = packet.getMessageChunkNumber();
+            if (chunkNumber >= received.length || received[chunkNumber] != null) {
+                packet.release();
+                return Collections.emptyList();
+            }
+            received[chunkNumber] = packet;
+            if (chunkNumber < dataChunks) dataReceived++;
+            if (dataReceived < dataChunks) {
+                reconstruct((chunkNumber < dataChunks)
+                        ? chunkNumber / blockSize
+                        : (chunkNumber - dataChunks) / parityChunks, packet);
+            }
+            if (dataReceived < dataChunks) return Collections.emptyList();
+
+            for (int i = dataChunks; i < received.length; i++) {
+                if (received[i] != null) received[i].release();
+            }
+            return new ArrayList<>(Arrays.asList(received).subList(0, dataChunks));
+        }
+
+        /**
+         * Rebuild the missing data chunks of a block, if enough of its chunks have arrived.
+         */
+        private void reconstruct(final int block, final DataPacket template) {
+            final int first = block * blockSize;
+            final int count = Math.min(blockSize, dataChunks - first);
+            final int firstParity = dataChunks + block * parityChunks;
+            int present = 0;
+            int missing = 0;
+            DataPacket parityPacket = null;
+            for (int i = 0; i < count; i++) {
+                if (received[first + i] != null) present++;
+                else missing++;
+            }
+            for (int j = 0; j < parityChunks; j++) {
+                if (received[firstParity + j] != null) {
+                    present++;
+                    parityPacket = received[firstParity + j];
+                }
+            }
+            if (missing == 0 || present < count) return;
+
+            final byte[] parityData = parityPacket.getData();
+            final int shardLength = parityData.length - PacketCodec.FEC_LENGTH_BYTES;
+            final int finalChunkLength = ((parityData[0] & 0xFF) << 8) | (parityData[1] & 0xFF);
+
+            final byte[][] data = new byte[count][];
+            final boolean[] dataPresent = new boolean[count];
+            final byte[][] parity = new byte[parityChunks][];
+            final boolean[] parityPresent = new boolean[parityChunks];
+            for (int i = 0; i < count; i++) {
+                final DataPacket p = received[first + i];
+                dataPresent[i] = (p != null);
+                data[i] = dataPresent[i] ? p.getData() : new byte[shardLength];
+            }
+            for (int j = 0; j < parityChunks; j++) {
+                final DataPacket p = received[firstParity + j];
+                parityPresent[j] = (p != null);
+                parity[j] = parityPresent[j] ? p.getData() : null;
+            }
+            if (!code.reconstruct(data, dataPresent, count, parity, parityPresent,
+                    PacketCodec.FEC_LENGTH_BYTES, shardLength)) return;
+
+            for (int i = 0; i < count; i++) {
+                if (dataPresent[i]) continue;
+                final int chunkNumber = first + i;
+                final boolean last = (chunkNumber == dataChunks - 1);
+                final DataPacket rebuilt = new DataPacket();
+                rebuilt.setDelivery(DeliveryType.UNRELIABLE_FEC_MESSAGE);
+                rebuilt.setClassID(template.getClassID());
+                rebuilt.setMessageId(template.getMessageId());
+                rebuilt.setFec(dataChunks, blockSize, parityChunks);
+                rebuilt.setMessageChunkNumber(chunkNumber);
+                rebuilt.setFinalMessageChunk(last);
+                rebuilt.setData(last ? Arrays.copyOf(data[i], finalChunkLength) : data[i]);
+                received[chunkNumber] = rebuilt;
+                dataReceived++;
+            }
+        }
+
+        private void release() {
+            for (DataPacket p : received) {
+                if (p != null) p.release();
+            }
+        }
+    }
+
 }
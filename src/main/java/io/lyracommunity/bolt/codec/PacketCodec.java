@@ -15,21 +15,55 @@ import java.util.Objects;
  */
 public class PacketCodec<T> implements Codec<T, List<DataPacket>> {
 
-    // TODO consider changing 1400 to a variable MTU
-    private final int maxPacketSize = Config.DEFAULT_DATAGRAM_SIZE - DataPacket.MAX_HEADER_SIZE;
+    /**
+     * Default number of data chunks per block of a forward error corrected message.
+     */
+    public static final int DEFAULT_FEC_DATA_CHUNKS = 8;
+
+    /**
+     * Default number of parity chunks per block of a forward error corrected message.
+     */
+    public static final int DEFAULT_FEC_PARITY_CHUNKS = 2;
+
+    /**
+     * Bytes at the start of each parity chunk giving the length of the message's final data chunk.
+     */
+    static final int FEC_LENGTH_BYTES = 2;
 
     private final ObjectCodec<T> objectCodec;
 
     private DeliveryType deliveryType;
 
+    /** Parity code for forward error corrected delivery, otherwise null. */
+    private final ReedSolomon fecCode;
+
     public PacketCodec(final ObjectCodec<T> objectCodec) {
         this(objectCodec, DeliveryType.RELIABLE_ORDERED_MESSAGE);
     }
 
     public PacketCodec(final ObjectCodec<T> objectCodec, final DeliveryType deliveryType) {
+        this(objectCodec, deliveryType, DEFAULT_FEC_DATA_CHUNKS, DEFAULT_FEC_PARITY_CHUNKS);
+    }
+
+    /**
+     * Create a codec for {@link DeliveryType#UNRELIABLE_FEC_MESSAGE forward error corrected} delivery.
+     * Each message is split into blocks of data chunks, and each block is followed by parity chunks,
+     * from which the receiver can rebuild as many lost chunks of the block.
+     *
+     * @param objectCodec     the object codec.
+     * @param fecDataChunks   data chunks per block.
+     * @param fecParityChunks parity chunks per block.
+     */
+    public PacketCodec(final ObjectCodec<T> objectCodec, final int fecDataChunks, final int fecParityChunks) {
+        this(objectCodec, DeliveryType.UNRELIABLE_FEC_MESSAGE, fecDataChunks, fecParityChunks);
+    }
+
+    private PacketCodec(final ObjectCodec<T> objectCodec, final DeliveryType deliveryType,
+                        final int fecDataChunks, final int fecParityChunks) {
         Objects.requireNonNull(objectCodec);
         this.objectCodec = objectCodec;
         this.deliveryType = deliveryType;
+        this.fecCode = deliveryType.isFec() ? ReedSolomon.of(fecDataChunks, fecParityChunks) : null;
     }
 
     /**
@@ -52,7 +86,7 @@ public class PacketCodec<T> implements Codec<T, List<DataPacket>> {
             final byte[] bytes = new byte[byteCount];
             int destPos = 0;
             for (DataPacket p : data) {
-                System.arraycopy(p.getData(), 0, bytes, destPos, p.getDataLength());
+                p.copyDataTo(bytes, destPos);
                 destPos += p.getDataLength();
             }
 
@@ -62,14 +96,27 @@ public class PacketCodec<T> implements Codec<T, List<DataPacket>> {
     }
 
     /**
-     * Encodes an object into a series of data packets.
+     * Encodes an object into a series of data packets, each fitting in a datagram of the default size.
      *
      * @param object the object to encode.
      * @return a collection of data packets.
      */
     @Override
     public List<DataPacket> encode(final T object) throws BoltException {
+        return encode(object, Config.DEFAULT_DATAGRAM_SIZE);
+    }
+
+    /**
+     * Encodes an object into a series of data packets, each fitting in a datagram of the given size.
+     *
+     * @param object       the object to encode.
+     * @param datagramSize the datagram size of the session sending the object, in bytes.
+     * @return a collection of data packets.
+     */
+    public List<DataPacket> encode(final T object, final int datagramSize) throws BoltException {
+        final int maxPacketSize = datagramSize - DataPacket.MAX_HEADER_SIZE;
         final byte[] bytes = objectCodec.encode(object);
+        if (fecCode != null) return encodeWithParity(bytes, maxPacketSize);
         final int chunkCount = Math.max(1, (int) Math.ceil(bytes.length / (double) maxPacketSize));
         final DeliveryType computedDeliveryType = computeDeliveryType(chunkCount);
 
@@ -96,6 +143,56 @@ public class PacketCodec<T> implements Codec<T, List<DataPacket>> {
         return dataPackets;
     }
 
+    /**
+     * Split into data chunks, leaving room in each parity chunk for the final chunk's length,
+     * and follow them with the parity chunks of each block.
+     */
+    private List<DataPacket> encodeWithParity(final byte[] bytes, final int maxPacketSize) throws BoltException {
+        final int chunkSize = maxPacketSize - FEC_LENGTH_BYTES;
+        final int dataChunks = Math.max(1, (bytes.length + chunkSize - 1) / chunkSize);
+        final int blockSize = fecCode.getDataShards();
+        final int parityChunks = fecCode.getParityShards();
+        final int blocks = (dataChunks + blockSize - 1) / blockSize;
+        if (dataChunks + blocks * parityChunks - 1 > PacketUtil.MAX_MESSAGE_CHUNK_NUM) {
+            throw new BoltException("Object is too large to chunk. Actual chunk count: " + dataChunks);
+        }
+        final int finalChunkLength = bytes.length - (dataChunks - 1) * chunkSize;
+
+        final List<DataPacket> dataPackets = new ArrayList<>(dataChunks + blocks * parityChunks);
+        final byte[][] chunks = new byte[dataChunks][];
+        for (int i = 0; i < dataChunks; i++) {
+            final int byteOffset = i * chunkSize;
+            chunks[i] = new byte[Math.min(chunkSize, bytes.length - byteOffset)];
+            System.arraycopy(bytes, byteOffset, chunks[i], 0, chunks[i].length);
+            dataPackets.add(createFecPacket(chunks[i], i, dataChunks));
+        }
+        for (int b = 0; b < blocks; b++) {
+            final int first = b * blockSize;
+            final int count = Math.min(blockSize, dataChunks - first);
+            // Only the message's final chunk may be shorter than the rest.
+            final int shardLength = (count > 1) ? chunkSize : chunks[first].length;
+            final byte[][] parity = new byte[parityChunks][FEC_LENGTH_BYTES + shardLength];
+            fecCode.encode(chunks, first, count, parity, FEC_LENGTH_BYTES, shardLength);
+            for (int j = 0; j < parityChunks; j++) {
+                parity[j][0] = (byte) (finalChunkLength >> 8);
+                parity[j][1] = (byte) finalChunkLength;
+                dataPackets.add(createFecPacket(parity[j], dataChunks + b * parityChunks + j, dataChunks));
+            }
+        }
+        return dataPackets;
+    }
+
+    private DataPacket createFecPacket(final byte[] data, final int chunkNumber, final int dataChunks) {
+        final DataPacket packet = new DataPacket();
+        packet.setData(data);
+        packet.setDelivery(deliveryType);
+        packet.setClassID(objectCodec.getClassId());
+        packet.setMessageChunkNumber(chunkNumber);
+        packet.setFinalMessageChunk(chunkNumber == dataChunks - 1);
+        packet.setFec(dataChunks, fecCode.getDataShards(), fecCode.getParityShards());
+        return packet;
+    }
+
     private void validateEncoding(int chunkCount, DeliveryType computedDeliveryType) throws BoltException {
         if (chunkCount > PacketUtil.MAX_MESSAGE_CHUNK_NUM) {
             throw new BoltException("Object is too large to chunk. Actual chunk count: " + chunkCount);
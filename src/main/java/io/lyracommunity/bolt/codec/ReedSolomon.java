@@ -0,0 +1,222 @@
+package io.lyracommunity.bolt.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Systematic Reed-Solomon erasure code over GF(2^8).
+ * <p>
+ * Each parity shard is a combination of the data shards, byte by byte, with
+ * coefficients taken from a Cauchy matrix. Every square submatrix of a Cauchy
+ * matrix is invertible, so any lost data shards can be rebuilt from as many
+ * parity shards, together with the data shards which did arrive. Columns are
+ * scaled so that the first parity row is all ones, making a code with a single
+ * parity shard a plain XOR. A code built for N data shards also encodes fewer,
+ * using its first columns, which still form a Cauchy matrix.
+ * <p>
+ * Data shards may differ in length, and are treated as zero padded to the
+ * parity length. Multiplication uses a 64KB product table shared by all codes.
+ * Encoding allocates nothing. Instances are immutable and thread-safe.
+ */
+final class ReedSolomon {
+
+    /** Most data and parity shards in total. */
+    static final int MAX_SHARDS = 256;
+
+    private static final int POLYNOMIAL = 0x11D;
+
+    private static final int[]    EXP = new int[510];
+    private static final int[]    LOG = new int[256];
+    private static final byte[][] MUL = new byte[256][256];
+
+    private static final ConcurrentMap<Integer, ReedSolomon> CODES = new ConcurrentHashMap<>();
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = EXP[i + 255] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x > 0xFF) x ^= POLYNOMIAL;
+        }
+        for (int a = 1; a < 256; a++) {
+            for (int b = 1; b < 256; b++) MUL[a][b] = (byte) EXP[LOG[a] + LOG[b]];
+        }
+    }
+
+    private final int      dataShards;
+    private final int      parityShards;
+    /** Coefficient of each data shard, by parity shard. */
+    private final byte[][] coefficients;
+
+    private ReedSolomon(final int dataShards, final int parityShards) {
+        if (dataShards < 1 || parityShards < 1 || dataShards + parityShards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Invalid shard counts: " + dataShards + " data, " + parityShards + " parity");
+        }
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+        this.coefficients = new byte[parityShards][dataShards];
+        for (int i = 0; i < dataShards; i++) {
+            // Cauchy entry 1 / (x_j + y_i), with x_j = j and y_i = parityShards + i, all distinct.
+            final int scale = parityShards + i;
+            for (int j = 0; j < parityShards; j++) {
+                coefficients[j][i] = (byte) mul(inverse(j ^ (parityShards + i)), scale);
+            }
+        }
+    }
+
+    /**
+     * Get the code for the given shard counts, shared between callers.
+     *
+     * @param dataShards   most data shards encoded at once.
+     * @param parityShards number of parity shards.
+     * @return the code.
+     * @throws IllegalArgumentException if either count is below 1, or their total exceeds {@link #MAX_SHARDS}.
+     */
+    static ReedSolomon of(final int dataShards, final int parityShards) {
+        final ReedSolomon code = CODES.get((dataShards << 16) | parityShards);
+        if (code != null) return code;
+        final ReedSolomon created = new ReedSolomon(dataShards, parityShards);
+        CODES.putIfAbsent((dataShards << 16) | parityShards, created);
+        return created;
+    }
+
+    int getDataShards() {
+        return dataShards;
+    }
+
+    int getParityShards() {
+        return parityShards;
+    }
+
+    /**
+     * Compute the parity shards of some data shards.
+     *
+     * @param data   data shards.
+     * @param first  index of the first data shard to encode.
+     * @param count  number of data shards to encode, at most the data shard count of the code.
+     * @param parity parity shards to write, one per parity shard of the code.
+     * @param offset where to start writing in each parity shard.
+     * @param length parity length, at least that of the longest data shard.
+     */
+    void encode(final byte[][] data, final int first, final int count,
+                final byte[][] parity, final int offset, final int length) {
+        for (int j = 0; j < parityShards; j++) {
+            final byte[] out = parity[j];
+            for (int p = offset, end = offset + length; p < end; p++) out[p] = 0;
+            for (int i = 0; i < count; i++) {
+                addMultiple(out, offset, data[first + i], coefficients[j][i]);
+            }
+        }
+    }
+
+    /**
+     * Rebuild missing data shards from the data and parity shards present.
+     *
+     * @param data          data shards, of which those missing are overwritten. Each must be
+     *                      at least {@code length} long if missing.
+     * @param dataPresent   which data shards are present.
+     * @param count         number of data shards.
+     * @param parity        parity shards.
+     * @param parityPresent which parity shards are present.
+     * @param offset        where the parity starts in each parity shard.
+     * @param length        parity length.
+     * @return true if all missing data shards were rebuilt, or false if too few shards are present.
+     */
+    boolean reconstruct(final byte[][] data, final boolean[] dataPresent, final int count,
+                        final byte[][] parity, final boolean[] parityPresent, final int offset, final int length) {
+        int missingCount = 0;
+        for (int i = 0; i < count; i++) if (!dataPresent[i]) missingCount++;
+        if (missingCount == 0) return true;
+
+        final int[] missing = new int[missingCount];
+        final int[] rows = new int[missingCount];
+        for (int i = 0, m = 0; i < count; i++) if (!dataPresent[i]) missing[m++] = i;
+        for (int j = 0, r = 0; r < missingCount; j++) {
+            if (j == parityShards) return false;
+            if (parityPresent[j]) rows[r++] = j;
+        }
+
+        // Subtract the data present from each parity used, leaving the missing data's share.
+        final byte[][] syndromes = new byte[missingCount][length];
+        for (int r = 0; r < missingCount; r++) {
+            System.arraycopy(parity[rows[r]], offset, syndromes[r], 0, length);
+            for (int i = 0; i < count; i++) {
+                if (dataPresent[i]) addMultiple(syndromes[r], 0, data[i], coefficients[rows[r]][i]);
+            }
+        }
+
+        final int[][] inverse = invert(rows, missing);
+        for (int m = 0; m < missingCount; m++) {
+            final byte[] out = data[missing[m]];
+            for (int p = 0; p < length; p++) out[p] = 0;
+            for (int r = 0; r < missingCount; r++) addMultiple(out, 0, syndromes[r], (byte) inverse[m][r]);
+        }
+        return true;
+    }
+
+    /**
+     * Invert the square submatrix of coefficients for the given parity rows and data columns,
+     * by Gauss-Jordan elimination.
+     */
+    private int[][] invert(final int[] rows, final int[] columns) {
+        final int n = rows.length;
+        final int[][] a = new int[n][n];
+        final int[][] inv = new int[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) a[r][c] = coefficients[rows[r]][columns[c]] & 0xFF;
+            inv[r][r] = 1;
+        }
+        for (int c = 0; c < n; c++) {
+            int pivot = c;
+            while (a[pivot][c] == 0) pivot++;
+            swap(a, c, pivot);
+            swap(inv, c, pivot);
+            final int scale = inverse(a[c][c]);
+            for (int k = 0; k < n; k++) {
+                a[c][k] = mul(a[c][k], scale);
+                inv[c][k] = mul(inv[c][k], scale);
+            }
+            for (int r = 0; r < n; r++) {
+                final int factor = a[r][c];
+                if (r == c || factor == 0) continue;
+                for (int k = 0; k < n; k++) {
+                    a[r][k] ^= mul(factor, a[c][k]);
+                    inv[r][k] ^= mul(factor, inv[c][k]);
+                }
+            }
+        }
+        return inv;
+    }
+
+    private static void swap(final int[][] m, final int i, final int j) {
+        final int[] t = m[i];
+        m[i] = m[j];
+        m[j] = t;
+    }
+
+    /**
+     * Add {@code coefficient * src} to {@code dest} from the offset, byte by byte, stopping at
+     * the end of either array.
+     */
+    private static void addMultiple(final byte[] dest, final int offset, final byte[] src, final byte coefficient) {
+        final int length = Math.min(src.length, dest.length - offset);
+        if (coefficient == 1) {
+            for (int p = 0; p < length; p++) dest[offset + p] ^= src[p];
+        }
+        else if (coefficient != 0) {
+            final byte[] row = MUL[coefficient & 0xFF];
+            for (int p = 0; p < length; p++) dest[offset + p] ^= row[src[p] & 0xFF];
+        }
+    }
+
+    static int mul(final int a, final int b) {
+        return MUL[a][b] & 0xFF;
+    }
+
+    static int inverse(final int a) {
+        if (a == 0) throw new ArithmeticException("Zero has no inverse");
+        return EXP[255 - LOG[a]];
+    }
+
+}
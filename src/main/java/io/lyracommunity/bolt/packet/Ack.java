@@ -3,7 +3,8 @@ package io.lyracommunity.bolt.packet;
 import io.lyracommunity.bolt.receiver.Receiver;
 import io.lyracommunity.bolt.sender.Sender;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -22,6 +23,8 @@ import java.util.Objects;
  * <li> 32 bits: Available buffer size (in bytes)
  * <li> 32 bits: Packets receiving rate (in number of packets per second)
  * <li> 32 bits: Estimated link capacity (in number of packets per second)
+ * <li> Pairs of 32 bits: SACK blocks, the first and last sequence numbers (inclusive) of
+ * ranges received beyond the ACK number
  * </ol>
  */
 public class Ack extends ControlPacket {
@@ -47,12 +50,16 @@ public class Ack extends ControlPacket {
     /** Estimated link capacity in number of packets per second */
     private long estimatedLinkCapacity;
 
+    /** First and last sequence numbers of each SACK block, inclusive, in pairs. */
+    private int[] sackBlocks = new int[0];
+    private int   sackBlockCount;
+
     Ack() {
         super(PacketType.ACK);
     }
 
     Ack(int ackSeqNo, byte[] controlInformation) {
-        super(PacketType.ACK, controlInformation);
+        super(PacketType.ACK);
         this.ackSequenceNumber = ackSeqNo;
         decodeControlInformation(controlInformation);
     }
@@ -94,6 +101,13 @@ public class Ack extends ControlPacket {
             pktArrivalSpeed = PacketUtil.decode(data, 16);
             estimatedLinkCapacity = PacketUtil.decode(data, 20);
         }
+        if (data.length > 24) {
+            sackBlockCount = (data.length - 24) / 8;
+            sackBlocks = new int[sackBlockCount * 2];
+            for (int i = 0; i < sackBlocks.length; i++) {
+                sackBlocks[i] = PacketUtil.decodeInt(data, 24 + i * 4);
+            }
+        }
     }
 
     @Override
@@ -174,20 +188,60 @@ public class Ack extends ControlPacket {
         this.estimatedLinkCapacity = estimatedLinkCapacity;
     }
 
+    /**
+     * Add a selective acknowledgement (SACK) block: a range of sequence numbers received
+     * beyond the ACK number. Blocks should be added in ascending order.
+     *
+     * @param first first received sequence number, inclusive.
+     * @param last  last received sequence number, inclusive.
+     */
+    public void addSackBlock(final int first, final int last) {
+        if (sackBlockCount * 2 == sackBlocks.length) {
+            sackBlocks = Arrays.copyOf(sackBlocks, Math.max(8, sackBlocks.length * 2));
+        }
+        sackBlocks[sackBlockCount * 2] = first;
+        sackBlocks[sackBlockCount * 2 + 1] = last;
+        sackBlockCount++;
+    }
+
+    /**
+     * @return the number of SACK blocks.
+     */
+    public int getSackBlockCount() {
+        return sackBlockCount;
+    }
+
+    /**
+     * @param index the block index, from zero.
+     * @return the first sequence number received in the block, inclusive.
+     */
+    public int getSackBlockFirst(final int index) {
+        return sackBlocks[index * 2];
+    }
+
+    /**
+     * @param index the block index, from zero.
+     * @return the last sequence number received in the block, inclusive.
+     */
+    public int getSackBlockLast(final int index) {
+        return sackBlocks[index * 2 + 1];
+    }
+
+    @Override
+    int getControlInformationLength() {
+        return 24 + sackBlockCount * 8;
+    }
+
     @Override
-    public byte[] encodeControlInformation() {
-        try {
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            bos.write(PacketUtil.encode(ackNumber));
-            bos.write(PacketUtil.encode(roundTripTime));
-            bos.write(PacketUtil.encode(roundTripTimeVariance));
-            bos.write(PacketUtil.encode(bufferSize));
-            bos.write(PacketUtil.encode(pktArrivalSpeed));
-            bos.write(PacketUtil.encode(estimatedLinkCapacity));
-            return bos.toByteArray();
-        } catch (Exception e) {
-            // can't happen
-            return null;
+    void encodeControlInformation(final ByteBuffer buffer) {
+        buffer.putInt(ackNumber);
+        buffer.putInt((int) roundTripTime);
+        buffer.putInt((int) roundTripTimeVariance);
+        buffer.putInt((int) bufferSize);
+        buffer.putInt((int) pktArrivalSpeed);
+        buffer.putInt((int) estimatedLinkCapacity);
+        for (int i = 0; i < sackBlockCount * 2; i++) {
+            buffer.putInt(sackBlocks[i]);
         }
     }
 
@@ -203,13 +257,15 @@ public class Ack extends ControlPacket {
                 roundTripTimeVariance == ack.roundTripTimeVariance &&
                 bufferSize == ack.bufferSize &&
                 pktArrivalSpeed == ack.pktArrivalSpeed &&
-                estimatedLinkCapacity == ack.estimatedLinkCapacity;
+                estimatedLinkCapacity == ack.estimatedLinkCapacity &&
+                Arrays.equals(Arrays.copyOf(sackBlocks, sackBlockCount * 2),
+                        Arrays.copyOf(ack.sackBlocks, ack.sackBlockCount * 2));
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), ackSequenceNumber, ackNumber, roundTripTime, roundTripTimeVariance,
-                bufferSize, pktArrivalSpeed, estimatedLinkCapacity);
+                bufferSize, pktArrivalSpeed, estimatedLinkCapacity, sackBlockCount);
     }
 
     @Override
@@ -222,6 +278,7 @@ public class Ack extends ControlPacket {
                 ", bufferSize=" + bufferSize +
                 ", pktArrivalSpeed=" + pktArrivalSpeed +
                 ", estimatedLinkCapacity=" + estimatedLinkCapacity +
+                ", sackBlocks=" + sackBlockCount +
                 '}';
     }
 
@@ -2,6 +2,8 @@ package io.lyracommunity.bolt.packet;
 
 import io.lyracommunity.bolt.sender.Sender;
 
+import java.nio.ByteBuffer;
+
 /**
  * Acknowledgement of Acknowledgement (ACK2) is sent by the {@link Sender}
  * as immediate reply to an {@link Ack}.
@@ -25,7 +27,7 @@ public class Ack2 extends ControlPacket {
     }
 
     Ack2(long ackSeqNo, byte[] controlInformation) {
-        super(PacketType.ACK2, controlInformation);
+        super(PacketType.ACK2);
         this.ackSequenceNumber = ackSeqNo;
         decode(controlInformation);
     }
@@ -46,8 +48,13 @@ public class Ack2 extends ControlPacket {
     }
 
     @Override
-    public byte[] encodeControlInformation() {
-        return PacketUtil.encode(ackSequenceNumber);
+    int getControlInformationLength() {
+        return 4;
+    }
+
+    @Override
+    void encodeControlInformation(final ByteBuffer buffer) {
+        buffer.putInt((int) ackSequenceNumber);
     }
 }
 
@@ -3,6 +3,8 @@ package io.lyracommunity.bolt.packet;
 
 import io.lyracommunity.bolt.util.SeqNum;
 
+import java.nio.ByteBuffer;
+
 public interface BoltPacket extends Comparable<BoltPacket> {
 
     /**
@@ -30,6 +32,15 @@ public interface BoltPacket extends Comparable<BoltPacket> {
      */
     byte[] getEncoded();
 
+    /**
+     * Write the binary encoded form of the packet into the given buffer, starting at its
+     * position. The position is advanced by {@link #getLength()} bytes.
+     *
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer does not have enough space remaining.
+     */
+    void encodeInto(ByteBuffer buffer);
+
     /**
      * Get the packet sequence number.
      */
@@ -1,14 +1,15 @@
 package io.lyracommunity.bolt.packet;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
  * Protocol Connection Handshake
  * <p>
- * Additional Info: Undefined
+ * Additional Info: bit 0 set to ask for, or agree to, wide sequence numbers; bit 1 set to ask
+ * for, or agree to, background transfer
  * <p>
  * Control Info:
  * <ol>
@@ -38,6 +39,10 @@ public class ConnectionHandshake extends ControlPacket {
 
     private static final long BOLT_VERSION = 1;
 
+    private static final int WIDE_SEQ_NUMBERS_FLAG = 1;
+
+    private static final int BACKGROUND_TRANSFER_FLAG = 2;
+
 
     private long boltVersion;
     private int initialSeqNo = 0;
@@ -52,6 +57,10 @@ public class ConnectionHandshake extends ControlPacket {
 
     private long cookie = 0;
 
+    private boolean wideSeqNumbers;
+
+    private boolean backgroundTransfer;
+
     // Address of the UDP socket
     private InetAddress address;
 
@@ -59,8 +68,10 @@ public class ConnectionHandshake extends ControlPacket {
         super(PacketType.HANDSHAKE);
     }
 
-    ConnectionHandshake(byte[] controlInformation) throws IOException {
-        super(PacketType.HANDSHAKE, controlInformation);
+    ConnectionHandshake(int additionalInfo, byte[] controlInformation) throws IOException {
+        super(PacketType.HANDSHAKE);
+        this.wideSeqNumbers = (additionalInfo & WIDE_SEQ_NUMBERS_FLAG) != 0;
+        this.backgroundTransfer = (additionalInfo & BACKGROUND_TRANSFER_FLAG) != 0;
         decode(controlInformation);
     }
 
@@ -150,6 +161,35 @@ public class ConnectionHandshake extends ControlPacket {
         return address;
     }
 
+    /**
+     * @return true if the sender asks for wide sequence numbers, or as the server, agrees to them.
+     */
+    public boolean isWideSeqNumbers() {
+        return wideSeqNumbers;
+    }
+
+    public ConnectionHandshake setWideSeqNumbers(final boolean wideSeqNumbers) {
+        this.wideSeqNumbers = wideSeqNumbers;
+        return this;
+    }
+
+    /**
+     * @return true if the sender asks for background transfer, or as the server, agrees to it.
+     */
+    public boolean isBackgroundTransfer() {
+        return backgroundTransfer;
+    }
+
+    public ConnectionHandshake setBackgroundTransfer(final boolean backgroundTransfer) {
+        this.backgroundTransfer = backgroundTransfer;
+        return this;
+    }
+
+    @Override
+    protected long getAdditionalInfo() {
+        return (wideSeqNumbers ? WIDE_SEQ_NUMBERS_FLAG : 0) | (backgroundTransfer ? BACKGROUND_TRANSFER_FLAG : 0);
+    }
+
     protected void decode(final byte[] data) throws IOException {
         boltVersion = PacketUtil.decode(data, 0);
         initialSeqNo = PacketUtil.decodeInt(data, 4);
@@ -163,23 +203,23 @@ public class ConnectionHandshake extends ControlPacket {
     }
 
     @Override
-    public byte[] encodeControlInformation() {
-        try {
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream(44);
-            bos.write(PacketUtil.encode(boltVersion));
-            bos.write(PacketUtil.encode(initialSeqNo));
-            bos.write(PacketUtil.encode(packetSize));
-            bos.write(PacketUtil.encode(maxFlowWndSize));
-            bos.write(PacketUtil.encode(handshakeType));
-            bos.write(PacketUtil.encode(sessionID));
-            bos.write(PacketUtil.encode(cookie));
-            bos.write(PacketUtil.encode(address));
-            return bos.toByteArray();
-        }
-        catch (Exception e) {
-            // can't happen
-            return null;
-        }
+    int getControlInformationLength() {
+        return 44;
+    }
+
+    @Override
+    void encodeControlInformation(final ByteBuffer buffer) {
+        buffer.putInt((int) boltVersion);
+        buffer.putInt(initialSeqNo);
+        buffer.putInt((int) packetSize);
+        buffer.putInt((int) maxFlowWndSize);
+        buffer.putInt((int) handshakeType);
+        buffer.putInt(sessionID);
+        buffer.putInt((int) cookie);
+        // Address is encoded into 128 bits.
+        final byte[] add = address.getAddress();
+        buffer.put(add);
+        for (int i = add.length; i < 16; i++) buffer.put((byte) 0);
     }
 
     @Override
@@ -198,13 +238,16 @@ public class ConnectionHandshake extends ControlPacket {
                 handshakeType == that.handshakeType &&
                 sessionID == that.sessionID &&
                 cookie == that.cookie &&
+                wideSeqNumbers == that.wideSeqNumbers &&
+                backgroundTransfer == that.backgroundTransfer &&
                 Objects.equals(address, that.address);
     }
 
     @Override
     public int hashCode() {
         return Objects
-                .hash(super.hashCode(), boltVersion, initialSeqNo, packetSize, maxFlowWndSize, handshakeType, sessionID, cookie, address);
+                .hash(super.hashCode(), boltVersion, initialSeqNo, packetSize, maxFlowWndSize, handshakeType, sessionID, cookie,
+                        wideSeqNumbers, backgroundTransfer, address);
     }
 
     public String toString() {
@@ -215,6 +258,12 @@ public class ConnectionHandshake extends ControlPacket {
         sb.append(", initialSeqNo=").append(initialSeqNo);
         sb.append(", packetSize=").append(packetSize);
         sb.append(", maxFlowWndSize=").append(maxFlowWndSize);
+        if (wideSeqNumbers) {
+            sb.append(", wideSeqNumbers");
+        }
+        if (backgroundTransfer) {
+            sb.append(", backgroundTransfer");
+        }
         sb.append(", destSocketID=").append(destinationID);
         if (cookie > 0) {
             sb.append(", cookie=").append(cookie);
@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt.packet;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -35,7 +36,7 @@ import java.util.Objects;
  * header. The ACK sequence number ranges from 0 to (2^31 - 1).
  * <p>
  * TYPE 0x0:  Protocol Connection Handshake
- * Additional Info: Undefined
+ * Additional Info: Bit 0 set for wide sequence numbers
  * Control Info:
  * 1) 32 bits: Bolt version
  * 2) 32 bits: Socket Type (STREAM or DGRAM)
@@ -66,7 +67,7 @@ import java.util.Objects;
  * per second)
  * <p>
  * TYPE 0x3:  Negative Acknowledgement (NAK)
- * Additional Info: Undefined
+ * Additional Info: Bit 0 set for wide sequence numbers
  * Control Info:
  * 1) 32 bits integer array of compressed loss information
  * (see section 3.9).
@@ -87,6 +88,10 @@ import java.util.Objects;
  * 1) 32 bits: First sequence number in the message
  * 2) 32 bits: Last sequence number in the message
  * <p>
+ * TYPE 0x6 (Bolt):  Path MTU Probe
+ * Additional Info: Probed datagram size, in bytes
+ * Control Info: Padding up to the probed size, or none in the reply
+ * <p>
  * TYPE 0x7FFF: Explained by bits 16 - 31, reserved for user defined
  * Control Packet
  * <p>
@@ -95,22 +100,14 @@ import java.util.Objects;
  */
 public abstract class ControlPacket implements BoltPacket {
 
-    private static final int CONTROL_HEADER_LENGTH = 12;
+    static final int CONTROL_HEADER_LENGTH = 12;
 
     int controlPacketType;
 
     int destinationID;
 
-    private int dataLength;
-
     ControlPacket(final PacketType controlPacketType) {
         this.controlPacketType = controlPacketType.getTypeId();
-        this.dataLength = 0;
-    }
-
-    ControlPacket(final PacketType controlPacketType, final byte[] controlData) {
-        this.controlPacketType = controlPacketType.getTypeId();
-        this.dataLength = controlData.length;
     }
 
     @Override
@@ -127,19 +124,6 @@ public abstract class ControlPacket implements BoltPacket {
     }
 
 
-    /**
-     * Computes the control packet header.
-     *
-     * @return the encoded header byte array.
-     */
-    byte[] getHeader() {
-        byte[] res = new byte[CONTROL_HEADER_LENGTH];
-        System.arraycopy(PacketUtil.encodeControlPacketType(controlPacketType), 0, res, 0, 4);
-        System.arraycopy(PacketUtil.encode(getAdditionalInfo()), 0, res, 4, 4);
-        System.arraycopy(PacketUtil.encode(destinationID), 0, res, 8, 4);
-        return res;
-    }
-
     /**
      * this method gets the "additional info" for this type of control packet
      */
@@ -149,30 +133,54 @@ public abstract class ControlPacket implements BoltPacket {
 
     @Override
     public int getLength() {
-        return CONTROL_HEADER_LENGTH + dataLength;
+        return CONTROL_HEADER_LENGTH + getControlInformationLength();
     }
 
     /**
-     * This method builds the control information from the control parameters.
+     * @return the length of the encoded control information, in bytes.
+     */
+    int getControlInformationLength() {
+        return 0;
+    }
+
+    /**
+     * Write the control information, built from the control parameters, into the buffer.
      *
-     * @return the encoded control information.
+     * @param buffer the buffer to write to.
      */
-    public abstract byte[] encodeControlInformation();
+    void encodeControlInformation(final ByteBuffer buffer) {
+    }
 
     /**
      * Complete header + ControlInformation packet for transmission.
      */
     public byte[] getEncoded() {
-        final byte[] header = getHeader();
-        final byte[] controlInfo = encodeControlInformation();
-        final byte[] result = controlInfo != null ?
-                new byte[header.length + controlInfo.length] :
-                new byte[header.length];
-        System.arraycopy(header, 0, result, 0, header.length);
-        if (controlInfo != null) {
-            System.arraycopy(controlInfo, 0, result, header.length, controlInfo.length);
-        }
-        return result;
+        final ByteBuffer result = ByteBuffer.allocate(getLength());
+        encodeInto(result);
+        return result.array();
+    }
+
+    @Override
+    public void encodeInto(final ByteBuffer buffer) {
+        encodeHeader(buffer);
+        encodeControlInformation(buffer);
+    }
+
+    /**
+     * Computes the control packet header.
+     *
+     * @return the encoded header byte array.
+     */
+    byte[] getHeader() {
+        final ByteBuffer header = ByteBuffer.allocate(CONTROL_HEADER_LENGTH);
+        encodeHeader(header);
+        return header.array();
+    }
+
+    private void encodeHeader(final ByteBuffer buffer) {
+        buffer.putInt(0x80000000 | (controlPacketType & 0xFF) << 16);
+        buffer.putInt((int) getAdditionalInfo());
+        buffer.putInt(destinationID);
     }
 
     @Override
@@ -1,7 +1,9 @@
 package io.lyracommunity.bolt.packet;
 
+import io.lyracommunity.bolt.util.ByteBufferPool;
 import io.lyracommunity.bolt.util.SeqNum;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -12,7 +14,7 @@ import java.util.Objects;
  * 0                   1                   2                   3
  * 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
  * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
- * |0| DLV |              Packet Sequence Number                   |
+ * |0| DLV |W|             Packet Sequence Number                  |
  * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
  * |     Destination Socket ID     |            Class ID           |
  * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
@@ -20,15 +22,19 @@ import java.util.Objects;
  * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
  * |F|    Message Chunk Number     |           Message ID          |
  * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |   Message Data Chunk Count    |  FEC Data     |  FEC Parity   |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
  * </pre>
  * The data packet header starts with 0.
  * <p>
  * DLV signifies the delivery type. There are 3 bits allocated to this.
  * <p>
- * Packet sequence number uses the following 29 bits after the flag bits.
+ * W flags wide sequence numbers, agreed by both peers during the handshake.
+ * <p>
+ * Packet sequence number uses the following 27 bits after the flag bits.
  * Bolt uses packet-based sequencing, i.e., the sequence number is increased
  * by 1 for each sent data packet in the order of packet sending. Sequence
- * number is wrapped after it is increased to the maximum number (2^29 - 1).
+ * number is wrapped after it is increased to the maximum number (2^27 - 1).
  * <p>
  * The 32 bit checksum enhances the 16-bit checksum in the UDP datagram
  * header. This widens the theoretical collision to one in every 2^48 =&gt;
@@ -49,18 +55,36 @@ import java.util.Objects;
  * if the O flag is set to 1. The packet should be received and processed in
  * this order.
  * <p>
+ * With the W flag set, the reliability and order numbers are each 32-bit fields,
+ * holding 30-bit sequence numbers.
+ * <p>
  * The next 32-bit field in the header is for the messaging. This field only
  * exists if the M header flag is set to 1. The first bit "F" flags whether
  * the packet is the last message chunk (1), or not (0).
  * The Message Chunk Number is the position of this packet in the message.
  * The Message ID uniquely identifies this message from others.
+ * <p>
+ * The last 32-bit field only exists for forward error corrected delivery. It
+ * holds the number of data chunks in the message, and the number of data and
+ * parity chunks in each block of the message. Data chunks are numbered from 0,
+ * and the parity chunks of each block follow all the data chunks.
  */
 public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
 
-    public static final int MAX_HEADER_SIZE = 8 + 2 + 2 + 4;  // Base + relSeqNum + orderSeqNum + messaging
+    public static final int MAX_HEADER_SIZE = 8 + 4 + 4 + 4;  // Base + wide relSeqNum + wide orderSeqNum + messaging
+
+    private static final int WIDE_FLAG = 1 << 27;
 
     private byte[] data;
 
+    /** Payload as a view of a received datagram buffer, when decoded in place. */
+    private ByteBuffer payload;
+
+    /** The received datagram buffer backing the payload, returned to its pool on release. */
+    private ByteBuffer pooledBuffer;
+
+    private ByteBufferPool pool;
+
     private DeliveryType delivery;
 
     private int packetSeqNumber;
@@ -79,6 +103,14 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
 
     private int reliabilitySeqNumber;
 
+    private boolean wideSeqNumbers;
+
+    private int messageDataChunkCount;
+
+    private int fecDataChunks;
+
+    private int fecParityChunks;
+
 
     public DataPacket() {
     }
@@ -93,59 +125,131 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
     }
 
     public DataPacket(byte[] encodedData, int length) {
-        decode(encodedData, length);
+        final int headerLength = decodeHeader(ByteBuffer.wrap(encodedData, 0, length));
+        final int dataLength = length - headerLength;
+        data = new byte[dataLength];
+        System.arraycopy(encodedData, headerLength, data, 0, dataLength);
     }
 
-    private void decode(final byte[] encodedData, final int length) {
-        byte deliveryType = (byte) PacketUtil.decodeInt(encodedData, 0, 28, 31);
-        delivery = DeliveryType.fromId(deliveryType);
-
-        packetSeqNumber = PacketUtil.decodeInt(encodedData, 0) & SeqNum.MAX_PACKET_SEQ_NUM;
-        destinationID = PacketUtil.decodeInt(encodedData, 4, 16, 32);
-        classID = PacketUtil.decodeInt(encodedData, 4, 0, 16);
+    /**
+     * Create a DataPacket from a received datagram without copying it. The header is decoded
+     * in place and the payload is kept as a slice of the buffer, which is handed back to the
+     * pool on {@link #release()}.
+     *
+     * @param encoded buffer positioned at the start of the packet, limited to its end.
+     * @param pool    the pool that owns the buffer.
+     */
+    DataPacket(final ByteBuffer encoded, final ByteBufferPool pool) {
+        final int headerLength = decodeHeader(encoded);
+        final ByteBuffer view = encoded.duplicate();
+        view.position(encoded.position() + headerLength);
+        this.payload = view.slice();
+        this.pooledBuffer = encoded;
+        this.pool = pool;
+    }
 
-        final int headerLength = DataPacket.computeHeaderLength(delivery);
+    /**
+     * Decode the header fields, starting at the buffer's current position.
+     *
+     * @return the length of the decoded header.
+     */
+    private int decodeHeader(final ByteBuffer encoded) {
+        final int start = encoded.position();
+        final int flagsAndSeqNum = encoded.getInt(start);
+        delivery = DeliveryType.fromId((byte) ((flagsAndSeqNum >> 28) & 0x7));
+        packetSeqNumber = flagsAndSeqNum & SeqNum.MAX_PACKET_SEQ_NUM;
+        wideSeqNumbers = (flagsAndSeqNum & WIDE_FLAG) != 0;
+
+        final int destAndClass = encoded.getInt(start + 4);
+        destinationID = (destAndClass >> 16) & 0xFFFF;
+        classID = destAndClass & 0xFFFF;
+
+        final int seqNumLength = wideSeqNumbers ? 4 : 2;
         if (delivery.isReliable()) {
-            reliabilitySeqNumber = PacketUtil.decodeShort(encodedData, 8);
+            reliabilitySeqNumber = wideSeqNumbers
+                    ? encoded.getInt(start + 8) & SeqNum.MAX_SEQ_NUM_WIDE
+                    : encoded.getShort(start + 8) & 0xFFFF;
         }
         if (delivery.isOrdered()) {
-            orderSeqNumber = PacketUtil.decodeShort(encodedData, 10);
+            orderSeqNumber = wideSeqNumbers
+                    ? encoded.getInt(start + 8 + seqNumLength) & SeqNum.MAX_SEQ_NUM_WIDE
+                    : encoded.getShort(start + 8 + seqNumLength) & 0xFFFF;
         }
         // If is message.
+        final int messageOffset = start + 8 + (delivery.isReliable() ? seqNumLength : 0) + (delivery.isOrdered() ? seqNumLength : 0);
         if (delivery.isMessage()) {
-            final int headerPos = delivery.isOrdered() ? 12 : 10;
-            finalMessageChunk = PacketUtil.isBitSet(encodedData[headerPos], 7);
-            messageChunkNumber = PacketUtil.decodeInt(encodedData, headerPos, 16, 31);
-            messageId = PacketUtil.decodeInt(encodedData, headerPos, 0, 16);
+            final int messageBits = encoded.getInt(messageOffset);
+            finalMessageChunk = PacketUtil.isBitSet(messageBits, 31);
+            messageChunkNumber = (messageBits >> 16) & PacketUtil.MAX_MESSAGE_CHUNK_NUM;
+            messageId = messageBits & PacketUtil.MAX_MESSAGE_ID;
         }
-
-        final int dataLength = length - headerLength;
-        data = new byte[dataLength];
-        System.arraycopy(encodedData, headerLength, data, 0, dataLength);
+        if (delivery.isFec()) {
+            final int fecBits = encoded.getInt(messageOffset + 4);
+            messageDataChunkCount = (fecBits >>> 16) & 0xFFFF;
+            fecDataChunks = (fecBits >> 8) & 0xFF;
+            fecParityChunks = fecBits & 0xFF;
+        }
+        return DataPacket.computeHeaderLength(delivery, wideSeqNumbers);
     }
 
-    static int computeHeaderLength(final DeliveryType deliveryType) {
+    static int computeHeaderLength(final DeliveryType deliveryType, final boolean wideSeqNumbers) {
+        final int seqNumLength = wideSeqNumbers ? 4 : 2;
         return 8
                 + (deliveryType.isMessage()  ? 4 : 0)
-                + (deliveryType.isOrdered()  ? 2 : 0)
-                + (deliveryType.isReliable() ? 2 : 0);
+                + (deliveryType.isFec()      ? 4 : 0)
+                + (deliveryType.isOrdered()  ? seqNumLength : 0)
+                + (deliveryType.isReliable() ? seqNumLength : 0);
     }
 
     @Override
     public int getLength() {
-        return getDataLength() + DataPacket.computeHeaderLength(delivery);
+        return getDataLength() + DataPacket.computeHeaderLength(delivery, wideSeqNumbers);
     }
 
+    /**
+     * Get the payload. If the packet was decoded in place, the payload is copied out
+     * of the receive buffer on first access.
+     */
     public byte[] getData() {
+        if (data == null && payload != null) {
+            data = new byte[payload.remaining()];
+            payload.duplicate().get(data);
+        }
         return this.data;
     }
 
     public void setData(byte[] data) {
         this.data = data;
+        this.payload = null;
     }
 
     public int getDataLength() {
-        return data.length;
+        if (data != null) return data.length;
+        return (payload == null) ? 0 : payload.remaining();
+    }
+
+    /**
+     * Copy the payload into the given array, without materializing it if decoded in place.
+     *
+     * @param dest    destination array.
+     * @param destPos position in the destination array to copy to.
+     */
+    public void copyDataTo(final byte[] dest, final int destPos) {
+        if (data != null) System.arraycopy(data, 0, dest, destPos, data.length);
+        else if (payload != null) payload.duplicate().get(dest, destPos, payload.remaining());
+    }
+
+    /**
+     * Return the receive buffer backing this packet to its pool, if any. The payload must not
+     * be read afterwards unless it was already copied out by {@link #getData()}.
+     */
+    public void release() {
+        if (pool != null) {
+            payload = null;
+            pool.release(pooledBuffer);
+            pooledBuffer = null;
+            pool = null;
+        }
     }
 
     public int getPacketSeqNumber() {
@@ -192,42 +296,50 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
     }
 
     /**
-     * Complete header (8 - 14 bytes) + data packet for transmission
+     * @return true if the reliability and order sequence numbers are encoded in 32 bits rather than 16.
      */
-    public byte[] getEncoded() {
-        final int headerLength = DataPacket.computeHeaderLength(delivery);
-        final int dataLength = getDataLength();
-        byte[] result = new byte[headerLength + dataLength];
+    public boolean isWideSeqNumbers() {
+        return wideSeqNumbers;
+    }
 
-        byte[] flagsAndSeqNum = PacketUtil.encodeInt(packetSeqNumber);
-        flagsAndSeqNum[0] = PacketUtil.setBit(flagsAndSeqNum[0], 7, false);
+    public void setWideSeqNumbers(final boolean wideSeqNumbers) {
+        this.wideSeqNumbers = wideSeqNumbers;
+    }
 
-        final byte delId = delivery.getId();
-        flagsAndSeqNum[0] = PacketUtil.setBit(flagsAndSeqNum[0], 6, ((delId >> 2) & 1) == 1);
-        flagsAndSeqNum[0] = PacketUtil.setBit(flagsAndSeqNum[0], 5, ((delId >> 1) & 1) == 1);
-        flagsAndSeqNum[0] = PacketUtil.setBit(flagsAndSeqNum[0], 4, (delId & 1) == 1);
+    /**
+     * Complete header (8 - 20 bytes) + data packet for transmission
+     */
+    public byte[] getEncoded() {
+        final ByteBuffer result = ByteBuffer.allocate(getLength());
+        encodeInto(result);
+        return result.array();
+    }
 
-        System.arraycopy(flagsAndSeqNum, 0, result, 0, 4);
-        System.arraycopy(PacketUtil.encode(destinationID), 2, result, 4, 2);
-        System.arraycopy(PacketUtil.encode(classID), 2, result, 6, 2);
+    @Override
+    public void encodeInto(final ByteBuffer buffer) {
+        buffer.putInt((delivery.getId() & 0x7) << 28 | (wideSeqNumbers ? WIDE_FLAG : 0)
+                | (packetSeqNumber & SeqNum.MAX_PACKET_SEQ_NUM));
+        buffer.putShort((short) destinationID);
+        buffer.putShort((short) classID);
 
         if (delivery.isReliable()) {
-            final byte[] reliabilitySeqNumBits = PacketUtil.encodeShort(reliabilitySeqNumber);
-            System.arraycopy(reliabilitySeqNumBits, 0, result, 8, 2);
+            if (wideSeqNumbers) buffer.putInt(reliabilitySeqNumber);
+            else buffer.putShort((short) reliabilitySeqNumber);
         }
         if (delivery.isOrdered()) {
-            final byte[] orderSeqNumBits = PacketUtil.encodeShort(orderSeqNumber);
-            System.arraycopy(orderSeqNumBits, 0, result, 10, 2);
+            if (wideSeqNumbers) buffer.putInt(orderSeqNumber);
+            else buffer.putShort((short) orderSeqNumber);
         }
         if (delivery.isMessage()) {
-            final byte[] messageBits = new byte[4];
-            messageBits[0] = PacketUtil.setBit(messageBits[0], 7, finalMessageChunk);
-            PacketUtil.encodeMapToBytes(messageChunkNumber, messageBits, 15, 15);
-            PacketUtil.encodeMapToBytes(messageId, messageBits, 31, 16);
-            System.arraycopy(messageBits, 0, result, headerLength - 4, 4);
+            buffer.putInt((finalMessageChunk ? 1 << 31 : 0)
+                    | (messageChunkNumber & PacketUtil.MAX_MESSAGE_CHUNK_NUM) << 16
+                    | (messageId & PacketUtil.MAX_MESSAGE_ID));
         }
-        System.arraycopy(data, 0, result, headerLength, dataLength);
-        return result;
+        if (delivery.isFec()) {
+            buffer.putInt(messageDataChunkCount << 16 | (fecDataChunks & 0xFF) << 8 | (fecParityChunks & 0xFF));
+        }
+        if (data != null) buffer.put(data);
+        else if (payload != null) buffer.put(payload.duplicate());
     }
 
     public void copyFrom(final DataPacket src) {
@@ -242,6 +354,8 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
         setMessageId(src.getMessageId());
         setOrderSeqNumber(src.getOrderSeqNumber());
         setReliabilitySeqNumber(src.getReliabilitySeqNumber());
+        setWideSeqNumbers(src.isWideSeqNumbers());
+        setFec(src.getMessageDataChunkCount(), src.getFecDataChunks(), src.getFecParityChunks());
     }
 
     public int getClassID() {
@@ -278,6 +392,10 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
         return delivery.isMessage();
     }
 
+    public boolean isFec() {
+        return delivery.isFec();
+    }
+
     public int getMessageChunkNumber() {
         return messageChunkNumber;
     }
@@ -294,6 +412,38 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
         this.finalMessageChunk = finalMessageChunk;
     }
 
+    /**
+     * Set the forward error correction layout of the message this packet belongs to.
+     *
+     * @param messageDataChunkCount number of data chunks in the message.
+     * @param fecDataChunks         number of data chunks per block.
+     * @param fecParityChunks       number of parity chunks per block.
+     */
+    public void setFec(final int messageDataChunkCount, final int fecDataChunks, final int fecParityChunks) {
+        this.messageDataChunkCount = messageDataChunkCount;
+        this.fecDataChunks = fecDataChunks;
+        this.fecParityChunks = fecParityChunks;
+    }
+
+    public int getMessageDataChunkCount() {
+        return messageDataChunkCount;
+    }
+
+    public int getFecDataChunks() {
+        return fecDataChunks;
+    }
+
+    public int getFecParityChunks() {
+        return fecParityChunks;
+    }
+
+    /**
+     * @return true if this is a parity chunk of a forward error corrected message.
+     */
+    public boolean isParityChunk() {
+        return isFec() && messageChunkNumber >= messageDataChunkCount;
+    }
+
     @Override
     public PacketType getPacketType() {
         return PacketType.DATA;
@@ -317,7 +467,11 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
                 classID == that.classID &&
                 orderSeqNumber == that.orderSeqNumber &&
                 reliabilitySeqNumber == that.reliabilitySeqNumber &&
-                Arrays.equals(data, that.data);
+                wideSeqNumbers == that.wideSeqNumbers &&
+                messageDataChunkCount == that.messageDataChunkCount &&
+                fecDataChunks == that.fecDataChunks &&
+                fecParityChunks == that.fecParityChunks &&
+                Arrays.equals(getData(), that.getData());
     }
 
     @Override
@@ -337,7 +491,11 @@ public class DataPacket implements BoltPacket, Comparable<BoltPacket> {
                 ", messageChunkNumber=" + messageChunkNumber +
                 ", messageId=" + messageId +
                 ", destinationID=" + destinationID +
-                ", data=" + Arrays.toString(data) +
+                (delivery != null && delivery.isFec()
+                        ? ", messageDataChunkCount=" + messageDataChunkCount
+                        + ", fecDataChunks=" + fecDataChunks + ", fecParityChunks=" + fecParityChunks
+                        : "") +
+                ", data=" + Arrays.toString(getData()) +
                 '}';
     }
 }
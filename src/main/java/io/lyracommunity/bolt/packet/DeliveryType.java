@@ -15,40 +15,50 @@ public enum DeliveryType
     /**
      * Type 0: Fastest, unreliable, out-of-order, single-packet delivery.
      */
-    UNRELIABLE_UNORDERED((byte) 0, false, false, false),
+    UNRELIABLE_UNORDERED((byte) 0, false, false, false, false),
 
     /**
      * Type 1: Fast, reliable, out-of-order, single-packet delivery.
      */
-    RELIABLE_UNORDERED((byte) 1, true, false, false),
+    RELIABLE_UNORDERED((byte) 1, true, false, false, false),
 
     /**
      * Type 2: Fast reliable, out-of-order delivery with message (dis)assembling.
      */
-    RELIABLE_UNORDERED_MESSAGE((byte) 2, true, false, true),
+    RELIABLE_UNORDERED_MESSAGE((byte) 2, true, false, true, false),
 
     /**
      * Type 3: Reliable, ordered, single-packet delivery.
      */
-    RELIABLE_ORDERED((byte) 3, true, true, false),
+    RELIABLE_ORDERED((byte) 3, true, true, false, false),
 
     /**
      * Type 4: Reliable, ordered delivery with message (dis)assembling.
      */
-    RELIABLE_ORDERED_MESSAGE((byte) 4, true, true, true);
+    RELIABLE_ORDERED_MESSAGE((byte) 4, true, true, true, false),
+
+    /**
+     * Type 5: Unreliable, out-of-order message delivery with forward error correction.
+     * Parity chunks are sent with each message, from which the receiver rebuilds lost
+     * chunks without waiting for a retransmission.
+     */
+    UNRELIABLE_FEC_MESSAGE((byte) 5, false, false, true, true);
 
     private final byte id;
     private final boolean reliable;
     private final boolean ordered;
     private final boolean message;
+    private final boolean fec;
 
 
-    DeliveryType(final byte id, final boolean reliable, final boolean ordered, final boolean message)
+    DeliveryType(final byte id, final boolean reliable, final boolean ordered, final boolean message,
+                 final boolean fec)
     {
         this.id = id;
         this.reliable = reliable;
         this.ordered = ordered;
         this.message = message;
+        this.fec = fec;
     }
 
     public static DeliveryType fromId(final byte id) {
@@ -75,6 +85,14 @@ public enum DeliveryType
         return message;
     }
 
+    /**
+     * @return true if messages carry parity chunks for forward error correction.
+     */
+    public boolean isFec()
+    {
+        return fec;
+    }
+
     public DeliveryType toNonMessage() {
         if (this == RELIABLE_ORDERED_MESSAGE) return RELIABLE_ORDERED;
         if (this == RELIABLE_UNORDERED_MESSAGE) return RELIABLE_UNORDERED;
@@ -88,6 +106,7 @@ public enum DeliveryType
         if (reliable) b.append("reliable");
         if (ordered) b.append("|ordered");
         if (message) b.append("|message");
+        if (fec) b.append("|fec");
         return b.append("}").toString();
     }
 
@@ -29,6 +29,10 @@ public class Destination {
         return port;
     }
 
+    public InetSocketAddress getSocketAddress() {
+        return socketAddress;
+    }
+
     public int getSessionID() {
         return sessionID;
     }
@@ -13,9 +13,4 @@ public class KeepAlive extends ControlPacket {
         super(PacketType.KEEP_ALIVE);
     }
 
-    @Override
-    public byte[] encodeControlInformation() {
-        return null;
-    }
-
 }
@@ -0,0 +1,94 @@
+package io.lyracommunity.bolt.packet;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Path MTU probe, padded out to the datagram size it probes, or the peer's reply
+ * to one which arrived.
+ * <p>
+ * Additional Info: the probed datagram size, in bytes
+ * <p>
+ * Control Info: padding up to the probed size in a probe, or none in a reply
+ */
+public class MtuProbe extends ControlPacket {
+
+    private final int     probeSize;
+    private final boolean reply;
+
+    private MtuProbe(final int probeSize, final boolean reply) {
+        super(PacketType.MTU_PROBE);
+        this.probeSize = probeSize;
+        this.reply = reply;
+    }
+
+    MtuProbe(final int probeSize, final byte[] controlInformation) {
+        this(probeSize, controlInformation.length == 0);
+    }
+
+    /**
+     * @param probeSize     the datagram size to probe, in bytes, at least the control header length.
+     * @param destinationID the peer's session ID.
+     * @return a probe padded to the given size.
+     */
+    public static MtuProbe probe(final int probeSize, final int destinationID) {
+        final MtuProbe probe = new MtuProbe(Math.max(probeSize, CONTROL_HEADER_LENGTH + 1), false);
+        probe.destinationID = destinationID;
+        return probe;
+    }
+
+    /**
+     * @param probeSize     the datagram size of the probe which arrived, in bytes.
+     * @param destinationID the peer's session ID.
+     * @return the reply to the probe.
+     */
+    public static MtuProbe reply(final int probeSize, final int destinationID) {
+        final MtuProbe reply = new MtuProbe(probeSize, true);
+        reply.destinationID = destinationID;
+        return reply;
+    }
+
+    public int getProbeSize() {
+        return probeSize;
+    }
+
+    public boolean isReply() {
+        return reply;
+    }
+
+    @Override
+    protected long getAdditionalInfo() {
+        return probeSize;
+    }
+
+    @Override
+    int getControlInformationLength() {
+        return reply ? 0 : probeSize - CONTROL_HEADER_LENGTH;
+    }
+
+    @Override
+    void encodeControlInformation(final ByteBuffer buffer) {
+        // The padding's content is irrelevant.
+        buffer.position(buffer.position() + getControlInformationLength());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        if (!super.equals(o)) return false;
+        final MtuProbe that = (MtuProbe) o;
+        return probeSize == that.probeSize && reply == that.reply;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), probeSize, reply);
+    }
+
+    @Override
+    public String toString() {
+        return "MtuProbe{probeSize=" + probeSize + ", reply=" + reply + '}';
+    }
+
+}
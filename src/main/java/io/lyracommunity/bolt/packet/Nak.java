@@ -1,82 +1,222 @@
 package io.lyracommunity.bolt.packet;
 
-import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.IntStream;
 
 /**
  * Negative Acknowledgement (NAK) carries information about lost packets.
  * <p>
- * Additional Info: Undefined
+ * Additional Info: bit 0 set for wide sequence numbers
  * <p>
  * Control Info:
  * <ol>
  * <li> 32 bits integer array of compressed loss information (see section 3.9).
  * </ol>
+ * Besides single numbers (bit 31 clear) and ranges (bit 31 set on the first
+ * number, followed by the last), the loss information may hold bitmaps. A
+ * bitmap starts with a word having bit 30 set, the number of bitmap words
+ * in bits 16 to 29, and a lost base sequence number in the low 16 bits. Bit
+ * {@code i} of the following words, in order, marks {@code base + 1 + i} as
+ * lost. Ranges are packed into a bitmap as they are added, whenever that is
+ * no larger than listing them, so scattered losses are reported compactly.
+ * <p>
+ * With wide sequence numbers, single numbers and ranges hold 30-bit numbers, and
+ * the base of a bitmap follows in a word of its own.
+ * <p>
+ * Both the encoded words and the decoded ranges are held in primitive arrays.
  */
 public class Nak extends ControlPacket {
 
+    private static final int RANGE_FLAG       = 1 << 31;
+    private static final int BITMAP_FLAG      = 1 << 30;
+    private static final int NARROW_SEQ_MASK  = 0xFFFF;
+    private static final int BITMAP_LEN_SHIFT = 16;
+    private static final int BITMAP_LEN_MASK  = 0x3FFF;
+    private static final int WIDE_FLAG        = 1;
+
+    private static final SeqSpace NARROW = new SeqSpace(false);
+    private static final SeqSpace WIDE   = new SeqSpace(true);
+
+    /**
+     * Most words in one bitmap, limiting the span of sequence numbers it covers
+     * to well within half the sequence space.
+     */
+    private static final int MAX_BITMAP_WORDS = 64;
+
     /**
-     * After decoding this contains the lost sequence numbers.
+     * Largest growth, in bytes, of the encoded loss information from adding a single range.
      */
-    private final List<Integer> lostSequenceNumbers;
+    public static final int MAX_RANGE_LENGTH = 8;
+
+    private static final int NO_BLOCK     = 0;
+    private static final int SINGLE_BLOCK = 1;
+    private static final int RANGE_BLOCK  = 2;
+    private static final int BITMAP_BLOCK = 3;
+
+    /** The encoded loss information. */
+    private int[] words = new int[8];
+    private int   wordCount;
+
+    /** First and last lost numbers of each range, inclusive, in pairs. */
+    private int[] ranges = new int[8];
+    private int   rangeCount;
+
+    /** Kind and position of the last block of words, which a new range may be packed into. */
+    private int lastBlock      = NO_BLOCK;
+    private int lastBlockStart = -1;
+
+    private final SeqSpace seqSpace;
+    private final int      seqMask;
+    /** Words before the bits of a bitmap: the flagged length, and the base unless it fits alongside. */
+    private final int      bitmapHeaderWords;
 
     public Nak() {
-        super(PacketType.NAK);
-        lostSequenceNumbers = new ArrayList<>();
+        this(NARROW);
     }
 
-    Nak(final byte[] controlInformation) {
+    /**
+     * @param seqSpace the session's sequence space.
+     */
+    public Nak(final SeqSpace seqSpace) {
         super(PacketType.NAK);
-        lostSequenceNumbers = decode(controlInformation);
+        this.seqSpace = seqSpace;
+        this.seqMask = seqSpace.getMaxSeqNum();
+        this.bitmapHeaderWords = seqSpace.isWide() ? 2 : 1;
     }
 
-    public IntStream computeExpandedLossList() {
-        IntStream result = IntStream.empty();
-        final Iterator<Integer> lostSequence = getDecodedLossInfo().iterator();
-        while (lostSequence.hasNext()) {
-            final int read = lostSequence.next();
-            final int lost = PacketUtil.setIntBit(read, 31, false);
-            final boolean isSingle = !PacketUtil.isBitSet(read, 31);
-
-            if (isSingle) {
-                result = IntStream.concat(result, IntStream.of(lost));
-            }
-            else {
-                // And add all lost numbers to the result list.
-                final int end = lostSequence.next();
+    Nak(final int additionalInfo, final byte[] controlInformation) {
+        this(((additionalInfo & WIDE_FLAG) != 0) ? WIDE : NARROW);
+        decode(controlInformation);
+    }
+
+    /**
+     * Maximum length of loss information which fits a datagram of the given size.
+     *
+     * @param datagramSize the datagram size, in bytes.
+     * @return the length, in bytes.
+     */
+    public static int maxLossInfoLength(final int datagramSize) {
+        return datagramSize - CONTROL_HEADER_LENGTH;
+    }
 
-                if (end < lost) {
+    public IntStream computeExpandedLossList() {
+        return IntStream.range(0, rangeCount).flatMap(i -> {
+            final int first = getRangeFirst(i);
+            final int last = getRangeLast(i);
+            return (last < first)
                     // There was a sequence number overflow.
-                    result = IntStream.concat(result, IntStream.rangeClosed(lost, SeqNum.MAX_SEQ_NUM_16_BIT));
-                    result = IntStream.concat(result, IntStream.rangeClosed(0, end));
-                }
-                else {
-                    result = IntStream.concat(result, IntStream.rangeClosed(lost, end));
-                }
-            }
+                    ? IntStream.concat(IntStream.rangeClosed(first, seqSpace.getMaxSeqNum()), IntStream.rangeClosed(0, last))
+                    : IntStream.rangeClosed(first, last);
+        });
+    }
+
+    /**
+     * Pass each range of lost sequence numbers to the consumer, without expanding them.
+     * A single lost number is passed as a range of one.
+     *
+     * @param consumer receives the first and last lost numbers of each range, inclusive.
+     *                 The last is less than the first if the range wraps.
+     */
+    public void forEachLossRange(final LossRangeConsumer consumer) {
+        for (int i = 0; i < rangeCount; i++) {
+            consumer.accept(getRangeFirst(i), getRangeLast(i));
         }
-        return result;
+    }
+
+    /**
+     * @return the number of ranges of lost sequence numbers. A single lost number is a range of one.
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * @param index the range index, from zero.
+     * @return the first lost sequence number of the range, inclusive.
+     */
+    public int getRangeFirst(final int index) {
+        return ranges[index << 1];
+    }
+
+    /**
+     * @param index the range index, from zero.
+     * @return the last lost sequence number of the range, inclusive. Less than the first if the range wraps.
+     */
+    public int getRangeLast(final int index) {
+        return ranges[(index << 1) + 1];
+    }
+
+    /**
+     * @return the first lost sequence number, or -1 if there is no loss info.
+     */
+    public int getFirstLoss() {
+        return (rangeCount == 0) ? -1 : ranges[0];
+    }
+
+    /**
+     * @return the total count of lost sequence numbers, with ranges counted in full.
+     */
+    public int getLossCount() {
+        int count = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            count += seqSpace.offset(getRangeFirst(i), getRangeLast(i)) + 1;
+        }
+        return count;
     }
 
     /**
      * Decode the loss info.
      *
-     * @param lossInfo list of lost sequence numbers.
+     * @param lossInfo encoded loss information.
      */
-    protected List<Integer> decode(final byte[] lossInfo) {
-        final List<Integer> lostSequenceNumbers = new ArrayList<>();
+    protected void decode(final byte[] lossInfo) {
         final ByteBuffer bb = ByteBuffer.wrap(lossInfo);
-        while (bb.remaining() > 0) {
-            final int lost = bb.getInt();
-            lostSequenceNumbers.add(lost);
+        wordCount = bb.remaining() / 4;
+        words = new int[Math.max(1, wordCount)];
+        bb.asIntBuffer().get(words, 0, wordCount);
+
+        for (int i = 0; i < wordCount; i++) {
+            final int read = words[i];
+            final int lost = read & seqMask;
+            if ((read & RANGE_FLAG) != 0) {
+                final int last = (i + 1 < wordCount) ? words[++i] & seqMask : lost;
+                appendRange(lost, last);
+            }
+            else if ((read & BITMAP_FLAG) != 0) {
+                if (i + bitmapHeaderWords > wordCount) break;
+                final int base = bitmapBase(i);
+                i += bitmapHeaderWords - 1;
+                final int length = Math.min((read >>> BITMAP_LEN_SHIFT) & BITMAP_LEN_MASK, wordCount - i - 1);
+                decodeBitmap(base, i + 1, length);
+                i += length;
+            }
+            else {
+                appendRange(lost, lost);
+            }
+        }
+    }
+
+    private void decodeBitmap(final int base, final int from, final int length) {
+        int first = base;
+        int last = base;
+        for (int w = 0; w < length; w++) {
+            int bits = words[from + w];
+            while (bits != 0) {
+                final int bit = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                final int seq = seqSpace.add(base, 1 + (w << 5) + bit);
+                if (seq != seqSpace.increment(last)) {
+                    appendRange(first, last);
+                    first = seq;
+                }
+                last = seq;
+            }
         }
-        return lostSequenceNumbers;
+        appendRange(first, last);
     }
 
     /**
@@ -85,26 +225,69 @@ public class Nak extends ControlPacket {
      * @param singleRelSeqNum packet sequence number that was lost.
      */
     public void addLossSingle(final int singleRelSeqNum) {
-        final int enc = PacketUtil.setIntBit(singleRelSeqNum, 31, false);
-        lostSequenceNumbers.add(enc);
+        addLossRange(singleRelSeqNum, singleRelSeqNum);
     }
 
     /**
-     * Add an interval of lost packet numbers.
+     * Add an interval of lost packet numbers. Ranges added in ascending order,
+     * as they are held in the receiver's loss list, may be packed into a bitmap.
      *
      * @param firstReliabilitySeqNumInclusive first number in range, inclusive.
      * @param lastReliabilitySeqNumInclusive  last number in rage, inclusive.
      */
     public void addLossRange(final int firstReliabilitySeqNumInclusive, final int lastReliabilitySeqNumInclusive) {
-        // Check if we really need an interval
-        if (lastReliabilitySeqNumInclusive - firstReliabilitySeqNumInclusive == 0) {
-            addLossSingle(firstReliabilitySeqNumInclusive);
+        final int first = firstReliabilitySeqNumInclusive & seqMask;
+        final int last = lastReliabilitySeqNumInclusive & seqMask;
+        final int plainCost = (first == last) ? 1 : 2;
+        final boolean ascending = rangeCount > 0 && seqSpace.offset(getRangeLast(rangeCount - 1), first) > 0;
+
+        if (ascending && lastBlock == BITMAP_BLOCK) {
+            final int base = bitmapBase(lastBlockStart);
+            final int length = (words[lastBlockStart] >>> BITMAP_LEN_SHIFT) & BITMAP_LEN_MASK;
+            final int needed = bitmapWords(base, last);
+            if (needed <= MAX_BITMAP_WORDS && needed - length <= plainCost) {
+                growBitmap(length, needed);
+                setBits(base, first, last);
+                appendRange(first, last);
+                return;
+            }
+        }
+        else if (ascending && lastBlock != NO_BLOCK) {
+            // Pack the previous range and this one into a new bitmap, if no larger.
+            final int prevFirst = getRangeFirst(rangeCount - 1);
+            final int prevLast = getRangeLast(rangeCount - 1);
+            final int needed = bitmapWords(prevFirst, last);
+            if (needed <= MAX_BITMAP_WORDS && bitmapHeaderWords + needed <= lastBlock + plainCost) {
+                wordCount = lastBlockStart;
+                ensureWords(bitmapHeaderWords);
+                if (bitmapHeaderWords == 1) {
+                    words[wordCount++] = BITMAP_FLAG | prevFirst;
+                }
+                else {
+                    words[wordCount++] = BITMAP_FLAG;
+                    words[wordCount++] = prevFirst;
+                }
+                lastBlock = BITMAP_BLOCK;
+                growBitmap(0, needed);
+                if (prevLast != prevFirst) setBits(prevFirst, seqSpace.increment(prevFirst), prevLast);
+                setBits(prevFirst, first, last);
+                appendRange(first, last);
+                return;
+            }
+        }
+
+        lastBlockStart = wordCount;
+        ensureWords(plainCost);
+        if (plainCost == 1) {
+            words[wordCount++] = first;
+            lastBlock = SINGLE_BLOCK;
         }
         else {
-            // Else add an interval
-            lostSequenceNumbers.add(PacketUtil.setIntBit(firstReliabilitySeqNumInclusive, 31, true));
-            lostSequenceNumbers.add(PacketUtil.setIntBit(lastReliabilitySeqNumInclusive, 31, false));
+            words[wordCount++] = RANGE_FLAG | first;
+            words[wordCount++] = last;
+            lastBlock = RANGE_BLOCK;
         }
+        appendRange(first, last);
     }
 
     /**
@@ -114,42 +297,88 @@ public class Nak extends ControlPacket {
      */
     public void addLossList(final List<Integer> reliabilitySeqNums) {
         int index = 0;
-        do {
-            int start = reliabilitySeqNums.get(index);
-            int end = 0;
-            int c = 0;
-            do {
-                c++;
-                index++;
-                if (index < reliabilitySeqNums.size()) {
-                    end = reliabilitySeqNums.get(index);
-                }
+        while (index < reliabilitySeqNums.size()) {
+            final int start = reliabilitySeqNums.get(index);
+            int end = start;
+            while (++index < reliabilitySeqNums.size() && reliabilitySeqNums.get(index) == seqSpace.increment(end)) {
+                end = reliabilitySeqNums.get(index);
             }
-            while (end - start == c);
+            addLossRange(start, end);
+        }
+    }
 
-            if (end == 0) {
-                addLossSingle(start);
-            }
-            else {
-                end = reliabilitySeqNums.get(index - 1);
-                addLossRange(start, end);
-            }
+    /** @return the base of the bitmap starting at the given word. */
+    private int bitmapBase(final int start) {
+        return (bitmapHeaderWords == 1) ? words[start] & NARROW_SEQ_MASK : words[start + 1] & seqMask;
+    }
+
+    /** @return the number of bitmap words needed to mark numbers from after the base up to the last. */
+    private int bitmapWords(final int base, final int last) {
+        final int offset = seqSpace.offset(base, last);
+        return (offset <= 0) ? Integer.MAX_VALUE : (offset + 31) >>> 5;
+    }
+
+    /** Extend the last block, a bitmap, from its current length in words to the given length. */
+    private void growBitmap(final int length, final int newLength) {
+        if (newLength > length) {
+            ensureWords(newLength - length);
+            Arrays.fill(words, wordCount, wordCount + newLength - length, 0);
+            wordCount += newLength - length;
+        }
+        words[lastBlockStart] = BITMAP_FLAG | (newLength << BITMAP_LEN_SHIFT)
+                | ((bitmapHeaderWords == 1) ? words[lastBlockStart] & NARROW_SEQ_MASK : 0);
+    }
+
+    private void setBits(final int base, final int first, final int last) {
+        final int from = seqSpace.offset(base, first) - 1;
+        final int to = seqSpace.offset(base, last) - 1;
+        for (int i = from; i <= to; i++) {
+            words[lastBlockStart + bitmapHeaderWords + (i >>> 5)] |= 1 << (i & 31);
+        }
+    }
+
+    private void ensureWords(final int extra) {
+        if (wordCount + extra > words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, wordCount + extra));
         }
-        while (index < reliabilitySeqNums.size());
+    }
+
+    private void appendRange(final int first, final int last) {
+        if ((rangeCount << 1) == ranges.length) ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        ranges[rangeCount << 1] = first;
+        ranges[(rangeCount << 1) + 1] = last;
+        rangeCount++;
     }
 
     /**
-     * @return the lost packet numbers
+     * @return the length of the encoded loss information, in bytes.
      */
-    private List<Integer> getDecodedLossInfo() {
-        return lostSequenceNumbers;
+    public int getLossInfoLength() {
+        return wordCount * 4;
+    }
+
+    /**
+     * @return true if the loss information holds wide sequence numbers.
+     */
+    public boolean isWideSeqNumbers() {
+        return seqSpace.isWide();
+    }
+
+    @Override
+    protected long getAdditionalInfo() {
+        return seqSpace.isWide() ? WIDE_FLAG : 0;
     }
 
     @Override
-    public byte[] encodeControlInformation() {
-        final ByteBuffer encoded = ByteBuffer.allocate(lostSequenceNumbers.size() * 4);
-        lostSequenceNumbers.forEach(encoded::putInt);
-        return encoded.array();
+    int getControlInformationLength() {
+        return getLossInfoLength();
+    }
+
+    @Override
+    void encodeControlInformation(final ByteBuffer buffer) {
+        for (int i = 0; i < wordCount; i++) {
+            buffer.putInt(words[i]);
+        }
     }
 
     @Override
@@ -158,12 +387,33 @@ public class Nak extends ControlPacket {
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         final Nak nak = (Nak) o;
-        return Objects.equals(lostSequenceNumbers, nak.lostSequenceNumbers);
+        if (wordCount != nak.wordCount || isWideSeqNumbers() != nak.isWideSeqNumbers()) return false;
+        for (int i = 0; i < wordCount; i++) {
+            if (words[i] != nak.words[i]) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), lostSequenceNumbers);
+        int result = super.hashCode();
+        for (int i = 0; i < wordCount; i++) {
+            result = 31 * result + words[i];
+        }
+        return result;
+    }
+
+    /**
+     * Receives a range of lost sequence numbers.
+     */
+    @FunctionalInterface
+    public interface LossRangeConsumer {
+
+        /**
+         * @param first first lost sequence number, inclusive.
+         * @param last  last lost sequence number, inclusive.
+         */
+        void accept(int first, int last);
     }
 
 }
@@ -1,6 +1,9 @@
 package io.lyracommunity.bolt.packet;
 
+import io.lyracommunity.bolt.util.ByteBufferPool;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class PacketFactory {
 
@@ -19,29 +22,54 @@ public class PacketFactory {
      */
     public static BoltPacket createPacket(byte[] encodedData, int length) throws IOException {
         boolean isControl = (encodedData[0] & 128) != 0;
-        if (isControl) return createControlPacket(encodedData, length);
+        if (isControl) return createControlPacket(ByteBuffer.wrap(encodedData, 0, length));
         return new DataPacket(encodedData, length);
     }
 
+    /**
+     * Creates a Control or Data packet from a received datagram, decoding the headers
+     * in place rather than copying the datagram first.
+     * <p>
+     * A data packet keeps a slice of the buffer as its payload and returns the buffer
+     * to the pool when it is released. A control packet is decoded completely, so its
+     * buffer is returned to the pool straight away.
+     *
+     * @param encoded buffer positioned at the start of the packet, limited to its end.
+     * @param pool    the pool that owns the buffer.
+     * @return the created packet.
+     */
+    public static BoltPacket createPacket(final ByteBuffer encoded, final ByteBufferPool pool) throws IOException {
+        final boolean isControl = (encoded.get(encoded.position()) & 128) != 0;
+        if (!isControl) return new DataPacket(encoded, pool);
+        try {
+            return createControlPacket(encoded);
+        }
+        finally {
+            pool.release(encoded);
+        }
+    }
+
     /**
      * Create the right type of control packet based on the packet data.
      *
-     * @param encodedData the encoded control packet.
-     * @param length      size of the encoded packet.
+     * @param encoded the encoded control packet, from its position up to its limit.
      * @return the created Control packet.
      */
-    private static ControlPacket createControlPacket(byte[] encodedData, int length) throws IOException {
+    private static ControlPacket createControlPacket(final ByteBuffer encoded) throws IOException {
 
         ControlPacket packet = null;
 
-        int pktType = PacketUtil.decodeType(encodedData, 0);
-        int additionalInfo = PacketUtil.decodeInt(encodedData, 4);
-        int destID = PacketUtil.decodeInt(encodedData, 8);
-        byte[] controlInformation = new byte[length - 12];
-        System.arraycopy(encodedData, 12, controlInformation, 0, controlInformation.length);
+        final int start = encoded.position();
+        int pktType = encoded.get(start + 1) & 0xFF;
+        int additionalInfo = encoded.getInt(start + 4);
+        int destID = encoded.getInt(start + 8);
+        byte[] controlInformation = new byte[encoded.remaining() - 12];
+        final ByteBuffer controlInfoView = encoded.duplicate();
+        controlInfoView.position(start + 12);
+        controlInfoView.get(controlInformation);
 
         if (PacketType.HANDSHAKE.getTypeId() == pktType) {
-            packet = new ConnectionHandshake(controlInformation);
+            packet = new ConnectionHandshake(additionalInfo, controlInformation);
         }
         else if (PacketType.KEEP_ALIVE.getTypeId() == pktType) {
             packet = new KeepAlive();
@@ -50,7 +78,7 @@ public class PacketFactory {
             packet = new Ack(additionalInfo, controlInformation);
         }
         else if (PacketType.NAK.getTypeId() == pktType) {
-            packet = new Nak(controlInformation);
+            packet = new Nak(additionalInfo, controlInformation);
         }
         else if (PacketType.SHUTDOWN.getTypeId() == pktType) {
             packet = new Shutdown();
@@ -58,6 +86,9 @@ public class PacketFactory {
         else if (PacketType.ACK2.getTypeId() == pktType) {
             packet = new Ack2(additionalInfo, controlInformation);
         }
+        else if (PacketType.MTU_PROBE.getTypeId() == pktType) {
+            packet = new MtuProbe(additionalInfo, controlInformation);
+        }
 
         if (packet != null) {
             packet.setDestinationID(destID);
@@ -16,7 +16,8 @@ public enum PacketType {
     ACK(2),
     NAK(3),
     SHUTDOWN(4),
-    ACK2(5);
+    ACK2(5),
+    MTU_PROBE(6);
 
     private final int typeId;
 
@@ -18,10 +18,5 @@ public class Shutdown extends ControlPacket {
         this.destinationID = destinationID;
     }
 
-    @Override
-    public byte[] encodeControlInformation() {
-        return null;
-    }
-
 }
 
@@ -1,36 +1,72 @@
 package io.lyracommunity.bolt.receiver;
 
-import io.lyracommunity.bolt.util.CircularArray;
+import java.util.Arrays;
 
 /**
  * ACK History Window: A circular array of each sent ACK and the time
  * it is sent out. The most recent value will overwrite the oldest
  * one if no more free space in the array.
+ * <p>
+ * ACK sequence numbers are consecutive, so each ACK is stored in the slot
+ * given by the low bits of its sequence number. Looking up the ACK matching
+ * an ACK2 is then constant time, and the window allocates nothing once created.
  */
-public class AckHistoryWindow extends CircularArray<AckHistoryEntry> {
+public class AckHistoryWindow {
 
-    public AckHistoryWindow(int size) {
-        super(size);
+    private final int    mask;
+    private final long[] ackSequenceNumbers;
+    private final long[] ackNumbers;
+    private final long[] sentTimes;
+
+    /**
+     * @param size the minimum number of ACKs remembered, rounded up to a power of two.
+     */
+    public AckHistoryWindow(final int size) {
+        final int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.mask = capacity - 1;
+        this.ackSequenceNumbers = new long[capacity];
+        this.ackNumbers = new long[capacity];
+        this.sentTimes = new long[capacity];
+        Arrays.fill(ackSequenceNumbers, -1);
     }
 
     /**
-     * @param ackNumber the ACK number.
+     * Record a sent ACK, replacing the oldest held in the same slot.
      *
-     * @return the time for the given seq no, or <code>-1</code> if not known.
+     * @param ackSequenceNumber the ACK sequence number.
+     * @param ackNumber         the sequence number prior to which all the packets have been received.
+     * @param sentTime          time the ACK was sent, in microseconds.
+     */
+    public void add(final long ackSequenceNumber, final long ackNumber, final long sentTime) {
+        final int slot = (int) ackSequenceNumber & mask;
+        ackSequenceNumbers[slot] = ackSequenceNumber;
+        ackNumbers[slot] = ackNumber;
+        sentTimes[slot] = sentTime;
+    }
+
+    /**
+     * @param ackSequenceNumber the ACK sequence number.
+     * @return the time the ACK was sent, or <code>-1</code> if not known.
      */
-    public long getTime(long ackNumber) {
-        final AckHistoryEntry obj = getEntry(ackNumber);
-        return (obj == null) ? -1 : obj.getSentTime();
+    public long getSentTime(final long ackSequenceNumber) {
+        final int slot = (int) ackSequenceNumber & mask;
+        return (ackSequenceNumbers[slot] == ackSequenceNumber) ? sentTimes[slot] : -1;
     }
 
-    public AckHistoryEntry getEntry(final long ackNumber) {
-        for (Object obj : getArray()) {
-            final AckHistoryEntry e = (AckHistoryEntry) obj;
-            if (e != null && e.getAckNumber() == ackNumber) {
-                return e;
-            }
-        }
-        return null;
+    /**
+     * @param ackSequenceNumber the ACK sequence number.
+     * @return the ACK number sent with the ACK, or <code>-1</code> if not known.
+     */
+    public long getAckNumber(final long ackSequenceNumber) {
+        final int slot = (int) ackSequenceNumber & mask;
+        return (ackSequenceNumbers[slot] == ackSequenceNumber) ? ackNumbers[slot] : -1;
+    }
+
+    /**
+     * @return the number of ACKs the window can hold.
+     */
+    public int capacity() {
+        return mask + 1;
     }
 
 }
@@ -67,6 +67,20 @@ public class EventTimers {
         return isNextExp;
     }
 
+    /**
+     * @param ackPending  whether there is data to acknowledge.
+     * @param lossPending whether there are losses to report.
+     * @return the earliest time, in microseconds, that a timer may need processing. Timers
+     * with nothing to do are left out, while timers not yet initialized are due immediately.
+     */
+    long nextDeadline(final boolean ackPending, final boolean lossPending) {
+        if (nextACK == 0) return 0;
+        long deadline = nextEXP;
+        if (ackPending) deadline = Math.min(deadline, nextACK);
+        if (lossPending) deadline = Math.min(deadline, nextNAK);
+        return deadline;
+    }
+
     void updateTimerIntervals(final long roundTripTime, final long roundTripTimeVar) {
         long newAckTimerInterval = 4 * roundTripTime + roundTripTimeVar + Util.getSYNTime();
         if (config.getMaxAckTimerInterval() > 0) {
@@ -76,6 +90,10 @@ public class EventTimers {
         this.nakTimerInterval = newAckTimerInterval;
     }
 
+    long getAckTimerInterval() {
+        return ackTimerInterval;
+    }
+
     boolean isSessionExpired() {
         return config.isAllowSessionExpiry()
                 && expCount > config.getExpLimit();
@@ -89,6 +107,10 @@ public class EventTimers {
         expCount = 1;
     }
 
+    long getExpCount() {
+        return expCount;
+    }
+
     long incrementExpCount() {
         return ++expCount;
     }
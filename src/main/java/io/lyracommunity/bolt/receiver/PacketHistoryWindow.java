@@ -1,25 +1,49 @@
 package io.lyracommunity.bolt.receiver;
 
-import io.lyracommunity.bolt.util.CircularArray;
+import io.lyracommunity.bolt.util.Util;
 
 /**
  * Packet History Window is a circular array that records the arrival time
  * of each data packet.
+ * <p>
+ * Only the intervals between arrivals are kept, in a primitive array, so
+ * recording an arrival neither boxes nor allocates.
  */
-public class PacketHistoryWindow extends CircularArray<Long> {
+public class PacketHistoryWindow {
 
     private final long[] intervals;
-    private final int num;
+    private final long[] scratch;
+    private final int    num;
+
+    private long    lastArrivalTime = -1;
+    private int     position        = 0;
+    private boolean haveOverflow    = false;
 
     /**
      * Create a new PacketHistoryWindow of the given size.
      *
-     * @param size the size of the window.
+     * @param size the number of arrival times in the window.
      */
     public PacketHistoryWindow(final int size) {
-        super(size);
-        num = max - 1;
+        num = size - 1;
         intervals = new long[num];
+        scratch = new long[num];
+    }
+
+    /**
+     * Record the arrival time of a data packet.
+     *
+     * @param arrivalTime the arrival time, in microseconds.
+     */
+    public void add(final long arrivalTime) {
+        if (lastArrivalTime >= 0) {
+            intervals[position] = arrivalTime - lastArrivalTime;
+            if (++position == num) {
+                position = 0;
+                haveOverflow = true;
+            }
+        }
+        lastArrivalTime = arrivalTime;
     }
 
     /**
@@ -30,25 +54,10 @@ public class PacketHistoryWindow extends CircularArray<Long> {
     public long getPacketArrivalSpeed() {
         if (!haveOverflow) return 0;
 
-        double total = 0;
+        final double AI = Util.median(intervals, scratch, num);
+        // Compute the actual value, filtering out intervals outside AI/8 and AI*8.
         int count = 0;
-        int pos = (position - 1 < 0) ? num : (position - 1);
-        do {
-            final long upper = getEntry(pos);
-            pos--;
-            if (pos < 0) pos = num;
-            final long lower = getEntry(pos);
-            final long interval = upper - lower;
-            intervals[count] = interval;
-            total += interval;
-            count++;
-        }
-        while (count < num);
-        // Compute median
-        final double AI = total / num;
-        // Compute the actual value, filtering out intervals between AI/8 and AI*8.
-        count = 0;
-        total = 0;
+        double total = 0;
         for (final long l : intervals) {
             if (l > AI / 8d && l < AI * 8d) {
                 total += l;
@@ -56,11 +65,11 @@ public class PacketHistoryWindow extends CircularArray<Long> {
             }
         }
 
-        final double medianPacketArrivalSpeed = (count > 8)
+        final double packetArrivalSpeed = (count > 8)
                 ? 1e6 * count / total
                 : 0;
 
-        return (long) Math.ceil(medianPacketArrivalSpeed);
+        return (long) Math.ceil(packetArrivalSpeed);
     }
 
 }
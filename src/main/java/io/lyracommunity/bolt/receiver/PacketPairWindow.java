@@ -1,15 +1,20 @@
 package io.lyracommunity.bolt.receiver;
 
-import io.lyracommunity.bolt.util.CircularArray;
+import io.lyracommunity.bolt.util.Util;
 
 /**
  * Packet Pair Window is a circular array that records the time
  * interval between each probing packet pair.
  *
  * @author Cian.
- * @see CircularArray
  */
-class PacketPairWindow extends CircularArray<Long> {
+class PacketPairWindow {
+
+    private final long[] intervals;
+    private final long[] scratch;
+
+    private int     position     = 0;
+    private boolean haveOverflow = false;
 
     /**
      * Construct a new packet pair window with the given size
@@ -17,21 +22,39 @@ class PacketPairWindow extends CircularArray<Long> {
      * @param size the size of the window.
      */
     PacketPairWindow(int size) {
-        super(size);
+        intervals = new long[size];
+        scratch = new long[size];
+    }
+
+    /**
+     * Record a packet pair interval, overwriting the oldest if the window is full.
+     *
+     * @param interval time interval in microseconds.
+     */
+    void add(final long interval) {
+        intervals[position] = interval;
+        if (++position == intervals.length) {
+            position = 0;
+            haveOverflow = true;
+        }
     }
 
     /**
-     * Compute the median packet pair interval of the last 16 packet pair intervals (PI).
+     * @return the number of intervals in this window.
+     */
+    int size() {
+        return haveOverflow ? intervals.length : position;
+    }
+
+    /**
+     * Compute the median packet pair interval of the last 16 packet pair intervals (PI),
+     * then average the intervals within a factor of 8 of it to filter out outliers.
      *
-     * @return time interval in microseconds.
+     * @return time interval in microseconds, or 0 if unknown.
      */
     double computeMedianTimeInterval() {
         final int num = size();
-        double median = 0;
-        for (int i = 0; i < num; i++) {
-            median += getEntry(i).doubleValue();
-        }
-        median = median / num;
+        final double median = Util.median(intervals, scratch, num);
 
         // Median filtering
         final double upper = median * 8;
@@ -39,22 +62,23 @@ class PacketPairWindow extends CircularArray<Long> {
         double total = 0;
         int count = 0;
         for (int i = 0; i < num; i++) {
-            double val = getEntry(i).doubleValue();
+            final long val = intervals[i];
             if (val < upper && val > lower) {
                 total += val;
                 count++;
             }
         }
-        return total / count;
+        return (count == 0) ? 0 : total / count;
     }
 
     /**
      * Compute the estimated link capacity using the values in packet pair window.
      *
-     * @return number of packets per second.
+     * @return number of packets per second, or 0 if unknown.
      */
     long getEstimatedLinkCapacity() {
-        return (long) Math.ceil(1_000_000 / computeMedianTimeInterval());
+        final double interval = computeMedianTimeInterval();
+        return (interval <= 0) ? 0 : (long) Math.ceil(1_000_000 / interval);
     }
 
 }
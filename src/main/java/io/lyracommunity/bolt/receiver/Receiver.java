@@ -8,16 +8,16 @@ import io.lyracommunity.bolt.session.Session;
 import io.lyracommunity.bolt.session.SessionState;
 import io.lyracommunity.bolt.statistic.BoltStatistics;
 import io.lyracommunity.bolt.util.ReceiveBuffer;
-import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 import io.lyracommunity.bolt.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -37,6 +37,11 @@ public class Receiver {
 
     private static final Logger LOG = LoggerFactory.getLogger(Receiver.class);
 
+    /**
+     * Maximum number of SACK blocks reported in a timer-triggered ACK.
+     */
+    private static final int MAX_SACK_BLOCKS = 32;
+
 
     private final ChannelOut     endpoint;
     private final SessionState   sessionState;
@@ -77,7 +82,27 @@ public class Receiver {
     private final BlockingQueue<BoltPacket> handOffQueue;
     private final Config                    config;
     private final ReceiveBuffer             receiveBuffer;
+    /**
+     * The session's reliability and order sequence number space, settled by the handshake.
+     */
+    private final SeqSpace                  seqSpace;
     private final EventTimers               timers;
+    /**
+     * Whether packets are processed by the thread receiving them.
+     */
+    private final boolean                   inlineReceive;
+    /**
+     * Serializes inline processing with the receiver worker's timer checks.
+     */
+    private final ReentrantLock             inlineLock = new ReentrantLock();
+    /**
+     * Called to have the receiver worker process this receiver promptly.
+     */
+    private volatile Runnable               wakeUp;
+    /**
+     * Timer deadline, in microseconds, at which the receiver worker next processes this receiver.
+     */
+    private volatile long                   armedDeadline = Long.MAX_VALUE;
     /**
      * Round trip time, calculated from ACK/ACK2 pairs.
      */
@@ -98,6 +123,10 @@ public class Receiver {
      * Last Ack number.
      */
     private          long lastAckNumber                = 0;
+    /**
+     * Time the last ACK was sent.
+     */
+    private          long lastAckSentTime              = 0;
     /**
      * largest Ack number ever acknowledged by ACK2
      */
@@ -126,14 +155,17 @@ public class Receiver {
         this.config = config;
         this.statistics = statistics;
         this.timers = timers;
+        this.inlineReceive = config.isInlineReceive();
         this.ackHistoryWindow = new AckHistoryWindow(16);
         this.packetHistoryWindow = new PacketHistoryWindow(16);
-        this.receiverLossList = new ReceiverLossList();
+        this.seqSpace = sessionState.getSeqSpace();
+        this.receiverLossList = new ReceiverLossList(seqSpace);
         this.packetPairWindow = new PacketPairWindow(16);
         // TODO is buffer size even required anymore?
         this.bufferSize = sessionState.getReceiveBufferSize();
-        this.handOffQueue = new ArrayBlockingQueue<>(4 * sessionState.getFlowWindowSize());
-        this.receiveBuffer = new ReceiveBuffer(2 * sessionState.getFlowWindowSize());
+        // Sized before the handshake settles the sequence space, for the largest window it may allow.
+        this.handOffQueue = new ArrayBlockingQueue<>(4 * config.getFlowWindowSize());
+        this.receiveBuffer = new ReceiveBuffer(2 * config.getFlowWindowSize(), seqSpace);
     }
 
     public DataPacket pollReceiveBuffer(final int timeout, final TimeUnit unit) throws InterruptedException {
@@ -146,31 +178,67 @@ public class Receiver {
 
     /**
      * Packets are written by the endpoint.
+     * <p>
+     * Normally the packet is queued for the receiver worker. With
+     * {@link Config#setInlineReceive(boolean) inline receive}, it is processed
+     * immediately by the calling thread, along with any due timer events.
      *
      * @param received the packet to receive.
+     * @return true if the packet was processed inline and added data to the receive buffer.
+     * @throws IOException     if processed inline and sending a response failed.
+     * @throws ExpiryException if processed inline and the session expired.
      */
-    public void receive(final BoltPacket received) {
+    public boolean receive(final BoltPacket received) throws IOException, ExpiryException {
         statistics.beginReceive();
-        if (!received.isControlPacket() && LOG.isTraceEnabled()) {
-            LOG.trace("++ {}  QueueSize={}", received, handOffQueue.size());
+        try {
+            if (inlineReceive) return processInline(received);
+            if (!received.isControlPacket() && LOG.isTraceEnabled()) {
+                LOG.trace("++ {}  QueueSize={}", received, handOffQueue.size());
+            }
+            handOffQueue.offer(received);
+            wakeUp();
+            return false;
+        }
+        finally {
+            statistics.endReceive();
+        }
+    }
+
+    private boolean processInline(final BoltPacket packet) throws IOException, ExpiryException {
+        inlineLock.lock();
+        try {
+            if (!sessionState.isActive()) return false;
+            checkTimers();
+            timers.resetEXPCount();
+
+            statistics.beginProcess();
+            final boolean addedData = processPacket(packet);
+            statistics.endProcess();
+            // A timer may now be due before the worker would next check.
+            if (nextTimerDeadline() < armedDeadline) wakeUp();
+            return addedData;
+        }
+        finally {
+            inlineLock.unlock();
         }
-        handOffQueue.offer(received);
-        statistics.endReceive();
     }
 
     /**
+     * Process due timer events and up to the given number of queued packets. With
+     * inline receive, only the timers are processed.
+     * <p>
      * Data Receiving Algorithm:
      * <ol>
      * <li> Query the system time to check if ACK, NAK, or EXP timer has
      * expired. If there is any, process the event (as described below
      * in this section) and reset the associated time variables. For
      * ACK, also check the ACK packet interval.
-     * <li> Start time bounded UDP receiving. If no packet arrives, go to 1).
+     * <li> Take the next queued packet. If there is none, stop.
      * 1) Reset the ExpCount to 1. If there is no unacknowledged data
      * packet, or if this is an ACK or NAK control packet, reset the EXP
      * timer.
      * <li> Check the flag bit of the packet header. If it is a control
-     * packet, process it according to its type and go to 1).
+     * packet, process it according to its type and go to 2).
      * <li> If the sequence number of the current data packet is 16n + 1,
      * where n is an integer, record the time interval between this
      * packet and the last data packet in the Packet Pair Window.
@@ -182,32 +250,98 @@ public class Receiver {
      * send them to the sender in an NAK packet. <br/>
      * b. If the sequence number is less than LRSN, remove it from the
      * receiver's loss list.
-     * <li> Update LRSN. Go to 1).
+     * <li> Update LRSN. Go to 2).
      * </ol>
+     *
+     * @param maxPackets the maximum number of packets to process.
+     * @return true if data was added to the receive buffer.
      */
-    boolean receiverAlgorithm(final boolean awaitPoll) throws InterruptedException, ExpiryException, IOException {
-        boolean addedData = false;
-        if (sessionState.isActive()) {
-            // Query for timer events.
-            checkTimers();
+    boolean processQueuedPackets(final int maxPackets) throws ExpiryException, IOException {
+        if (inlineReceive) {
+            checkInlineTimers();
+            return false;
+        }
+        if (!sessionState.isActive()) return false;
 
-            // Perform time-bounded UDP receive.
-            final BoltPacket packet = awaitPoll
-                    ? handOffQueue.poll(Util.getSYNTime(), TimeUnit.MICROSECONDS)
-                    : handOffQueue.poll();
+        checkTimers();
+        boolean addedData = false;
+        for (int i = 0; i < maxPackets; i++) {
+            final BoltPacket packet = handOffQueue.poll();
+            if (packet == null) break;
+            addedData |= processQueuedPacket(packet);
+        }
+        return addedData;
+    }
 
-            if (packet != null) {
-                // Reset EXP count for any packet.
-                timers.resetEXPCount();
+    boolean hasQueuedPackets() {
+        return !handOffQueue.isEmpty();
+    }
 
-                statistics.beginProcess();
-                addedData = processPacket(packet);
-                statistics.endProcess();
-            }
+    /**
+     * Record the time at which the receiver worker will next process this receiver,
+     * if not woken sooner.
+     *
+     * @return the deadline, in microseconds.
+     */
+    long armTimers() {
+        if (!inlineReceive) return armedDeadline = nextTimerDeadline();
+        inlineLock.lock();
+        try {
+            return armedDeadline = nextTimerDeadline();
+        }
+        finally {
+            inlineLock.unlock();
         }
+    }
+
+    private long nextTimerDeadline() {
+        // Inactive receivers do nothing but wait to become active.
+        if (!sessionState.isActive()) return Util.currentTimeMicros() + Util.getSYNTime();
+
+        final int firstLoss = receiverLossList.getFirstEntry();
+        final int ackNumber = (firstLoss < 0) ? seqSpace.increment(largestReceivedRelSeqNumber) : firstLoss;
+        return timers.nextDeadline(ackNumber != largestAcknowledgedAckNumber, firstLoss >= 0);
+    }
+
+    void setWakeUp(final Runnable wakeUp) {
+        this.wakeUp = wakeUp;
+    }
+
+    private void wakeUp() {
+        final Runnable w = wakeUp;
+        if (w != null) w.run();
+    }
+
+    /**
+     * @return true if data is ready to be polled from the receive buffer.
+     */
+    public boolean isReadable() {
+        return receiveBuffer.isReadable();
+    }
+
+    private boolean processQueuedPacket(final BoltPacket packet) throws IOException {
+        // Reset EXP count for any packet.
+        timers.resetEXPCount();
+
+        statistics.beginProcess();
+        final boolean addedData = processPacket(packet);
+        statistics.endProcess();
         return addedData;
     }
 
+    /**
+     * Packets are processed as they arrive; only the timers are left to check.
+     */
+    private void checkInlineTimers() throws IOException, ExpiryException {
+        inlineLock.lock();
+        try {
+            if (sessionState.isActive()) checkTimers();
+        }
+        finally {
+            inlineLock.unlock();
+        }
+    }
+
     private void checkTimers() throws IOException, ExpiryException {
         timers.ensureInit();
 
@@ -257,11 +391,11 @@ public class Receiver {
      */
     private void processACKEvent(final boolean isTriggeredByTimer) throws IOException {
         // 1) Find the sequence number prior to which all the packets have been received
-        final ReceiverLossListEntry entry = receiverLossList.getFirstEntry();
+        final int firstLoss = receiverLossList.getFirstEntry();
 
-        final int ackNumber = (entry == null)
-                ? SeqNum.increment16(largestReceivedRelSeqNumber)
-                : entry.getSequenceNumber();
+        final int ackNumber = (firstLoss < 0)
+                ? seqSpace.increment(largestReceivedRelSeqNumber)
+                : firstLoss;
 
         // 2a) If ackNumber equals to the largest sequence number ever acknowledged by ACK2
         if (ackNumber == largestAcknowledgedAckNumber) {
@@ -271,9 +405,7 @@ public class Receiver {
         else if (ackNumber == lastAckNumber) {
             // Or it is equals to the ackNumber in the last ACK and the time interval
             // between these two ACK packets is less than 2 RTTs, do not send(stop).
-            final long timeOfLastSentAck = ackHistoryWindow.getTime(lastAckNumber);
-
-            if (Util.currentTimeMicros() - timeOfLastSentAck < 2 * roundTripTime) {
+            if (Util.currentTimeMicros() - lastAckSentTime < 2 * roundTripTime) {
                 return;
             }
         }
@@ -287,10 +419,11 @@ public class Receiver {
             // 7) Records the ACK number, ackseqNumber and the departure time of this Ack in the ACK History Window.
             final long ackSeqNumber = sendAcknowledgment(ackNumber);
 
-            AckHistoryEntry sentAckNumber = new AckHistoryEntry(ackSeqNumber, ackNumber, Util.currentTimeMicros());
-            ackHistoryWindow.add(sentAckNumber);
+            final long now = Util.currentTimeMicros();
+            ackHistoryWindow.add(ackSeqNumber, ackNumber, now);
             // Store ack number for next iteration
             lastAckNumber = ackNumber;
+            lastAckSentTime = now;
         }
     }
 
@@ -304,14 +437,19 @@ public class Receiver {
      * in an NAK packet.
      */
     private void processNAKEvent() throws IOException {
-        final List<Integer> seqNumbers = receiverLossList.getFilteredSequenceNumbers(roundTripTime, true);
-        sendNAK(seqNumbers);
+        final Nak nAckPacket = new Nak(seqSpace);
+        final int maxLossInfoLength = Nak.maxLossInfoLength(sessionState.getDatagramSize());
+        if (receiverLossList.addDueLossRanges(nAckPacket, roundTripTime, maxLossInfoLength) == 0) return;
+        nAckPacket.setDestinationID(sessionState.getDestinationSessionID());
+        endpoint.doSend(nAckPacket, sessionState);
+        statistics.incNumberOfNAKSent();
     }
 
     /**
      * EXP Event Processing:
      * <ol>
-     * <li> Put all the unacknowledged packets into the sender's loss list.
+     * <li> If this is not the first expiry since the peer was last heard from, put all the
+     * unacknowledged packets into the sender's loss list.
      * <li> If (ExpCount > 16) and at least 3 seconds has elapsed since that
      * last time when ExpCount is reset to 1, or, 3 minutes has elapsed,
      * close the Bolt connection and exit.
@@ -325,8 +463,9 @@ public class Receiver {
      */
     private void processEXPEvent() throws IOException, ExpiryException {
         if (!sessionState.isActive()) return;
-        // Put all the unacknowledged packets in the senders loss list.
-        sender.putUnacknowledgedPacketsIntoLossList();
+        // The sender times out lost packets individually. Only once the peer has been
+        // silent for consecutive EXP periods, put all unacknowledged packets in its loss list.
+        if (timers.getExpCount() > 1) sender.putUnacknowledgedPacketsIntoLossList();
         if (timers.isSessionExpired()) {
             LOG.warn("Session {} expired.", sessionState);
             throw new ExpiryException("Session expired.");
@@ -355,14 +494,31 @@ public class Receiver {
                 final Ack2 ack2 = (Ack2) p;
                 onAck2PacketReceived(ack2);
             }
+            else if (packetType == PacketType.MTU_PROBE) {
+                onMtuProbeReceived((MtuProbe) p);
+            }
         }
         return addedData;
     }
 
+    /**
+     * Answer a path MTU probe which arrived, so the peer's sender may raise its datagram size.
+     */
+    private void onMtuProbeReceived(final MtuProbe probe) throws IOException {
+        if (probe.isReply()) return;
+        endpoint.doSend(MtuProbe.reply(probe.getProbeSize(), sessionState.getDestinationSessionID()), sessionState);
+    }
+
     /**
      * @return true if new data was submitted to the receive buffer, otherwise false.
      */
     private boolean onDataPacketReceived(final DataPacket dp) throws IOException {
+        // Sequence numbers of the other width than agreed would be misread, so drop the packet.
+        if (dp.isWideSeqNumbers() != seqSpace.isWide()) {
+            LOG.warn("Dropping packet [{}] : sequence number width does not match the session", dp.getPacketSeqNumber());
+            dp.release();
+            return false;
+        }
 
         final ReceiveBuffer.OfferResult OK = receiveBuffer.offer(dp);
         if (!OK.success) {
@@ -370,6 +526,7 @@ public class Receiver {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Dropping packet [{}  {}] : [{}]", dp.getPacketSeqNumber(), dp.getReliabilitySeqNumber(), OK.message);
             }
+            dp.release();
             return false;
         }
 
@@ -393,19 +550,19 @@ public class Receiver {
             reliableN++;
             final int relSeqNum = dp.getReliabilitySeqNumber();
             // 6) Number of detected lost packet
-            if (SeqNum.compare16(relSeqNum, SeqNum.increment16(largestReceivedRelSeqNumber)) > 0) {
+            if (seqSpace.compare(relSeqNum, seqSpace.increment(largestReceivedRelSeqNumber)) > 0) {
                 // 6.a) If the number of the current data packet is greater than LSRN + 1,
                 // put all the sequence numbers between (but excluding) these two values
                 // into the receiver's loss list and send them to the sender in an NAK packet
                 sendNAK(relSeqNum);
             }
-            else if (SeqNum.compare16(relSeqNum, largestReceivedRelSeqNumber) < 0) {
+            else if (seqSpace.compare(relSeqNum, largestReceivedRelSeqNumber) < 0) {
                 // 6.b) If the sequence number is less than LRSN, remove it from the receiver's loss list.
                 receiverLossList.remove(relSeqNum);
             }
 
             // 7) Update the LRSN
-            if (SeqNum.compare16(relSeqNum, largestReceivedRelSeqNumber) > 0) {
+            if (seqSpace.compare(relSeqNum, largestReceivedRelSeqNumber) > 0) {
                 largestReceivedRelSeqNumber = relSeqNum;
             }
 
@@ -427,32 +584,18 @@ public class Receiver {
      * @throws IOException
      */
     private void sendNAK(final int currentRelSequenceNumber) throws IOException {
-        final Nak nAckPacket = new Nak();
-        nAckPacket.addLossRange(SeqNum.increment16(largestReceivedRelSeqNumber), currentRelSequenceNumber);
+        final int firstLost = seqSpace.increment(largestReceivedRelSeqNumber);
+        final int lastLost = seqSpace.decrement(currentRelSequenceNumber);
+        final Nak nAckPacket = new Nak(seqSpace);
+        nAckPacket.addLossRange(firstLost, lastLost);
         nAckPacket.setDestinationID(sessionState.getDestinationSessionID());
         // Put all the sequence numbers between (but excluding) these two values into the receiver loss list.
-        for (int i = SeqNum.increment16(largestReceivedRelSeqNumber);
-             SeqNum.compare16(i, currentRelSequenceNumber) < 0;
-             i = SeqNum.increment16(i)) {
-            final ReceiverLossListEntry detectedLossSeqNumber = new ReceiverLossListEntry(i);
-            receiverLossList.insert(detectedLossSeqNumber);
-        }
+        receiverLossList.insertRange(firstLost, lastLost);
         endpoint.doSend(nAckPacket, sessionState);
         LOG.debug("NAK for {}", currentRelSequenceNumber);
         statistics.incNumberOfNAKSent();
     }
 
-    private void sendNAK(final List<Integer> reliabilitySeqNumbers) throws IOException {
-        if (reliabilitySeqNumbers.isEmpty()) return;
-        final List<Integer> toSend = (reliabilitySeqNumbers.size() > 300)
-                ? reliabilitySeqNumbers.subList(0, 300) : reliabilitySeqNumbers;
-        final Nak nAckPacket = new Nak();
-        nAckPacket.addLossList(toSend);
-        nAckPacket.setDestinationID(sessionState.getDestinationSessionID());
-        endpoint.doSend(nAckPacket, sessionState);
-        statistics.incNumberOfNAKSent();
-    }
-
     private long sendLightAcknowledgment(final int ackNumber) throws IOException {
         final Ack acknowledgmentPkt = buildLightAcknowledgement(ackNumber);
         endpoint.doSend(acknowledgmentPkt, sessionState);
@@ -464,6 +607,7 @@ public class Receiver {
         final Ack ack = Ack.buildAcknowledgement(ackNumber, ++ackSequenceNumber, roundTripTime, roundTripTimeVar,
                 bufferSize, sessionState.getDestinationSessionID(),
                 packetPairWindow.getEstimatedLinkCapacity(), packetHistoryWindow.getPacketArrivalSpeed());
+        receiverLossList.addSackBlocks(ack, largestReceivedRelSeqNumber, MAX_SACK_BLOCKS);
 
         endpoint.doSend(ack, sessionState);
 
@@ -491,19 +635,42 @@ public class Receiver {
      * </ol>
      */
     private void onAck2PacketReceived(Ack2 ack2) {
-        final AckHistoryEntry entry = ackHistoryWindow.getEntry(ack2.getAckSequenceNumber());
-        if (entry != null) {
-            final long ackNumber = entry.getAckNumber();
+        final long sentTime = ackHistoryWindow.getSentTime(ack2.getAckSequenceNumber());
+        if (sentTime >= 0) {
+            final long ackNumber = ackHistoryWindow.getAckNumber(ack2.getAckSequenceNumber());
             largestAcknowledgedAckNumber = Math.max(ackNumber, largestAcknowledgedAckNumber);
 
-            final long rtt = entry.getAge();
-            roundTripTime = (roundTripTime > 0) ? ((roundTripTime * 7 + rtt) / 8) : rtt;
-            roundTripTimeVar = (roundTripTimeVar * 3 + Math.abs(roundTripTimeVar - rtt)) / 4;
+            onRttSample(Util.currentTimeMicros() - sentTime);
+        }
+    }
 
-            // Calculate ack timer interval and update timer with this.
-            timers.updateTimerIntervals(roundTripTime, roundTripTimeVar);
-            statistics.setRTT(roundTripTime, roundTripTimeVar);
+    /**
+     * Update the RTT and RTTVar with a sample, and the ACK and NAK periods from them.
+     *
+     * @param rtt the time from an ACK being sent to its ACK2 arriving, in microseconds.
+     */
+    void onRttSample(final long rtt) {
+        if (roundTripTime > 0) {
+            // Variance from the RTT before this sample, as the sample would otherwise count towards both.
+            roundTripTimeVar = (roundTripTimeVar * 3 + Math.abs(roundTripTime - rtt)) / 4;
+            roundTripTime = (roundTripTime * 7 + rtt) / 8;
+        }
+        else {
+            roundTripTimeVar = rtt / 2;
+            roundTripTime = rtt;
         }
+
+        // Calculate ack timer interval and update timer with this.
+        timers.updateTimerIntervals(roundTripTime, roundTripTimeVar);
+        statistics.setRTT(roundTripTime, roundTripTimeVar);
+    }
+
+    long getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    long getRoundTripTimeVar() {
+        return roundTripTimeVar;
     }
 
     private void sendKeepAlive() throws IOException {
@@ -1,84 +1,251 @@
 package io.lyracommunity.bolt.receiver;
 
+import io.lyracommunity.bolt.packet.Ack;
+import io.lyracommunity.bolt.packet.Nak;
+import io.lyracommunity.bolt.util.SeqSpace;
 import io.lyracommunity.bolt.util.Util;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
-
 /**
  * Receiver's Loss List is a list of tuples whose values include:
  * the sequence numbers of detected lost data packets, the latest
  * feedback time of each tuple, and a parameter k that is the number
  * of times each one has been fed back in NAK. Values are stored in
  * the increasing order of packet sequence numbers.
- *
- * @see ReceiverLossListEntry
+ * <p>
+ * Losses are held as ranges of consecutive sequence numbers in parallel
+ * primitive arrays, sorted by sequence number, so a gap of any size is a single
+ * entry sharing one feedback time and k. Ranges are found by binary search,
+ * and removing a number from the middle of a range splits it in two. Ordering
+ * is wrap-aware as long as the entries span less than half of the sequence space.
  */
 class ReceiverLossList {
 
-    private final PriorityBlockingQueue<ReceiverLossListEntry> backingList;
+    private static final int INITIAL_CAPACITY = 32;
+
+    private int[]  firstSeqNums     = new int[INITIAL_CAPACITY];
+    private int[]  lastSeqNums      = new int[INITIAL_CAPACITY];
+    private long[] lastFeedbackTime = new long[INITIAL_CAPACITY];
+    private int[]  k                = new int[INITIAL_CAPACITY];
+
+    private final SeqSpace seqSpace;
+
+    /** Index of the first range, so that removing from the front does not shift the arrays. */
+    private int head;
+
+    /** Number of ranges. */
+    private int count;
+
+    /** Number of sequence numbers, over all ranges. */
+    private int size;
 
     ReceiverLossList() {
-        backingList = new PriorityBlockingQueue<>(32);
+        this(new SeqSpace(false));
     }
 
-    void insert(ReceiverLossListEntry entry) {
-        if (!contains(entry)) {
-            backingList.add(entry);
-        }
+    /**
+     * @param seqSpace the session's reliability sequence number space.
+     */
+    ReceiverLossList(final SeqSpace seqSpace) {
+        this.seqSpace = seqSpace;
     }
 
-    void remove(final int relSeqNo) {
-        backingList.remove(new ReceiverLossListEntry(relSeqNo));
+    synchronized void insert(final int relSeqNum) {
+        insertRange(relSeqNum, relSeqNum);
     }
 
-    private boolean contains(final ReceiverLossListEntry obj) {
-        return backingList.contains(obj);
+    /**
+     * Insert a range of lost sequence numbers. Numbers already held are left untouched.
+     *
+     * @param firstRelSeqNum first lost number, inclusive.
+     * @param lastRelSeqNum  last lost number, inclusive. If less than the first, the range wraps.
+     */
+    synchronized void insertRange(final int firstRelSeqNum, final int lastRelSeqNum) {
+        // Newly detected gaps always follow all known losses.
+        if (count == 0 || seqSpace.compare(firstRelSeqNum, lastSeqNums[head + count - 1]) > 0) {
+            insertAt(count, firstRelSeqNum, lastRelSeqNum, Util.currentTimeMicros(), 2);
+            return;
+        }
+        for (int seq = firstRelSeqNum; ; seq = seqSpace.increment(seq)) {
+            final int index = search(seq);
+            if (index < 0) insertAt(-index - 1, seq, seq, Util.currentTimeMicros(), 2);
+            if (seq == lastRelSeqNum) break;
+        }
     }
 
-    public boolean isEmpty() {
-        return backingList.isEmpty();
+    /**
+     * Remove a sequence number, splitting the range holding it if necessary.
+     *
+     * @param relSeqNum the received sequence number.
+     */
+    synchronized void remove(final int relSeqNum) {
+        final int index = search(relSeqNum);
+        if (index < 0) return;
+        final int i = head + index;
+        final int first = firstSeqNums[i];
+        final int last = lastSeqNums[i];
+        size--;
+        if (first == last) {
+            removeAt(index);
+        }
+        else if (relSeqNum == first) {
+            firstSeqNums[i] = seqSpace.increment(first);
+        }
+        else if (relSeqNum == last) {
+            lastSeqNums[i] = seqSpace.decrement(last);
+        }
+        else {
+            lastSeqNums[i] = seqSpace.decrement(relSeqNum);
+            insertAt(index + 1, seqSpace.increment(relSeqNum), last, lastFeedbackTime[i], k[i]);
+            // The split counted the upper part again.
+            size -= seqSpace.offset(relSeqNum, last);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
     }
 
     /**
-     * Read (but NOT remove) the first entry in the loss list.
+     * Read (but NOT remove) the first sequence number in the loss list.
      *
-     * @return the read entry.
+     * @return the lowest lost sequence number, or -1 if the list is empty.
      */
-    ReceiverLossListEntry getFirstEntry() {
-        return backingList.peek();
+    synchronized int getFirstEntry() {
+        return (count == 0) ? -1 : firstSeqNums[head];
     }
 
-    public int size() {
-        return backingList.size();
+    /**
+     * @return the number of lost sequence numbers.
+     */
+    public synchronized int size() {
+        return size;
     }
 
     /**
-     * Return all sequence numbers whose last feedback time is larger than k * RTT.
+     * Add to the NAK all ranges whose last feedback time is more than k * RTT ago,
+     * then increase their k and reset their feedback time.
      *
-     * @param RTT        the current round trip time
-     * @param doFeedback true if the k parameter should be increased and the time should
-     *                   be reset (using {@link ReceiverLossListEntry#feedback()} )
-     * @return the sequence numbers.
+     * @param nak       the NAK to add loss info to.
+     * @param RTT       the current round trip time.
+     * @param maxLength maximum length of the NAK's loss info, in bytes. Ranges which may
+     *                  not fit are left for a later NAK.
+     * @return the number of ranges added.
      */
-    List<Integer> getFilteredSequenceNumbers(final long RTT, final boolean doFeedback) {
-        final List<Integer> result = new ArrayList<>();
-        final ReceiverLossListEntry[] sorted = backingList.toArray(new ReceiverLossListEntry[0]);
-        Arrays.sort(sorted);
-        for (ReceiverLossListEntry e : sorted) {
-            if ((Util.currentTimeMicros() - e.getLastFeedbackTime()) > e.getK() * RTT) {
-                result.add(e.getSequenceNumber());
-                if (doFeedback) e.feedback();
+    synchronized int addDueLossRanges(final Nak nak, final long RTT, final int maxLength) {
+        final long now = Util.currentTimeMicros();
+        int added = 0;
+        for (int i = head, end = head + count; i < end && nak.getLossInfoLength() + Nak.MAX_RANGE_LENGTH <= maxLength; i++) {
+            if (now - lastFeedbackTime[i] > k[i] * RTT) {
+                nak.addLossRange(firstSeqNums[i], lastSeqNums[i]);
+                k[i]++;
+                lastFeedbackTime[i] = now;
+                added++;
             }
         }
-        return result;
+        return added;
     }
 
-    public String toString() {
-        return backingList.toString();
+    /**
+     * Add to the ACK a SACK block for each range received between the losses,
+     * and after the last loss up to the largest received sequence number.
+     *
+     * @param ack              the ACK to add blocks to.
+     * @param largestReceived  the largest sequence number received.
+     * @param maxBlocks        maximum number of blocks to add.
+     * @return the number of blocks added.
+     */
+    synchronized int addSackBlocks(final Ack ack, final int largestReceived, final int maxBlocks) {
+        int added = 0;
+        for (int i = head, end = head + count; i < end && added < maxBlocks; i++) {
+            final int first = seqSpace.increment(lastSeqNums[i]);
+            final int last = (i + 1 < end) ? seqSpace.decrement(firstSeqNums[i + 1]) : largestReceived;
+            if (seqSpace.compare(first, last) <= 0) {
+                ack.addSackBlock(first, last);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Binary search for the range holding the sequence number.
+     *
+     * @return the range index relative to the head, or {@code -(insertion point) - 1} if not held.
+     */
+    private int search(final int relSeqNum) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (seqSpace.compare(relSeqNum, firstSeqNums[head + mid]) < 0) high = mid - 1;
+            else if (seqSpace.compare(relSeqNum, lastSeqNums[head + mid]) > 0) low = mid + 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    private void insertAt(final int index, final int first, final int last, final long time, final int kValue) {
+        if (head + count == firstSeqNums.length) makeRoom();
+        final int i = head + index;
+        final int moved = count - index;
+        if (moved > 0) {
+            System.arraycopy(firstSeqNums, i, firstSeqNums, i + 1, moved);
+            System.arraycopy(lastSeqNums, i, lastSeqNums, i + 1, moved);
+            System.arraycopy(lastFeedbackTime, i, lastFeedbackTime, i + 1, moved);
+            System.arraycopy(k, i, k, i + 1, moved);
+        }
+        firstSeqNums[i] = first;
+        lastSeqNums[i] = last;
+        lastFeedbackTime[i] = time;
+        k[i] = kValue;
+        count++;
+        size += seqSpace.offset(first, last) + 1;
     }
 
+    private void removeAt(final int index) {
+        if (index == 0) {
+            head++;
+        }
+        else {
+            final int i = head + index;
+            final int moved = count - index - 1;
+            System.arraycopy(firstSeqNums, i + 1, firstSeqNums, i, moved);
+            System.arraycopy(lastSeqNums, i + 1, lastSeqNums, i, moved);
+            System.arraycopy(lastFeedbackTime, i + 1, lastFeedbackTime, i, moved);
+            System.arraycopy(k, i + 1, k, i, moved);
+        }
+        if (--count == 0) head = 0;
+    }
+
+    /**
+     * Move the ranges back to the start of the arrays, growing them if more than half full.
+     */
+    private void makeRoom() {
+        final int capacity = (count * 2 > firstSeqNums.length) ? firstSeqNums.length * 2 : firstSeqNums.length;
+        firstSeqNums = compact(firstSeqNums, capacity);
+        lastSeqNums = compact(lastSeqNums, capacity);
+        k = compact(k, capacity);
+        final long[] times = new long[capacity];
+        System.arraycopy(lastFeedbackTime, head, times, 0, count);
+        lastFeedbackTime = times;
+        head = 0;
+    }
+
+    private int[] compact(final int[] values, final int capacity) {
+        final int[] result = new int[capacity];
+        System.arraycopy(values, head, result, 0, count);
+        return result;
+    }
+
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = head; i < head + count; i++) {
+            if (i > head) sb.append(", ");
+            sb.append(firstSeqNums[i]);
+            if (lastSeqNums[i] != firstSeqNums[i]) sb.append('-').append(lastSeqNums[i]);
+            sb.append("[k=").append(k[i]).append(",time=").append(lastFeedbackTime[i]).append(']');
+        }
+        return sb.append(']').toString();
+    }
 
 }
@@ -1,32 +1,84 @@
 package io.lyracommunity.bolt.receiver;
 
 import io.lyracommunity.bolt.api.BoltEvent;
-import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.session.Session;
 import io.lyracommunity.bolt.session.SessionController;
+import io.lyracommunity.bolt.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Thread for processing the {@link Receiver} of each session.
+ * <p>
+ * Each receiver thread is a worker owning the sessions which
+ * {@link SessionController#workerOf(int)} assigns to it. A session is only
+ * visited when packets are queued for it, or when one of its ACK, NAK or EXP
+ * timers is due according to a {@link TimerWheel}, so mostly idle sessions
+ * cost nothing between their timers.
  */
 public class ReceiverThread {
 
 
     private static final Logger LOG = LoggerFactory.getLogger(ReceiverThread.class);
 
+    /** Packets processed for a session per visit, before other sessions get a turn. */
+    private static final int MAX_PACKETS_PER_VISIT = 64;
+
+    /** Upper bound on a single park, in microseconds. */
+    private static final long MAX_PARK_MICROS = 20_000;
+
     private final SessionController sessions;
 
-    private final Config config;
+    private final int worker;
+
+    /** Sessions added since last picked up by the worker. */
+    private final Queue<Session> added = new ConcurrentLinkedQueue<>();
+
+    /** Sessions with packets queued, or a timer to re-arm sooner. */
+    private final Queue<Entry> woken = new ConcurrentLinkedQueue<>();
+
+    /** The worker thread, unparked when there is work. */
+    private volatile Thread owner;
 
+    /** Registration for sessions added to the controller. */
+    private final Subscription sessionAdded;
 
-    public ReceiverThread(final Config config, final SessionController sessions) {
-        this.config = config;
+
+    public ReceiverThread(final SessionController sessions) {
+        this(sessions, 0);
+    }
+
+    /**
+     * @param sessions the session controller.
+     * @param worker   index of this worker.
+     */
+    public ReceiverThread(final SessionController sessions, final int worker) {
         this.sessions = sessions;
+        this.worker = worker;
+        this.sessionAdded = sessions.onSessionAdded(session -> {
+            if (sessions.workerOf(session.getSessionID()) == worker) {
+                added.offer(session);
+                unparkOwner();
+            }
+        });
+    }
+
+    /**
+     * Stop taking on sessions added to the controller, which outlives this worker.
+     */
+    public void close() {
+        sessionAdded.unsubscribe();
+        added.clear();
     }
 
     /**
@@ -38,29 +90,28 @@ public class ReceiverThread {
         return Observable.create(subscriber -> {
             try {
                 LOG.info("Starting Receiver Thread");
-                Thread.currentThread().setName("Bolt-Receiver");
+                Thread.currentThread().setName("Bolt-Receiver-" + worker);
+                owner = Thread.currentThread();
 
+                final TimerWheel<Entry> timers = new TimerWheel<>(toTick(Util.currentTimeMicros()));
                 while (!subscriber.isUnsubscribed()) {
-                    sessions.awaitPacketArrival(computeWaitTimeMicros(), TimeUnit.MICROSECONDS);
-                    for (final Session session : sessions.getSessions()) {
-                        try {
-
-                            final Receiver receiver = session.getReceiver();
-                            final boolean addedData = receiver.receiverAlgorithm(false);
-
-                            if (addedData) {
-                                sessions.signalPacketReady();
-                            }
-                        }
-                        catch (final ExpiryException ex) {
-                            LOG.warn("Session expired due to timeout");
-                            sessions.endSession(subscriber, session.getSessionID(), "Session timeout");
-                        }
-                        catch (final IOException ex) {
-                            LOG.error("Unexpected receiver IO error", ex);
-                            sessions.endSession(subscriber, session.getSessionID(), "Unexpected exception");
-                        }
+                    for (Session session; (session = added.poll()) != null; ) register(session);
+
+                    for (Entry entry; (entry = woken.poll()) != null; ) {
+                        entry.wakePending.set(false);
+                        visit(subscriber, timers, entry);
                     }
+                    timers.advance(toTick(Util.currentTimeMicros()), entry -> visit(subscriber, timers, entry));
+
+                    // Wait
+                    if (woken.isEmpty() && added.isEmpty()) {
+                        final long nextTick = timers.nextTick();
+                        final long waitMicros = (nextTick == Long.MAX_VALUE)
+                                ? MAX_PARK_MICROS
+                                : Math.min(MAX_PARK_MICROS, nextTick * 1000 - Util.currentTimeMicros());
+                        if (waitMicros > 0) LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(waitMicros));
+                    }
+                    if (Thread.interrupted()) throw new InterruptedException();
                 }
             }
             catch (final InterruptedException ex) {
@@ -75,9 +126,75 @@ public class ReceiverThread {
         });
     }
 
-    private long computeWaitTimeMicros() {
-        final long cappedWait = Math.min(20_000, config.getExpTimerInterval());
-        return Math.max(5_000, cappedWait);
+    private void register(final Session session) {
+        final Entry entry = new Entry(session);
+        session.getReceiver().setWakeUp(() -> wake(entry));
+        wake(entry);
+    }
+
+    private void wake(final Entry entry) {
+        if (entry.wakePending.compareAndSet(false, true)) {
+            woken.offer(entry);
+            unparkOwner();
+        }
+    }
+
+    private void unparkOwner() {
+        final Thread thread = owner;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Process a session's due timers and queued packets, then re-arm its timer.
+     */
+    private void visit(final Subscriber<? super BoltEvent> subscriber, final TimerWheel<Entry> timers, final Entry entry) {
+        final Session session = entry.session;
+        // Sessions which have ended are dropped.
+        if (sessions.getSession(session.getSessionID()) != session) {
+            timers.cancel(entry.timer);
+            return;
+        }
+        try {
+            final Receiver receiver = session.getReceiver();
+            final boolean addedData = receiver.processQueuedPackets(MAX_PACKETS_PER_VISIT);
+
+            if (addedData) {
+                sessions.signalPacketReady(session);
+            }
+            if (receiver.hasQueuedPackets()) wake(entry);
+            timers.schedule(entry.timer, toTick(receiver.armTimers()));
+        }
+        catch (final ExpiryException ex) {
+            LOG.warn("Session expired due to timeout");
+            timers.cancel(entry.timer);
+            sessions.endSession(subscriber, session.getSessionID(), "Session timeout");
+        }
+        catch (final IOException ex) {
+            LOG.error("Unexpected receiver IO error", ex);
+            timers.cancel(entry.timer);
+            sessions.endSession(subscriber, session.getSessionID(), "Unexpected exception");
+        }
+    }
+
+    /**
+     * @return the first millisecond tick strictly after the given time.
+     */
+    private static long toTick(final long timeMicros) {
+        return timeMicros / 1000 + 1;
+    }
+
+    /**
+     * A session owned by this worker.
+     */
+    private static final class Entry {
+
+        private final Session                     session;
+        private final TimerWheel.Timer<Entry>     timer       = new TimerWheel.Timer<>(this);
+        private final AtomicBoolean               wakePending = new AtomicBoolean();
+
+        private Entry(final Session session) {
+            this.session = session;
+        }
     }
 
 }
@@ -0,0 +1,185 @@
+package io.lyracommunity.bolt.receiver;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel, holding one-shot timers with millisecond ticks.
+ * <p>
+ * Each level has 64 slots. A timer is placed on the lowest level whose slots
+ * distinguish its deadline from the current tick, and is cascaded to a lower
+ * level when the wheel reaches the start of its slot. Scheduling, cancelling
+ * and firing are all constant time, so the cost of advancing the wheel does
+ * not grow with the number of idle timers. Deadlines beyond the range of the
+ * top level fire early, at the end of its range.
+ * <p>
+ * Not thread-safe.
+ *
+ * @param <T> type of the object owning each timer.
+ */
+class TimerWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS     = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS    = 4;
+
+    /** The last tick reachable from the top level. */
+    private static final long RANGE_MASK = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /** Head of each slot's list of timers, by level. */
+    @SuppressWarnings("unchecked")
+    private final Timer<T>[][] slots = (Timer<T>[][]) new Timer<?>[LEVELS][SLOTS];
+
+    /** The next tick to be processed. */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param startTick the current tick.
+     */
+    TimerWheel(final long startTick) {
+        this.currentTick = startTick;
+    }
+
+    /**
+     * Schedule, or reschedule, a timer.
+     *
+     * @param timer        the timer.
+     * @param deadlineTick the tick to fire on. Timers already due fire on the next advance.
+     */
+    void schedule(final Timer<T> timer, final long deadlineTick) {
+        if (timer.isScheduled()) unlink(timer);
+        else size++;
+        long deadline = Math.max(deadlineTick, currentTick);
+        if (((deadline ^ currentTick) & ~RANGE_MASK) != 0) deadline = currentTick | RANGE_MASK;
+        timer.deadline = deadline;
+        link(timer);
+    }
+
+    /**
+     * Cancel a timer, if scheduled.
+     */
+    void cancel(final Timer<T> timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    /**
+     * Process every tick up to and including the given one, firing due timers.
+     * A timer may be rescheduled by the callback.
+     *
+     * @param nowTick the current tick.
+     * @param onFire  called with the owner of each timer fired.
+     */
+    void advance(final long nowTick, final Consumer<T> onFire) {
+        if (size == 0 && nowTick >= currentTick) {
+            currentTick = nowTick + 1;
+            return;
+        }
+        while (currentTick <= nowTick) {
+            final long tick = currentTick;
+            // Cascade higher levels whose slot starts at this tick, highest first.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) cascade(level, slotOf(tick, level));
+            }
+            final int slot = slotOf(tick, 0);
+            Timer<T> timer = slots[0][slot];
+            slots[0][slot] = null;
+            // Move on first, so timers rescheduled for now by a callback fire next tick.
+            currentTick = tick + 1;
+            while (timer != null) {
+                final Timer<T> next = timer.next;
+                timer.next = timer.prev = null;
+                timer.level = -1;
+                size--;
+                onFire.accept(timer.owner);
+                timer = next;
+            }
+        }
+    }
+
+    /**
+     * @return the earliest tick at which {@link #advance} may fire or cascade a timer,
+     * or {@link Long#MAX_VALUE} if none are scheduled.
+     */
+    long nextTick() {
+        if (size == 0) return Long.MAX_VALUE;
+        final long blockEnd = currentTick | SLOT_MASK;
+        for (long tick = currentTick; tick <= blockEnd; tick++) {
+            if (slots[0][slotOf(tick, 0)] != null) return tick;
+        }
+        return blockEnd + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(final int level, final int slot) {
+        Timer<T> timer = slots[level][slot];
+        slots[level][slot] = null;
+        while (timer != null) {
+            final Timer<T> next = timer.next;
+            timer.next = timer.prev = null;
+            link(timer);
+            timer = next;
+        }
+    }
+
+    private void link(final Timer<T> timer) {
+        final long diff = timer.deadline ^ currentTick;
+        final int level = (diff == 0) ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+        final int slot = slotOf(timer.deadline, level);
+        final Timer<T> head = slots[level][slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+        slots[level][slot] = timer;
+    }
+
+    private void unlink(final Timer<T> timer) {
+        if (timer.prev != null) timer.prev.next = timer.next;
+        else slots[timer.level][timer.slot] = timer.next;
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.next = timer.prev = null;
+        timer.level = -1;
+    }
+
+    private static int slotOf(final long tick, final int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+    }
+
+    /**
+     * A timer, reusable once fired or cancelled.
+     *
+     * @param <T> type of the owner.
+     */
+    static final class Timer<T> {
+
+        final T owner;
+
+        private long     deadline;
+        private int      level = -1;
+        private int      slot;
+        private Timer<T> next;
+        private Timer<T> prev;
+
+        Timer(final T owner) {
+            this.owner = owner;
+        }
+
+        boolean isScheduled() {
+            return level >= 0;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+    }
+
+}
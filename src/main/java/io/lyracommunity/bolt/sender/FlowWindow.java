@@ -1,126 +1,178 @@
 package io.lyracommunity.bolt.sender;
 
+import io.lyracommunity.bolt.api.WaitStrategy;
 import io.lyracommunity.bolt.packet.DataPacket;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
 
 /**
  * Holds a fixed number of {@link DataPacket} instances which are sent out.<br/>
  * <p>
  * It is assumed that a single thread (the producer) stores new data,
  * and another single thread (the consumer) reads/removes data.
+ * <p>
+ * The window is a lock-free ring. Each side owns one running index, which it
+ * publishes with an ordered (lazy) write after filling or freeing a slot, and
+ * caches the other side's index to avoid reading it on every call. The indices
+ * are padded onto separate cache lines. A producer finding the window full
+ * waits according to a {@link WaitStrategy}.
+ * <p>
+ * Slots are created at the chunk size current when first needed. Pre-allocated
+ * memory is only taken on the first produce, once the handshake has agreed the
+ * datagram size, rather than for the size configured on this side.
  */
 class FlowWindow {
 
+    private static final int  SPIN_ATTEMPTS  = 10;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     // TODO this can be a big source of memory when multiple sessions are open.
     private final DataPacket[] packets;
 
-    private final int           length;
-    private final int           chunkSize;
-    private final ReentrantLock lock;
-    private final Condition     notFull;
-    private volatile boolean isEmpty      = true;
-    private volatile boolean isFull       = false;
-    /**
-     * Valid entries that can be read.
-     */
-    private volatile int     validEntries = 0;
+    private final int          capacity;
+    private final IntSupplier  chunkSize;
+    private final WaitStrategy waitStrategy;
+
+    /** Whether all slots are still to be allocated on the first produce. Producer only. */
+    private boolean preAllocate;
 
     /**
-     * Index where the next data packet will be written to.
+     * Index where the next data packet will be written to. Written by the producer only.
      */
-    private volatile int writePos = 0;
+    private final PaddedIndex writeIndex = new PaddedIndex();
 
     /**
-     * One before the index where the next data packet will be read from.
+     * Index where the next data packet will be read from. Written by the consumer only.
      */
-    private volatile int readPos  = -1;
-    private volatile int consumed = 0;
-    private volatile int produced = 0;
+    private final PaddedIndex readIndex = new PaddedIndex();
+
+    /** The producer's last view of the read index. */
+    private long readIndexCache;
+
+    /** The consumer's last view of the write index. */
+    private long writeIndexCache;
+
+    /** The producer while it is parked waiting for room, so the consumer can wake it. */
+    private volatile Thread parkedProducer;
+
+    /** Slots matching the indices, wrapped by each side to avoid a division per packet. */
+    private int writePos = 0;
+    private int readPos  = 0;
+
+    FlowWindow(final boolean preAllocateMemory, final int flowWindowSize, final int chunkSize) {
+        this(preAllocateMemory, flowWindowSize, () -> chunkSize, WaitStrategy.BACKOFF);
+    }
 
     /**
      * Initialize.
      *
      * @param preAllocateMemory whether to pre-allocate all memory for performance.
      * @param flowWindowSize    flow window size
-     * @param chunkSize         data chunk size
+     * @param chunkSize         data chunk size, read when slots are allocated.
+     * @param waitStrategy      how the producer waits while the window is full.
      */
-    FlowWindow(final boolean preAllocateMemory, final int flowWindowSize, final int chunkSize) {
-        this.length = flowWindowSize + 1;
+    FlowWindow(final boolean preAllocateMemory, final int flowWindowSize, final IntSupplier chunkSize,
+               final WaitStrategy waitStrategy) {
+        // One spare slot, so the packet last consumed is not overwritten until the next is consumed.
+        this.capacity = flowWindowSize;
         this.chunkSize = chunkSize;
-        this.packets = new DataPacket[length];
-        if (preAllocateMemory) {
-            for (int i = 0; i < packets.length; i++) {
-                createDataPacket(i);
-            }
+        this.waitStrategy = waitStrategy;
+        this.packets = new DataPacket[flowWindowSize + 1];
+        this.preAllocate = preAllocateMemory;
+    }
+
+    private void allocateAll() {
+        preAllocate = false;
+        final int size = chunkSize.getAsInt();
+        for (int i = 0; i < packets.length; i++) {
+            if (packets[i] == null) createDataPacket(i, size);
         }
-        this.lock = new ReentrantLock(true);
-        this.notFull = lock.newCondition();
     }
 
-    private DataPacket createDataPacket(final int index) {
+    private DataPacket createDataPacket(final int index, final int size) {
         packets[index] = new DataPacket();
-        packets[index].setData(new byte[chunkSize]);
+        packets[index].setData(new byte[size]);
         return packets[index];
     }
 
     private DataPacket getDataPacket(final int index) {
         final DataPacket dp = packets[index];
-        return (dp != null) ? dp : createDataPacket(index);
+        return (dp != null) ? dp : createDataPacket(index, chunkSize.getAsInt());
     }
 
+    /**
+     * Copy a packet into the window, waiting up to the given time for room.
+     *
+     * @return true if the packet was stored, false if the window stayed full.
+     */
     boolean tryProduce(final DataPacket src, final int timeout, final TimeUnit unit) throws InterruptedException {
-        // Do quick check before locking for performance.
-        lock.lock();
-        try {
-            long nanos = unit.toNanos(timeout);
-            while (isFull) {
-                if (nanos <= 0) return false;
-                nanos = notFull.awaitNanos(nanos);
-            }
-
-            final DataPacket toProduce = getDataPacket(writePos);
-            toProduce.copyFrom(src);
-
-            if (++writePos == length) writePos = 0;
-            ++validEntries;
-            ++produced;
-            isEmpty = false;
-            isFull = (validEntries == length - 1);
-        }
-        finally {
-            lock.unlock();
+        if (preAllocate) allocateAll();
+        final long write = writeIndex.get();
+        if (write - readIndexCache >= capacity) {
+            readIndexCache = readIndex.get();
+            if (write - readIndexCache >= capacity && !awaitRoom(write, unit.toNanos(timeout))) return false;
         }
+
+        getDataPacket(writePos).copyFrom(src);
+        if (++writePos == packets.length) writePos = 0;
+        writeIndex.lazySet(write + 1);
         return true;
     }
 
-    DataPacket consumeData() {
-        // Do quick check before locking.
-        if (isEmpty) return null;
-
-        lock.lock();
-        try {
-            if (isEmpty) return null;
-
-            DataPacket p = packets[++readPos];
-
-            if (readPos == length - 1) readPos = -1;
-            --validEntries;
-            isEmpty = validEntries == 0;
-            isFull = false;
-            ++consumed;
-            notFull.signal();
-            return p;
+    private boolean awaitRoom(final long write, final long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        for (int attempt = 0; ; attempt++) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (System.nanoTime() - deadline >= 0) return false;
+            idle(write, attempt);
+            readIndexCache = readIndex.get();
+            if (write - readIndexCache < capacity) return true;
         }
-        finally {
-            lock.unlock();
+    }
+
+    private void idle(final long write, final int attempt) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            case BACKOFF:
+            default:
+                if (attempt < SPIN_ATTEMPTS) break;
+                // The consumer unparks us once it frees a slot. As its index is published
+                // lazily the wake-up may be missed, so the park is also bounded.
+                parkedProducer = Thread.currentThread();
+                if (write - readIndex.get() >= capacity) LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                parkedProducer = null;
         }
     }
 
+    /**
+     * Take the next packet from the window. The packet remains valid until the
+     * next call, after which its slot may be reused.
+     *
+     * @return the packet, or null if the window is empty.
+     */
+    DataPacket consumeData() {
+        final long read = readIndex.get();
+        if (read == writeIndexCache) {
+            writeIndexCache = writeIndex.get();
+            if (read == writeIndexCache) return null;
+        }
+        final DataPacket p = packets[readPos];
+        if (++readPos == packets.length) readPos = 0;
+        readIndex.lazySet(read + 1);
+        final Thread producer = parkedProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        return p;
+    }
+
     boolean isEmpty() {
-        return isEmpty;
+        return readIndex.get() == writeIndex.get();
     }
 
     /**
@@ -129,15 +181,26 @@ class FlowWindow {
      * @return true if window is full, otherwise false.
      */
     boolean isFull() {
-        return isFull;
+        return writeIndex.get() - readIndex.get() >= capacity;
     }
 
 
     public String toString() {
-        return "FlowWindow size=" + length +
-                " full=" + isFull + " empty=" + isEmpty +
-                " readPos=" + readPos + " writePos=" + writePos +
-                " consumed=" + consumed + " produced=" + produced;
+        final long read = readIndex.get();
+        final long write = writeIndex.get();
+        return "FlowWindow size=" + capacity +
+                " full=" + (write - read >= capacity) + " empty=" + (write == read) +
+                " consumed=" + read + " produced=" + write;
+    }
+
+    /**
+     * Index padded to sit alone on its cache line, so the producer's and consumer's
+     * writes do not invalidate each other's line.
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedIndex extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+        private long p1, p2, p3, p4, p5, p6, p7;
     }
 
 }
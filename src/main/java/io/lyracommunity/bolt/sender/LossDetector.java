@@ -0,0 +1,257 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.packet.Ack;
+import io.lyracommunity.bolt.util.SeqSpace;
+import io.lyracommunity.bolt.util.Util;
+
+/**
+ * Declares unacknowledged reliable packets lost one at a time, from when each
+ * was last sent, so a single loss costs a single retransmission.
+ * <ul>
+ * <li> RACK: a packet is lost once a packet sent more than a reordering window
+ * after it has been delivered, whether acknowledged or selectively acknowledged.
+ * The window is a quarter of the minimum RTT, so mild reordering is tolerated.
+ * <li> RTO: a packet is lost once it has gone unacknowledged for longer than
+ * 3 * SRTT + 4 * RTTVar, plus the time the receiver may hold back an ACK. This
+ * is at least an RTT after the probe timeout, and doubles for each timeout
+ * without progress.
+ * <li> Tail-loss probe: when nothing has been acknowledged for two RTTs (plus the
+ * ACK delay) since the last send, the newest outstanding packet is resent. This
+ * draws an ACK whose SACK blocks let RACK recover a lost tail, which otherwise
+ * no later delivery would reveal, well before the RTO.
+ * </ul>
+ * Until an RTT has been measured, the EXP timer interval serves as the timeout.
+ * <p>
+ * ACKs are recorded by the receiver thread, and losses are detected by the
+ * sender thread, which inserts them in the sender's loss list.
+ */
+class LossDetector {
+
+    /** Lower bound of the retransmission timeout, in microseconds. */
+    static final long MIN_RTO = 2 * Util.getSYNTime();
+
+    /** Lower bound of the reordering window, in microseconds. */
+    static final long MIN_REORDER_WINDOW = 1_000;
+
+    /** Upper bound of the timeout back-off multiplier. */
+    static final int MAX_BACKOFF = 64;
+
+    private final RetransmitBuffer sendBuffer;
+    private final SenderLossList   lossList;
+    private final SeqSpace         seqSpace;
+    private final long             initialTimeout;
+
+    /** Round trip time and its variance from the latest ACK, in microseconds, or 0 if not yet measured. */
+    private volatile long srtt;
+    private volatile long rttVar;
+    private volatile long minRtt = Long.MAX_VALUE;
+
+    /** Latest send time of any packet delivered, written by the receiver thread. */
+    private volatile long    rackSentTime = -1;
+    /** Highest sequence number delivered, up to which RACK looks for losses. */
+    private volatile int     rackEndSeqNum;
+    /** Set when an ACK delivers packets, until the sender thread runs RACK. */
+    private volatile boolean rackPending;
+
+    // Owned by the sender thread.
+    private long    rtoDeadline = Sender.IDLE;
+    private long    lastSendTime;
+    private long    lastProgressTime;
+    private int     backoff     = 1;
+    private boolean probePending;
+
+    private long rtoCount;
+    private long probeCount;
+
+    /**
+     * @param sendBuffer     the unacknowledged packets.
+     * @param lossList       where lost packets are inserted for retransmission.
+     * @param initialTimeout retransmission timeout before an RTT is measured, in microseconds.
+     */
+    LossDetector(final RetransmitBuffer sendBuffer, final SenderLossList lossList, final long initialTimeout) {
+        this.sendBuffer = sendBuffer;
+        this.lossList = lossList;
+        this.seqSpace = sendBuffer.getSeqSpace();
+        this.initialTimeout = initialTimeout;
+    }
+
+    /**
+     * Record the RTT carried in an ACK, and the packets its acknowledgement number
+     * delivers. Must be called by the receiver thread before the send buffer is released.
+     *
+     * @param ack the received ACK.
+     */
+    void onAck(final Ack ack) {
+        final long rtt = ack.getRoundTripTime();
+        if (rtt > 0) {
+            rttVar = ack.getRoundTripTimeVar();
+            srtt = rtt;
+            if (rtt < minRtt) minRtt = rtt;
+        }
+        final int lastAcked = seqSpace.decrement(ack.getAckNumber());
+        onDelivered(lastAcked, lastAcked);
+    }
+
+    /**
+     * Record a range of packets newly delivered, as reported by an ACK. Must be
+     * called by the receiver thread.
+     *
+     * @param first first sequence number, inclusive.
+     * @param last  last sequence number, inclusive.
+     */
+    void onDelivered(final int first, final int last) {
+        final long sent = sendBuffer.latestSentTime(first, last);
+        if (sent < 0) return;
+        if (sent > rackSentTime) rackSentTime = sent;
+        if (!rackPending || seqSpace.compare(last, rackEndSeqNum) > 0) rackEndSeqNum = last;
+        rackPending = true;
+    }
+
+    /**
+     * Record that a reliable packet was sent or retransmitted. Must be called by the sender thread.
+     *
+     * @param seqNum reliability sequence number of the packet.
+     * @param now    the current time, in microseconds.
+     */
+    void onSent(final int seqNum, final long now) {
+        sendBuffer.setSentTime(seqNum, now);
+        lastSendTime = now;
+        if (rtoDeadline == Sender.IDLE) rtoDeadline = now + getRetransmissionTimeout();
+    }
+
+    /**
+     * Insert packets found lost into the loss list. Must be called by the sender thread.
+     *
+     * @param now the current time, in microseconds.
+     * @return when losses should next be checked for, in microseconds, or {@link Sender#IDLE}
+     * if nothing is outstanding.
+     */
+    long detectLosses(final long now) {
+        if (sendBuffer.size() == 0) {
+            rtoDeadline = Sender.IDLE;
+            backoff = 1;
+            probePending = false;
+            rackPending = false;
+            return Sender.IDLE;
+        }
+        if (rackPending) {
+            rackPending = false;
+            // Delivery is progress: the peer is responsive.
+            backoff = 1;
+            probePending = false;
+            lastProgressTime = now;
+            detectReordered();
+        }
+        if (now >= rtoDeadline) detectTimedOut(now);
+
+        long probeDeadline = Sender.IDLE;
+        if (!probePending && lossList.isEmpty()) {
+            probeDeadline = Math.max(lastSendTime, lastProgressTime) + getProbeTimeout();
+            if (now >= probeDeadline) {
+                sendProbe();
+                probeDeadline = Sender.IDLE;
+            }
+        }
+        return Math.min(rtoDeadline, probeDeadline);
+    }
+
+    /**
+     * RACK: any packet sent a reordering window before the latest delivered one is lost.
+     */
+    private void detectReordered() {
+        final long reorderWindow = Math.max(MIN_REORDER_WINDOW, (minRtt == Long.MAX_VALUE) ? 0 : minRtt / 4);
+        final long lostBefore = rackSentTime - reorderWindow;
+        final int end = rackEndSeqNum;
+        for (int seqNum = sendBuffer.getHead(); sendBuffer.contains(seqNum) && seqSpace.compare(seqNum, end) < 0;
+             seqNum = seqSpace.increment(seqNum)) {
+            if (isOutstanding(seqNum) && sendBuffer.getSentTime(seqNum) < lostBefore) lossList.insert(seqNum);
+        }
+    }
+
+    /**
+     * RTO: any packet unacknowledged for longer than the timeout is lost.
+     */
+    private void detectTimedOut(final long now) {
+        final long timeout = getRetransmissionTimeout();
+        long oldest = Long.MAX_VALUE;
+        boolean lost = false;
+        for (int seqNum = sendBuffer.getHead(); sendBuffer.contains(seqNum); seqNum = seqSpace.increment(seqNum)) {
+            if (!isOutstanding(seqNum)) continue;
+            final long sent = sendBuffer.getSentTime(seqNum);
+            if (now - sent >= timeout) {
+                lossList.insert(seqNum);
+                lost = true;
+            }
+            else if (sent < oldest) {
+                oldest = sent;
+            }
+        }
+        if (lost) {
+            rtoCount++;
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+        // Resent packets restart the timer through onSent.
+        rtoDeadline = (oldest == Long.MAX_VALUE) ? Sender.IDLE : oldest + getRetransmissionTimeout();
+    }
+
+    /**
+     * Tail-loss probe: resend the newest packet not yet known to be delivered.
+     */
+    private void sendProbe() {
+        for (int seqNum = seqSpace.decrement(sendBuffer.getTail()); sendBuffer.contains(seqNum);
+             seqNum = seqSpace.decrement(seqNum)) {
+            if (!sendBuffer.isSacked(seqNum)) {
+                lossList.insert(seqNum);
+                probePending = true;
+                probeCount++;
+                return;
+            }
+        }
+    }
+
+    private boolean isOutstanding(final int seqNum) {
+        return !sendBuffer.isSacked(seqNum) && !lossList.contains(seqNum);
+    }
+
+    /**
+     * @return the longest the receiver may hold back an ACK, matching its ACK timer interval.
+     */
+    private long getAckDelay() {
+        return 4 * srtt + rttVar + Util.getSYNTime();
+    }
+
+    /**
+     * @return the current retransmission timeout, including back-off, in microseconds.
+     */
+    long getRetransmissionTimeout() {
+        final long base = (srtt == 0) ? initialTimeout : Math.max(MIN_RTO, getProbeTimeout() + srtt + 4 * rttVar);
+        return base * backoff;
+    }
+
+    /**
+     * @return how long after the last send or progress to send a tail-loss probe, in microseconds.
+     */
+    long getProbeTimeout() {
+        return (srtt == 0) ? initialTimeout : 2 * srtt + getAckDelay();
+    }
+
+    /**
+     * @return the number of timeouts which found packets lost.
+     */
+    long getRtoCount() {
+        return rtoCount;
+    }
+
+    /**
+     * @return the number of tail-loss probes sent.
+     */
+    long getProbeCount() {
+        return probeCount;
+    }
+
+    public String toString() {
+        return "LossDetector srtt=" + srtt + " rttVar=" + rttVar + " rto=" + getRetransmissionTimeout()
+                + " backoff=" + backoff + " rtoCount=" + rtoCount + " probeCount=" + probeCount;
+    }
+
+}
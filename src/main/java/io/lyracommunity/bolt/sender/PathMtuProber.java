@@ -0,0 +1,112 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.ChannelOut;
+import io.lyracommunity.bolt.packet.MtuProbe;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.util.Util;
+
+import java.io.IOException;
+
+/**
+ * Searches for the largest datagram the path to the peer carries, up to the size
+ * agreed in the handshake, by sending padded {@link MtuProbe probes}.
+ * <p>
+ * The agreed size is probed first, as on loopback or a jumbo-frame LAN it usually
+ * passes. After a probe goes unanswered {@link #MAX_ATTEMPTS} times, the sizes between
+ * the largest answered and the failed probe are bisected, until they are within
+ * {@link #MIN_STEP} of each other. Each answered probe raises the session's datagram size.
+ * <p>
+ * Replies are recorded by the receiver thread, and probes are sent by the sender thread.
+ */
+class PathMtuProber {
+
+    /** Time to wait for a reply before probing again, in microseconds. */
+    static final long PROBE_INTERVAL = 10 * Util.getSYNTime();
+
+    /** Probes of a size sent without reply before the size is taken to fail. */
+    static final int MAX_ATTEMPTS = 3;
+
+    /** The search ends once the largest passing and smallest failing sizes are this close, in bytes. */
+    static final int MIN_STEP = 32;
+
+    private final SessionState sessionState;
+    private final ChannelOut   endpoint;
+
+    /** Largest size answered, written by the receiver thread. */
+    private volatile int answered;
+
+    // Owned by the sender thread.
+    private int     low;
+    private int     high;
+    private int     probeSize;
+    private int     attempts;
+    private long    nextProbeTime;
+    private boolean started;
+
+    private long probeCount;
+
+    PathMtuProber(final SessionState sessionState, final ChannelOut endpoint) {
+        this.sessionState = sessionState;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Record the reply to a probe. Must be called by the receiver thread.
+     *
+     * @param reply the reply received.
+     */
+    void onReply(final MtuProbe reply) {
+        if (reply.getProbeSize() > answered) answered = reply.getProbeSize();
+    }
+
+    /**
+     * Apply any answered probe, and send the next probe if due. Must be called by the
+     * sender thread once the session is ready.
+     *
+     * @param now the current time, in microseconds.
+     * @return when to next probe, in microseconds, or {@link Sender#IDLE} once the search is over.
+     * @throws IOException on failure to send a probe.
+     */
+    long probe(final long now) throws IOException {
+        if (!started) {
+            started = true;
+            low = sessionState.getDatagramSize();
+            high = sessionState.getMaxDatagramSize();
+        }
+        if (answered > low) {
+            low = answered;
+            sessionState.setDatagramSize(low);
+            probeSize = 0;
+        }
+        if (probeSize != 0 && now >= nextProbeTime && attempts >= MAX_ATTEMPTS) {
+            high = probeSize - 1;
+            probeSize = 0;
+        }
+        if (high - low < MIN_STEP) return Sender.IDLE;
+        if (probeSize == 0) {
+            // The agreed size first, then bisect.
+            probeSize = (high == sessionState.getMaxDatagramSize()) ? high : high - (high - low) / 2;
+            attempts = 0;
+            nextProbeTime = now;
+        }
+        if (now >= nextProbeTime) {
+            endpoint.doSend(MtuProbe.probe(probeSize, sessionState.getDestinationSessionID()), sessionState);
+            attempts++;
+            probeCount++;
+            nextProbeTime = now + PROBE_INTERVAL;
+        }
+        return nextProbeTime;
+    }
+
+    /**
+     * @return the number of probes sent.
+     */
+    long getProbeCount() {
+        return probeCount;
+    }
+
+    public String toString() {
+        return "PathMtuProber low=" + low + " high=" + high + " probeSize=" + probeSize + " probeCount=" + probeCount;
+    }
+
+}
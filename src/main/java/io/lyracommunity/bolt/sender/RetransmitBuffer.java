@@ -0,0 +1,262 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.Nak;
+import io.lyracommunity.bolt.util.SeqSpace;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the reliable data packets that have been sent out but not yet
+ * acknowledged, so that they can be retransmitted.
+ * <p>
+ * Packets are stored in a fixed-capacity ring indexed by
+ * {@code reliabilitySeqNumber & mask}, giving constant time insert and lookup.
+ * The window of unacknowledged sequence numbers runs from the head (inclusive)
+ * to the tail (exclusive). An acknowledgement releases all packets before it
+ * at once by advancing the head, after which their slots are reused.
+ * <p>
+ * Packets received beyond the acknowledgement, as reported by SACK blocks,
+ * are marked so they are neither retransmitted nor put back in the loss list
+ * on timeout. Their slots are freed with the rest of the window, once the
+ * acknowledgement passes them.
+ * <p>
+ * Each slot also records when its packet was last sent, so losses can be
+ * declared per packet by {@link LossDetector}.
+ * <p>
+ * It is assumed that a single thread (the sender) stores and retransmits
+ * packets, and another single thread (the receiver) releases them. The sender
+ * must not hold more packets than the capacity.
+ */
+class RetransmitBuffer {
+
+    private final DataPacket[]       packets;
+    private final int                mask;
+    private final SeqSpace           seqSpace;
+
+    /**
+     * Sequence number of each slot's packet if it has been selectively acknowledged, otherwise -1.
+     */
+    private final AtomicIntegerArray sacked;
+
+    /**
+     * Time each slot's packet was last sent, in microseconds.
+     */
+    private final AtomicLongArray    sentTimes;
+
+    /**
+     * Oldest reliability sequence number that has not been acknowledged.
+     */
+    private volatile int head;
+
+    /**
+     * One after the newest reliability sequence number stored.
+     */
+    private volatile int tail;
+
+    /**
+     * @param capacity      maximum number of unacknowledged packets, rounded up to a power of two.
+     * @param initialSeqNum the first reliability sequence number that will be stored.
+     */
+    RetransmitBuffer(final int capacity, final int initialSeqNum) {
+        this(capacity, initialSeqNum, new SeqSpace(false));
+    }
+
+    /**
+     * @param capacity      maximum number of unacknowledged packets, rounded up to a power of two.
+     * @param initialSeqNum the first reliability sequence number that will be stored.
+     * @param seqSpace      the session's reliability sequence number space.
+     */
+    RetransmitBuffer(final int capacity, final int initialSeqNum, final SeqSpace seqSpace) {
+        final int length = (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        if (length > SeqSpace.MAX_WINDOW) {
+            throw new IllegalArgumentException("Capacity must be at most a quarter of the sequence number space: " + capacity);
+        }
+        this.packets = new DataPacket[length];
+        this.mask = length - 1;
+        this.seqSpace = seqSpace;
+        this.sacked = new AtomicIntegerArray(length);
+        for (int i = 0; i < length; i++) sacked.set(i, -1);
+        this.sentTimes = new AtomicLongArray(length);
+        this.head = initialSeqNum;
+        this.tail = initialSeqNum;
+    }
+
+    /**
+     * Store a copy of a reliable data packet which is about to be sent.
+     *
+     * @param dp the packet to store.
+     */
+    void store(final DataPacket dp) {
+        final int seqNum = dp.getReliabilitySeqNumber();
+        final int index = seqNum & mask;
+        DataPacket slot = packets[index];
+        if (slot == null) {
+            slot = new DataPacket();
+            packets[index] = slot;
+        }
+        slot.copyFrom(dp);
+        sacked.set(index, -1);
+        if (seqSpace.compare(seqNum, tail) >= 0) tail = seqSpace.increment(seqNum);
+    }
+
+    /**
+     * Get an unacknowledged packet.
+     *
+     * @param seqNum the reliability sequence number of the packet.
+     * @return the packet, or null if it is not held (for example, if it was acknowledged).
+     */
+    DataPacket get(final int seqNum) {
+        if (!contains(seqNum)) return null;
+        final DataPacket slot = packets[seqNum & mask];
+        return (slot != null && slot.getReliabilitySeqNumber() == seqNum && !isSacked(seqNum)) ? slot : null;
+    }
+
+    /**
+     * Record when an unacknowledged packet was sent or retransmitted.
+     *
+     * @param seqNum the reliability sequence number of the packet.
+     * @param time   the time it was sent, in microseconds.
+     */
+    void setSentTime(final int seqNum, final long time) {
+        if (contains(seqNum)) sentTimes.set(seqNum & mask, time);
+    }
+
+    /**
+     * @param seqNum the reliability sequence number of the packet.
+     * @return when the packet was last sent, in microseconds, or -1 if it is not held.
+     */
+    long getSentTime(final int seqNum) {
+        return contains(seqNum) ? sentTimes.get(seqNum & mask) : -1;
+    }
+
+    /**
+     * @param first first sequence number, inclusive.
+     * @param last  last sequence number, inclusive.
+     * @return the latest time any held packet in the range was sent, or -1 if none are held.
+     */
+    long latestSentTime(final int first, final int last) {
+        if (seqSpace.compare(first, last) > 0) return -1;
+        long latest = -1;
+        for (int seqNum = first; ; seqNum = seqSpace.increment(seqNum)) {
+            if (contains(seqNum)) latest = Math.max(latest, sentTimes.get(seqNum & mask));
+            if (seqNum == last) break;
+        }
+        return latest;
+    }
+
+    /**
+     * Mark a range of unacknowledged packets as received.
+     *
+     * @param first first received sequence number, inclusive.
+     * @param last  last received sequence number, inclusive.
+     * @return the number of packets newly marked.
+     */
+    int markSacked(final int first, final int last) {
+        if (seqSpace.compare(first, last) > 0) return 0;
+        int marked = 0;
+        for (int seqNum = first; ; seqNum = seqSpace.increment(seqNum)) {
+            if (contains(seqNum) && sacked.getAndSet(seqNum & mask, seqNum) != seqNum) marked++;
+            if (seqNum == last) break;
+        }
+        return marked;
+    }
+
+    /**
+     * @return true if the packet was selectively acknowledged.
+     */
+    boolean isSacked(final int seqNum) {
+        return sacked.get(seqNum & mask) == seqNum;
+    }
+
+    /**
+     * Pass each range of unacknowledged packets which were not selectively acknowledged.
+     *
+     * @param consumer receives the first and last sequence numbers of each range, inclusive.
+     */
+    void forEachUnsackedRange(final Nak.LossRangeConsumer consumer) {
+        final int end = tail;
+        int runStart = -1;
+        int seqNum = head;
+        for (; seqNum != end; seqNum = seqSpace.increment(seqNum)) {
+            if (isSacked(seqNum)) {
+                if (runStart >= 0) consumer.accept(runStart, seqSpace.decrement(seqNum));
+                runStart = -1;
+            }
+            else if (runStart < 0) {
+                runStart = seqNum;
+            }
+        }
+        if (runStart >= 0) consumer.accept(runStart, seqSpace.decrement(seqNum));
+    }
+
+    /**
+     * @return true if the sequence number lies within the window of unacknowledged packets.
+     */
+    boolean contains(final int seqNum) {
+        return seqSpace.compare(seqNum, head) >= 0 && seqSpace.compare(seqNum, tail) < 0;
+    }
+
+    /**
+     * @param ackNumber the reliability sequence number up to which packets were received, exclusive.
+     * @return the number of unacknowledged packets before it which were not selectively acknowledged.
+     */
+    int countUnsackedBefore(final int ackNumber) {
+        final int end = (seqSpace.compare(ackNumber, tail) > 0) ? tail : ackNumber;
+        int count = 0;
+        for (int seqNum = head; seqSpace.compare(seqNum, end) < 0; seqNum = seqSpace.increment(seqNum)) {
+            if (!isSacked(seqNum)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Release all packets before the given acknowledgement number.
+     *
+     * @param ackNumber the reliability sequence number up to which packets were received, exclusive.
+     * @return the number of sequence numbers released.
+     */
+    int release(final int ackNumber) {
+        final int oldHead = head;
+        if (seqSpace.compare(ackNumber, oldHead) <= 0) return 0;
+        final int currentTail = tail;
+        final int newHead = (seqSpace.compare(ackNumber, currentTail) > 0) ? currentTail : ackNumber;
+        head = newHead;
+        return seqSpace.offset(oldHead, newHead);
+    }
+
+    /**
+     * @return the oldest unacknowledged reliability sequence number.
+     */
+    int getHead() {
+        return head;
+    }
+
+    /**
+     * @return one after the newest stored reliability sequence number.
+     */
+    int getTail() {
+        return tail;
+    }
+
+    /**
+     * @return the number of unacknowledged packets.
+     */
+    int size() {
+        return seqSpace.offset(head, tail);
+    }
+
+    SeqSpace getSeqSpace() {
+        return seqSpace;
+    }
+
+    int capacity() {
+        return packets.length;
+    }
+
+    public String toString() {
+        return "RetransmitBuffer head=" + head + " tail=" + tail + " capacity=" + packets.length;
+    }
+
+}
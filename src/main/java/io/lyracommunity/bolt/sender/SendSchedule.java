@@ -0,0 +1,193 @@
+package io.lyracommunity.bolt.sender;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides which senders the sender thread runs next.
+ * <p>
+ * Senders with work pending are held in a binary min-heap keyed by the time
+ * of their next step, so only those which are due are visited. Each entry
+ * records its own heap index, so a deadline can be moved in logarithmic
+ * time without allocating. A sender with nothing to do is left out of the
+ * heap entirely, until it is woken: new application data, a NAK or timeout
+ * which adds to its loss list, or an ACK which opens its window.
+ * <p>
+ * All methods except {@link #wake(Entry)} must be called from the sender thread.
+ */
+class SendSchedule {
+
+    private final Queue<Entry> woken = new ConcurrentLinkedQueue<>();
+
+    private Entry[] heap = new Entry[16];
+    private int     size;
+
+    /** The sender thread, which is unparked when an entry is woken. */
+    private volatile Thread owner;
+
+    void setOwner(final Thread owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Add a sender to the schedule. It is run as soon as possible, and subsequently
+     * whenever it asks to be or is woken.
+     *
+     * @param sender    the sender to schedule.
+     * @param sessionID ID of the session owning the sender.
+     * @return the entry for the sender.
+     */
+    Entry register(final Sender sender, final int sessionID) {
+        final Entry entry = new Entry(sender, sessionID);
+        sender.setWakeUp(() -> wake(entry));
+        wake(entry);
+        return entry;
+    }
+
+    /**
+     * Ask for an entry to be run promptly. May be called from any thread.
+     */
+    void wake(final Entry entry) {
+        if (entry.wakePending.compareAndSet(false, true)) {
+            woken.offer(entry);
+            final Thread thread = owner;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+    }
+
+    boolean hasWoken() {
+        return !woken.isEmpty();
+    }
+
+    /**
+     * Bring forward the deadline of each woken entry, though not before the step its
+     * sender is pacing towards.
+     *
+     * @param now the current time, in microseconds.
+     */
+    void drainWoken(final long now) {
+        Entry entry;
+        while ((entry = woken.poll()) != null) {
+            entry.wakePending.set(false);
+            final long deadline = Math.max(now, entry.sender.getNextStep());
+            if (entry.heapIndex < 0 || deadline < entry.deadline) schedule(entry, deadline);
+        }
+    }
+
+    /**
+     * Set the time at which an entry is next run.
+     *
+     * @param entry    the entry to schedule.
+     * @param deadline time in microseconds, or {@link Sender#IDLE} to leave it until woken.
+     */
+    void schedule(final Entry entry, final long deadline) {
+        if (deadline == Sender.IDLE) {
+            remove(entry);
+            return;
+        }
+        entry.deadline = deadline;
+        if (entry.heapIndex < 0) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            entry.heapIndex = size;
+            heap[size++] = entry;
+            siftUp(entry.heapIndex);
+        }
+        else {
+            siftDown(siftUp(entry.heapIndex));
+        }
+    }
+
+    /**
+     * Take the entry with the earliest deadline, if it is due.
+     *
+     * @param now the current time, in microseconds.
+     * @return the due entry, or null if none are due.
+     */
+    Entry pollDue(final long now) {
+        if (size == 0 || heap[0].deadline > now) return null;
+        final Entry entry = heap[0];
+        remove(entry);
+        return entry;
+    }
+
+    /**
+     * @return the earliest deadline, or {@link Sender#IDLE} if no entry is scheduled.
+     */
+    long nextDeadline() {
+        return (size == 0) ? Sender.IDLE : heap[0].deadline;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void remove(final Entry entry) {
+        final int index = entry.heapIndex;
+        if (index < 0) return;
+        entry.heapIndex = -1;
+        final Entry last = heap[--size];
+        heap[size] = null;
+        if (last != entry) {
+            heap[index] = last;
+            last.heapIndex = index;
+            siftDown(siftUp(index));
+        }
+    }
+
+    private int siftUp(int index) {
+        final Entry entry = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (heap[parent].deadline <= entry.deadline) break;
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(entry, index);
+        return index;
+    }
+
+    private void siftDown(int index) {
+        final Entry entry = heap[index];
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].deadline < heap[child].deadline) child++;
+            if (entry.deadline <= heap[child].deadline) break;
+            place(heap[child], index);
+            index = child;
+        }
+        place(entry, index);
+    }
+
+    private void place(final Entry entry, final int index) {
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+
+    /**
+     * A sender's place in the schedule.
+     */
+    static final class Entry {
+
+        final Sender sender;
+        final int    sessionID;
+
+        private final AtomicBoolean wakePending = new AtomicBoolean();
+
+        private long deadline;
+        private int  heapIndex = -1;
+
+        private Entry(final Sender sender, final int sessionID) {
+            this.sender = sender;
+            this.sessionID = sessionID;
+        }
+
+        boolean isScheduled() {
+            return heapIndex >= 0;
+        }
+    }
+
+}
@@ -3,20 +3,19 @@ package io.lyracommunity.bolt.sender;
 import io.lyracommunity.bolt.ChannelOut;
 import io.lyracommunity.bolt.CongestionControl;
 import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.api.RetransmitStrategy;
 import io.lyracommunity.bolt.packet.*;
 import io.lyracommunity.bolt.receiver.Receiver;
 import io.lyracommunity.bolt.session.SessionState;
 import io.lyracommunity.bolt.statistic.BoltStatistics;
 import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 import io.lyracommunity.bolt.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,6 +32,23 @@ public class Sender {
 
     private static final Logger LOG = LoggerFactory.getLogger(Sender.class);
 
+    /**
+     * Returned by the sender algorithm when there is nothing to do until the sender is woken.
+     */
+    static final long IDLE = Long.MAX_VALUE;
+
+    /**
+     * How long to wait for an ACK to open a full window before checking again, in microseconds.
+     */
+    private static final long ACK_WAIT_MICROS = 10_000;
+
+    /**
+     * Every 16th packet is sent straight after the one before, as a packet pair for the
+     * receiver to estimate the link capacity, so the sender waits this many send
+     * intervals after each of the other 15, to keep to the interval on average.
+     */
+    private static final double PACKET_PAIR_PACING = 16d / 15;
+
     private final ChannelOut endpoint;
 
     private final BoltStatistics statistics;
@@ -43,29 +59,40 @@ public class Sender {
     private final SenderLossList senderLossList;
 
     /**
-     * Stores the sent data packets and their sequence numbers.
+     * The session's reliability and order sequence number space, settled by the handshake.
      */
-    private final Map<Integer, DataPacket> sendBuffer;
+    private final SeqSpace seqSpace;
 
-    private final FlowWindow flowWindow;
+    /**
+     * Stores the sent reliable data packets until they are acknowledged.
+     */
+    private final RetransmitBuffer sendBuffer;
 
     /**
-     * Protects against races when reading/writing to the sendBuffer.
-     * TODO consider alternatives (could be a performance bottleneck).
+     * Declares unacknowledged packets lost from their send times.
      */
-    private final Object sendLock = new Object();
+    private final LossDetector lossDetector;
+
+    /**
+     * Searches for a larger datagram size, if path MTU discovery is enabled, otherwise null.
+     */
+    private final PathMtuProber mtuProber;
+
+    private final FlowWindow flowWindow;
+
+    private final RetransmitStrategy retransmitStrategy;
 
     /**
-     * Number of unacknowledged data packets.
+     * Most lost packets retransmitted in one step by the aggressive strategy.
      */
-    private final AtomicInteger unacknowledged = new AtomicInteger(0);
+    private final int retransmitBurstLimit;
 
     /**
      * Used by the sender to wait for an ACK.
      */
     private final ReentrantLock ackLock      = new ReentrantLock();
     private final Condition     ackCondition = ackLock.newCondition();
-    private final CongestionControl cc;
+    private volatile CongestionControl cc;
     private final SessionState      sessionState;
     /**
      * For generating data packet sequence numbers.
@@ -90,10 +117,15 @@ public class Sender {
     private volatile boolean started                          = false;
     private volatile long nextStep;
 
+    /**
+     * Called when there may be new work for the sender algorithm.
+     */
+    private volatile Runnable wakeUp;
+
 
     public Sender(final Config config, final SessionState state, final ChannelOut endpoint, final CongestionControl cc,
                   final BoltStatistics statistics) {
-        this(config, state, endpoint, cc, statistics, new SenderLossList());
+        this(config, state, endpoint, cc, statistics, new SenderLossList(config.getFlowWindowSize(), state.getSeqSpace()));
     }
 
     Sender(final Config config, final SessionState state, final ChannelOut endpoint, final CongestionControl cc,
@@ -103,13 +135,20 @@ public class Sender {
         this.statistics = statistics;
         this.sessionState = state;
         this.senderLossList = senderLossList;
-        this.sendBuffer = new ConcurrentHashMap<>(sessionState.getFlowWindowSize(), 0.75f, 2);
+        this.seqSpace = state.getSeqSpace();
+        // Sized before the handshake settles the sequence space, for the largest window it may allow.
+        this.sendBuffer = new RetransmitBuffer(config.getFlowWindowSize(), seqSpace.increment(currentReliabilitySequenceNumber), seqSpace);
+        this.lossDetector = new LossDetector(sendBuffer, senderLossList, config.getExpTimerInterval());
+        this.mtuProber = state.isPathMtuDiscovery() ? new PathMtuProber(state, endpoint) : null;
+        this.retransmitStrategy = config.getRetransmitStrategy();
+        this.retransmitBurstLimit = config.getRetransmitBurstLimit();
 
         this.lastAckReliabilitySequenceNumber = 0;
         this.currentSequenceNumber = state.getInitialSequenceNumber() - 1;
 
-        final int chunkSize = config.getDatagramSize() - 24;
-        this.flowWindow = new FlowWindow(config.isMemoryPreAllocation(), sessionState.getFlowWindowSize(), chunkSize);
+        // Chunks are sized when first used, by then from the datagram size agreed with the peer.
+        this.flowWindow = new FlowWindow(config.isMemoryPreAllocation(), config.getFlowWindowSize(),
+                () -> state.getMaxDatagramSize() - 24, config.getFlowWindowWaitStrategy());
     }
 
     /**
@@ -118,28 +157,50 @@ public class Sender {
     public void start() {
         LOG.info("Starting sender for {}", sessionState);
         started = true;
+        wakeUp();
+    }
+
+    /**
+     * Replace the congestion control, before the session starts.
+     */
+    public void setCongestionControl(final CongestionControl cc) {
+        this.cc = cc;
+    }
+
+    /**
+     * Set the callback that reschedules this sender when there may be new work.
+     */
+    void setWakeUp(final Runnable wakeUp) {
+        this.wakeUp = wakeUp;
+    }
+
+    private void wakeUp() {
+        final Runnable w = wakeUp;
+        if (w != null) w.run();
     }
 
     /**
      * Sends the given data packet, storing the relevant information.
      */
-    private void send(final DataPacket dp) throws IOException {
-        synchronized (sendLock) {
-            statistics.beginSend();
+    private void send(final DataPacket dp, final long now) throws IOException {
+        // Store data for potential retransmit before sending, in case the ACK is quicker than us.
+        if (dp.isReliable()) {
+            sendBuffer.store(dp);
+            lossDetector.onSent(dp.getReliabilitySeqNumber(), now);
+        }
 
+        statistics.beginSend();
+
+        endpoint.doSend(dp, sessionState);
+        if (dp.isReliable() && retransmitStrategy == RetransmitStrategy.DUPLICATE) {
+            // The second copy arrives unless both are lost, saving a retransmission.
             endpoint.doSend(dp, sessionState);
+            statistics.incNumberOfSentDataPackets();
+        }
 
-            statistics.endSend();
+        statistics.endSend();
 
-            if (dp.isReliable()) {
-                // Store data for potential retransmit.
-                final DataPacket buffered = new DataPacket();
-                buffered.copyFrom(dp);
-                sendBuffer.put(dp.getReliabilitySeqNumber(), buffered);
-                unacknowledged.incrementAndGet();
-            }
-            largestSentSequenceNumber = dp.getPacketSeqNumber();
-        }
+        largestSentSequenceNumber = dp.getPacketSeqNumber();
         statistics.incNumberOfSentDataPackets();
     }
 
@@ -156,11 +217,13 @@ public class Sender {
         src.setPacketSeqNumber(nextPacketSequenceNumber());
         src.setReliabilitySeqNumber(src.isReliable() ? nextReliabilitySequenceNumber() : 0);
         src.setOrderSeqNumber(src.isOrdered() ? nextOrderSequenceNumber() : 0);
+        src.setWideSeqNumbers(seqSpace.isWide());
 
         boolean complete = false;
         while (!complete) {
             complete = flowWindow.tryProduce(src, 100, TimeUnit.MILLISECONDS);
         }
+        wakeUp();
     }
 
     /**
@@ -176,6 +239,13 @@ public class Sender {
             else if (PacketType.NAK == received.getPacketType()) {
                 onNakReceived((Nak) received);
             }
+            else if (PacketType.MTU_PROBE == received.getPacketType() && mtuProber != null) {
+                final MtuProbe probe = (MtuProbe) received;
+                if (probe.isReply()) {
+                    mtuProber.onReply(probe);
+                    wakeUp();
+                }
+            }
         }
     }
 
@@ -192,6 +262,8 @@ public class Sender {
      * <li> Update estimated link capacity: B = (B * 7 + b) / 8, where b is the value carried in the ACK.
      * <li> Update sender's buffer (by releasing the buffer that has been acknowledged).
      * <li> Update sender's loss list (by removing all those that has been acknowledged).
+     * <li> Record the packets delivered, from which earlier packets may be found lost.
+     * <li> Report the number of packets newly delivered to the congestion control.
      * </ol>
      *
      * @param ack the received ACK packet.
@@ -220,22 +292,27 @@ public class Sender {
         cc.onACK(ackNumber);
         statistics.setCongestionWindowSize((long) cc.getCongestionWindowSize());
         // Need to remove all sequence numbers up the ACK number from the sendBuffer.
-        boolean removed;
-        for (int s = lastAckReliabilitySequenceNumber; SeqNum.compare16(s, ackNumber) < 0; s = SeqNum.increment16(s)) {
-            synchronized (sendLock) {
-                removed = sendBuffer.remove(s) != null;
-                senderLossList.remove(s);
-            }
-            if (removed) {
-                unacknowledged.decrementAndGet();
-            }
+        lossDetector.onAck(ack);
+        senderLossList.removeRange(lastAckReliabilitySequenceNumber, ackNumber);
+        int delivered = sendBuffer.countUnsackedBefore(ackNumber);
+        sendBuffer.release(ackNumber);
+        // Received packets beyond the ACK number need no retransmission.
+        for (int i = 0; i < ack.getSackBlockCount(); i++) {
+            final int first = ack.getSackBlockFirst(i);
+            final int last = ack.getSackBlockLast(i);
+            final int sacked = sendBuffer.markSacked(first, last);
+            if (sacked > 0) lossDetector.onDelivered(first, last);
+            delivered += sacked;
+            senderLossList.removeBlock(first, last);
         }
-        lastAckReliabilitySequenceNumber = SeqNum.compare16(lastAckReliabilitySequenceNumber, ackNumber) > 0
+        if (delivered > 0) cc.onDelivered(delivered);
+        lastAckReliabilitySequenceNumber = seqSpace.compare(lastAckReliabilitySequenceNumber, ackNumber) > 0
                 ? lastAckReliabilitySequenceNumber
                 : ackNumber;
-        // Send ACK2 packet to the receiver.
-        sendAck2(ackNumber);
+        // Send ACK2 packet to the receiver, echoing the ACK sequence number so it can find the ACK.
+        sendAck2(ack.getAckSequenceNumber());
         statistics.incNumberOfACKReceived();
+        wakeUp();
     }
 
     /**
@@ -249,13 +326,17 @@ public class Sender {
      * @param nak NAK packet received.
      */
     private void onNakReceived(final Nak nak) {
-        nak.computeExpandedLossList().forEach(senderLossList::insert);
+        final int firstLoss = nak.getFirstLoss();
+        if (firstLoss < 0) return;
+        nak.forEachLossRange(senderLossList::insertRange);
 
-        cc.onLoss(nak.computeExpandedLossList(), getCurrentReliabilitySequenceNumber());
+        final int lossCount = nak.getLossCount();
+        cc.onLoss(firstLoss, lossCount, getCurrentReliabilitySequenceNumber());
         statistics.incNumberOfNAKReceived();
+        wakeUp();
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("NAK for {} packets lost, set send period to {}", cc.getSendInterval());
+            LOG.debug("NAK for {} packets lost, set send period to {}", lossCount, cc.getSendInterval());
         }
     }
 
@@ -268,7 +349,9 @@ public class Sender {
      * Data Sending Algorithm:
      * <ol>
      * <li> If the sender's loss list is not empty, retransmit the first
-     * packet in the list and remove it from the list. Go to 5).
+     * packet in the list and remove it from the list. With the aggressive
+     * {@link RetransmitStrategy}, retransmit further packets in the list
+     * up to the burst limit. Go to 5).
      * <li> In messaging mode, if the packets has been the loss list for a
      * time more than the application specified TTL (time-to-live), send
      * a message drop request and remove all related packets from the
@@ -285,36 +368,55 @@ public class Sender {
      * congestion control and t is the total time used by step 1 to step 5. Go to 1).
      * </ol>
      *
-     * @return minimum time that the next step should begin, in microseconds.
-     * @throws IOException          on failure to send the DataPacket.
-     * @throws InterruptedException on the thread being interrupted.
+     * @return minimum time that the next step should begin, in microseconds, or {@link #IDLE}
+     * if there is nothing to send until the sender is woken.
+     * @throws IOException on failure to send the DataPacket.
      */
-    long senderAlgorithm() throws IOException, InterruptedException {
-        final long stepStartTime = Util.currentTimeMicros();
+    long senderAlgorithm() throws IOException {
+        return senderAlgorithm(Util.currentTimeMicros());
+    }
+
+    /**
+     * Run the sender algorithm as of the given time.
+     *
+     * @param stepStartTime the time the step starts, in microseconds.
+     * @see #senderAlgorithm()
+     */
+    long senderAlgorithm(final long stepStartTime) throws IOException {
 
         // If step or session not ready, prevent entering.
         if (stepStartTime < nextStep) return nextStep;
-        if (!sessionState.isReady() || !started) return nextStep = Util.currentTimeMicros() + 5_000;
+        if (!started) return IDLE;
+        if (!sessionState.isReady()) return nextStep = Util.currentTimeMicros() + 5_000;
+
+        // Declare lost any packets outstanding for too long, or overtaken by later deliveries,
+        // and probe for a larger datagram size if due.
+        final long lossDeadline = lossDetector.detectLosses(stepStartTime);
+        final long probeDeadline = (mtuProber == null) ? IDLE : mtuProber.probe(stepStartTime);
+        final long timerDeadline = Math.min(lossDeadline, probeDeadline);
 
         // If the sender's loss list is not empty
-        final Integer lossEntry = senderLossList.getFirstEntry();
-        if (lossEntry != null) {
-            handleRetransmit(lossEntry);
+        final int lossEntry = senderLossList.getFirstEntry();
+        if (lossEntry >= 0) {
+            handleRetransmit(lossEntry, stepStartTime);
+            if (retransmitStrategy == RetransmitStrategy.AGGRESSIVE) retransmitBurst(stepStartTime);
         }
         else {
             // If the number of unacknowledged data packets does not exceed the congestion
             // and the flow window sizes, pack a new packet.
-            final int unAcknowledged = unacknowledged.get();
+            final int unAcknowledged = sendBuffer.size();
 
             if (unAcknowledged < cc.getCongestionWindowSize()
                     && unAcknowledged < sessionState.getFlowWindowSize()) {
                 // Check for application data
                 final DataPacket dp = flowWindow.consumeData();
                 if (dp != null) {
-                    send(dp);
+                    send(dp, stepStartTime);
                 }
                 else {
+                    // Nothing to send until the application writes more, or a loss check or probe is due.
                     statistics.incNumberOfMissingDataEvents();
+                    return timerDeadline;
                 }
             }
             else {
@@ -322,15 +424,17 @@ public class Sender {
                 if (unAcknowledged >= cc.getCongestionWindowSize()) {
                     statistics.incNumberOfCCWindowExceededEvents();
                 }
-                // TODO this may be a bottleneck for servers with many clients connected
-                waitForAck();
+                // An ACK wakes the sender early.
+                return Math.min(Util.currentTimeMicros() + ACK_WAIT_MICROS, timerDeadline);
             }
         }
 
         // Wait
         if (largestSentSequenceNumber % 16 != 0) {
-            final long snd = (long) cc.getSendInterval();
-            nextStep = snd + stepStartTime;
+            final long snd = (long) (cc.getSendInterval() * PACKET_PAIR_PACING);
+            // Pace from the step's target rather than its start, so a step run late (for
+            // example, by a coarse scheduler) is made up, within the intervals allowed.
+            nextStep = Math.max(nextStep, stepStartTime - cc.getPacingCatchUp() * snd) + snd;
             if (Util.currentTimeMicros() < nextStep) {
                 statistics.incNumberOfCCSlowDownEvents();
             }
@@ -338,21 +442,34 @@ public class Sender {
         return nextStep;
     }
 
+    /**
+     * Re-transmit further entries from the sender loss list without pacing, up to the burst limit.
+     *
+     * @param now the current time, in microseconds.
+     */
+    private void retransmitBurst(final long now) {
+        for (int i = 1; i < retransmitBurstLimit; i++) {
+            final int lossEntry = senderLossList.getFirstEntry();
+            if (lossEntry < 0) return;
+            handleRetransmit(lossEntry, now);
+        }
+    }
+
     /**
      * Re-transmit an entry from the sender loss list.
      *
      * @param reliabilitySeqNum reliability sequence number to retransmit.
+     * @param now               the current time, in microseconds.
      */
-    private void handleRetransmit(final Integer reliabilitySeqNum) {
+    private void handleRetransmit(final int reliabilitySeqNum, final long now) {
         try {
             LOG.debug("Retransmitting reliable packet {}", reliabilitySeqNum);
             // Retransmit the packet.
-            final DataPacket data = sendBuffer.get(reliabilitySeqNum);
-            if (data != null) {
-                final DataPacket retransmit = new DataPacket();
-                retransmit.copyFrom(data);
+            final DataPacket retransmit = sendBuffer.get(reliabilitySeqNum);
+            if (retransmit != null) {
                 retransmit.setDestinationID(sessionState.getDestinationSessionID());
                 endpoint.doSend(retransmit, sessionState);
+                lossDetector.onSent(reliabilitySeqNum, now);
                 statistics.incNumberOfRetransmittedDataPackets();
             }
             else {
@@ -365,13 +482,14 @@ public class Sender {
     }
 
     /**
-     * For processing EXP event.
+     * For processing EXP event. Lost packets are normally found one at a time by the
+     * {@link LossDetector}, so this is only a last resort for a peer which has gone quiet.
      */
     public void putUnacknowledgedPacketsIntoLossList() {
-        synchronized (sendLock) {
-            for (final Integer l : sendBuffer.keySet()) {
-                senderLossList.insert(l);
-            }
+        if (sendBuffer.size() > 0) {
+            // Packets selectively acknowledged are known to have arrived.
+            sendBuffer.forEachUnsackedRange(senderLossList::insertRange);
+            wakeUp();
         }
     }
 
@@ -386,14 +504,14 @@ public class Sender {
      * The next reliability sequence number for data packets. The initial sequence number is {@code 0}.
      */
     private int nextReliabilitySequenceNumber() {
-        return currentReliabilitySequenceNumber = SeqNum.increment16(currentReliabilitySequenceNumber);
+        return currentReliabilitySequenceNumber = seqSpace.increment(currentReliabilitySequenceNumber);
     }
 
     /**
      * The next order sequence number for data packets. The initial sequence number is {@code 0}.
      */
     private int nextOrderSequenceNumber() {
-        return currentOrderSequenceNumber = SeqNum.increment16(currentOrderSequenceNumber);
+        return currentOrderSequenceNumber = seqSpace.increment(currentOrderSequenceNumber);
     }
 
     public int getCurrentReliabilitySequenceNumber() {
@@ -405,13 +523,24 @@ public class Sender {
     }
 
     public boolean haveAcknowledgementFor(final int reliabilitySequenceNumber) {
-        return SeqNum.compare16(reliabilitySequenceNumber, lastAckReliabilitySequenceNumber) < 0;
+        return seqSpace.compare(reliabilitySequenceNumber, lastAckReliabilitySequenceNumber) < 0;
     }
 
     public boolean isSentOut(final int packetSeqNum) {
         return SeqNum.comparePacketSeqNum(largestSentSequenceNumber, packetSeqNum) >= 0;
     }
 
+    /**
+     * @return the earliest time the next step may begin, in microseconds, as paced by congestion control.
+     */
+    long getNextStep() {
+        return nextStep;
+    }
+
+    LossDetector getLossDetector() {
+        return lossDetector;
+    }
+
     public boolean haveLostPackets() {
         return !senderLossList.isEmpty();
     }
@@ -434,19 +563,5 @@ public class Sender {
         }
     }
 
-    /**
-     * Wait for the next acknowledge.
-     *
-     * @throws InterruptedException if the thread is interrupted.
-     */
-    private void waitForAck() throws InterruptedException {
-        ackLock.lock();
-        try {
-            ackCondition.await(200, TimeUnit.MICROSECONDS);
-        }
-        finally {
-            ackLock.unlock();
-        }
-    }
 
 }
@@ -1,54 +1,183 @@
 package io.lyracommunity.bolt.sender;
 
 import io.lyracommunity.bolt.util.SeqNum;
-
-import java.util.concurrent.ConcurrentSkipListSet;
+import io.lyracommunity.bolt.util.SeqSpace;
 
 /**
  * The sender's loss list is used to store the sequence numbers of
  * the lost packets fed back by the receiver through NAK packets or
- * inserted in a timeout event. The numbers are stored in increasing order.
+ * inserted in a timeout event. The numbers are retrieved in increasing order.
+ * <p>
+ * Entries are held in a circular bitmap indexed by {@code seqNum & mask}, so a
+ * NAK range is inserted with a few word operations rather than one insert per
+ * lost packet. The bitmap covers twice the send window, or the whole sequence
+ * space if that is smaller (8KB for 16-bit sequence numbers). The first entry
+ * is searched for from a sequence number known to precede all entries, so
+ * wrapping is handled as long as the entries span less than the bitmap.
  */
 class SenderLossList {
 
-    private final ConcurrentSkipListSet<Integer> backingList;
+    private final long[]   words;
+    private final SeqSpace seqSpace;
+
+    private int size;
+
+    /**
+     * No entry precedes this sequence number. The search for the first entry starts here.
+     */
+    private int first;
 
     /**
-     * Create a new sender lost list.
+     * Create a new sender loss list over the whole 16-bit sequence space.
      */
     SenderLossList() {
-        backingList = new ConcurrentSkipListSet<>(this::compareLosses);
+        this((SeqNum.MAX_SEQ_NUM_16_BIT + 1) / 2, new SeqSpace(false));
+    }
+
+    /**
+     * Create a new sender loss list.
+     *
+     * @param capacity most unacknowledged packets the sender holds.
+     * @param seqSpace the session's reliability sequence number space.
+     */
+    SenderLossList(final int capacity, final SeqSpace seqSpace) {
+        final int length = Integer.highestOneBit(Math.max(32, capacity) - 1) << 2;
+        this.words = new long[length >>> 6];
+        this.seqSpace = seqSpace;
     }
 
-    void insert(final Integer obj) {
-        backingList.add(obj);
+    synchronized void insert(final int seqNum) {
+        insertRange(seqNum, seqNum);
     }
 
-    void remove(final Integer obj) {
-        backingList.remove(obj);
+    /**
+     * Insert a range of lost sequence numbers.
+     *
+     * @param firstSeqNum first sequence number, inclusive.
+     * @param lastSeqNum  last sequence number, inclusive. If less than the first, the range wraps.
+     */
+    synchronized void insertRange(final int firstSeqNum, final int lastSeqNum) {
+        if (size == 0 || seqSpace.compare(firstSeqNum, first) < 0) first = firstSeqNum;
+        setRange(firstSeqNum, seqSpace.increment(lastSeqNum), true);
+    }
+
+    synchronized void remove(final int seqNum) {
+        setRange(seqNum, seqSpace.increment(seqNum), false);
     }
 
     /**
-     * Retrieves the loss list entry with the lowest sequence number, or null if loss list is empty.
+     * Remove all sequence numbers before the given one, from the given start.
+     *
+     * @param fromSeqNum first sequence number to remove, inclusive.
+     * @param toSeqNum   last sequence number to remove, exclusive.
      */
-    Integer getFirstEntry() {
-        return backingList.pollFirst();
+    synchronized void removeRange(final int fromSeqNum, final int toSeqNum) {
+        if (seqSpace.compare(fromSeqNum, toSeqNum) >= 0) return;
+        setRange(fromSeqNum, toSeqNum, false);
+        if (seqSpace.compare(first, toSeqNum) < 0) first = toSeqNum;
     }
 
-    public boolean isEmpty() {
-        return backingList.isEmpty();
+    /**
+     * Remove a range of sequence numbers which may lie after other entries, such as
+     * a range selectively acknowledged while earlier numbers are still missing.
+     *
+     * @param firstSeqNum first sequence number, inclusive.
+     * @param lastSeqNum  last sequence number, inclusive. If less than the first, the range wraps.
+     */
+    synchronized void removeBlock(final int firstSeqNum, final int lastSeqNum) {
+        setRange(firstSeqNum, seqSpace.increment(lastSeqNum), false);
     }
 
-    public int size() {
-        return backingList.size();
+    /**
+     * @return true if the sequence number is in the list.
+     */
+    synchronized boolean contains(final int seqNum) {
+        final int index = seqNum & bitMask();
+        return (words[index >>> 6] & (1L << index)) != 0;
     }
 
-    public String toString() {
-        return backingList.toString();
+    /**
+     * Retrieves and removes the loss list entry with the lowest sequence number.
+     *
+     * @return the sequence number, or -1 if the loss list is empty.
+     */
+    synchronized int getFirstEntry() {
+        if (size == 0) return -1;
+        final int bitMask = bitMask();
+        final int firstIndex = first & bitMask;
+        int wordIndex = firstIndex >>> 6;
+        long word = words[wordIndex] & (-1L << (firstIndex & 63));
+        while (word == 0) {
+            wordIndex = (wordIndex + 1) & (bitMask >>> 6);
+            word = words[wordIndex];
+        }
+        final int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        words[wordIndex] &= ~(1L << index);
+        size--;
+        final int seqNum = seqSpace.add(first, (index - firstIndex) & bitMask);
+        first = seqSpace.increment(seqNum);
+        return seqNum;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The bitmap wraps at its length, or at the end of the sequence space if that is smaller.
+     */
+    private int bitMask() {
+        return ((words.length << 6) - 1) & seqSpace.getMaxSeqNum();
+    }
+
+    /**
+     * Set or clear the bits of a range of sequence numbers, which may wrap.
+     *
+     * @param from        first sequence number, inclusive.
+     * @param toExclusive last sequence number, exclusive.
+     * @param set         whether to set or clear the bits.
+     */
+    private void setRange(final int from, final int toExclusive, final boolean set) {
+        final int bitMask = bitMask();
+        final int fromIndex = from & bitMask;
+        final int toIndex = toExclusive & bitMask;
+        if (toIndex > fromIndex) {
+            setBits(fromIndex, toIndex, set);
+        }
+        else {
+            setBits(fromIndex, bitMask + 1, set);
+            setBits(0, toIndex, set);
+        }
+    }
+
+    /**
+     * Set or clear all bits in the range, keeping the size up to date.
+     *
+     * @param from        first bit, inclusive.
+     * @param toExclusive last bit, exclusive.
+     * @param set         whether to set or clear the bits.
+     */
+    private void setBits(final int from, final int toExclusive, final boolean set) {
+        if (from >= toExclusive) return;
+        final int firstWord = from >>> 6;
+        final int lastWord = (toExclusive - 1) >>> 6;
+        for (int i = firstWord; i <= lastWord; i++) {
+            long mask = -1L;
+            if (i == firstWord) mask &= -1L << (from & 63);
+            if (i == lastWord) mask &= -1L >>> (63 - ((toExclusive - 1) & 63));
+            final long old = words[i];
+            final long updated = set ? (old | mask) : (old & ~mask);
+            size += Long.bitCount(updated) - Long.bitCount(old);
+            words[i] = updated;
+        }
     }
 
-    private int compareLosses(final int o1, final int o2) {
-        return SeqNum.compare16(o1, o2);
+    public synchronized String toString() {
+        return "SenderLossList size=" + size + " first=" + first;
     }
 
 }
@@ -1,27 +1,70 @@
 package io.lyracommunity.bolt.sender;
 
 import io.lyracommunity.bolt.api.BoltEvent;
-import io.lyracommunity.bolt.session.Session;
 import io.lyracommunity.bolt.session.SessionController;
 import io.lyracommunity.bolt.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Subscription;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Thread for processing the {@link Sender} of each session.
+ * <p>
+ * Only sessions which are due are visited, as decided by a {@link SendSchedule}.
+ * Between steps the thread parks until the next deadline or until a sender is
+ * woken, spinning only when the next deadline is very close.
+ * <p>
+ * Each sender thread is a worker owning the sessions which
+ * {@link SessionController#workerOf(int)} assigns to it.
  */
 public class SenderThread {
 
 
     private static final Logger LOG = LoggerFactory.getLogger(SenderThread.class);
 
+    /** Waits shorter than this, in microseconds, are spun rather than parked. */
+    private static final long SPIN_THRESHOLD_MICROS = 1_000;
+
+    /** Upper bound on a single park, in microseconds. */
+    private static final long MAX_PARK_MICROS = 10_000;
+
     private final SessionController sessions;
 
+    private final int worker;
+
+    private final SendSchedule schedule = new SendSchedule();
+
+    /** Registration for sessions added to the controller. */
+    private final Subscription sessionAdded;
+
     public SenderThread(final SessionController sessions) {
+        this(sessions, 0);
+    }
+
+    /**
+     * @param sessions the session controller.
+     * @param worker   index of this worker.
+     */
+    public SenderThread(final SessionController sessions, final int worker) {
         this.sessions = sessions;
+        this.worker = worker;
+        this.sessionAdded = sessions.onSessionAdded(session -> {
+            if (sessions.workerOf(session.getSessionID()) == worker) {
+                schedule.register(session.getSender(), session.getSessionID());
+            }
+        });
+    }
+
+    /**
+     * Stop taking on sessions added to the controller, which outlives this worker.
+     */
+    public void close() {
+        sessionAdded.unsubscribe();
     }
 
     /**
@@ -32,31 +75,41 @@ public class SenderThread {
     public Observable<BoltEvent> start() throws IllegalStateException {
         return Observable.create(subscriber -> {
             try {
-                Thread.currentThread().setName("Bolt-Sender");
+                Thread.currentThread().setName("Bolt-Sender-" + worker);
+                schedule.setOwner(Thread.currentThread());
 
                 while (!subscriber.isUnsubscribed()) {
-                    long nextStepTime = Long.MAX_VALUE;
-                    for (final Session session : sessions.getSessions()) {
+                    long now = Util.currentTimeMicros();
+                    schedule.drainWoken(now);
+
+                    SendSchedule.Entry entry;
+                    while ((entry = schedule.pollDue(now)) != null) {
+                        // Sessions which have ended are dropped from the schedule.
+                        if (sessions.getSession(entry.sessionID) == null) continue;
                         try {
-                            final Sender sender = session.getSender();
-                            final long waitUtil = sender.senderAlgorithm();
-                            nextStepTime = Math.min(nextStepTime, waitUtil);
+                            schedule.schedule(entry, entry.sender.senderAlgorithm());
                         }
                         catch (IOException | RuntimeException ex) {
                             LOG.error("Unexpected sender IO error", ex);
-                            sessions.endSession(subscriber, session.getSessionID(), "Unexpected exception");
+                            sessions.endSession(subscriber, entry.sessionID, "Unexpected exception");
                         }
+                        now = Util.currentTimeMicros();
                     }
 
                     // Wait
-                    if (nextStepTime == Long.MAX_VALUE) nextStepTime = Util.currentTimeMicros() + 10_000;
-                    final long waitTimeInMillis = (nextStepTime - Util.currentTimeMicros()) / 1000;
-                    // Wait if time is sufficiently high, otherwise busy spin.
-                    if (waitTimeInMillis > 1) Thread.sleep(waitTimeInMillis);
+                    final long nextStepTime = schedule.nextDeadline();
+                    final long waitTime = (nextStepTime == Sender.IDLE) ? MAX_PARK_MICROS : nextStepTime - now;
+                    // Park if time is sufficiently high, otherwise busy spin.
+                    if (waitTime > SPIN_THRESHOLD_MICROS) {
+                        if (!schedule.hasWoken()) {
+                            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(Math.min(waitTime, MAX_PARK_MICROS)));
+                        }
+                    }
                     else {
                         Thread.yield();
-                        while (Util.currentTimeMicros() < nextStepTime) ; // Busy spin
+                        while (Util.currentTimeMicros() < nextStepTime && !schedule.hasWoken()) ; // Busy spin
                     }
+                    if (Thread.interrupted()) throw new InterruptedException();
                 }
             }
             catch (InterruptedException ex) {
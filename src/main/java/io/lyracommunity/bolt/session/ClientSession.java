@@ -69,7 +69,7 @@ public class ClientSession extends Session {
                     }
                 }
                 if (getStatus() == READY) {
-                    cc.init();
+                    initCongestionControl();
                     LOG.info("Connected, {} handshake packets sent", n);
                 }
             }
@@ -120,6 +120,12 @@ public class ClientSession extends Session {
         else if (getStatus() == HANDSHAKING2 && ConnectionHandshake.SERVER_FINISHED_HANDSHAKE == handshake.getHandshakeType()) {
             try {
                 LOG.info("Received confirmation handshake response from {}\n{}", peer, handshake);
+                // The server replies with the smaller of the two datagram sizes.
+                state.negotiateDatagramSize((int) handshake.getPacketSize());
+                // And agrees to wide sequence numbers only if both sides asked for them.
+                state.negotiateSeqSpace(handshake.isWideSeqNumbers());
+                // A background transfer if either side asked.
+                state.negotiateBackgroundTransfer(handshake.isBackgroundTransfer());
                 setStatus(READY);
                 handshakePhase.arrive();
                 readyToStart = true;
@@ -137,8 +143,10 @@ public class ClientSession extends Session {
      * Initial handshake for connect.
      */
     private void sendInitialHandShake() throws IOException {
-        final ConnectionHandshake handshake = ConnectionHandshake.ofClientInitial(getDatagramSize(), state.getInitialSequenceNumber(),
-                state.getFlowWindowSize(), state.getSessionID(), endPoint.getLocalAddress());
+        final ConnectionHandshake handshake = ConnectionHandshake.ofClientInitial(state.getMaxDatagramSize(), state.getInitialSequenceNumber(),
+                state.getFlowWindowSize(), state.getSessionID(), endPoint.getLocalAddress())
+                .setWideSeqNumbers(state.isWideSeqNumbersRequested())
+                .setBackgroundTransfer(state.isBackgroundTransferRequested());
         LOG.info("Sending {}", handshake);
         endPoint.doSend(handshake, state);
     }
@@ -147,8 +155,10 @@ public class ClientSession extends Session {
      * Second handshake for connect.
      */
     private void sendSecondHandshake() throws IOException {
-        final ConnectionHandshake ch = ConnectionHandshake.ofClientSecond(getDatagramSize(), state.getInitialSequenceNumber(),
-                state.getFlowWindowSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), endPoint.getLocalAddress());
+        final ConnectionHandshake ch = ConnectionHandshake.ofClientSecond(state.getMaxDatagramSize(), state.getInitialSequenceNumber(),
+                state.getFlowWindowSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), endPoint.getLocalAddress())
+                .setWideSeqNumbers(state.isWideSeqNumbersRequested())
+                .setBackgroundTransfer(state.isBackgroundTransferRequested());
         LOG.info("Sending confirmation {}", ch);
         endPoint.doSend(ch, state);
     }
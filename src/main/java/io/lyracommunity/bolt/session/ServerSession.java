@@ -65,7 +65,7 @@ public class ServerSession extends Session {
                     LOG.info("Handshake complete for Server!  [{}]", getSessionID());
                     setStatus(READY);
                     readyToStart = true;
-                    cc.init();
+                    initCongestionControl();
                 }
             }
             catch (IOException ex) {
@@ -118,19 +118,21 @@ public class ServerSession extends Session {
      */
     private void ackInitialHandshake(final ConnectionHandshake handshake) throws IOException, IllegalStateException {
         // Compare the packet size and choose minimum.
-        final long clientBufferSize = handshake.getPacketSize();
-        final long myBufferSize = getDatagramSize();
-        final long bufferSize = Math.min(clientBufferSize, myBufferSize);
+        state.negotiateDatagramSize((int) handshake.getPacketSize());
+        state.negotiateSeqSpace(handshake.isWideSeqNumbers());
+        state.negotiateBackgroundTransfer(handshake.isBackgroundTransfer());
+        final long bufferSize = state.getMaxDatagramSize();
         final int initialSequenceNumber = handshake.getInitialSeqNo();
         state.setInitialSequenceNumber(initialSequenceNumber);
-        setDatagramSize((int) bufferSize);
 
         final InetAddress localAddress = endPoint.getLocalAddress();
         if (localAddress == null)
             throw new IllegalStateException("Could not get local endpoint address for handshake response");
 
         final ConnectionHandshake responseHandshake = ConnectionHandshake.ofServerFirstCookieShareResponse(bufferSize, initialSequenceNumber,
-                handshake.getMaxFlowWndSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), localAddress);
+                handshake.getMaxFlowWndSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), localAddress)
+                .setWideSeqNumbers(state.getSeqSpace().isWide())
+                .setBackgroundTransfer(state.isBackgroundTransfer());
         LOG.info("Sending reply {}", responseHandshake);
         endPoint.doSend(responseHandshake, state);
     }
@@ -139,15 +141,17 @@ public class ServerSession extends Session {
 
         if (finalConnectionHandshake == null) {
             // Compare the packet size and choose minimum
-            final long clientBufferSize = handshake.getPacketSize();
-            final long myBufferSize = getDatagramSize();
-            final long bufferSize = Math.min(clientBufferSize, myBufferSize);
+            state.negotiateDatagramSize((int) handshake.getPacketSize());
+            state.negotiateSeqSpace(handshake.isWideSeqNumbers());
+            state.negotiateBackgroundTransfer(handshake.isBackgroundTransfer());
+            final long bufferSize = state.getMaxDatagramSize();
             final int initialSequenceNumber = handshake.getInitialSeqNo();
             state.setInitialSequenceNumber(initialSequenceNumber);
-            setDatagramSize((int) bufferSize);
 
             finalConnectionHandshake = ConnectionHandshake.ofServerFinalResponse(bufferSize, initialSequenceNumber,
-                    handshake.getMaxFlowWndSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), endPoint.getLocalAddress());
+                    handshake.getMaxFlowWndSize(), getSessionID(), state.getDestinationSessionID(), state.getSessionCookie(), endPoint.getLocalAddress())
+                    .setWideSeqNumbers(state.getSeqSpace().isWide())
+                    .setBackgroundTransfer(state.isBackgroundTransfer());
         }
         LOG.info("Sending final handshake ack {}", finalConnectionHandshake);
         endPoint.doSend(finalConnectionHandshake, state);
@@ -1,6 +1,5 @@
 package io.lyracommunity.bolt.session;
 
-import io.lyracommunity.bolt.BoltCongestionControl;
 import io.lyracommunity.bolt.ChannelOut;
 import io.lyracommunity.bolt.CongestionControl;
 import io.lyracommunity.bolt.api.BoltEvent;
@@ -9,6 +8,7 @@ import io.lyracommunity.bolt.codec.MessageAssembleBuffer;
 import io.lyracommunity.bolt.packet.*;
 import io.lyracommunity.bolt.packet.Shutdown;
 import io.lyracommunity.bolt.receiver.EventTimers;
+import io.lyracommunity.bolt.receiver.ExpiryException;
 import io.lyracommunity.bolt.receiver.Receiver;
 import io.lyracommunity.bolt.sender.Sender;
 import io.lyracommunity.bolt.statistic.BoltStatistics;
@@ -18,6 +18,7 @@ import rx.Subscriber;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.lyracommunity.bolt.session.SessionStatus.READY;
 
@@ -119,9 +120,14 @@ public abstract class Session {
 
     private static final Logger LOG = LoggerFactory.getLogger(Session.class);
 
-    final SessionState      state;
-    final CongestionControl cc;
-    final ChannelOut        endPoint;
+    final         SessionState state;
+    final         ChannelOut   endPoint;
+    private final Config       config;
+
+    /**
+     * Congestion control, replaced before it starts if the session is agreed a background transfer.
+     */
+    volatile CongestionControl cc;
 
     /**
      * Statistics for the session.
@@ -133,23 +139,31 @@ public abstract class Session {
     private final Receiver              receiver;
     private final Sender                sender;
     /**
-     * Buffer size (i.e. datagram size). This is negotiated during connection setup.
+     * Whether the session is in the controller's ready queue.
      */
-    private int datagramSize = Config.DEFAULT_DATAGRAM_SIZE;
-
+    private final AtomicBoolean         readyQueued = new AtomicBoolean();
 
     Session(final Config config, final ChannelOut endpoint, final Destination destination, final String description) {
         this.endPoint = endpoint;
-        this.statistics = new BoltStatistics(description, datagramSize);
+        this.config = config;
+        this.statistics = new BoltStatistics(description, config.getDatagramSize());
         this.state = new SessionState(config, destination);
-        this.cc = new BoltCongestionControl(state, statistics, config.getInitialCongestionWindowSize());
+        this.cc = config.getCongestionControlFactory().create(config, state, statistics);
         this.assembleBuffer = new MessageAssembleBuffer();
 
         this.sender = new Sender(config, state, endpoint, cc, statistics);
         this.receiver = new Receiver(config, state, endpoint, sender, statistics, new EventTimers(config));
     }
 
-    public boolean received(final BoltPacket packet) throws IOException {
+    /**
+     * Pass a packet received from the peer to the sender and receiver.
+     *
+     * @param packet the received packet.
+     * @return true if the session is ready and accepted the packet.
+     * @throws IOException     on failure to respond to the packet.
+     * @throws ExpiryException if the session expired while processing the packet inline.
+     */
+    public boolean received(final BoltPacket packet) throws IOException, ExpiryException {
         final boolean canReceive = (getStatus() == READY);
         if (canReceive) {
             state.setActive(true);
@@ -160,6 +174,19 @@ public abstract class Session {
         return canReceive;
     }
 
+    /**
+     * Start the congestion control once the handshake completes, first replacing it
+     * with the background congestion control if the session is a background transfer.
+     */
+    void initCongestionControl() {
+        if (state.isBackgroundTransfer()) {
+            cc = config.getBackgroundCongestionControlFactory().create(config, state, statistics);
+            sender.setCongestionControl(cc);
+            LOG.info("Background transfer, using {}", cc.getClass().getSimpleName());
+        }
+        cc.init();
+    }
+
     public abstract boolean receiveHandshake(Subscriber<? super BoltEvent> subscriber, ConnectionHandshake handshake, Destination peer);
 
     /**
@@ -249,6 +276,22 @@ public abstract class Session {
         return receiver;
     }
 
+    /**
+     * Mark the session as queued for polling.
+     *
+     * @return true if it was not already queued.
+     */
+    boolean markReadyQueued() {
+        return readyQueued.compareAndSet(false, true);
+    }
+
+    /**
+     * Mark the session as no longer queued, before its receive buffer is drained.
+     */
+    void clearReadyQueued() {
+        readyQueued.set(false);
+    }
+
     SessionStatus getStatus() {
         return state.getStatus();
     }
@@ -262,12 +305,11 @@ public abstract class Session {
         return state.getSessionID();
     }
 
-    int getDatagramSize() {
-        return datagramSize;
-    }
-
-    void setDatagramSize(int datagramSize) {
-        this.datagramSize = datagramSize;
+    /**
+     * @return the datagram size in use, in bytes, which objects sent are chunked to fit.
+     */
+    public int getDatagramSize() {
+        return state.getDatagramSize();
     }
 
     public BoltStatistics getStatistics() {
@@ -9,18 +9,24 @@ import io.lyracommunity.bolt.packet.BoltPacket;
 import io.lyracommunity.bolt.packet.ConnectionHandshake;
 import io.lyracommunity.bolt.packet.Destination;
 import io.lyracommunity.bolt.packet.PacketType;
-import io.lyracommunity.bolt.util.SharedCondition;
-import io.lyracommunity.bolt.util.SharedCondition.PhaseStrategy;
+import io.lyracommunity.bolt.receiver.ExpiryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Subscriber;
+import rx.Subscription;
+import rx.subscriptions.Subscriptions;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -46,16 +52,23 @@ public class SessionController {
     private final Map<Destination, Session> sessionsBeingConnected = new ConcurrentHashMap<>();
     private final boolean allowAutoSessions;
 
-    private final SharedCondition packetArrived;
+    private final List<Consumer<Session>> sessionAddedListeners = new CopyOnWriteArrayList<>();
 
-    private final SharedCondition packetReady;
+    /**
+     * Number of sender/receiver worker pairs sessions are shared between.
+     */
+    private volatile int workerCount;
+
+    /**
+     * Sessions which may have data ready to be polled, each queued at most once.
+     */
+    private final BlockingQueue<Session> readySessions = new LinkedBlockingQueue<>();
 
 
     public SessionController(final Config config, final boolean allowAutoSessions) {
         this.config = config;
         this.allowAutoSessions = allowAutoSessions;
-        this.packetArrived = new SharedCondition(PhaseStrategy.INCREMENT);
-        this.packetReady = new SharedCondition(PhaseStrategy.LATEST);
+        initWorkers(config.getWorkerCount());
     }
 
     public void stop(final Subscriber<? super BoltEvent> subscriber, final String reason) {
@@ -91,7 +104,13 @@ public class SessionController {
                 else {
                     try {
                         final boolean packetProcessed = session.received(packet);
-                        if (packetProcessed) packetArrived.signal();
+                        if (packetProcessed && config.isInlineReceive() && session.getReceiver().isReadable()) {
+                            signalPacketReady(session);
+                        }
+                    }
+                    catch (ExpiryException e) {
+                        LOG.warn("Session expired due to timeout");
+                        endSession(subscriber, packet.getDestinationSessionID(), "Session timeout");
                     }
                     catch (Exception e) {
                         LOG.error("Unexpected error processing packet", e);
@@ -148,6 +167,18 @@ public class SessionController {
     public void addSession(final Integer destinationID, final Session session) {
         LOG.info("Adding session [{}]", destinationID);
         sessions.put(destinationID, session);
+        sessionAddedListeners.forEach(l -> l.accept(session));
+    }
+
+    /**
+     * Register a listener to be called, on the adding thread, each time a session is added.
+     *
+     * @param listener the listener.
+     * @return the registration, unsubscribed to remove the listener.
+     */
+    public Subscription onSessionAdded(final Consumer<Session> listener) {
+        sessionAddedListeners.add(listener);
+        return Subscriptions.create(() -> sessionAddedListeners.remove(listener));
     }
 
     public Session getSession(final Integer destinationID) {
@@ -158,16 +189,59 @@ public class SessionController {
         return sessions.values();
     }
 
-    public boolean awaitPacketArrival(final long timeout, final TimeUnit unit) throws InterruptedException {
-        return packetArrived.awaitInterruptibly(timeout, unit);
+    /**
+     * Prepare for the given number of workers. Must be called before any worker starts.
+     *
+     * @param workerCount the number of workers.
+     */
+    public void initWorkers(final int workerCount) {
+        this.workerCount = workerCount;
     }
 
-    public boolean awaitPacketReady(final long timeout, final TimeUnit unit) throws InterruptedException {
-        return packetReady.awaitInterruptibly(timeout, unit);
+    /**
+     * @param sessionID the session ID.
+     * @return index of the worker which owns the session.
+     */
+    public int workerOf(final int sessionID) {
+        return Math.floorMod(sessionID, workerCount);
+    }
+
+    /**
+     * Take the next session with data ready to be polled, waiting if there is none.
+     * <p>
+     * The caller should drain the session's receive buffer, as the session is not
+     * queued again until more data is added.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit    unit of the timeout.
+     * @return the session, or null on timeout.
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    public Session pollReadySession(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final Session session = readySessions.poll(timeout, unit);
+        if (session != null) session.clearReadyQueued();
+        return session;
+    }
+
+    /**
+     * Take the next session with data ready to be polled, without waiting.
+     *
+     * @return the session, or null if there is none.
+     * @see #pollReadySession(long, TimeUnit)
+     */
+    public Session pollReadySession() {
+        final Session session = readySessions.poll();
+        if (session != null) session.clearReadyQueued();
+        return session;
     }
 
-    public void signalPacketReady() {
-        packetReady.signal();
+    /**
+     * Queue a session which has had data added to its receive buffer, unless already queued.
+     *
+     * @param session the session.
+     */
+    public void signalPacketReady(final Session session) {
+        if (session.markReadyQueued()) readySessions.offer(session);
     }
 
 }
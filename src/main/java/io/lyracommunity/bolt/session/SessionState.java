@@ -3,8 +3,8 @@ package io.lyracommunity.bolt.session;
 import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.packet.Destination;
 import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 
-import java.net.DatagramPacket;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -38,15 +38,40 @@ public class SessionState {
      * Flow window size (how many data packets are in-flight at a single time).
      */
     private final int flowWindowSize;
+    /**
+     * Whether the datagram size starts at the default, and is raised by path MTU probing.
+     */
+    private final boolean pathMtuDiscovery;
+    /**
+     * Largest datagram size, in bytes: the local configured size, until the smaller of
+     * both peers' sizes is agreed during the handshake.
+     */
+    private volatile int maxDatagramSize;
+    /**
+     * Datagram size in use, in bytes, up to the maximum.
+     */
+    private volatile int datagramSize;
+    /**
+     * Whether to ask the peer for wide sequence numbers.
+     */
+    private final boolean wideSeqNumbers;
+    /**
+     * Reliability and order sequence number space, 16-bit until wide sequence numbers are agreed.
+     */
+    private final SeqSpace seqSpace = new SeqSpace(false);
+    /**
+     * Whether to ask the peer for background transfer.
+     */
+    private final boolean backgroundTransferRequested;
+    /**
+     * Whether either side asked for background transfer.
+     */
+    private volatile boolean backgroundTransfer;
 
     /**
      * Initial packet sequence number.
      */
     private Integer initialSequenceNumber = null;
-    /**
-     * Cache dgPacket (peer stays the same always).
-     */
-    private DatagramPacket dgPacket;
     /**
      * Whether the session is started and active.
      */
@@ -58,7 +83,14 @@ public class SessionState {
     public SessionState(final Config config, final Destination destination) {
         this.destination = destination;
         this.flowWindowSize = config.getFlowWindowSize();
-        this.dgPacket = new DatagramPacket(new byte[0], 0, destination.getAddress(), destination.getPort());
+        this.pathMtuDiscovery = config.isPathMtuDiscovery();
+        this.wideSeqNumbers = config.isWideSeqNumbers();
+        this.backgroundTransferRequested = config.isBackgroundTransfer();
+        this.backgroundTransfer = backgroundTransferRequested;
+        this.maxDatagramSize = config.getDatagramSize();
+        this.datagramSize = pathMtuDiscovery
+                ? Math.min(config.getDatagramSize(), Config.DEFAULT_DATAGRAM_SIZE)
+                : config.getDatagramSize();
         this.mySocketID = NEXT_SOCKET_ID.incrementAndGet();
     }
 
@@ -66,8 +98,12 @@ public class SessionState {
         return mySocketID;
     }
 
+    /**
+     * @return the most data packets unacknowledged at once: the configured size, capped
+     * by the sequence number space.
+     */
     public int getFlowWindowSize() {
-        return flowWindowSize;
+        return Math.min(flowWindowSize, seqSpace.getMaxWindow());
     }
 
     public Destination getDestination() {
@@ -117,8 +153,88 @@ public class SessionState {
         this.initialSequenceNumber = initialSequenceNumber;
     }
 
-    public DatagramPacket getDatagram() {
-        return dgPacket;
+    /**
+     * Agree the datagram size with the peer: the smaller of the two. With path MTU
+     * discovery, the size in use starts no larger than the default.
+     *
+     * @param peerDatagramSize the peer's datagram size, from its handshake.
+     */
+    void negotiateDatagramSize(final int peerDatagramSize) {
+        maxDatagramSize = Math.min(maxDatagramSize, Math.max(Config.MIN_DATAGRAM_SIZE, peerDatagramSize));
+        datagramSize = pathMtuDiscovery ? Math.min(maxDatagramSize, Config.DEFAULT_DATAGRAM_SIZE) : maxDatagramSize;
+    }
+
+    /**
+     * Agree wide sequence numbers with the peer if both ask for them.
+     *
+     * @param peerWideSeqNumbers whether the peer's handshake asks for, or agrees to, wide sequence numbers.
+     */
+    void negotiateSeqSpace(final boolean peerWideSeqNumbers) {
+        seqSpace.setWide(wideSeqNumbers && peerWideSeqNumbers);
+    }
+
+    /**
+     * @return true if this side asks for wide sequence numbers.
+     */
+    boolean isWideSeqNumbersRequested() {
+        return wideSeqNumbers;
+    }
+
+    /**
+     * Agree background transfer with the peer if either asks for it.
+     *
+     * @param peerBackgroundTransfer whether the peer's handshake asks for, or agrees to, background transfer.
+     */
+    void negotiateBackgroundTransfer(final boolean peerBackgroundTransfer) {
+        backgroundTransfer = backgroundTransferRequested || peerBackgroundTransfer;
+    }
+
+    /**
+     * @return true if this side asks for background transfer.
+     */
+    boolean isBackgroundTransferRequested() {
+        return backgroundTransferRequested;
+    }
+
+    /**
+     * @return true if the session is a background transfer, settled once the session is ready.
+     */
+    public boolean isBackgroundTransfer() {
+        return backgroundTransfer;
+    }
+
+    /**
+     * @return the reliability and order sequence number space, fixed once the session is ready.
+     */
+    public SeqSpace getSeqSpace() {
+        return seqSpace;
+    }
+
+    /**
+     * @return the largest datagram size agreed with the peer, in bytes.
+     */
+    public int getMaxDatagramSize() {
+        return maxDatagramSize;
+    }
+
+    /**
+     * @return the datagram size in use, in bytes.
+     */
+    public int getDatagramSize() {
+        return datagramSize;
+    }
+
+    /**
+     * Raise the datagram size in use, once the path is found to carry it.
+     *
+     * @param datagramSize the size, in bytes, capped at the agreed maximum.
+     */
+    public void setDatagramSize(final int datagramSize) {
+        this.datagramSize = Math.min(datagramSize, maxDatagramSize);
+    }
+
+    public boolean isPathMtuDiscovery() {
+        return pathMtuDiscovery;
     }
 
     public int getReceiveBufferSize() {
@@ -76,7 +76,7 @@ public class BoltStatistics {
         return numberOfNAKReceived.get();
     }
 
-    private int getNumberOfRetransmittedDataPackets() {
+    public int getNumberOfRetransmittedDataPackets() {
         return numberOfRetransmittedDataPackets.get();
     }
 
@@ -146,6 +146,13 @@ public class BoltStatistics {
         totalByClass.addAndGet(bytesReceived);
     }
 
+    /**
+     * @return the smoothed round trip time, in microseconds, or 0 if not yet measured.
+     */
+    public long getRTT() {
+        return roundTripTime;
+    }
+
     public void setRTT(final long rtt, final long rttVar) {
         this.roundTripTime = rtt;
         this.roundTripTimeVariance = rttVar;
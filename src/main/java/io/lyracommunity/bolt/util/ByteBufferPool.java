@@ -0,0 +1,62 @@
+package io.lyracommunity.bolt.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of equally sized direct byte buffers, used to receive datagrams
+ * without allocating per packet.
+ * <p>
+ * Buffers may be acquired and released from different threads. If the pool is
+ * empty a new buffer is allocated; if it is full a released buffer is discarded
+ * and left for the garbage collector. A buffer that is never released is simply
+ * collected, so a leak only costs an allocation and never corrupts data.
+ */
+public class ByteBufferPool {
+
+    private final BlockingQueue<ByteBuffer> available;
+    private final int                       bufferSize;
+
+    /**
+     * @param bufferSize   capacity of each buffer, in bytes.
+     * @param maxAvailable maximum number of idle buffers retained by the pool.
+     */
+    public ByteBufferPool(final int bufferSize, final int maxAvailable) {
+        this.bufferSize = bufferSize;
+        this.available = new ArrayBlockingQueue<>(maxAvailable);
+    }
+
+    /**
+     * Take a cleared buffer from the pool, allocating a new one if none are available.
+     *
+     * @return a buffer ready to be written to.
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = available.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. The buffer, and any views of it, must not be used afterwards.
+     *
+     * @param buffer the buffer to return.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize) available.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of idle buffers currently held.
+     */
+    public int available() {
+        return available.size();
+    }
+
+}
@@ -2,52 +2,54 @@ package io.lyracommunity.bolt.util;
 
 import io.lyracommunity.bolt.packet.DataPacket;
 
-import java.util.BitSet;
+import java.util.Arrays;
 
 /**
  * Prevent replaying of previously-received packets.
  * <p>
- * A bounded circular buffer holds the packet sequence numbers
- * of previously received packets. This will guarantee at-most-once
- * delivery within a limit. This limit is determined by the specified
- * size of the bounded buffer. The larger the buffer, the less chance
- * of a duplicate packet being missed.
+ * A sliding window of bits, running back from the highest sequence number
+ * received, marks which packets have been seen. Reliable packets are tracked
+ * by reliability sequence number, and all others by packet sequence number.
+ * Since the sender never has more than a flow window of reliable packets
+ * unacknowledged, a window of that size catches every duplicate reliable
+ * packet; anything older than the window is rejected as a duplicate. Memory
+ * scales with the window, at one bit per sequence number in each of the two windows.
  *
  * @author Cian O'Mahony
  */
 class DuplicateDetector {
 
-    static final int DEFAULT_SEGMENT_COUNT = 8;
+    private final Window reliable;
+    private final Window unreliable;
 
-    private final int    segments;
-    private final int    itemsPerSegment;
-    private final BitSet received;
-
-    private int lastDupNum = -1;
-
-    private DuplicateDetector(int segments, int itemsPerSegment, BitSet received) {
-        this.segments = segments;
-        this.itemsPerSegment = itemsPerSegment;
-        this.received = received;
+    private DuplicateDetector(final int windowSize, final SeqSpace seqSpace) {
+        this.reliable = new Window(windowSize, seqSpace);
+        this.unreliable = new Window(windowSize, null);
     }
 
     /**
-     * Create with a fixed size.
+     * Create with a fixed window size.
      * <p>
      * The provided size should be a power of two. If this not the case,
      * it will be rounded up to the next power of two.
      *
-     * @param size the number of packets to keep track of. The memory usage of the
-     *             object scales by one bit per increment of size.
+     * @param size the number of packets to keep track of, usually the flow window size.
+     *             The memory usage of the object scales by two bits per increment of size.
      * @return the created object.
      */
     static DuplicateDetector ofSize(final int size) {
-        final BitSet set = new BitSet(size);
-        return fromBitSet(set);
+        return ofSize(size, new SeqSpace(false));
     }
 
-    static DuplicateDetector fromBitSet(final BitSet set) {
-        return new DuplicateDetector(DEFAULT_SEGMENT_COUNT, set.size() / DEFAULT_SEGMENT_COUNT, set);
+    /**
+     * Create with a fixed window size, for a session's reliability sequence number space.
+     *
+     * @param size     the number of packets to keep track of, usually the flow window size.
+     * @param seqSpace the reliability sequence number space.
+     * @return the created object.
+     */
+    static DuplicateDetector ofSize(final int size, final SeqSpace seqSpace) {
+        return new DuplicateDetector(size, seqSpace);
     }
 
     /**
@@ -57,38 +59,100 @@ class DuplicateDetector {
      * @return true if a duplicate packet, false otherwise.
      */
     boolean receivePacket(final DataPacket data) {
-        final int duplicationId = getDuplicationId(data);
+        return data.isReliable()
+                ? reliable.receive(data.getReliabilitySeqNumber())
+                : unreliable.receive(data.getPacketSeqNumber());
+    }
 
-        final boolean isDuplicate = received.get(duplicationId);
+    /**
+     * @return the number of sequence numbers held by each window.
+     */
+    int getWindowSize() {
+        return reliable.window();
+    }
 
-        if (!isDuplicate) {
+    /**
+     * Bitmap over the most recent sequence numbers of one sequence space, indexed
+     * by {@code seqNum & mask}. The bitmap size must divide the sequence space,
+     * which holds as both are powers of two.
+     * <p>
+     * The reliability sequence space is only settled by the handshake, so the bitmap
+     * is sized for the widest space, and the window shrinks to a quarter of a narrower one.
+     */
+    private static final class Window {
+
+        private final long[]   words;
+        private final int      bits;
+        private final int      mask;
+        /** The reliability sequence number space, or null for packet sequence numbers. */
+        private final SeqSpace seqSpace;
+
+        /** Highest sequence number received, or -1 if none yet. */
+        private int highest = -1;
+
+        Window(final int size, final SeqSpace seqSpace) {
+            final int requested = Math.max(64, size);
+            final int maxWindow = (seqSpace != null) ? SeqSpace.MAX_WINDOW : (SeqNum.MAX_PACKET_SEQ_NUM + 1) / 4;
+            this.bits = Math.min(Integer.highestOneBit(requested - 1) << 1, maxWindow);
+            this.words = new long[bits >>> 6];
+            this.mask = bits - 1;
+            this.seqSpace = seqSpace;
+        }
 
-            // Mark id as received.
-            received.set(duplicationId, true);
+        /**
+         * @return the number of sequence numbers tracked back from the highest.
+         */
+        int window() {
+            return Math.min(bits, (maxSeqNum() + 1) / 4);
+        }
 
-            // Check segment reset
-            checkSegmentReset(duplicationId);
+        boolean receive(final int seqNum) {
+            if (highest < 0) {
+                highest = seqNum;
+                set(seqNum);
+                return false;
+            }
+            final int offset = offset(highest, seqNum);
+            final int window = window();
+            if (offset > 0) {
+                // Slide the window forward, forgetting the sequence numbers it passes over.
+                if (offset >= window) {
+                    Arrays.fill(words, 0L);
+                }
+                else {
+                    for (int i = 1; i < offset; i++) clear((highest + i) & maxSeqNum());
+                }
+                highest = seqNum;
+                set(seqNum);
+                return false;
+            }
+            if (-offset >= window) {
+                return true;
+            }
+            final int index = (seqNum & mask) >>> 6;
+            final long bit = 1L << seqNum;
+            final boolean isDuplicate = (words[index] & bit) != 0;
+            words[index] |= bit;
+            return isDuplicate;
+        }
 
-            lastDupNum = duplicationId;
+        private int maxSeqNum() {
+            return (seqSpace != null) ? seqSpace.getMaxSeqNum() : SeqNum.MAX_PACKET_SEQ_NUM;
         }
-        return isDuplicate;
-    }
 
-    private void checkSegmentReset(final int currentDuplicationId) {
-        if (lastDupNum >= 0) {
-            final int lastSegmentSeqNum = lastDupNum / itemsPerSegment;
-            final int segmentSeqNum = currentDuplicationId / itemsPerSegment;
+        private int offset(final int from, final int to) {
+            return (seqSpace != null)
+                    ? seqSpace.offset(from, to)
+                    : SeqNum.seqOffsetPacketSeqNum(from, to);
+        }
 
-            if (lastSegmentSeqNum != segmentSeqNum) {
-                final int segmentToReset = (segmentSeqNum + (segments / 2)) % segments;
-                final int start = segmentToReset * itemsPerSegment;
-                received.set(start, start + itemsPerSegment, false);
-            }
+        private void set(final int seqNum) {
+            words[(seqNum & mask) >>> 6] |= 1L << seqNum;
         }
-    }
 
-    private int getDuplicationId(DataPacket data) {
-        return data.getPacketSeqNumber() % received.size();
+        private void clear(final int seqNum) {
+            words[(seqNum & mask) >>> 6] &= ~(1L << seqNum);
+        }
     }
 
 }
@@ -2,26 +2,34 @@ package io.lyracommunity.bolt.util;
 
 import io.lyracommunity.bolt.packet.DataPacket;
 
-import java.util.Comparator;
+import java.util.ArrayDeque;
 import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The receive buffer stores data chunks to be read by the application.
+ * <p>
+ * Ordered chunks are held in a sliding window: a circular array indexed by
+ * order sequence number, running from the highest order number read so far.
+ * Unordered chunks bypass the window in a FIFO queue and are read first.
+ * Both offer and poll are constant time.
  *
  * @author Cian O'Mahony
  */
 public class ReceiveBuffer
 {
 
-    private final Queue<DataPacket> buffer;
+    /** Ordered chunks, indexed by {@code orderSeqNumber & mask}. */
+    private final DataPacket[] ordered;
+    private final int          mask;
 
-    /** Number of chunks. */
-    private final AtomicInteger numValidChunks = new AtomicInteger(0);
+    /** Unordered chunks, in arrival order. */
+    private final Queue<DataPacket> unordered;
+
+    /** Number of chunks. Guarded by the lock. */
+    private int numValidChunks;
 
     /** Lock and condition for poll() with timeout. */
     private final Condition notEmpty;
@@ -30,23 +38,45 @@ public class ReceiveBuffer
     /** The size of the buffer. */
     private final int size;
 
-    private static final int MAX_DUP_BUFFER = 100_000;
+    /** Rejects packets already received, over a window the size of the buffer. */
     private final DuplicateDetector duplicateDetector;
 
+    /** The session's reliability and order sequence number space. */
+    private final SeqSpace seqSpace;
+
     /** The highest order sequence number already read by the application. */
     private int highestReadOrderNumber;
 
     public ReceiveBuffer(final int size) {
-        this(size, 0);
+        this(size, new SeqSpace(false));
+    }
+
+    /**
+     * @param size     most chunks held.
+     * @param seqSpace the session's reliability and order sequence number space.
+     */
+    public ReceiveBuffer(final int size, final SeqSpace seqSpace) {
+        this(size, 0, seqSpace);
     }
 
     ReceiveBuffer(final int size, final int initialOrderNumber) {
+        this(size, initialOrderNumber, new SeqSpace(false));
+    }
+
+    private ReceiveBuffer(final int size, final int initialOrderNumber, final SeqSpace seqSpace) {
+        if (size > 2 * SeqSpace.MAX_WINDOW) {
+            throw new IllegalArgumentException("Size must not exceed half of the sequence number space: " + size);
+        }
         this.size = size;
-        this.buffer = new PriorityBlockingQueue<>(size, new DataPacketPriorityComparator());
+        this.seqSpace = seqSpace;
+        final int length = (size <= 1) ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.ordered = new DataPacket[length];
+        this.mask = length - 1;
+        this.unordered = new ArrayDeque<>(Math.min(size, 1024));
         this.lock = new ReentrantLock(false);
         this.notEmpty = lock.newCondition();
         this.highestReadOrderNumber = initialOrderNumber;
-        this.duplicateDetector = DuplicateDetector.ofSize(MAX_DUP_BUFFER);
+        this.duplicateDetector = DuplicateDetector.ofSize(size, seqSpace);
     }
 
     /**
@@ -60,21 +90,21 @@ public class ReceiveBuffer
      * the packet.
      */
     public OfferResult offer(final DataPacket data) {
-        if (numValidChunks.get() == size) {
-            return OfferResult.ERROR_BUFFER_FULL;
-        }
         lock.lock();
         try {
+            if (numValidChunks == size) {
+                return OfferResult.ERROR_BUFFER_FULL;
+            }
             if (data.isOrdered()) {
                 // If already have this chunk, discard it.
                 final int orderSeqNo = data.getOrderSeqNumber();
 
-                if (SeqNum.compare16(orderSeqNo, highestReadOrderNumber) <= 0) {
+                if (seqSpace.compare(orderSeqNo, highestReadOrderNumber) <= 0) {
                     return OfferResult.OK_ACCEPTED;
                 }
                 // Prevent buffering packets that are too far ahead as the buffer
                 // may become too full to accept the next in-order packet.
-                else if (size <= SeqNum.seqOffset16(highestReadOrderNumber, orderSeqNo)) {
+                else if (size <= seqSpace.offset(highestReadOrderNumber, orderSeqNo)) {
                     return OfferResult.ERROR_LOOKAHEAD;
                 }
             }
@@ -89,9 +119,18 @@ public class ReceiveBuffer
         if (duplicateDetector.receivePacket(data)) {
             return OfferResult.ERROR_DUPLICATE;
         }
-        buffer.offer(data);
-        numValidChunks.incrementAndGet();
-        notEmpty.signal();
+        if (data.isOrdered()) {
+            final int index = data.getOrderSeqNumber() & mask;
+            if (ordered[index] != null) {
+                return OfferResult.ERROR_DUPLICATE;
+            }
+            ordered[index] = data;
+        }
+        else {
+            unordered.offer(data);
+        }
+        numValidChunks++;
+        if (readable()) notEmpty.signal();
         return OfferResult.OK_ACCEPTED;
     }
 
@@ -112,8 +151,8 @@ public class ReceiveBuffer
         try {
             long nanos = unit.toNanos(timeout);
             for (; ; ) {
-                if (numValidChunks.get() != 0) {
-                    return poll();
+                if (readable()) {
+                    return pollReadable();
                 }
                 if (nanos <= 0)
                     return null;
@@ -135,64 +174,44 @@ public class ReceiveBuffer
      * @return a data chunk, guaranteed to be in-order.
      */
     public DataPacket poll() {
-        if (numValidChunks.get() == 0) {
-            return null;
+        lock.lock();
+        try {
+            return readable() ? pollReadable() : null;
         }
-        final DataPacket r = buffer.peek();
-        if (r != null) {
-            if (r.isOrdered()) {
-                return removeOrdered(r);
-            }
-            else {
-                return remove(r);
-            }
+        finally {
+            lock.unlock();
         }
-        return null;
     }
 
-    /** If packet is ordered, ensure that is it the next in the sequence to be read. */
-    private DataPacket removeOrdered(DataPacket r) {
-        final int thisSeq = r.getOrderSeqNumber();
-
-        final int comparison = SeqNum.seqOffset16(highestReadOrderNumber, thisSeq);
-        if (comparison == 1) {
-            highestReadOrderNumber = thisSeq;
-            return remove(r);
+    /**
+     * @return true if a chunk is ready to be polled.
+     */
+    public boolean isReadable() {
+        lock.lock();
+        try {
+            return readable();
         }
-        else {
-            if (comparison <= 0) {
-                remove(r);
-            }
-            return null;
+        finally {
+            lock.unlock();
         }
     }
 
-    private DataPacket remove(final DataPacket r) {
-        buffer.remove(r);
-        numValidChunks.decrementAndGet();
-        return r;
+    /** @return true if there is an unordered chunk, or the next ordered chunk in the sequence. */
+    private boolean readable() {
+        return !unordered.isEmpty() || ordered[seqSpace.increment(highestReadOrderNumber) & mask] != null;
     }
 
-    private static class DataPacketPriorityComparator implements Comparator<DataPacket> {
-
-        /**
-         * Compares with the following priority:
-         * <ol>
-         *     <li>Unordered packets</li>
-         *     <li>Ordered packets by seq number</li>
-         * </ol>
-         *
-         * @param o1 Packet 1.
-         * @param o2 Packet 2.
-         * @return the ordering.
-         */
-        @Override
-        public int compare(final DataPacket o1, final DataPacket o2)
-        {
-            if (o1.isOrdered() != o2.isOrdered()) return (o1.isOrdered() ? 1 : -1);
-
-            return SeqNum.comparePacketSeqNum(o1.getPacketSeqNumber(), o2.getPacketSeqNumber());
+    private DataPacket pollReadable() {
+        DataPacket r = unordered.poll();
+        if (r == null) {
+            final int next = seqSpace.increment(highestReadOrderNumber);
+            final int index = next & mask;
+            r = ordered[index];
+            ordered[index] = null;
+            highestReadOrderNumber = next;
         }
+        numValidChunks--;
+        return r;
     }
 
     public enum OfferResult {
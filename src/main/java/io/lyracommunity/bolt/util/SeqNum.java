@@ -13,8 +13,9 @@ import java.util.Random;
 public class SeqNum {
 
 
-    public final static  int MAX_PACKET_SEQ_NUM = (int) (Math.pow(2, 28) - 1);
+    public final static  int MAX_PACKET_SEQ_NUM = (int) (Math.pow(2, 27) - 1);
     public final static  int MAX_SEQ_NUM_16_BIT = (int) (Math.pow(2, 16) - 1);
+    public final static  int MAX_SEQ_NUM_WIDE   = (int) (Math.pow(2, SeqSpace.WIDE_BITS) - 1);
     private final static int MAX_PACKET_OFFSET  = MAX_PACKET_SEQ_NUM / 2;
     private final static int MAX_OFFSET_16_BIT  = MAX_SEQ_NUM_16_BIT / 2;
 
@@ -90,7 +91,7 @@ public class SeqNum {
     }
 
     /**
-     * Increment a 28-bit sequence number.
+     * Increment a 27-bit packet sequence number.
      *
      * @param seq the sequence number to increment.
      * @return the incremented sequence number.
@@ -109,6 +110,16 @@ public class SeqNum {
         return (seq == MAX_SEQ_NUM_16_BIT) ? 0 : seq + 1;
     }
 
+    /**
+     * Decrement a 16-bit sequence number.
+     *
+     * @param seq the sequence number to decrement.
+     * @return the decremented sequence number.
+     */
+    public static int decrement16(int seq) {
+        return (seq == 0) ? MAX_SEQ_NUM_16_BIT : seq - 1;
+    }
+
     /**
      * Increment by one.
      *
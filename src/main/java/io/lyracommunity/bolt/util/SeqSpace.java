@@ -0,0 +1,102 @@
+package io.lyracommunity.bolt.util;
+
+/**
+ * The reliability and order sequence number space of a session: 16-bit, or 30-bit
+ * once both peers agree to wide sequence numbers during the handshake.
+ * <p>
+ * All operations account for wrap-around. Comparisons and offsets are valid between
+ * sequence numbers less than half the space apart, and a session keeps at most
+ * {@link #getMaxWindow()} packets unacknowledged, leaving room for stragglers.
+ * <p>
+ * A session's sender and receiver share one instance. Its width is set during the
+ * handshake, before the session is ready, and is fixed from then on.
+ */
+public final class SeqSpace {
+
+    public static final int NARROW_BITS = 16;
+    public static final int WIDE_BITS   = 30;
+
+    /**
+     * Largest window of any space. Buffers sized for it suit either width.
+     */
+    public static final int MAX_WINDOW = 1 << (WIDE_BITS - 2);
+
+    // Volatile, as the handshake may set the width on another thread than the sender and receiver use.
+    private volatile int bits;
+    private volatile int maxSeqNum;
+    private volatile int shift;
+
+    public SeqSpace(final boolean wide) {
+        setWide(wide);
+    }
+
+    /**
+     * Choose the width of the space. Must not be called once the session is ready.
+     *
+     * @param wide true for 30-bit sequence numbers, false for 16-bit.
+     */
+    public void setWide(final boolean wide) {
+        this.bits = wide ? WIDE_BITS : NARROW_BITS;
+        this.maxSeqNum = (1 << bits) - 1;
+        this.shift = 32 - bits;
+    }
+
+    public boolean isWide() {
+        return bits == WIDE_BITS;
+    }
+
+    public int getMaxSeqNum() {
+        return maxSeqNum;
+    }
+
+    /**
+     * @return the most packets that may be unacknowledged at once: a quarter of the space.
+     */
+    public int getMaxWindow() {
+        return 1 << (bits - 2);
+    }
+
+    /**
+     * Compare seq1 and seq2. Returns zero, if they are equal, a negative value if seq1 is smaller than
+     * seq2, and a positive value if seq1 is larger than seq2.
+     *
+     * @param seq1 the first sequence number.
+     * @param seq2 the second sequence number.
+     */
+    public int compare(final int seq1, final int seq2) {
+        return offset(seq2, seq1);
+    }
+
+    /**
+     * Compute the offset from seq1 to seq2, negative if seq2 comes first.
+     *
+     * @param seq1 the first sequence number.
+     * @param seq2 the second sequence number.
+     * @return the sequence number offset.
+     */
+    public int offset(final int seq1, final int seq2) {
+        return ((seq2 - seq1) << shift) >> shift;
+    }
+
+    public int increment(final int seq) {
+        return (seq + 1) & maxSeqNum;
+    }
+
+    public int decrement(final int seq) {
+        return (seq - 1) & maxSeqNum;
+    }
+
+    /**
+     * @param seq the sequence number to add to.
+     * @param add the amount to add, which may be negative.
+     * @return the sequence number, wrapped into the space.
+     */
+    public int add(final int seq, final int add) {
+        return (seq + add) & maxSeqNum;
+    }
+
+    public String toString() {
+        return "SeqSpace bits=" + bits;
+    }
+
+}
@@ -29,4 +29,46 @@ public class Util {
         return 10_000.0;
     }
 
+    /**
+     * Find the median of some values by quickselect, in linear time on average.
+     * The values are copied to a scratch array, which is reordered.
+     *
+     * @param values  the values, which are left unchanged.
+     * @param scratch an array at least as long as count.
+     * @param count   the number of values, from the start of the array.
+     * @return the median, the mean of the two middle values if count is even, or 0 if count is 0.
+     */
+    public static double median(final long[] values, final long[] scratch, final int count) {
+        if (count == 0) return 0;
+        System.arraycopy(values, 0, scratch, 0, count);
+        final int mid = count >>> 1;
+        final long upper = select(scratch, 0, count - 1, mid);
+        if ((count & 1) == 1) return upper;
+        // Selection leaves the lower half before the middle, so the lower median is its largest.
+        long lower = scratch[0];
+        for (int i = 1; i < mid; i++) lower = Math.max(lower, scratch[i]);
+        return (lower + upper) / 2d;
+    }
+
+    private static long select(final long[] a, int left, int right, final int k) {
+        while (left < right) {
+            final long pivot = a[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    final long tmp = a[i];
+                    a[i++] = a[j];
+                    a[j--] = tmp;
+                }
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else break;
+        }
+        return a[k];
+    }
+
 }
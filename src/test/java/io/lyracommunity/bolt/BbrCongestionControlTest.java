@@ -0,0 +1,133 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.BbrCongestionControl.Mode;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import io.lyracommunity.bolt.util.Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+
+public class BbrCongestionControlTest {
+
+    private static final long RTT = 20_000;
+
+    private Config               config;
+    private SessionState         sessionState;
+    private BbrCongestionControl sut;
+    private long                 now;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new Config(InetAddress.getByName("localhost"), 12345);
+        sessionState = new SessionState(config, new Destination(InetAddress.getLocalHost(), 65432));
+        sut = (BbrCongestionControl) CongestionControlFactory.BBR.create(config, sessionState,
+                new BoltStatistics("test", config.getDatagramSize()));
+        sut.init();
+        now = 1_000_000;
+    }
+
+    @Test
+    public void testStartsUnpacedWithinInitialWindow() {
+        assertEquals(Mode.STARTUP, sut.getMode());
+        assertEquals(0, sut.getSendInterval(), 0);
+        assertEquals(config.getInitialCongestionWindowSize(), sut.getCongestionWindowSize(), 0);
+    }
+
+    @Test
+    public void testStartupEndsWhenBandwidthStopsGrowing() {
+        deliver(1000, 0, 20);
+
+        assertEquals(Mode.PROBE_BW, sut.getMode());
+        assertEquals(1000, sut.getBottleneckBandwidth());
+        assertEquals(RTT, sut.getMinRtt());
+        // Two bandwidth-delay products, counting the ACK interval into the round trip.
+        assertEquals(2 * 1000 * (RTT + Util.getSYNTime()) / 1_000_000d, sut.getCongestionWindowSize(), 1e-9);
+    }
+
+    @Test
+    public void testGainCyclesAroundBandwidth() {
+        deliver(1000, 0, 20);
+        final double atBandwidth = 1_000_000d / 1000;
+
+        double fastest = Double.MAX_VALUE;
+        double slowest = 0;
+        for (int i = 0; i < BbrCongestionControl.PROBE_BW_GAINS.length; i++) {
+            fastest = Math.min(fastest, sut.getSendInterval());
+            slowest = Math.max(slowest, sut.getSendInterval());
+            deliver(1000, 0, 1);
+        }
+        assertEquals(atBandwidth / 1.25, fastest, 1e-9);
+        assertEquals(atBandwidth / 0.75, slowest, 1e-9);
+    }
+
+    @Test
+    public void testLossDoesNotSlowDown() {
+        deliver(1000, 0, 20);
+        final double interval = sut.getSendInterval();
+
+        for (int i = 0; i < 100; i++) sut.onLoss(i * 50, 1, i * 50 + 10);
+        assertEquals(interval, sut.getSendInterval(), 0);
+        assertEquals(1000, sut.getBottleneckBandwidth());
+    }
+
+    @Test
+    public void testBandwidthBoundedByLinkCapacity() {
+        deliver(5000, 1000, 20);
+
+        assertEquals(1000, sut.getBottleneckBandwidth());
+    }
+
+    @Test
+    public void testBandwidthFollowsLowerDeliveryRateOnceWindowPasses() {
+        deliver(2000, 0, 20);
+        deliver(1000, 0, BbrCongestionControl.BANDWIDTH_WINDOW_ROUNDS + 1);
+
+        assertEquals(1000, sut.getBottleneckBandwidth());
+    }
+
+    @Test
+    public void testProbesRttOnceMinimumExpires() {
+        deliver(1000, 0, 20);
+
+        now += BbrCongestionControl.MIN_RTT_WINDOW;
+        sut.onRtt(RTT * 2, now);
+        assertEquals(Mode.PROBE_RTT, sut.getMode());
+        assertEquals(BbrCongestionControl.MIN_CWND, sut.getCongestionWindowSize(), 0);
+
+        now += BbrCongestionControl.PROBE_RTT_DURATION;
+        sut.onRtt(RTT, now);
+        sut.advance(now);
+        assertEquals(Mode.PROBE_BW, sut.getMode());
+        assertEquals(RTT, sut.getMinRtt());
+    }
+
+    @Test
+    public void testArrivalRateUsedUntilReliableDelivery() {
+        for (int i = 0; i < 5; i++) {
+            sut.onRtt(RTT, now);
+            sut.onDeliveryRate(800, 0, now);
+            now += RTT + Util.getSYNTime();
+        }
+        assertEquals(800, sut.getBottleneckBandwidth());
+    }
+
+    /**
+     * Report an RTT, a round's deliveries at the given rate, and the rates the receiver measured, once per round.
+     */
+    private void deliver(final long rate, final long linkCapacity, final int rounds) {
+        final long roundLength = RTT + Util.getSYNTime();
+        for (int i = 0; i < rounds; i++) {
+            sut.onRtt(RTT, now);
+            sut.onDeliveryRate(rate, linkCapacity, now);
+            sut.onDelivered((int) (rate * roundLength / 1_000_000), now);
+            now += roundLength;
+        }
+    }
+
+}
@@ -39,6 +39,14 @@ public class ChannelOutStub implements ChannelOut {
         return new ArrayList<>(sent).stream().filter(p -> packetType == p.getPacketType()).count();
     }
 
+    public BoltPacket lastSentOfType(final PacketType packetType) {
+        BoltPacket last = null;
+        for (BoltPacket p : new ArrayList<>(sent)) {
+            if (packetType == p.getPacketType()) last = p;
+        }
+        return last;
+    }
+
     @Override
     public boolean isOpen() {
         return open;
@@ -0,0 +1,53 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FixedRateCongestionControlTest {
+
+    private Config         config;
+    private SessionState   sessionState;
+    private BoltStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new Config(InetAddress.getByName("localhost"), 12345);
+        sessionState = new SessionState(config, new Destination(InetAddress.getLocalHost(), 65432));
+        statistics = new BoltStatistics("test", config.getDatagramSize());
+    }
+
+    @Test
+    public void testRateUnaffectedByLoss() {
+        // 1400-byte datagrams at 14,000,000 bytes per second: one per 100 microseconds.
+        final CongestionControl cc = CongestionControlFactory.fixedRate(14_000_000).create(config, sessionState, statistics);
+        cc.init();
+        final double interval = cc.getSendInterval();
+        assertEquals(100, interval, 1e-9);
+
+        cc.onLoss(10, 5, 20);
+        cc.onACK(30);
+        assertEquals(interval, cc.getSendInterval(), 0);
+        assertEquals(sessionState.getFlowWindowSize(), cc.getCongestionWindowSize(), 0);
+    }
+
+    @Test
+    public void testZeroRateUnpaced() {
+        final CongestionControl cc = CongestionControlFactory.fixedRate(0).create(config, sessionState, statistics);
+        assertEquals(0, cc.getSendInterval(), 0);
+    }
+
+    @Test
+    public void testDefaultFactory() {
+        assertTrue(config.getCongestionControlFactory().create(config, sessionState, statistics) instanceof BoltCongestionControl);
+    }
+
+}
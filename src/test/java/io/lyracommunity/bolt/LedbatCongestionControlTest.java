@@ -0,0 +1,108 @@
+package io.lyracommunity.bolt;
+
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import io.lyracommunity.bolt.util.Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LedbatCongestionControlTest {
+
+    private static final long BASE_RTT = 20_000;
+    private static final long TARGET   = LedbatCongestionControl.DEFAULT_TARGET_DELAY;
+
+    private Config                  config;
+    private SessionState            sessionState;
+    private LedbatCongestionControl sut;
+    private long                    now;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new Config(InetAddress.getByName("localhost"), 12345);
+        sessionState = new SessionState(config, new Destination(InetAddress.getLocalHost(), 65432));
+        sut = (LedbatCongestionControl) CongestionControlFactory.LEDBAT.create(config, sessionState,
+                new BoltStatistics("test", config.getDatagramSize()));
+        sut.init();
+        now = 1_000_000;
+    }
+
+    @Test
+    public void testWindowHeldUntilRttMeasured() {
+        sut.onDelivered(100);
+
+        assertEquals(config.getInitialCongestionWindowSize(), sut.getCongestionWindowSize(), 0);
+        assertEquals(0, sut.getSendInterval(), 0);
+    }
+
+    @Test
+    public void testGrowsWhileQueuingBelowTarget() {
+        final double initial = sut.getCongestionWindowSize();
+        rtt(BASE_RTT, 1000);
+        sut.onDelivered((int) initial);
+
+        // No queuing: a full window delivered grows the window by one packet.
+        assertEquals(initial + 1, sut.getCongestionWindowSize(), 1e-9);
+        assertEquals((BASE_RTT + Util.getSYNTime()) / (initial + 1), sut.getSendInterval(), 1e-9);
+    }
+
+    @Test
+    public void testBacksOffOnceQueuingExceedsTarget() {
+        rtt(BASE_RTT, 1000);
+        for (int i = 0; i < 50; i++) sut.onDelivered(16);
+        final double grown = sut.getCongestionWindowSize();
+
+        rtt(BASE_RTT + 2 * TARGET, 1000);
+        assertEquals(2 * TARGET, sut.getQueuingDelay());
+        sut.onDelivered(16);
+        assertTrue(sut.getCongestionWindowSize() < grown);
+
+        for (int i = 0; i < 1000; i++) sut.onDelivered(16);
+        assertEquals(LedbatCongestionControl.MIN_CWND, sut.getCongestionWindowSize(), 0);
+    }
+
+    @Test
+    public void testNoGrowthWhileJitterExceedsTarget() {
+        final double initial = sut.getCongestionWindowSize();
+        rtt(BASE_RTT, 2 * TARGET);
+        sut.onDelivered(100);
+
+        assertEquals(initial, sut.getCongestionWindowSize(), 0);
+    }
+
+    @Test
+    public void testLossHalvesWindowOncePerRoundTrip() {
+        rtt(BASE_RTT, 1000);
+        final double initial = sut.getCongestionWindowSize();
+
+        sut.onLoss(now);
+        sut.onLoss(now + 1000);
+        assertEquals(initial / 2, sut.getCongestionWindowSize(), 0);
+
+        sut.onLoss(now + BASE_RTT + Util.getSYNTime());
+        assertEquals(initial / 4, sut.getCongestionWindowSize(), 0);
+    }
+
+    @Test
+    public void testBaseRttForgottenAfterHistory() {
+        rtt(BASE_RTT, 1000);
+        for (int i = 0; i < LedbatCongestionControl.BASE_HISTORY; i++) {
+            now += LedbatCongestionControl.BASE_INTERVAL;
+            rtt(BASE_RTT * 3, 1000);
+        }
+
+        // The path changed for good: its longer RTT is no longer taken as queuing.
+        assertEquals(0, sut.getQueuingDelay());
+    }
+
+    private void rtt(final long rtt, final long rttVar) {
+        sut.onRtt(rtt, rttVar, now);
+    }
+
+}
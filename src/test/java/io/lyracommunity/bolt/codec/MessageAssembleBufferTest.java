@@ -1,14 +1,18 @@
 package io.lyracommunity.bolt.codec;
 
+import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.helper.TestData;
+import io.lyracommunity.bolt.helper.TestObjects.BaseDataClass;
 import io.lyracommunity.bolt.packet.DataPacket;
 import io.lyracommunity.bolt.packet.DeliveryType;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static io.lyracommunity.bolt.helper.TestObjects.createPacketCodec;
 import static org.junit.Assert.*;
 
 /**
@@ -16,6 +20,8 @@ import static org.junit.Assert.*;
  */
 public class MessageAssembleBufferTest {
 
+    private static final int DATA_COUNT = Config.DEFAULT_DATAGRAM_SIZE - DataPacket.MAX_HEADER_SIZE;
+
     private MessageAssembleBuffer sut = new MessageAssembleBuffer();
 
     @Test
@@ -57,6 +63,60 @@ public class MessageAssembleBufferTest {
         assertEquals(first, second - 1);
     }
 
+    @Test
+    public void testFecAssembly_rebuildsLostChunks() throws Throwable {
+        // Given 20 data chunks in blocks of 8, 8 and 4, each with 2 parity chunks.
+        final PacketCodec<BaseDataClass> codec = createPacketCodec(DeliveryType.UNRELIABLE_FEC_MESSAGE, BaseDataClass::new);
+        final BaseDataClass o = new BaseDataClass(5 * (DATA_COUNT - 2) - 7);
+        final List<DataPacket> packets = encodeFec(codec, o);
+        assertEquals(26, packets.size());
+
+        // When two chunks of the first block, one of the second, and the final chunk are lost.
+        List<DataPacket> all = Collections.emptyList();
+        for (DataPacket p : packets) {
+            final int chunk = p.getMessageChunkNumber();
+            if (chunk == 0 || chunk == 5 || chunk == 9 || chunk == 19) continue;
+            final List<DataPacket> result = sut.addChunk(p);
+            if (!result.isEmpty()) all = result;
+        }
+
+        // Then
+        assertEquals(20, all.size());
+        assertEquals(o, codec.decode(all));
+    }
+
+    @Test
+    public void testFecAssembly_tooManyLost() throws Throwable {
+        final PacketCodec<BaseDataClass> codec = createPacketCodec(DeliveryType.UNRELIABLE_FEC_MESSAGE, BaseDataClass::new);
+        final List<DataPacket> packets = encodeFec(codec, new BaseDataClass(2 * DATA_COUNT));
+
+        for (DataPacket p : packets) {
+            if (p.getMessageChunkNumber() < 3) continue;
+            assertTrue(sut.addChunk(p).isEmpty());
+        }
+    }
+
+    @Test
+    public void testFecAssembly_surplusChunksDiscarded() throws Throwable {
+        final PacketCodec<BaseDataClass> codec = createPacketCodec(DeliveryType.UNRELIABLE_FEC_MESSAGE, BaseDataClass::new);
+        final List<DataPacket> packets = encodeFec(codec, new BaseDataClass(DATA_COUNT));
+
+        int completions = 0;
+        for (DataPacket p : packets) {
+            if (!sut.addChunk(p).isEmpty()) completions++;
+        }
+
+        // Complete once all data chunks arrive, then the parity chunks are surplus.
+        assertEquals(1, completions);
+    }
+
+    private List<DataPacket> encodeFec(final PacketCodec<BaseDataClass> codec, final BaseDataClass o) {
+        final List<DataPacket> packets = codec.encode(o);
+        final int messageId = sut.nextMessageId();
+        packets.forEach(p -> p.setMessageId(messageId));
+        return packets;
+    }
+
     private List<DataPacket> createMessagePackets(final int count, final boolean markFinal) {
         final byte[] data = TestData.getRandomData(1000);
         return IntStream.range(0, count).boxed().map(i -> {
@@ -13,6 +13,7 @@ import java.util.List;
 
 import static io.lyracommunity.bolt.helper.TestObjects.createPacketCodec;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -63,6 +64,14 @@ public class PacketCodecTest {
         assertEquals(4, packets.size());
     }
 
+    @Test
+    public void encodeWithLargerDatagramSize_FewerPackets() throws Exception {
+        final List<DataPacket> packets = sut.encode(o, 2 * Config.DEFAULT_DATAGRAM_SIZE);
+
+        assertEquals(2, packets.size());
+        assertEquals(o, sut.decode(packets));
+    }
+
     @Test
     public void encodeFromEmptyDataPacket_Ok() throws Exception {
         setUp(DeliveryType.RELIABLE_ORDERED, 0);
@@ -72,6 +81,26 @@ public class PacketCodecTest {
         assertEquals(1, packets.size());
     }
 
+    @Test
+    public void encodeWithFec_AddsParityPerBlock() throws Exception {
+        // 20 data chunks: blocks of 8, 8 and 4, each with 2 parity chunks.
+        setUp(DeliveryType.UNRELIABLE_FEC_MESSAGE, 5 * (DEFAULT_DATA_COUNT - 2));
+
+        final long parity = encoded.stream().filter(DataPacket::isParityChunk).count();
+
+        assertEquals(6, parity);
+        assertEquals(20, encoded.size() - parity);
+        assertEquals(o, sut.decode(encoded.subList(0, 20)));
+    }
+
+    @Test
+    public void encodeWithFec_SingleChunkStillHasParity() throws Exception {
+        setUp(DeliveryType.UNRELIABLE_FEC_MESSAGE, 10);
+
+        assertEquals(3, encoded.size());
+        assertTrue(encoded.get(0).isFinalMessageChunk());
+    }
+
 //    @Test
     public void decodePerformanceTest() throws Exception {
 
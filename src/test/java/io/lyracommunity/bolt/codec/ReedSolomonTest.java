@@ -0,0 +1,93 @@
+package io.lyracommunity.bolt.codec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReedSolomonTest {
+
+    private static final int LENGTH = 64;
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void testSingleParityIsXor() {
+        final ReedSolomon sut = ReedSolomon.of(4, 1);
+        final byte[][] data = randomShards(4);
+        final byte[][] parity = new byte[1][LENGTH];
+
+        sut.encode(data, 0, 4, parity, 0, LENGTH);
+
+        for (int p = 0; p < LENGTH; p++) {
+            assertEquals((byte) (data[0][p] ^ data[1][p] ^ data[2][p] ^ data[3][p]), parity[0][p]);
+        }
+    }
+
+    @Test
+    public void testReconstructAnyTwoErasures() {
+        final ReedSolomon sut = ReedSolomon.of(6, 2);
+        final byte[][] data = randomShards(6);
+        final byte[][] parity = new byte[2][LENGTH];
+        sut.encode(data, 0, 6, parity, 0, LENGTH);
+
+        // Every pair of lost shards, data or parity.
+        for (int a = 0; a < 8; a++) {
+            for (int b = a + 1; b < 8; b++) {
+                final byte[][] received = new byte[6][];
+                final boolean[] dataPresent = new boolean[6];
+                final boolean[] parityPresent = new boolean[2];
+                for (int i = 0; i < 6; i++) {
+                    dataPresent[i] = (i != a && i != b);
+                    received[i] = dataPresent[i] ? data[i].clone() : new byte[LENGTH];
+                }
+                for (int j = 0; j < 2; j++) parityPresent[j] = (6 + j != a && 6 + j != b);
+
+                assertTrue(sut.reconstruct(received, dataPresent, 6, parity, parityPresent, 0, LENGTH));
+                for (int i = 0; i < 6; i++) assertArrayEquals("Lost " + a + "," + b, data[i], received[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testReconstructShortBlockWithShortFinalShard() {
+        final ReedSolomon sut = ReedSolomon.of(8, 2);
+        final byte[][] data = randomShards(3);
+        data[2] = new byte[10];
+        random.nextBytes(data[2]);
+        final byte[][] parity = new byte[2][2 + LENGTH];
+        sut.encode(data, 0, 3, parity, 2, LENGTH);
+
+        final byte[][] received = { new byte[LENGTH], data[1], new byte[LENGTH] };
+        assertTrue(sut.reconstruct(received, new boolean[] { false, true, false }, 3,
+                parity, new boolean[] { true, true }, 2, LENGTH));
+
+        assertArrayEquals(data[0], received[0]);
+        assertArrayEquals(data[2], Arrays.copyOf(received[2], 10));
+    }
+
+    @Test
+    public void testTooFewShards() {
+        final ReedSolomon sut = ReedSolomon.of(4, 1);
+        final byte[][] data = randomShards(4);
+        final byte[][] parity = new byte[1][LENGTH];
+        sut.encode(data, 0, 4, parity, 0, LENGTH);
+
+        assertFalse(sut.reconstruct(data, new boolean[] { false, false, true, true }, 4,
+                parity, new boolean[] { true }, 0, LENGTH));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyShards() {
+        ReedSolomon.of(200, 57);
+    }
+
+    private byte[][] randomShards(final int count) {
+        final byte[][] shards = new byte[count][LENGTH];
+        for (byte[] shard : shards) random.nextBytes(shard);
+        return shards;
+    }
+
+}
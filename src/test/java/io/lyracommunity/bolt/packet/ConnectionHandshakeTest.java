@@ -28,4 +28,26 @@ public class ConnectionHandshakeTest {
         assertEquals(h, h2);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void encodeAndDecodeWideSeqNumbers() throws Exception {
+        h.setWideSeqNumbers(true);
+
+        final ConnectionHandshake h2 = (ConnectionHandshake) PacketFactory.createPacket(h.getEncoded());
+
+        assertEquals(h, h2);
+        assertTrue(h2.isWideSeqNumbers());
+    }
+
+    @Test
+    public void encodeAndDecodeBackgroundTransfer() throws Exception {
+        h.setBackgroundTransfer(true);
+
+        final ConnectionHandshake h2 = (ConnectionHandshake) PacketFactory.createPacket(h.getEncoded());
+
+        assertEquals(h, h2);
+        assertTrue(h2.isBackgroundTransfer());
+        assertFalse(h2.isWideSeqNumbers());
+    }
+
+}
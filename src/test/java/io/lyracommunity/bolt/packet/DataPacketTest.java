@@ -1,11 +1,13 @@
 package io.lyracommunity.bolt.packet;
 
+import io.lyracommunity.bolt.util.SeqNum;
 import org.junit.Test;
 
 import java.util.Random;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DataPacketTest
 {
@@ -16,7 +18,7 @@ public class DataPacketTest
         final byte[] encodedData = new byte[100 + r.nextInt(1288)];
         r.nextBytes(encodedData);
 
-        encodedData[0] = (byte) ((r.nextInt(5) << 4) | (r.nextInt(9))); // Delivery Type | First 4 seq no digits
+        encodedData[0] = (byte) ((r.nextInt(6) << 4) | (r.nextInt(9))); // Delivery Type | First 4 seq no digits
 
         return new DataPacket(encodedData);
     }
@@ -46,6 +48,44 @@ public class DataPacketTest
         });
     }
 
+    @Test
+    public void testFecHeader() {
+        final DataPacket src = new DataPacket();
+        src.setData(new byte[100]);
+        src.setDelivery(DeliveryType.UNRELIABLE_FEC_MESSAGE);
+        src.setMessageId(77);
+        src.setMessageChunkNumber(21);
+        src.setFec(20, 8, 2);
+        final DataPacket cpy = new DataPacket(src.getEncoded());
+
+        assertEquals(src, cpy);
+        assertEquals(20, cpy.getMessageDataChunkCount());
+        assertEquals(8, cpy.getFecDataChunks());
+        assertEquals(2, cpy.getFecParityChunks());
+        assertTrue(cpy.isParityChunk());
+    }
+
+    @Test
+    public void testWideSeqNumbers() {
+        final DataPacket src = new DataPacket();
+        src.setData(new byte[100]);
+        src.setDelivery(DeliveryType.RELIABLE_ORDERED_MESSAGE);
+        src.setWideSeqNumbers(true);
+        src.setPacketSeqNumber(SeqNum.MAX_PACKET_SEQ_NUM);
+        src.setReliabilitySeqNumber(SeqNum.MAX_SEQ_NUM_WIDE);
+        src.setOrderSeqNumber(70_000);
+        src.setMessageId(77);
+        final byte[] encoded = src.getEncoded();
+        final DataPacket cpy = new DataPacket(encoded);
+
+        assertEquals(DataPacket.MAX_HEADER_SIZE + 100, encoded.length);
+        assertEquals(src, cpy);
+        assertTrue(cpy.isWideSeqNumbers());
+        assertEquals(SeqNum.MAX_PACKET_SEQ_NUM, cpy.getPacketSeqNumber());
+        assertEquals(SeqNum.MAX_SEQ_NUM_WIDE, cpy.getReliabilitySeqNumber());
+        assertEquals(70_000, cpy.getOrderSeqNumber());
+    }
+
     @Test
     public void testDecodeAndEncodeAreSymmetric() {
         IntStream.range(0, 1000).parallel().forEach(__ -> {
@@ -78,7 +118,7 @@ public class DataPacketTest
         p.setData(data);
         byte[] encoded = p.getEncoded();
         byte[] encData = new byte[data.length];
-        System.arraycopy(encoded, DataPacket.computeHeaderLength(p.getDelivery()), encData, 0, data.length);
+        System.arraycopy(encoded, DataPacket.computeHeaderLength(p.getDelivery(), p.isWideSeqNumbers()), encData, 0, data.length);
         String s = new String(encData);
         assertEquals("test", s);
         System.out.println("String s = " + s);
@@ -90,6 +130,7 @@ public class DataPacketTest
         DataPacket testPacket1 = createRandomPacket();
         testPacket1.setDelivery(DeliveryType.RELIABLE_ORDERED);
         testPacket1.setPacketSeqNumber(127);
+        testPacket1.setWideSeqNumbers(false);
         testPacket1.setDestinationID(1);
         byte[] data1 = "Hallo".getBytes();
         testPacket1.setData(data1);
@@ -1,6 +1,7 @@
 package io.lyracommunity.bolt.packet;
 
 import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -8,7 +9,9 @@ import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by keen on 02/04/16.
@@ -33,6 +36,80 @@ public class NakTest {
         }
     }
 
+    @Test
+    public void testLossRangesMatchExpandedList() {
+        final Nak nak = new Nak();
+        nak.addLossRange(600, 900);
+        nak.addLossSingle(908);
+        nak.addLossRange(SeqNum.MAX_SEQ_NUM_16_BIT - 2000, 500);
+
+        final AtomicInteger ranges = new AtomicInteger(0);
+        nak.forEachLossRange((first, last) -> ranges.incrementAndGet());
+
+        assertEquals(3, ranges.get());
+        assertEquals(600, nak.getFirstLoss());
+        assertEquals(nak.computeExpandedLossList().count(), nak.getLossCount());
+    }
+
+    @Test
+    public void testScatteredLossesPackedAsBitmap() throws Throwable {
+        final Nak nak = new Nak();
+        for (int seq = 100; seq < 100 + 3000 * 3; seq += 3) nak.addLossSingle(seq);
+
+        // Listed singly this would take 12,000 bytes; as bitmaps it fits one datagram.
+        assertEquals(3000, nak.getLossCount());
+        assertTrue(nak.getLossInfoLength() + "", nak.getLossInfoLength() < Nak.maxLossInfoLength(1400));
+
+        final Nak mirror = (Nak) PacketFactory.createPacket(nak.getEncoded());
+        assertEquals(nak, mirror);
+        assertArrayEquals(nak.computeExpandedLossList().toArray(), mirror.computeExpandedLossList().toArray());
+    }
+
+    @Test
+    public void testBitmapAcrossOverflow() throws Throwable {
+        final Nak nak = new Nak();
+        nak.addLossRange(SeqNum.MAX_SEQ_NUM_16_BIT - 10, SeqNum.MAX_SEQ_NUM_16_BIT - 8);
+        nak.addLossSingle(SeqNum.MAX_SEQ_NUM_16_BIT - 2);
+        nak.addLossRange(SeqNum.MAX_SEQ_NUM_16_BIT, 3);
+        nak.addLossSingle(9);
+
+        final Nak mirror = (Nak) PacketFactory.createPacket(nak.getEncoded());
+
+        assertArrayEquals(nak.computeExpandedLossList().toArray(), mirror.computeExpandedLossList().toArray());
+        assertEquals(4, mirror.getRangeCount());
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT, mirror.getRangeFirst(2));
+        assertEquals(3, mirror.getRangeLast(2));
+    }
+
+    @Test
+    public void testLongRangesStayListed() {
+        final Nak nak = new Nak();
+        nak.addLossRange(0, 5000);
+        nak.addLossRange(6000, 9000);
+        assertEquals(16, nak.getLossInfoLength());
+    }
+
+    @Test
+    public void testRandomLossRoundTrip() throws Throwable {
+        final Random r = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            final Nak nak = new Nak();
+            int seq = r.nextInt(SeqNum.MAX_SEQ_NUM_16_BIT + 1);
+            final int ranges = 1 + r.nextInt(50);
+            for (int j = 0; j < ranges; j++) {
+                final int length = r.nextBoolean() ? 1 : 1 + r.nextInt(r.nextBoolean() ? 4 : 200);
+                final int last = (seq + length - 1) & SeqNum.MAX_SEQ_NUM_16_BIT;
+                nak.addLossRange(seq, last);
+                seq = (last + 2 + r.nextInt(r.nextBoolean() ? 8 : 400)) & SeqNum.MAX_SEQ_NUM_16_BIT;
+            }
+            final Nak mirror = (Nak) PacketFactory.createPacket(nak.getEncoded());
+
+            assertEquals(nak, mirror);
+            assertEquals(nak.getLossCount(), mirror.getLossCount());
+            assertArrayEquals(nak.computeExpandedLossList().toArray(), mirror.computeExpandedLossList().toArray());
+        }
+    }
+
     @Test
     public void measureComputedListPerformance() {
         final AtomicInteger result = new AtomicInteger(0);
@@ -51,5 +128,20 @@ public class NakTest {
         timed.accept( () -> nak.computeExpandedLossList().forEach((x) -> {}));
     }
 
+    @Test
+    public void testWideBitmapRoundTrip() throws Throwable {
+        final SeqSpace space = new SeqSpace(true);
+        final int start = space.getMaxSeqNum() - 100;
+        final Nak nak = new Nak(space);
+        for (int i = 0; i < 60; i++) nak.addLossSingle(space.add(start, i * 3));
+        nak.addLossRange(space.add(start, 1000), space.add(start, 90_000));
+
+        final Nak mirror = (Nak) PacketFactory.createPacket(nak.getEncoded());
+
+        assertTrue(mirror.isWideSeqNumbers());
+        assertEquals(nak, mirror);
+        assertEquals(60 + 89_001, mirror.getLossCount());
+        assertArrayEquals(nak.computeExpandedLossList().toArray(), mirror.computeExpandedLossList().toArray());
+    }
 
 }
@@ -1,10 +1,12 @@
 package io.lyracommunity.bolt.packet;
 
+import io.lyracommunity.bolt.util.ByteBufferPool;
 import io.lyracommunity.bolt.util.SeqNum;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -35,6 +37,74 @@ public class PacketFactoryTest
         assertArrayEquals(data, p.getEncoded());
     }
 
+    @Test
+    public void testDataFromBuffer() throws IOException {
+        final DataPacket p1 = new DataPacket();
+        p1.setDelivery(DeliveryType.RELIABLE_ORDERED_MESSAGE);
+        p1.setPacketSeqNumber(77);
+        p1.setReliabilitySeqNumber(65000);
+        p1.setOrderSeqNumber(12);
+        p1.setMessageId(9);
+        p1.setMessageChunkNumber(3);
+        p1.setFinalMessageChunk(true);
+        p1.setDestinationID(5);
+        p1.setClassID(2);
+        p1.setData("sdjfsdjfldskjflds".getBytes());
+
+        final ByteBufferPool pool = new ByteBufferPool(1400, 4);
+        final ByteBuffer buffer = pool.acquire();
+        buffer.put(p1.getEncoded()).flip();
+
+        final DataPacket p2 = (DataPacket) PacketFactory.createPacket(buffer, pool);
+        assertEquals(p1.getDataLength(), p2.getDataLength());
+        final byte[] copied = new byte[p2.getDataLength()];
+        p2.copyDataTo(copied, 0);
+        assertArrayEquals(p1.getData(), copied);
+        assertEquals(p1, p2);
+        assertEquals(0, pool.available());
+
+        p2.release();
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void testControlFromBufferReturnsBufferToPool() throws IOException {
+        final Ack2 p1 = new Ack2(1230, 1);
+        final ByteBufferPool pool = new ByteBufferPool(1400, 4);
+        final ByteBuffer buffer = pool.acquire();
+        buffer.put(p1.getEncoded()).flip();
+
+        assertEquals(p1, PacketFactory.createPacket(buffer, pool));
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void testEncodeIntoSharedBuffer() throws IOException {
+        final DataPacket data = new DataPacket();
+        data.setDelivery(DeliveryType.RELIABLE_ORDERED);
+        data.setPacketSeqNumber(3);
+        data.setReliabilitySeqNumber(4);
+        data.setOrderSeqNumber(5);
+        data.setData("payload".getBytes());
+        final Nak nak = new Nak();
+        nak.addLossRange(7, 10);
+        final List<BoltPacket> packets = Arrays.asList(data, Ack2.build(9, 2), new KeepAlive(), nak,
+                Ack.buildAcknowledgement(1, 2, 3, 4, 5, 6, 7, 8));
+
+        final ByteBuffer buffer = ByteBuffer.allocate(1400);
+        buffer.position(10);
+        for (BoltPacket p : packets) {
+            final int start = buffer.position();
+            p.encodeInto(buffer);
+            assertEquals(p.getLength(), buffer.position() - start);
+
+            final byte[] encoded = new byte[p.getLength()];
+            System.arraycopy(buffer.array(), start, encoded, 0, encoded.length);
+            assertArrayEquals(p.getEncoded(), encoded);
+            assertEquals(p, PacketFactory.createPacket(encoded));
+        }
+    }
+
     @Test
     public void testConnectionHandshake() throws IOException {
         final ConnectionHandshake p1 = new ConnectionHandshake(128, 321, 1, 1, 128, 1, 1, SeqNum.randomInt(), InetAddress.getLocalHost());
@@ -65,6 +135,20 @@ public class PacketFactoryTest
         assertEquals(p1, p2);
     }
 
+    @Test
+    public void testAcknowledgementWithSackBlocks() throws IOException {
+        final Ack p1 = Ack.buildAcknowledgement(100, 7, 1000, 500, 128, 1, 16, 1000);
+        p1.addSackBlock(102, 110);
+        p1.addSackBlock(SeqNum.MAX_SEQ_NUM_16_BIT, 4);
+
+        final Ack p2 = (Ack) PacketFactory.createPacket(p1.getEncoded());
+
+        assertEquals(p1, p2);
+        assertEquals(2, p2.getSackBlockCount());
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT, p2.getSackBlockFirst(1));
+        assertEquals(4, p2.getSackBlockLast(1));
+    }
+
     @Test
     public void testAcknowledgementOfAcknowledgement() throws IOException {
         final Ack2 p1 = new Ack2(1230, 1);
@@ -134,6 +218,23 @@ public class PacketFactoryTest
         assertEquals(p1, p2);
     }
 
+    @Test
+    public void testMtuProbe() throws IOException {
+        MtuProbe p1 = MtuProbe.probe(9000, 3);
+        byte[] p1_data = p1.getEncoded();
+        assertEquals(9000, p1_data.length);
+
+        MtuProbe p2 = (MtuProbe) PacketFactory.createPacket(p1_data);
+        assertEquals(p1, p2);
+        assertFalse(p2.isReply());
+
+        MtuProbe r1 = MtuProbe.reply(p2.getProbeSize(), 4);
+        MtuProbe r2 = (MtuProbe) PacketFactory.createPacket(r1.getEncoded());
+        assertEquals(r1, r2);
+        assertTrue(r2.isReply());
+        assertEquals(9000, r2.getProbeSize());
+    }
+
     @Test
     public void testPacketUtil() throws Exception {
         InetAddress i = InetAddress.getLocalHost();
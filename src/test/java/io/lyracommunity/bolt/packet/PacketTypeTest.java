@@ -30,6 +30,8 @@ public class PacketTypeTest {
         assertEquals(4, t.getTypeId());
         t = PacketType.ACK2;
         assertEquals(5, t.getTypeId());
+        t = PacketType.MTU_PROBE;
+        assertEquals(6, t.getTypeId());
     }
 
     @Test
@@ -11,16 +11,43 @@ public class AckHistoryWindowTest {
 
     @Test
     public void testAckHistoryWindow() {
-        final AckHistoryEntry ackSeqNrA = new AckHistoryEntry(0, 1, 1263465050);
-        final AckHistoryEntry ackSeqNrB = new AckHistoryEntry(1, 2, 1263465054);
-        final AckHistoryEntry ackSeqNrC = new AckHistoryEntry(2, 3, 1263465058);
-
         final AckHistoryWindow recvWindow = new AckHistoryWindow(3);
-        recvWindow.add(ackSeqNrA);
-        recvWindow.add(ackSeqNrB);
-        recvWindow.add(ackSeqNrC);
-        final AckHistoryEntry entryA = recvWindow.getEntry(1);
-        assertEquals(1263465050, entryA.getSentTime());
+        recvWindow.add(0, 1, 1263465050);
+        recvWindow.add(1, 2, 1263465054);
+        recvWindow.add(2, 3, 1263465058);
+
+        assertEquals(1263465054, recvWindow.getSentTime(1));
+        assertEquals(2, recvWindow.getAckNumber(1));
+    }
+
+    @Test
+    public void testLookupByAckSequenceNumberNotAckNumber() {
+        final AckHistoryWindow recvWindow = new AckHistoryWindow(16);
+        recvWindow.add(5, 100, 1000);
+
+        assertEquals(1000, recvWindow.getSentTime(5));
+        assertEquals(-1, recvWindow.getSentTime(100));
+    }
+
+    @Test
+    public void testOldestOverwritten() {
+        final AckHistoryWindow recvWindow = new AckHistoryWindow(4);
+        assertEquals(4, recvWindow.capacity());
+        for (int ackSeq = 1; ackSeq <= 6; ackSeq++) {
+            recvWindow.add(ackSeq, ackSeq * 10, ackSeq * 1000);
+        }
+
+        assertEquals(-1, recvWindow.getSentTime(1));
+        assertEquals(-1, recvWindow.getAckNumber(2));
+        assertEquals(3000, recvWindow.getSentTime(3));
+        assertEquals(60, recvWindow.getAckNumber(6));
+    }
+
+    @Test
+    public void testUnknownSequenceNumber() {
+        final AckHistoryWindow recvWindow = new AckHistoryWindow(16);
+        assertEquals(-1, recvWindow.getSentTime(0));
+        assertEquals(-1, recvWindow.getAckNumber(7));
     }
 
-}
\ No newline at end of file
+}
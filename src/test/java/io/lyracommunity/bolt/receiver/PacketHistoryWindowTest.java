@@ -21,4 +21,25 @@ public class PacketHistoryWindowTest {
         assertEquals(200, packetHistoryWindow.getPacketArrivalSpeed());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testArrivalSpeedIgnoresStall() {
+        final PacketHistoryWindow packetHistoryWindow = new PacketHistoryWindow(16);
+        long time = 1_000_000;
+        for (int i = 0; i < 16; i++) {
+            // One long stall amongst packets arriving every 1 ms.
+            time += (i == 8) ? 500_000 : 1000;
+            packetHistoryWindow.add(time);
+        }
+        assertEquals(1000, packetHistoryWindow.getPacketArrivalSpeed());
+    }
+
+    @Test
+    public void testNoSpeedUntilWindowFull() {
+        final PacketHistoryWindow packetHistoryWindow = new PacketHistoryWindow(16);
+        for (int i = 0; i < 15; i++) packetHistoryWindow.add(i * 1000L);
+        assertEquals(0, packetHistoryWindow.getPacketArrivalSpeed());
+        packetHistoryWindow.add(15_000L);
+        assertEquals(1000, packetHistoryWindow.getPacketArrivalSpeed());
+    }
+
+}
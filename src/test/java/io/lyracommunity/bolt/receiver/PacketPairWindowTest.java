@@ -26,4 +26,21 @@ public class PacketPairWindowTest {
         assertEquals(12.0d, p1.computeMedianTimeInterval(), 0.001d);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSingleOutlierDoesNotSkewCapacity() {
+        final PacketPairWindow p = new PacketPairWindow(16);
+        for (int i = 0; i < 15; i++) p.add(100);
+        p.add(100_000);
+
+        // A mean of the intervals would be dominated by the outlier, filtering out every other value.
+        assertEquals(100.0d, p.computeMedianTimeInterval(), 0.001d);
+        assertEquals(10_000, p.getEstimatedLinkCapacity());
+    }
+
+    @Test
+    public void testEmptyWindowHasNoEstimate() {
+        final PacketPairWindow p = new PacketPairWindow(16);
+        assertEquals(0, p.getEstimatedLinkCapacity());
+    }
+
+}
@@ -1,18 +1,151 @@
 package io.lyracommunity.bolt.receiver;
 
+import io.lyracommunity.bolt.packet.Ack;
+import io.lyracommunity.bolt.packet.Nak;
+import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 import org.junit.Test;
 
 import java.util.stream.IntStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ReceiverLossListTest {
 
     @Test
     public void test1() {
         final ReceiverLossList l = new ReceiverLossList();
-        IntStream.of(1, 3, 2).forEach(i -> l.insert(new ReceiverLossListEntry(i)));
-        assertEquals(1, l.getFirstEntry().getSequenceNumber());
+        IntStream.of(1, 3, 2).forEach(l::insert);
+        assertEquals(1, l.getFirstEntry());
+        assertEquals(3, l.size());
     }
 
+    @Test
+    public void testEmpty() {
+        final ReceiverLossList l = new ReceiverLossList();
+        assertTrue(l.isEmpty());
+        assertEquals(-1, l.getFirstEntry());
+        l.remove(5);
+        assertEquals(0, l.size());
+    }
+
+    @Test
+    public void testRemoveSplitsRange() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(10, 19);
+        l.remove(10);
+        l.remove(15);
+        l.remove(19);
+        assertEquals(7, l.size());
+        assertEquals(11, l.getFirstEntry());
+        assertArrayEquals(new int[]{11, 12, 13, 14, 16, 17, 18}, dueLosses(l));
+    }
+
+    @Test
+    public void testInsertOverlappingRangeKeepsExisting() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(10, 12);
+        l.insertRange(20, 21);
+        l.insertRange(11, 15);
+        assertEquals(8, l.size());
+        assertArrayEquals(new int[]{10, 11, 12, 13, 14, 15, 20, 21}, dueLosses(l));
+    }
+
+    @Test
+    public void testWrap() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(SeqNum.MAX_SEQ_NUM_16_BIT - 1, 1);
+        assertEquals(4, l.size());
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT - 1, l.getFirstEntry());
+        l.remove(SeqNum.MAX_SEQ_NUM_16_BIT - 1);
+        l.remove(SeqNum.MAX_SEQ_NUM_16_BIT);
+        assertEquals(0, l.getFirstEntry());
+        assertEquals(2, l.size());
+    }
+
+    @Test
+    public void testManyRangesGrow() {
+        final ReceiverLossList l = new ReceiverLossList();
+        for (int i = 0; i < 1000; i++) l.insertRange(i * 4, i * 4 + 1);
+        for (int i = 0; i < 500; i++) {
+            l.remove(i * 4);
+            l.remove(i * 4 + 1);
+        }
+        assertEquals(1000, l.size());
+        assertEquals(2000, l.getFirstEntry());
+    }
+
+    @Test
+    public void testFeedbackDelaysNextNak() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(1, 100);
+        final Nak first = new Nak();
+        assertEquals(1, l.addDueLossRanges(first, -1, 100));
+        assertEquals(100, first.getLossCount());
+        // Fed back once, so not due again until (k * RTT) has passed.
+        assertEquals(0, l.addDueLossRanges(new Nak(), 1_000_000, 100));
+    }
+
+    @Test
+    public void testNakFitsDatagram() {
+        final ReceiverLossList l = new ReceiverLossList();
+        for (int i = 0; i < 20_000; i += 2) l.insert(i);
+        final Nak nak = new Nak();
+        final int maxLength = Nak.maxLossInfoLength(1400);
+
+        final int added = l.addDueLossRanges(nak, -1, maxLength);
+
+        assertTrue(nak.getLossInfoLength() <= maxLength);
+        // Well beyond the ranges which would fit listed one by one.
+        assertTrue(added + " ranges", added > 1000);
+        assertEquals(added, nak.getLossCount());
+    }
+
+    @Test
+    public void testSackBlocksBetweenLosses() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(10, 12);
+        l.insertRange(15, 15);
+        l.insertRange(20, 24);
+        final Ack ack = Ack.buildAcknowledgement(10, 1, 0, 0, 0, 0, 0, 0);
+
+        assertEquals(3, l.addSackBlocks(ack, 30, 8));
+        assertEquals(13, ack.getSackBlockFirst(0));
+        assertEquals(14, ack.getSackBlockLast(0));
+        assertEquals(16, ack.getSackBlockFirst(1));
+        assertEquals(19, ack.getSackBlockLast(1));
+        assertEquals(25, ack.getSackBlockFirst(2));
+        assertEquals(30, ack.getSackBlockLast(2));
+    }
+
+    @Test
+    public void testNoSackBlockAfterTrailingLoss() {
+        final ReceiverLossList l = new ReceiverLossList();
+        l.insertRange(SeqNum.MAX_SEQ_NUM_16_BIT - 1, SeqNum.MAX_SEQ_NUM_16_BIT);
+        l.insertRange(3, 5);
+        final Ack ack = Ack.buildAcknowledgement(0, 1, 0, 0, 0, 0, 0, 0);
+
+        assertEquals(1, l.addSackBlocks(ack, 5, 8));
+        assertEquals(0, ack.getSackBlockFirst(0));
+        assertEquals(2, ack.getSackBlockLast(0));
+    }
+
+    @Test
+    public void testWideWrap() {
+        final SeqSpace space = new SeqSpace(true);
+        final ReceiverLossList l = new ReceiverLossList(space);
+        l.insertRange(space.getMaxSeqNum() - 40_000, 9_998);
+        assertEquals(50_000, l.size());
+        l.remove(0);
+        assertEquals(49_999, l.size());
+        assertEquals(space.getMaxSeqNum() - 40_000, l.getFirstEntry());
+    }
+
+    private static int[] dueLosses(final ReceiverLossList l) {
+        final Nak nak = new Nak();
+        l.addDueLossRanges(nak, -1, Integer.MAX_VALUE);
+        return nak.computeExpandedLossList().toArray();
+    }
 }
@@ -16,6 +16,7 @@ import io.lyracommunity.bolt.session.ServerSession;
 import io.lyracommunity.bolt.session.Session;
 import io.lyracommunity.bolt.session.SessionState;
 import io.lyracommunity.bolt.session.SessionStatus;
+import io.lyracommunity.bolt.util.Util;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -25,26 +26,31 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for  {@link Receiver}.
  */
 public class ReceiverTest {
 
-    private Config   config;
-    private Receiver sut;
+    private Config      config;
+    private EventTimers timers;
+    private Receiver    sut;
 
     @Before
     public void setUp() throws Exception {
-        setUp(null, null);
+        setUp(null, null, false);
     }
 
-    private void setUp(Long maybeExpTimerInterval, Double initialCongestionWindowSize) throws IOException {
+    private void setUp(Long maybeExpTimerInterval, Double initialCongestionWindowSize, boolean inlineReceive) throws IOException {
         config = new Config(InetAddress.getByName("localhost"), PortUtil.nextClientPort());
+        config.setInlineReceive(inlineReceive);
         if (maybeExpTimerInterval != null) config.setExpTimerInterval(maybeExpTimerInterval);
         if (initialCongestionWindowSize != null) config.setInitialCongestionWindowSize(initialCongestionWindowSize);
-        EventTimers timers = new EventTimers(config);
+        timers = new EventTimers(config);
         ChannelOut endpoint = new ChannelOutStub(config, true);
         final Destination peer = new Destination(InetAddress.getByName("localhost"), PortUtil.nextServerPort());
         final Session session = new ServerSession(config, endpoint, peer);
@@ -63,7 +69,7 @@ public class ReceiverTest {
         config.setExpTimerInterval(1);
 
         for (int i = 0; i < 5; i++) {
-            sut.receiverAlgorithm(false);
+            sut.processQueuedPackets(1);
             Thread.sleep(2);
         }
     }
@@ -75,7 +81,7 @@ public class ReceiverTest {
 
         for (int i = 0; i < 10; i++) {
             sut.receive(new KeepAlive());
-            sut.receiverAlgorithm(false);
+            sut.processQueuedPackets(1);
             Thread.sleep(2);
         }
     }
@@ -83,11 +89,58 @@ public class ReceiverTest {
     @Test
     public void testReceiveAndProcessData() throws Exception {
         sut.receive(createDataPacket(1, TestData.getRandomData(1000)));
-        sut.receiverAlgorithm(false);
+        sut.processQueuedPackets(1);
 
         assertNotNull(sut.pollReceiveBuffer(100, TimeUnit.MILLISECONDS));
     }
 
+    @Test
+    public void testProcessQueuedPacketsBoundedPerCall() throws Exception {
+        for (int i = 1; i <= 3; i++) sut.receive(createDataPacket(i, TestData.getRandomData(100)));
+
+        assertTrue(sut.processQueuedPackets(2));
+        assertTrue(sut.hasQueuedPackets());
+        assertTrue(sut.processQueuedPackets(2));
+        assertFalse(sut.hasQueuedPackets());
+    }
+
+    @Test
+    public void testDataPacketOfOtherSeqNumberWidthDropped() throws Exception {
+        final DataPacket wide = createDataPacket(1, TestData.getRandomData(100));
+        wide.setWideSeqNumbers(true);
+        sut.receive(wide);
+
+        assertFalse(sut.processQueuedPackets(1));
+        assertFalse(sut.isReadable());
+
+        sut.receive(createDataPacket(1, TestData.getRandomData(100)));
+        assertTrue(sut.processQueuedPackets(1));
+    }
+
+    @Test
+    public void testRttAndVarianceFromSamples() throws Exception {
+        // The first sample seeds the variance at half the RTT.
+        sut.onRttSample(20_000);
+        assertEquals(20_000, sut.getRoundTripTime());
+        assertEquals(10_000, sut.getRoundTripTimeVar());
+
+        // The variance is taken from the RTT before the sample: (10000 * 3 + |20000 - 4000|) / 4.
+        sut.onRttSample(4_000);
+        assertEquals(18_000, sut.getRoundTripTime());
+        assertEquals(11_500, sut.getRoundTripTimeVar());
+        assertEquals(4 * 18_000 + 11_500 + Util.getSYNTime(), timers.getAckTimerInterval());
+    }
+
+    @Test
+    public void testInlineReceiveProcessesWithoutWorker() throws Exception {
+        setUp(null, null, true);
+
+        assertTrue(sut.receive(createDataPacket(1, TestData.getRandomData(1000))));
+
+        assertTrue(sut.isReadable());
+        assertNotNull(sut.pollReceiveBuffer());
+    }
+
     private DataPacket createDataPacket(int relSeqNum, byte[] data) {
         DataPacket dp = new DataPacket();
         dp.setPacketSeqNumber(relSeqNum);
@@ -0,0 +1,143 @@
+package io.lyracommunity.bolt.receiver;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    private final TimerWheel<Integer> sut = new TimerWheel<>(1000);
+
+    private final List<Integer> fired = new ArrayList<>();
+
+    @Test
+    public void advance_firesOnlyDueTimers() {
+        final TimerWheel.Timer<Integer> soon = new TimerWheel.Timer<>(1);
+        final TimerWheel.Timer<Integer> later = new TimerWheel.Timer<>(2);
+        sut.schedule(soon, 1010);
+        sut.schedule(later, 1020);
+
+        sut.advance(1009, fired::add);
+        assertTrue(fired.isEmpty());
+
+        sut.advance(1010, fired::add);
+        assertEquals(1, fired.size());
+        assertFalse(soon.isScheduled());
+        assertTrue(later.isScheduled());
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void advance_firesPastDeadlineOnNextTick() {
+        final TimerWheel.Timer<Integer> timer = new TimerWheel.Timer<>(1);
+        sut.schedule(timer, 10);
+
+        sut.advance(1000, fired::add);
+
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void advance_cascadesFromHigherLevels() {
+        final long[] deadlines = {1063, 1064, 1100, 5000, 70_000, 3_000_000};
+        for (int i = 0; i < deadlines.length; i++) sut.schedule(new TimerWheel.Timer<>(i), deadlines[i]);
+
+        for (int i = 0; i < deadlines.length; i++) {
+            sut.advance(deadlines[i] - 1, fired::add);
+            assertEquals(i, fired.size());
+            sut.advance(deadlines[i], fired::add);
+            assertEquals(i + 1, fired.size());
+            assertEquals(Integer.valueOf(i), fired.get(i));
+        }
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void advance_randomDeadlinesFireOnTime() {
+        final Random random = new Random(7);
+        final int count = 10_000;
+        final long[] deadlines = new long[count];
+        for (int i = 0; i < count; i++) {
+            deadlines[i] = 1000 + random.nextInt(500_000);
+            sut.schedule(new TimerWheel.Timer<>(i), deadlines[i]);
+        }
+
+        long tick = 1000;
+        while (sut.size() > 0) {
+            tick += 1 + random.nextInt(50);
+            final long now = tick;
+            sut.advance(now, owner -> {
+                assertTrue(deadlines[owner] <= now);
+                fired.add(owner);
+            });
+        }
+        assertEquals(count, fired.size());
+    }
+
+    @Test
+    public void cancel_preventsFiring() {
+        final TimerWheel.Timer<Integer> timer = new TimerWheel.Timer<>(1);
+        sut.schedule(timer, 1010);
+
+        sut.cancel(timer);
+        sut.advance(2000, fired::add);
+
+        assertTrue(fired.isEmpty());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void schedule_reschedulesExisting() {
+        final TimerWheel.Timer<Integer> timer = new TimerWheel.Timer<>(1);
+        sut.schedule(timer, 5000);
+        sut.schedule(timer, 1005);
+
+        sut.advance(1005, fired::add);
+
+        assertEquals(1, fired.size());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void schedule_fromCallbackFiresOnLaterTick() {
+        final TimerWheel.Timer<Integer> timer = new TimerWheel.Timer<>(1);
+        sut.schedule(timer, 1001);
+
+        sut.advance(1001, owner -> {
+            fired.add(owner);
+            sut.schedule(timer, 1001);
+        });
+        assertEquals(1, fired.size());
+
+        sut.advance(1002, fired::add);
+        assertEquals(2, fired.size());
+    }
+
+    @Test
+    public void nextTick_earliestWithinBlock() {
+        assertEquals(Long.MAX_VALUE, sut.nextTick());
+
+        sut.schedule(new TimerWheel.Timer<>(1), 1005);
+        assertEquals(1005, sut.nextTick());
+
+        sut.advance(1005, fired::add);
+        sut.schedule(new TimerWheel.Timer<>(2), 100_000);
+        // Nothing on the lowest level, so wake at the next cascade.
+        assertEquals(1024, sut.nextTick());
+    }
+
+    @Test
+    public void schedule_beyondRangeFiresEarly() {
+        final TimerWheel.Timer<Integer> timer = new TimerWheel.Timer<>(1);
+        sut.schedule(timer, Long.MAX_VALUE);
+
+        sut.advance(1L << 25, fired::add);
+
+        assertEquals(1, fired.size());
+    }
+
+}
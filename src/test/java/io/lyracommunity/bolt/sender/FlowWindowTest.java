@@ -1,5 +1,6 @@
 package io.lyracommunity.bolt.sender;
 
+import io.lyracommunity.bolt.api.WaitStrategy;
 import io.lyracommunity.bolt.packet.DataPacket;
 import org.junit.Test;
 
@@ -7,6 +8,7 @@ import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -37,6 +39,23 @@ public class FlowWindowTest
         assertTrue(fw.isEmpty());
     }
 
+    @Test
+    public void preAllocation_sizedOnFirstProduce() throws InterruptedException {
+        final AtomicInteger agreedSize = new AtomicInteger(10240);
+        final AtomicInteger sizesRead = new AtomicInteger();
+        final FlowWindow fw = new FlowWindow(true, 3, () -> {
+            sizesRead.incrementAndGet();
+            return agreedSize.get();
+        }, WaitStrategy.BACKOFF);
+        assertEquals("Nothing allocated before the first produce", 0, sizesRead.get());
+
+        agreedSize.set(1400);
+        assertTrue(fw.tryProduce(createPacket(1, 1), 10, TimeUnit.MILLISECONDS));
+        assertTrue(fw.tryProduce(createPacket(2, 1), 10, TimeUnit.MILLISECONDS));
+        assertEquals("All slots allocated at once", 1, sizesRead.get());
+        assertEquals(1, fw.consumeData().getClassID());
+    }
+
     @Test
     public void ConsumedFromFullWindow_ProducerWaitingForSignal_ProducerIsNotified() throws Exception {
         FlowWindow fw = new FlowWindow(false, 3, 128);
@@ -90,6 +109,24 @@ public class FlowWindowTest
 
     }
 
+    @Test
+    public void testConsumedPacketNotOverwrittenUntilNextConsume() throws InterruptedException {
+        final FlowWindow fw = new FlowWindow(false, 2, 64);
+
+        assertTrue(fw.tryProduce(createPacket(1, 1), 10, TimeUnit.MILLISECONDS));
+        assertTrue(fw.tryProduce(createPacket(2, 1), 10, TimeUnit.MILLISECONDS));
+        final DataPacket first = fw.consumeData();
+
+        // Window is full again after this, while the first packet may still be in use.
+        assertTrue(fw.tryProduce(createPacket(3, 1), 10, TimeUnit.MILLISECONDS));
+        assertTrue(fw.isFull());
+        assertEquals(1, first.getClassID());
+
+        assertEquals(2, fw.consumeData().getClassID());
+        assertEquals(3, fw.consumeData().getClassID());
+        assertNull(fw.consumeData());
+    }
+
     @Test
     public void testConcurrentReadWrite_20() throws InterruptedException {
         final FlowWindow fw = new FlowWindow(false, 20, 64);
@@ -0,0 +1,164 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.packet.Ack;
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LossDetectorTest {
+
+    private static final long START = 1_000_000;
+    private static final long RTT   = 10_000;
+
+    private RetransmitBuffer buffer;
+    private SenderLossList   lossList;
+    private LossDetector     sut;
+
+    @Before
+    public void setUp() {
+        buffer = new RetransmitBuffer(64, 1);
+        lossList = new SenderLossList();
+        sut = new LossDetector(buffer, lossList, 500_000);
+    }
+
+    @Test
+    public void testNothingOutstandingIsIdle() {
+        assertEquals(Sender.IDLE, sut.detectLosses(START));
+    }
+
+    @Test
+    public void testRackDeclaresOvertakenPacketLost() {
+        sendEach(1, 5, START, 2_000);
+        acknowledge(2, 3, 5);
+
+        sut.detectLosses(START + 9_000 + RTT);
+
+        // 2 was sent 6ms before 5 was delivered, well outside the reordering window.
+        assertEquals(1, lossList.size());
+        assertTrue(lossList.contains(2));
+        assertEquals(0, sut.getRtoCount());
+    }
+
+    @Test
+    public void testRackToleratesReorderingWithinWindow() {
+        // All sent within the reordering window of each other.
+        sendEach(1, 5, START, 100);
+        acknowledge(2, 3, 5);
+
+        sut.detectLosses(START + RTT);
+
+        assertTrue(lossList.isEmpty());
+    }
+
+    @Test
+    public void testRetransmissionTimeoutDeclaresOnlyExpiredPacketsLost() {
+        sut.onAck(Ack.buildLightAcknowledgement(1, 1, RTT, 0, 100, 0));
+        sendEach(1, 2, START, 0);
+        final long timeout = sut.getRetransmissionTimeout();
+        sendEach(3, 4, START + timeout / 2, 0);
+
+        final long deadline = sut.detectLosses(START + 1);
+        assertEquals(START + timeout, deadline);
+
+        sut.detectLosses(START + timeout);
+
+        assertEquals(2, lossList.size());
+        assertTrue(lossList.contains(1));
+        assertTrue(lossList.contains(2));
+        assertEquals(1, sut.getRtoCount());
+        assertEquals(2 * timeout, sut.getRetransmissionTimeout());
+    }
+
+    @Test
+    public void testBackOffResetByProgress() {
+        sut.onAck(Ack.buildLightAcknowledgement(1, 1, RTT, 0, 100, 0));
+        final long timeout = sut.getRetransmissionTimeout();
+        sendEach(1, 2, START, 0);
+        sut.detectLosses(START + timeout);
+        assertEquals(2 * timeout, sut.getRetransmissionTimeout());
+
+        acknowledge(2);
+        sut.detectLosses(START + timeout + 1);
+
+        assertEquals(timeout, sut.getRetransmissionTimeout());
+    }
+
+    @Test
+    public void testTailLossProbeResendsNewestPacket() {
+        sut.onAck(Ack.buildLightAcknowledgement(1, 1, RTT, 0, 100, 0));
+        sendEach(1, 10, START, 100);
+        final long lastSend = START + 900;
+
+        final long probeTime = lastSend + sut.getProbeTimeout();
+        assertEquals(probeTime, sut.detectLosses(lastSend));
+        assertTrue(probeTime < START + sut.getRetransmissionTimeout());
+
+        sut.detectLosses(probeTime);
+
+        assertEquals(1, lossList.size());
+        assertTrue(lossList.contains(10));
+        assertEquals(1, sut.getProbeCount());
+
+        // Only one probe is outstanding at a time.
+        assertEquals(10, lossList.getFirstEntry());
+        sut.detectLosses(probeTime + sut.getProbeTimeout());
+        assertEquals(1, sut.getProbeCount());
+    }
+
+    @Test
+    public void testProbeSkipsSackedPackets() {
+        sut.onAck(Ack.buildLightAcknowledgement(1, 1, RTT, 0, 100, 0));
+        sendEach(1, 10, START, 0);
+        buffer.markSacked(9, 10);
+
+        sut.detectLosses(START + sut.getProbeTimeout());
+
+        assertTrue(lossList.contains(8));
+    }
+
+    @Test
+    public void testNoRetransmitStormForSingleTailLoss() {
+        sut.onAck(Ack.buildLightAcknowledgement(1, 1, RTT, 0, 100, 0));
+        sendEach(1, 32, START, 100);
+        // All but the last packet delivered.
+        acknowledge(32);
+
+        long now = START + 3_200;
+        sut.detectLosses(now);
+        now += sut.getProbeTimeout();
+        sut.detectLosses(now);
+
+        assertEquals(1, lossList.size());
+        assertTrue(lossList.contains(32));
+        assertEquals(0, sut.getRtoCount());
+    }
+
+    /**
+     * Store and send packets with consecutive sequence numbers, spaced apart in time.
+     */
+    private void sendEach(final int first, final int last, final long start, final long spacing) {
+        for (int seqNum = first; seqNum <= last; seqNum++) {
+            final DataPacket dp = new DataPacket();
+            dp.setDelivery(DeliveryType.RELIABLE_UNORDERED);
+            dp.setReliabilitySeqNumber(seqNum);
+            buffer.store(dp);
+            sut.onSent(seqNum, start + (seqNum - first) * spacing);
+        }
+    }
+
+    /**
+     * Acknowledge up to the given number, selectively acknowledging the given packets after it.
+     */
+    private void acknowledge(final int ackNumber, final int... sacked) {
+        final Ack ack = Ack.buildLightAcknowledgement(ackNumber, 1, RTT, 0, 100, 0);
+        sut.onAck(ack);
+        buffer.release(ackNumber);
+        for (int seqNum : sacked) {
+            if (buffer.markSacked(seqNum, seqNum) > 0) sut.onDelivered(seqNum, seqNum);
+        }
+    }
+
+}
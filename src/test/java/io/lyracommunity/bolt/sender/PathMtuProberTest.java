@@ -0,0 +1,117 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.ChannelOut;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.BoltPacket;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.packet.MtuProbe;
+import io.lyracommunity.bolt.session.SessionState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class PathMtuProberTest {
+
+    private static final long START = 1_000_000;
+
+    private SessionState   sessionState;
+    private PathMtuProber  sut;
+    /** Largest datagram the simulated path carries. */
+    private int            pathMtu;
+
+    @Before
+    public void setUp() throws Exception {
+        final Config config = new Config(InetAddress.getByName("localhost"), 12345)
+                .setDatagramSize(9000)
+                .setPathMtuDiscovery(true);
+        sessionState = new SessionState(config, new Destination(InetAddress.getLocalHost(), 65432));
+        sut = new PathMtuProber(sessionState, new PathChannel(config));
+    }
+
+    @Test
+    public void testStartsAtDefaultSize() {
+        assertEquals(Config.DEFAULT_DATAGRAM_SIZE, sessionState.getDatagramSize());
+        assertEquals(9000, sessionState.getMaxDatagramSize());
+    }
+
+    @Test
+    public void testAgreedSizePassesFirstTime() throws Exception {
+        pathMtu = 9000;
+
+        final long deadline = run();
+
+        assertEquals(Sender.IDLE, deadline);
+        assertEquals(9000, sessionState.getDatagramSize());
+        assertEquals(1, sut.getProbeCount());
+    }
+
+    @Test
+    public void testSearchConvergesOnPathMtu() throws Exception {
+        pathMtu = 4000;
+
+        final long deadline = run();
+
+        assertEquals(Sender.IDLE, deadline);
+        assertTrue("Size " + sessionState.getDatagramSize(), sessionState.getDatagramSize() <= pathMtu);
+        assertTrue("Size " + sessionState.getDatagramSize(), pathMtu - sessionState.getDatagramSize() < PathMtuProber.MIN_STEP);
+    }
+
+    @Test
+    public void testNothingLargerThanDefaultPasses() throws Exception {
+        pathMtu = Config.DEFAULT_DATAGRAM_SIZE;
+
+        assertEquals(Sender.IDLE, run());
+        assertEquals(Config.DEFAULT_DATAGRAM_SIZE, sessionState.getDatagramSize());
+    }
+
+    /**
+     * Drive the prober, each probe's reply arriving before the next call, until it idles.
+     */
+    private long run() throws Exception {
+        long now = START;
+        for (int i = 0; i < 1000; i++) {
+            final long next = sut.probe(now);
+            if (next == Sender.IDLE) return next;
+            now = Math.max(now + 1, next);
+        }
+        fail("Search did not end: " + sut);
+        return 0;
+    }
+
+    /**
+     * Answers the probes no larger than the path MTU, and drops the rest.
+     */
+    private class PathChannel implements ChannelOut {
+
+        private final Config config;
+
+        private PathChannel(final Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public void doSend(final BoltPacket packet, final SessionState sessionState) {
+            final MtuProbe probe = (MtuProbe) packet;
+            if (probe.getProbeSize() <= pathMtu) sut.onReply(MtuProbe.reply(probe.getProbeSize(), 0));
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return config.getLocalAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return config.getLocalPort();
+        }
+    }
+
+}
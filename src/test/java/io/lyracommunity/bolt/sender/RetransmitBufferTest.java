@@ -0,0 +1,144 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
+import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RetransmitBufferTest {
+
+    @Test
+    public void testStoreAndGet() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(4, 1);
+        buffer.store(createPacket(1));
+        buffer.store(createPacket(2));
+
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.get(1).getReliabilitySeqNumber());
+        assertEquals(2, buffer.get(2).getReliabilitySeqNumber());
+        assertNull(buffer.get(3));
+    }
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(256, new RetransmitBuffer(256, 1).capacity());
+        assertEquals(16384, new RetransmitBuffer(10240, 1).capacity());
+    }
+
+    @Test
+    public void testCumulativeRelease() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(8, 1);
+        for (int i = 1; i <= 5; i++) buffer.store(createPacket(i));
+
+        assertEquals(3, buffer.release(4));
+        assertEquals(2, buffer.size());
+        assertNull(buffer.get(3));
+        assertNotNull(buffer.get(4));
+
+        // Stale and duplicate acknowledgements release nothing.
+        assertEquals(0, buffer.release(2));
+        assertEquals(0, buffer.release(4));
+        // Acknowledgement past the newest stored packet is capped.
+        assertEquals(2, buffer.release(100));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testSlotsReusedAcrossWrap() {
+        final int start = SeqNum.MAX_SEQ_NUM_16_BIT - 2;
+        final RetransmitBuffer buffer = new RetransmitBuffer(4, start);
+        int seq = start;
+        for (int i = 0; i < 4; i++, seq = SeqNum.increment16(seq)) buffer.store(createPacket(seq));
+        assertEquals(4, buffer.size());
+
+        assertEquals(3, buffer.release(0));
+        assertEquals(1, buffer.size());
+        buffer.store(createPacket(seq));
+        assertEquals(2, buffer.size());
+
+        assertEquals(seq, buffer.get(seq).getReliabilitySeqNumber());
+        assertNull(buffer.get(start));
+    }
+
+    @Test
+    public void testSackedPacketsSkipped() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(8, 1);
+        for (int i = 1; i <= 6; i++) buffer.store(createPacket(i));
+
+        assertEquals(2, buffer.markSacked(2, 3));
+        // Already marked numbers are not counted again.
+        assertEquals(2, buffer.markSacked(3, 5));
+        assertNull(buffer.get(2));
+        assertNotNull(buffer.get(1));
+        assertEquals(6, buffer.size());
+
+        final StringBuilder ranges = new StringBuilder();
+        buffer.forEachUnsackedRange((first, last) -> ranges.append(first).append('-').append(last).append(' '));
+        assertEquals("1-1 6-6 ", ranges.toString());
+    }
+
+    @Test
+    public void testCountUnsackedBefore() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(8, 1);
+        for (int i = 1; i <= 6; i++) buffer.store(createPacket(i));
+        buffer.markSacked(2, 3);
+
+        // Packets 1 and 4, as 2 and 3 were counted when selectively acknowledged.
+        assertEquals(2, buffer.countUnsackedBefore(5));
+        // No further than the newest packet.
+        assertEquals(4, buffer.countUnsackedBefore(20));
+        assertEquals(0, buffer.countUnsackedBefore(1));
+    }
+
+    @Test
+    public void testSackOutsideWindowIgnored() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(8, 1);
+        for (int i = 1; i <= 3; i++) buffer.store(createPacket(i));
+        buffer.release(2);
+
+        assertEquals(2, buffer.markSacked(1, 10));
+        assertTrue(buffer.isSacked(3));
+        assertFalse(buffer.isSacked(1));
+    }
+
+    @Test
+    public void testSackClearedWhenSlotReused() {
+        final RetransmitBuffer buffer = new RetransmitBuffer(2, 1);
+        buffer.store(createPacket(1));
+        buffer.store(createPacket(2));
+        buffer.markSacked(2, 2);
+        buffer.release(3);
+        buffer.store(createPacket(3));
+        buffer.store(createPacket(4));
+
+        assertNotNull(buffer.get(4));
+        assertFalse(buffer.isSacked(4));
+    }
+
+    @Test
+    public void testWideWindowAcrossWrap() {
+        final SeqSpace space = new SeqSpace(true);
+        final int start = space.getMaxSeqNum() - 40_000;
+        final RetransmitBuffer buffer = new RetransmitBuffer(65_536, start, space);
+        int seq = start;
+        for (int i = 0; i < 50_000; i++, seq = space.increment(seq)) buffer.store(createPacket(seq));
+        assertEquals(50_000, buffer.size());
+        assertTrue(buffer.contains(5_000));
+
+        assertEquals(45_000, buffer.release(4_999));
+        assertEquals(5_000, buffer.size());
+        assertNull(buffer.get(start));
+        assertEquals(seq - 1, buffer.get(seq - 1).getReliabilitySeqNumber());
+    }
+
+    private DataPacket createPacket(final int reliabilitySeqNumber) {
+        final DataPacket p = new DataPacket();
+        p.setDelivery(DeliveryType.RELIABLE_UNORDERED);
+        p.setReliabilitySeqNumber(reliabilitySeqNumber);
+        p.setData(new byte[]{1});
+        return p;
+    }
+}
@@ -0,0 +1,140 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.BoltCongestionControl;
+import io.lyracommunity.bolt.ChannelOutStub;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class SendScheduleTest {
+
+    private final SendSchedule sut = new SendSchedule();
+
+    @Test
+    public void register_runsPromptly() throws Exception {
+        final SendSchedule.Entry entry = sut.register(sender(), 1);
+
+        assertFalse(entry.isScheduled());
+        assertTrue(sut.hasWoken());
+
+        sut.drainWoken(100);
+
+        assertTrue(entry.isScheduled());
+        assertSame(entry, sut.pollDue(100));
+        assertFalse(entry.isScheduled());
+    }
+
+    @Test
+    public void pollDue_earliestDeadlineFirst() throws Exception {
+        final long[] deadlines = {50, 10, 40, 20, 30, 60, 5};
+        final SendSchedule.Entry[] entries = new SendSchedule.Entry[deadlines.length];
+        for (int i = 0; i < deadlines.length; i++) {
+            entries[i] = sut.register(sender(), i);
+            sut.schedule(entries[i], deadlines[i]);
+        }
+
+        assertEquals(5, sut.nextDeadline());
+        assertNull(sut.pollDue(4));
+
+        long last = Long.MIN_VALUE;
+        SendSchedule.Entry entry;
+        while ((entry = sut.pollDue(100)) != null) {
+            final long deadline = deadlines[entry.sessionID];
+            assertTrue(deadline >= last);
+            last = deadline;
+        }
+        assertEquals(0, sut.size());
+        assertEquals(Sender.IDLE, sut.nextDeadline());
+    }
+
+    @Test
+    public void schedule_reschedulesInPlace() throws Exception {
+        final SendSchedule.Entry a = sut.register(sender(), 1);
+        final SendSchedule.Entry b = sut.register(sender(), 2);
+        sut.schedule(a, 10);
+        sut.schedule(b, 20);
+
+        sut.schedule(a, 30);
+
+        assertEquals(2, sut.size());
+        assertSame(b, sut.pollDue(100));
+        assertSame(a, sut.pollDue(100));
+    }
+
+    @Test
+    public void schedule_idleRemovesEntry() throws Exception {
+        final SendSchedule.Entry entry = sut.register(sender(), 1);
+        sut.schedule(entry, 10);
+
+        sut.schedule(entry, Sender.IDLE);
+
+        assertFalse(entry.isScheduled());
+        assertEquals(0, sut.size());
+        assertNull(sut.pollDue(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void wake_bringsDeadlineForward() throws Exception {
+        final SendSchedule.Entry entry = sut.register(sender(), 1);
+        sut.drainWoken(0);
+        sut.schedule(entry, 1_000);
+
+        sut.wake(entry);
+        sut.drainWoken(100);
+
+        assertEquals(100, sut.nextDeadline());
+    }
+
+    @Test
+    public void wake_doesNotDelayEarlierDeadline() throws Exception {
+        final SendSchedule.Entry entry = sut.register(sender(), 1);
+        sut.drainWoken(0);
+        sut.schedule(entry, 50);
+
+        sut.wake(entry);
+        sut.drainWoken(100);
+
+        assertEquals(50, sut.nextDeadline());
+    }
+
+    @Test
+    public void wake_queuedOncePerDrain() throws Exception {
+        final SendSchedule.Entry entry = sut.register(sender(), 1);
+        sut.wake(entry);
+        sut.wake(entry);
+
+        sut.drainWoken(0);
+
+        assertFalse(sut.hasWoken());
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void senderActivity_wakesEntry() throws Exception {
+        final Sender sender = sender();
+        sut.register(sender, 1);
+        sut.drainWoken(0);
+        sut.pollDue(0);
+
+        sender.start();
+
+        assertTrue(sut.hasWoken());
+    }
+
+    private static Sender sender() throws Exception {
+        final Destination remote = new Destination(InetAddress.getLocalHost(), 65432);
+        final Config config = new Config(InetAddress.getByName("localhost"), 12345);
+        final SessionState sessionState = new SessionState(config, remote);
+        final BoltStatistics statistics = new BoltStatistics("testStatistics", Config.DEFAULT_DATAGRAM_SIZE);
+        return new Sender(config, sessionState, new ChannelOutStub(config, true),
+                new BoltCongestionControl(sessionState, statistics, config.getInitialCongestionWindowSize()),
+                statistics, new SenderLossList());
+    }
+
+}
@@ -1,5 +1,7 @@
 package io.lyracommunity.bolt.sender;
 
+import io.lyracommunity.bolt.util.SeqNum;
+import io.lyracommunity.bolt.util.SeqSpace;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -28,4 +30,64 @@ public class SenderLossListTest  {
         assertEquals(B, oldest);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testInsertRange() {
+        final SenderLossList l = new SenderLossList();
+        l.insertRange(100, 1099);
+        l.insert(50);
+        assertEquals(1001, l.size());
+
+        assertEquals(50, l.getFirstEntry());
+        assertEquals(100, l.getFirstEntry());
+        assertEquals(101, l.getFirstEntry());
+        assertEquals(998, l.size());
+    }
+
+    @Test
+    public void testWrappedEntriesInSequenceOrder() {
+        final SenderLossList l = new SenderLossList();
+        l.insertRange(SeqNum.MAX_SEQ_NUM_16_BIT - 1, 1);
+        l.insert(SeqNum.MAX_SEQ_NUM_16_BIT - 5);
+        assertEquals(5, l.size());
+
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT - 5, l.getFirstEntry());
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT - 1, l.getFirstEntry());
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT, l.getFirstEntry());
+        assertEquals(0, l.getFirstEntry());
+        assertEquals(1, l.getFirstEntry());
+        assertEquals(-1, l.getFirstEntry());
+        assertTrue(l.isEmpty());
+    }
+
+    @Test
+    public void testRemoveRange() {
+        final SenderLossList l = new SenderLossList();
+        l.insertRange(SeqNum.MAX_SEQ_NUM_16_BIT - 99, 99);
+        assertEquals(200, l.size());
+
+        l.removeRange(SeqNum.MAX_SEQ_NUM_16_BIT - 99, 50);
+        assertEquals(50, l.size());
+        assertEquals(50, l.getFirstEntry());
+
+        // Removing backwards is a no-op.
+        l.removeRange(90, 60);
+        assertEquals(49, l.size());
+    }
+
+    @Test
+    public void testWideSpaceWrap() {
+        final SeqSpace space = new SeqSpace(true);
+        final SenderLossList l = new SenderLossList(256, space);
+        l.insertRange(space.getMaxSeqNum() - 1, 1);
+        l.insert(space.getMaxSeqNum() - 200);
+        assertEquals(5, l.size());
+        assertTrue(l.contains(0));
+
+        l.removeBlock(space.getMaxSeqNum(), 0);
+        assertEquals(space.getMaxSeqNum() - 200, l.getFirstEntry());
+        assertEquals(space.getMaxSeqNum() - 1, l.getFirstEntry());
+        assertEquals(1, l.getFirstEntry());
+        assertTrue(l.isEmpty());
+    }
+
+}
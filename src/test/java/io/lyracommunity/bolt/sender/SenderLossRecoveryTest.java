@@ -0,0 +1,159 @@
+package io.lyracommunity.bolt.sender;
+
+import io.lyracommunity.bolt.BoltCongestionControl;
+import io.lyracommunity.bolt.ChannelOut;
+import io.lyracommunity.bolt.CongestionControl;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.packet.*;
+import io.lyracommunity.bolt.session.SessionState;
+import io.lyracommunity.bolt.session.SessionStatus;
+import io.lyracommunity.bolt.statistic.BoltStatistics;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recovery of dropped packets, with ACKs built from what got through, and without
+ * the receiver's EXP event. The sender runs on a simulated clock.
+ */
+public class SenderLossRecoveryTest {
+
+    private static final long START               = 1_000_000;
+    private static final long STEP_MICROS         = 200;
+    private static final long ACK_INTERVAL_MICROS = 5_000;
+    private static final long RTT_MICROS          = 1_000;
+
+    private final BitSet delivered   = new BitSet();
+    private final BitSet transmitted = new BitSet();
+
+    private Config config;
+    private Sender sut;
+    private int    dropEvery;
+    private int    dataSent;
+    private int    dropped;
+    private int    ackSequenceNumber;
+    private int    lastSeqNum;
+    private long   now;
+    private long   lastNewSendTime;
+
+    @Test
+    public void testTailLossRecoveredBeforeExp() throws Exception {
+        // Every 10th packet is dropped, so the last of 10 is lost with nothing sent after it.
+        setUp(10);
+        final long elapsed = sendAndRecover(10);
+
+        assertEquals(1, dropped);
+        assertTrue("Recovered in " + elapsed + "us", elapsed < config.getExpTimerInterval());
+        assertEquals(1, dataSent - 10);
+    }
+
+    @Test
+    public void testScatteredLossRetransmitsOnlyLostPackets() throws Exception {
+        setUp(20);
+        sendAndRecover(200);
+
+        assertEquals(10, dropped);
+        // A whole-window retransmission would resend far more than were lost.
+        final int retransmitted = dataSent - 200;
+        assertTrue("Retransmitted " + retransmitted + " for " + dropped + " lost",
+                retransmitted <= 3 * dropped);
+    }
+
+    /**
+     * @param dropEvery the first transmission of every packet whose sequence number is a multiple of this is dropped.
+     */
+    private void setUp(final int dropEvery) throws Exception {
+        this.dropEvery = dropEvery;
+        config = new Config(InetAddress.getByName("localhost"), 12345);
+        final Destination remote = new Destination(InetAddress.getLocalHost(), 65432);
+        final SessionState sessionState = new SessionState(config, remote);
+        sessionState.setStatus(SessionStatus.READY);
+        final BoltStatistics statistics = new BoltStatistics("testStatistics", Config.DEFAULT_DATAGRAM_SIZE);
+        final CongestionControl cc = new BoltCongestionControl(sessionState, statistics, config.getInitialCongestionWindowSize());
+        sut = new Sender(config, sessionState, new LossyChannel(config), cc, statistics);
+    }
+
+    /**
+     * Send reliable packets, driving the sender and feeding back ACKs until all are delivered.
+     *
+     * @return simulated microseconds from the last new packet being sent until all were delivered.
+     */
+    private long sendAndRecover(final int count) throws Exception {
+        lastSeqNum = count;
+        for (int i = 0; i < count; i++) {
+            final DataPacket dp = new DataPacket();
+            dp.setDelivery(DeliveryType.RELIABLE_UNORDERED);
+            dp.setData(new byte[10]);
+            sut.sendPacket(dp);
+        }
+        now = START;
+        long nextAck = 0;
+        while (!sut.haveAcknowledgementFor(count)) {
+            assertTrue("Not all packets delivered: " + delivered, now < START + 10_000_000);
+            if (now >= nextAck) {
+                sut.receive(buildAck());
+                nextAck = now + ACK_INTERVAL_MICROS;
+            }
+            sut.senderAlgorithm(now);
+            now += STEP_MICROS;
+        }
+        return now - lastNewSendTime;
+    }
+
+    /**
+     * Acknowledge the first undelivered packet, and selectively acknowledge each delivered run after it.
+     */
+    private Ack buildAck() {
+        final int ackNumber = delivered.nextClearBit(1);
+        final Ack ack = Ack.buildLightAcknowledgement(ackNumber, ++ackSequenceNumber, RTT_MICROS, 0, 100, 0);
+        for (int first = delivered.nextSetBit(ackNumber); first >= 0; ) {
+            final int end = delivered.nextClearBit(first);
+            ack.addSackBlock(first, end - 1);
+            first = delivered.nextSetBit(end);
+        }
+        return ack;
+    }
+
+    /**
+     * Delivers each data packet sent, bar the first transmission of every dropEvery-th.
+     */
+    private class LossyChannel implements ChannelOut {
+
+        private final Config config;
+
+        private LossyChannel(final Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public void doSend(final BoltPacket packet, final SessionState sessionState) {
+            if (packet.isControlPacket()) return;
+            final int seqNum = ((DataPacket) packet).getReliabilitySeqNumber();
+            if (seqNum == lastSeqNum && lastNewSendTime == 0) lastNewSendTime = now;
+            dataSent++;
+            final boolean firstTransmission = !transmitted.get(seqNum);
+            transmitted.set(seqNum);
+            if (firstTransmission && seqNum % dropEvery == 0) dropped++;
+            else delivered.set(seqNum);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return config.getLocalAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return config.getLocalPort();
+        }
+    }
+
+}
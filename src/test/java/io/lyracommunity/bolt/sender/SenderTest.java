@@ -1,19 +1,25 @@
 package io.lyracommunity.bolt.sender;
 
-import io.lyracommunity.bolt.BoltCongestionControl;
 import io.lyracommunity.bolt.ChannelOutStub;
 import io.lyracommunity.bolt.CongestionControl;
+import io.lyracommunity.bolt.CongestionControlFactory;
 import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.api.RetransmitStrategy;
 import io.lyracommunity.bolt.packet.*;
 import io.lyracommunity.bolt.session.SessionState;
 import io.lyracommunity.bolt.session.SessionStatus;
 import io.lyracommunity.bolt.statistic.BoltStatistics;
+import io.lyracommunity.bolt.util.Util;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -34,18 +40,24 @@ public class SenderTest {
 
     @Before
     public void setUp() throws Exception {
-        setUp(null);
+        setUp((Double) null);
     }
 
     private void setUp(Double initialCongestionWindowSize) throws UnknownHostException {
+        setUp(c -> {
+            if (initialCongestionWindowSize != null) c.setInitialCongestionWindowSize(initialCongestionWindowSize);
+        });
+    }
+
+    private void setUp(final Consumer<Config> configurer) throws UnknownHostException {
         senderLossList = new SenderLossList();
         final Destination remote = new Destination(InetAddress.getLocalHost(), 65432);
         final Config config = new Config(InetAddress.getByName("localhost"), 12345);
-        if (initialCongestionWindowSize != null) config.setInitialCongestionWindowSize(initialCongestionWindowSize);
+        configurer.accept(config);
         sessionState = new SessionState(config, remote);
         endpoint = new ChannelOutStub(config, true);
         final BoltStatistics statistics = new BoltStatistics("testStatistics", Config.DEFAULT_DATAGRAM_SIZE);
-        final CongestionControl cc = new BoltCongestionControl(sessionState, statistics, config.getInitialCongestionWindowSize());
+        final CongestionControl cc = config.getCongestionControlFactory().create(config, sessionState, statistics);
         sut = new Sender(config, sessionState, endpoint, cc, statistics, senderLossList);
     }
 
@@ -58,6 +70,15 @@ public class SenderTest {
         assertEquals(1, endpoint.sendCountOfType(PacketType.ACK2));
     }
 
+    @Test
+    public void receiveAck_ack2EchoesAckSequenceNumber() throws Exception {
+        final Ack ack = Ack.buildAcknowledgement(5, 42, 10, 5, 1000, 1, 100, 100);
+
+        sut.receive(ack);
+
+        assertEquals(42, ((Ack2) endpoint.lastSentOfType(PacketType.ACK2)).getAckSequenceNumber());
+    }
+
     @Test(expected = IOException.class)
     public void receiveAck_closedEndpointCausesError() throws Exception {
         final Ack ack = Ack.buildAcknowledgement(1, 1, 10, 5, 1000, 1, 100, 100);
@@ -93,6 +114,43 @@ public class SenderTest {
         assertEquals(1, senderLossList.size());
     }
 
+    @Test
+    public void ExpEvent_SackedPacketsNotAddedToLossList() throws Exception {
+        sessionState.setStatus(SessionStatus.READY);
+        for (int i = 0; i < 4; i++) {
+            final DataPacket dp = new DataPacket();
+            dp.setDelivery(DeliveryType.RELIABLE_ORDERED);
+            sut.sendPacket(dp);
+        }
+        while (endpoint.sendCountOfType(PacketType.DATA) < 4) {
+            sut.senderAlgorithm();
+            Thread.sleep(1);
+        }
+        // Reliability sequence numbers 1 to 4 are sent, and only 3 is received.
+        final Ack ack = Ack.buildAcknowledgement(1, 1, 10, 5, 1000, 1, 100, 100);
+        ack.addSackBlock(3, 3);
+        sut.receive(ack);
+
+        sut.putUnacknowledgedPacketsIntoLossList();
+
+        assertEquals(3, senderLossList.size());
+        final List<Integer> lost = new ArrayList<>();
+        for (int seq; (seq = senderLossList.getFirstEntry()) >= 0; ) lost.add(seq);
+        assertEquals(Arrays.asList(1, 2, 4), lost);
+    }
+
+    @Test
+    public void receiveAck_sackRemovesFromLossList() throws Exception {
+        senderLossList.insertRange(1, 6);
+        final Ack ack = Ack.buildAcknowledgement(1, 1, 10, 5, 1000, 1, 100, 100);
+        ack.addSackBlock(3, 4);
+
+        sut.receive(ack);
+
+        assertEquals(4, senderLossList.size());
+        assertEquals(1, senderLossList.getFirstEntry());
+    }
+
     @Test
     public void retransmit() throws Exception {
         // Given
@@ -115,6 +173,120 @@ public class SenderTest {
         assertFalse(sut.haveLostPackets());
     }
 
+    @Test
+    public void retransmit_aggressiveBurstsUpToLimit() throws Exception {
+        setUp(c -> c.setRetransmitStrategy(RetransmitStrategy.AGGRESSIVE).setRetransmitBurstLimit(3));
+        sessionState.setStatus(SessionStatus.READY);
+        sendReliable(4);
+        final Nak nak = new Nak();
+        nak.addLossRange(1, 4);
+
+        sut.receive(nak);
+        while (Util.currentTimeMicros() < sut.getNextStep()) Thread.sleep(1);
+        sut.senderAlgorithm();
+
+        // Three retransmitted in a single step, leaving one.
+        assertEquals(7, endpoint.sendCountOfType(PacketType.DATA));
+        assertEquals(1, senderLossList.size());
+    }
+
+    @Test
+    public void retransmit_conservativeOnePerStep() throws Exception {
+        sessionState.setStatus(SessionStatus.READY);
+        sendReliable(4);
+        final Nak nak = new Nak();
+        nak.addLossRange(1, 4);
+
+        sut.receive(nak);
+        while (Util.currentTimeMicros() < sut.getNextStep()) Thread.sleep(1);
+        sut.senderAlgorithm();
+
+        assertEquals(5, endpoint.sendCountOfType(PacketType.DATA));
+        assertEquals(3, senderLossList.size());
+    }
+
+    @Test
+    public void send_duplicateSendsReliablePacketsTwice() throws Exception {
+        setUp(c -> c.setRetransmitStrategy(RetransmitStrategy.DUPLICATE));
+        sessionState.setStatus(SessionStatus.READY);
+        final DataPacket unreliable = new DataPacket();
+        unreliable.setDelivery(DeliveryType.UNRELIABLE_UNORDERED);
+        sut.sendPacket(unreliable);
+        sut.senderAlgorithm();
+        assertEquals(1, endpoint.sendCountOfType(PacketType.DATA));
+
+        sendReliable(1);
+
+        assertEquals(3, endpoint.sendCountOfType(PacketType.DATA));
+    }
+
+    @Test
+    public void pacing_lateStepNotMadeUpByDefault() throws Exception {
+        sessionState.setStatus(SessionStatus.READY);
+        sendUnreliable(20);
+        final long start = Util.currentTimeMicros();
+        pacedSendsAt(start);
+
+        assertEquals(1, pacedSendsAt(start + 1_000_000));
+    }
+
+    @Test
+    public void pacing_lateStepMadeUpWithinLimitAtFixedRate() throws Exception {
+        setUp(c -> c.setCongestionControlFactory(CongestionControlFactory.fixedRate(1_400_000)));
+        sessionState.setStatus(SessionStatus.READY);
+        sendUnreliable(20);
+        final long start = Util.currentTimeMicros();
+        pacedSendsAt(start);
+
+        // One interval due, and up to four missed made up, however late the step.
+        assertEquals(5, pacedSendsAt(start + 1_000_000));
+    }
+
+    /**
+     * Queue unreliable packets, which the sender neither waits for nor retransmits.
+     */
+    private void sendUnreliable(final int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            final DataPacket dp = new DataPacket();
+            dp.setDelivery(DeliveryType.UNRELIABLE_UNORDERED);
+            sut.sendPacket(dp);
+        }
+    }
+
+    /**
+     * Run the sender as of the given time until it waits.
+     *
+     * @return the packets sent, not counting the second of each packet pair, which is not paced.
+     */
+    private int pacedSendsAt(final long now) throws Exception {
+        int paced = 0;
+        long sent = endpoint.sendCountOfType(PacketType.DATA);
+        long nextStep;
+        do {
+            nextStep = sut.senderAlgorithm(now);
+            if (endpoint.sendCountOfType(PacketType.DATA) == sent) break;
+            sent = endpoint.sendCountOfType(PacketType.DATA);
+            if (((DataPacket) endpoint.lastSentOfType(PacketType.DATA)).getPacketSeqNumber() % 16 != 0) paced++;
+        } while (nextStep <= now);
+        return paced;
+    }
+
+    /**
+     * Send reliable packets and run the sender until it has sent them all.
+     */
+    private void sendReliable(final int count) throws Exception {
+        final long expected = endpoint.sendCountOfType(PacketType.DATA) + count;
+        for (int i = 0; i < count; i++) {
+            final DataPacket dp = new DataPacket();
+            dp.setDelivery(DeliveryType.RELIABLE_ORDERED);
+            sut.sendPacket(dp);
+        }
+        while (endpoint.sendCountOfType(PacketType.DATA) < expected) {
+            sut.senderAlgorithm();
+            Thread.sleep(1);
+        }
+    }
+
     @Test
     public void testIsSentOut() throws Exception {
         // Given
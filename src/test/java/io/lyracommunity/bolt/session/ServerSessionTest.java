@@ -1,16 +1,20 @@
 package io.lyracommunity.bolt.session;
 
+import io.lyracommunity.bolt.BoltCongestionControl;
 import io.lyracommunity.bolt.ChannelOutStub;
+import io.lyracommunity.bolt.LedbatCongestionControl;
 import io.lyracommunity.bolt.api.Config;
 import io.lyracommunity.bolt.helper.PortUtil;
 import io.lyracommunity.bolt.packet.ConnectionHandshake;
 import io.lyracommunity.bolt.packet.Destination;
+import io.lyracommunity.bolt.packet.PacketType;
 import org.junit.Before;
 import org.junit.Test;
 import rx.observers.TestSubscriber;
 
 import java.net.InetAddress;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -59,4 +63,89 @@ public class ServerSessionTest
         assertFalse(established);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void receiveHandshakes_SmallerDatagramSizeAgreed() throws Exception
+    {
+        final Config config = new Config(InetAddress.getLocalHost(), PortUtil.nextServerPort()).setDatagramSize(9000);
+        endpoint = new ChannelOutStub(config, true);
+        sut = new ServerSession(config, endpoint, remote);
+
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientInitial(4000, 1, 1000, 1,
+                InetAddress.getLocalHost()), remote);
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientSecond(4000, 1, 1000, 1, sut.getSessionID(),
+                sut.getState().getSessionCookie(), InetAddress.getLocalHost()), remote);
+
+        assertEquals(4000, sut.getDatagramSize());
+        assertEquals(4000, ((ConnectionHandshake) endpoint.lastSentOfType(PacketType.HANDSHAKE)).getPacketSize());
+    }
+
+    @Test
+    public void receiveHandshakes_PathMtuDiscoveryStartsAtDefaultSize() throws Exception
+    {
+        final Config config = new Config(InetAddress.getLocalHost(), PortUtil.nextServerPort())
+                .setDatagramSize(9000)
+                .setPathMtuDiscovery(true);
+        sut = new ServerSession(config, endpoint, remote);
+
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientInitial(9000, 1, 1000, 1,
+                InetAddress.getLocalHost()), remote);
+
+        assertEquals(9000, sut.getState().getMaxDatagramSize());
+        assertEquals(Config.DEFAULT_DATAGRAM_SIZE, sut.getDatagramSize());
+    }
+
+    @Test
+    public void receiveHandshakes_WideSeqNumbersAgreedOnlyIfBothAsk() throws Exception
+    {
+        final Config config = new Config(InetAddress.getLocalHost(), PortUtil.nextServerPort()).setWideSeqNumbers(true);
+        config.setFlowWindowSize(50_000);
+        endpoint = new ChannelOutStub(config, true);
+        sut = new ServerSession(config, endpoint, remote);
+        assertEquals(16384, sut.getState().getFlowWindowSize());
+
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientInitial(1400, 1, 1000, 1,
+                InetAddress.getLocalHost()).setWideSeqNumbers(true), remote);
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientSecond(1400, 1, 1000, 1, sut.getSessionID(),
+                sut.getState().getSessionCookie(), InetAddress.getLocalHost()).setWideSeqNumbers(true), remote);
+
+        assertTrue(sut.getState().getSeqSpace().isWide());
+        assertEquals(50_000, sut.getState().getFlowWindowSize());
+        assertTrue(((ConnectionHandshake) endpoint.lastSentOfType(PacketType.HANDSHAKE)).isWideSeqNumbers());
+
+        sut = new ServerSession(config, endpoint, remote);
+        sut.receiveHandshake(null, ConnectionHandshake.ofClientInitial(1400, 1, 1000, 1,
+                InetAddress.getLocalHost()), remote);
+
+        assertFalse(sut.getState().getSeqSpace().isWide());
+        assertFalse(((ConnectionHandshake) endpoint.lastSentOfType(PacketType.HANDSHAKE)).isWideSeqNumbers());
+    }
+
+    @Test
+    public void receiveHandshakes_BackgroundTransferChosenPerSession() throws Exception
+    {
+        final Config config = new Config(InetAddress.getLocalHost(), PortUtil.nextServerPort());
+        endpoint = new ChannelOutStub(config, true);
+        final ServerSession background = new ServerSession(config, endpoint, remote);
+        final ServerSession interactive = new ServerSession(config, endpoint,
+                new Destination(InetAddress.getLocalHost(), PortUtil.nextClientPort()));
+
+        assertTrue(handshake(background, true));
+        assertTrue(((ConnectionHandshake) endpoint.lastSentOfType(PacketType.HANDSHAKE)).isBackgroundTransfer());
+        assertTrue(handshake(interactive, false));
+        assertFalse(((ConnectionHandshake) endpoint.lastSentOfType(PacketType.HANDSHAKE)).isBackgroundTransfer());
+
+        assertTrue(background.getState().isBackgroundTransfer());
+        assertTrue(background.cc instanceof LedbatCongestionControl);
+        assertFalse(interactive.getState().isBackgroundTransfer());
+        assertTrue(interactive.cc instanceof BoltCongestionControl);
+    }
+
+    private boolean handshake(final ServerSession session, final boolean backgroundTransfer) throws Exception
+    {
+        session.receiveHandshake(null, ConnectionHandshake.ofClientInitial(1400, 1, 1000, 1,
+                InetAddress.getLocalHost()).setBackgroundTransfer(backgroundTransfer), remote);
+        return session.receiveHandshake(null, ConnectionHandshake.ofClientSecond(1400, 1, 1000, 1, session.getSessionID(),
+                session.getState().getSessionCookie(), InetAddress.getLocalHost()).setBackgroundTransfer(backgroundTransfer), remote);
+    }
+
+}
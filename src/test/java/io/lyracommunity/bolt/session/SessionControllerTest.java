@@ -0,0 +1,71 @@
+package io.lyracommunity.bolt.session;
+
+import io.lyracommunity.bolt.ChannelOutStub;
+import io.lyracommunity.bolt.api.Config;
+import io.lyracommunity.bolt.helper.PortUtil;
+import io.lyracommunity.bolt.packet.Destination;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Subscription;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SessionControllerTest {
+
+    private SessionController sut;
+
+    private Session session;
+
+    @Before
+    public void setUp() throws Exception {
+        final Config config = new Config(InetAddress.getLocalHost(), PortUtil.nextServerPort());
+        final Destination remote = new Destination(InetAddress.getLocalHost(), PortUtil.nextClientPort());
+        sut = new SessionController(config, true);
+        session = new ServerSession(config, new ChannelOutStub(config, true), remote);
+        sut.addSession(session.getSessionID(), session);
+    }
+
+    @Test
+    public void pollReadySession_noneReady() throws Exception {
+        assertNull(sut.pollReadySession());
+        assertNull(sut.pollReadySession(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void signalPacketReady_queuedOnce() throws Exception {
+        sut.signalPacketReady(session);
+        sut.signalPacketReady(session);
+
+        assertSame(session, sut.pollReadySession());
+        assertNull(sut.pollReadySession());
+    }
+
+    @Test
+    public void signalPacketReady_queuedAgainOncePolled() throws Exception {
+        sut.signalPacketReady(session);
+        assertSame(session, sut.pollReadySession(1, TimeUnit.MILLISECONDS));
+
+        sut.signalPacketReady(session);
+
+        assertSame(session, sut.pollReadySession());
+    }
+
+    @Test
+    public void onSessionAdded_notCalledOnceUnsubscribed() throws Exception {
+        final List<Session> added = new ArrayList<>();
+        final Subscription registration = sut.onSessionAdded(added::add);
+        sut.addSession(session.getSessionID(), session);
+        registration.unsubscribe();
+        sut.addSession(session.getSessionID(), session);
+
+        assertEquals(1, added.size());
+    }
+
+}
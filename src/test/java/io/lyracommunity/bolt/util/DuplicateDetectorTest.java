@@ -1,11 +1,11 @@
 package io.lyracommunity.bolt.util;
 
 import io.lyracommunity.bolt.packet.DataPacket;
+import io.lyracommunity.bolt.packet.DeliveryType;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.BitSet;
-
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -24,9 +24,8 @@ public class DuplicateDetectorTest {
     }
 
     public void setUp(final int size) {
-        final BitSet set = new BitSet(size);
-        this.size = set.size();
-        this.classUnderTest = DuplicateDetector.fromBitSet(set);
+        this.classUnderTest = DuplicateDetector.ofSize(size);
+        this.size = classUnderTest.getWindowSize();
     }
 
     @Test
@@ -41,41 +40,83 @@ public class DuplicateDetectorTest {
         assertFalse(classUnderTest.receivePacket(dataPacket(2)));
     }
 
+    @Test
+    public void checkDuplicatePacket_windowRoundedToPowerOfTwo() throws Exception {
+        setUp(100);
+        assertEquals(128, size);
+        setUp(10);
+        assertEquals(64, size);
+    }
+
     @Test
     public void checkDuplicatePacket_overflow() throws Exception {
         setUp(100);
         for (int i = 0; i < size * 3; i++) {
             assertFalse(classUnderTest.receivePacket(dataPacket(i)));
         }
-        for (int i = 0; i < size; i++) {
+        // Sliding forward forgets the sequence numbers which share a slot.
+        for (int i = size * 3; i < size * 4; i++) {
+            assertFalse(classUnderTest.receivePacket(dataPacket(i)));
+        }
+    }
+
+    @Test
+    public void checkDuplicatePacket_outOfOrderWithinWindow() throws Exception {
+        setUp(128);
+        assertFalse(classUnderTest.receivePacket(dataPacket(100)));
+        for (int i = 99; i > 100 - size; i--) {
             assertFalse(classUnderTest.receivePacket(dataPacket(i)));
         }
+        for (int i = 99; i > 100 - size; i--) {
+            assertTrue(classUnderTest.receivePacket(dataPacket(i)));
+        }
     }
 
     @Test
-    public void checkDuplicatePacket_invalidateSegment() throws Exception {
+    public void checkDuplicatePacket_olderThanWindow() throws Exception {
         setUp(128);
+        assertFalse(classUnderTest.receivePacket(dataPacket(1000)));
+        assertTrue(classUnderTest.receivePacket(dataPacket(1000 - size)));
+    }
 
-        assertFalse(classUnderTest.receivePacket(firstPacketInSegment(0)));
-        assertTrue(classUnderTest.receivePacket(firstPacketInSegment(0)));
-        for (int i = 1; i < DuplicateDetector.DEFAULT_SEGMENT_COUNT; i++) {
-            assertFalse(classUnderTest.receivePacket(firstPacketInSegment(i)));
+    @Test
+    public void checkDuplicatePacket_sequenceWrap() throws Exception {
+        setUp(128);
+        for (int i = SeqNum.MAX_SEQ_NUM_16_BIT - 10; i <= SeqNum.MAX_SEQ_NUM_16_BIT; i++) {
+            assertFalse(classUnderTest.receivePacket(reliableDataPacket(i)));
         }
-        assertFalse(classUnderTest.receivePacket(firstPacketInSegment(0)));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(classUnderTest.receivePacket(reliableDataPacket(i)));
+        }
+        assertTrue(classUnderTest.receivePacket(reliableDataPacket(SeqNum.MAX_SEQ_NUM_16_BIT)));
+        assertTrue(classUnderTest.receivePacket(reliableDataPacket(5)));
+    }
+
+    @Test
+    public void checkDuplicatePacket_reliableTrackedByReliabilitySeqNum() throws Exception {
+        final DataPacket first = reliableDataPacket(7);
+        first.setPacketSeqNumber(1);
+        final DataPacket retransmit = reliableDataPacket(7);
+        retransmit.setPacketSeqNumber(2);
+        assertFalse(classUnderTest.receivePacket(first));
+        assertTrue(classUnderTest.receivePacket(retransmit));
+        // An unreliable packet may share the packet sequence number of a reliable one.
+        assertFalse(classUnderTest.receivePacket(dataPacket(1)));
     }
 
     private DataPacket dataPacket(final int packetSeqNum) {
         final DataPacket dp = new DataPacket();
+        dp.setDelivery(DeliveryType.UNRELIABLE_UNORDERED);
         dp.setPacketSeqNumber(packetSeqNum);
         return dp;
     }
 
-    private DataPacket firstPacketInSegment(final int segmentNumber) {
+    private DataPacket reliableDataPacket(final int reliabilitySeqNum) {
         final DataPacket dp = new DataPacket();
-        final int itemsPerSegment = size / DuplicateDetector.DEFAULT_SEGMENT_COUNT;
-        dp.setPacketSeqNumber(segmentNumber * itemsPerSegment);
+        dp.setDelivery(DeliveryType.RELIABLE_UNORDERED);
+        dp.setReliabilitySeqNumber(reliabilitySeqNum);
         return dp;
     }
 
 
-}
\ No newline at end of file
+}
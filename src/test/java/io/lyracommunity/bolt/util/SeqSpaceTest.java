@@ -0,0 +1,45 @@
+package io.lyracommunity.bolt.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeqSpaceTest {
+
+    @Test
+    public void testNarrowMatchesSixteenBitHelpers() {
+        final SeqSpace space = new SeqSpace(false);
+        assertEquals(SeqNum.MAX_SEQ_NUM_16_BIT, space.getMaxSeqNum());
+        assertEquals(16384, space.getMaxWindow());
+        assertEquals(0, space.increment(SeqNum.MAX_SEQ_NUM_16_BIT));
+        assertTrue(space.compare(3, SeqNum.MAX_SEQ_NUM_16_BIT - 3) > 0);
+        assertTrue(space.compare(SeqNum.MAX_SEQ_NUM_16_BIT - 3, 3) < 0);
+        assertEquals(SeqNum.seqOffset16(SeqNum.MAX_SEQ_NUM_16_BIT - 3, 3), space.offset(SeqNum.MAX_SEQ_NUM_16_BIT - 3, 3));
+    }
+
+    @Test
+    public void testWideWrap() {
+        final SeqSpace space = new SeqSpace(true);
+        final int max = SeqNum.MAX_SEQ_NUM_WIDE;
+        assertEquals(max, space.getMaxSeqNum());
+        assertEquals(0, space.increment(max));
+        assertEquals(max, space.decrement(0));
+        assertEquals(99_999, space.add(max - 100_000, 200_000));
+
+        assertEquals(200_000, space.offset(max - 100_000, 99_999));
+        assertEquals(-200_000, space.offset(99_999, max - 100_000));
+        assertTrue(space.compare(99_999, max - 100_000) > 0);
+        // Beyond the 16-bit space, which would have wrapped.
+        assertTrue(space.compare(70_000, 10) > 0);
+    }
+
+    @Test
+    public void testWidenedOnceNegotiated() {
+        final SeqSpace space = new SeqSpace(false);
+        space.setWide(true);
+        assertTrue(space.isWide());
+        assertEquals(1 << 28, space.getMaxWindow());
+    }
+
+}
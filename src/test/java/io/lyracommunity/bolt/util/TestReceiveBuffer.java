@@ -251,6 +251,54 @@ public class TestReceiveBuffer {
         assertEquals(2, orderSeqNum);
     }
 
+    @Test
+    public void testWideOrderSequenceBeyondSixteenBits() {
+        final SeqSpace space = new SeqSpace(true);
+        final int flowWindow = 40_000;
+        final ReceiveBuffer b = new ReceiveBuffer(2 * flowWindow, space);
+
+        // In reverse, so every chunk waits for the first, which is 40,000 behind the last.
+        for (int i = flowWindow; i > 0; i--) {
+            assertEquals(OfferResult.OK_ACCEPTED, b.offer(orderedDataPacket(i, i, new byte[]{1})));
+        }
+        for (int i = 1; i <= flowWindow; i++) {
+            assertEquals(i, b.poll().getOrderSeqNumber());
+        }
+    }
+
+    @Test
+    public void testLargeWindowReversedOrder() {
+        // The receiver sizes the buffer at twice the flow window, which bounds how far apart in-flight packets are.
+        final int flowWindow = 10_240;
+        final ReceiveBuffer b = new ReceiveBuffer(2 * flowWindow);
+
+        for (int i = flowWindow; i > 0; i--) {
+            assertEquals(OfferResult.OK_ACCEPTED, b.offer(orderedDataPacket(i)));
+        }
+        assertEquals(OfferResult.ERROR_LOOKAHEAD, b.offer(orderedDataPacket(2 * flowWindow)));
+
+        for (int i = 1; i <= flowWindow; i++) {
+            assertEquals(i, b.poll().getOrderSeqNumber());
+        }
+        assertNull(b.poll());
+    }
+
+    @Test
+    public void testWindowSlotsReusedAfterWrap() {
+        final ReceiveBuffer b = new ReceiveBuffer(4);
+
+        for (int i = 1; i <= 50; i += 2) {
+            // Offer each pair in reverse so the later one waits in the window.
+            assertEquals(OfferResult.OK_ACCEPTED, b.offer(orderedDataPacket(i + 1)));
+            assertNull(b.poll());
+            assertEquals(OfferResult.OK_ACCEPTED, b.offer(orderedDataPacket(i)));
+            assertEquals(i, b.poll().getOrderSeqNumber());
+            assertEquals(i + 1, b.poll().getOrderSeqNumber());
+        }
+        assertEquals(OfferResult.OK_ACCEPTED, b.offer(orderedDataPacket(1)));
+        assertNull(b.poll());
+    }
+
     private DataPacket dataPacket(int seqNo, byte[] data, DeliveryType deliveryType) {
         return dataPacket(seqNo, -1, data, deliveryType);
     }
@@ -268,6 +316,7 @@ public class TestReceiveBuffer {
         p.setData(data);
         p.setPacketSeqNumber(seqNo);
         p.setDelivery(deliveryType);
+        if (deliveryType.isReliable()) p.setReliabilitySeqNumber(seqNo);
         p.setOrderSeqNumber(orderSeqNo);
         return p;
     }
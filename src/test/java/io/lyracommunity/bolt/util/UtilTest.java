@@ -0,0 +1,52 @@
+package io.lyracommunity.bolt.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class UtilTest {
+
+    @Test
+    public void testMedianOddCount() {
+        final long[] values = {9, 1, 5, 3, 7};
+        assertEquals(5d, Util.median(values, new long[5], 5), 0d);
+    }
+
+    @Test
+    public void testMedianEvenCount() {
+        final long[] values = {8, 2, 6, 4};
+        assertEquals(5d, Util.median(values, new long[4], 4), 0d);
+    }
+
+    @Test
+    public void testMedianOfPrefixLeavesValuesUnchanged() {
+        final long[] values = {3, 1, 2, 100, 100};
+        final long[] copy = values.clone();
+        assertEquals(2d, Util.median(values, new long[5], 3), 0d);
+        assertArrayEquals(copy, values);
+    }
+
+    @Test
+    public void testMedianEmpty() {
+        assertEquals(0d, Util.median(new long[0], new long[0], 0), 0d);
+    }
+
+    @Test
+    public void testMedianMatchesSort() {
+        final Random random = new Random(42);
+        for (int count = 1; count < 40; count++) {
+            final long[] values = random.longs(count, 0, 20).toArray();
+            final long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            final double expected = (count % 2 == 1)
+                    ? sorted[count / 2]
+                    : (sorted[count / 2 - 1] + sorted[count / 2]) / 2d;
+            assertEquals(expected, Util.median(values, new long[count], count), 0d);
+        }
+    }
+
+}